@@ -0,0 +1,55 @@
+#!/bin/sh
+#
+# Measures time-to-first-served-request: the wall-clock time from launching the JVM until
+# GET /health answers 200. Each run starts a fresh process and kills it afterwards.
+#
+# Usage: scripts/startup-time.sh [-n runs] [-p port] <jar> [jvm options...]
+#
+#   scripts/startup-time.sh target/messages-0.0.8.jar
+#   scripts/startup-time.sh app/app.jar -XX:SharedArchiveFile=app/app.jsa -Dspring.aot.enabled=true
+#
+
+RUNS=5
+PORT=8080
+while getopts "n:p:" opt; do
+    case $opt in
+        n) RUNS=$OPTARG ;;
+        p) PORT=$OPTARG ;;
+        *) exit 2 ;;
+    esac
+done
+shift $((OPTIND - 1))
+
+if [ $# -lt 1 ]; then
+    echo "usage: $0 [-n runs] [-p port] <jar> [jvm options...]" >&2
+    exit 2
+fi
+JAR=$1
+shift
+
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+now_ms() {
+    date +%s%3N
+}
+
+TOTAL=0
+i=1
+while [ "$i" -le "$RUNS" ]; do
+    START=$(now_ms)
+    "$JAVA" "$@" -jar "$JAR" --server.port="$PORT" > /dev/null 2>&1 &
+    PID=$!
+    until curl -sf -o /dev/null "http://localhost:$PORT/health"; do
+        if ! kill -0 "$PID" 2> /dev/null; then
+            echo "run $i: application exited before serving a request" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+    ELAPSED=$(($(now_ms) - START))
+    kill "$PID"
+    wait "$PID" 2> /dev/null
+    echo "run $i: ${ELAPSED} ms"
+    TOTAL=$((TOTAL + ELAPSED))
+    i=$((i + 1))
+done
+echo "mean: $((TOTAL / RUNS)) ms over $RUNS runs"
@@ -0,0 +1,473 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.arena;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Slab-allocated off-heap storage for message payloads.
+ *
+ * Payloads are rounded up to one of a series of size classes, spaced at most a quarter of the size apart so that
+ * rounding wastes little. Each size class carves fixed-size slots out of direct buffer slabs, which are reserved on
+ * demand up to a limit. A slot is returned to its slab when its allocation is freed, and a slab is released once it
+ * is empty and its size class has another slab with room. Payloads too large for the biggest size class, or arriving
+ * when the limit is reached, are refused and stay on the heap.
+ *
+ * Allocations should be freed explicitly as soon as their message leaves the queue. Copies of a queue made by
+ * Hazelcast, such as the old owner's copy after a partition migrates, are never freed explicitly, so an allocation
+ * that becomes unreachable is also freed by a Cleaner.
+ *
+ * The arena is shared by the whole process, since queues are deserialized by Hazelcast without access to the
+ * application context, and must be installed before the Hazelcast instance starts.
+ */
+public final class PayloadArena {
+
+    /**
+     * Smallest spacing between size classes, in bytes.
+     */
+    private static final int MIN_CLASS_SPACING = 16;
+
+    /**
+     * Size classes are spaced at a quarter of the size class.
+     */
+    private static final int CLASS_SPACING_SHIFT = 2;
+
+    /**
+     * Frees allocations which become unreachable without being freed.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * Installed arena, or null if payloads are kept on the heap.
+     */
+    private static volatile PayloadArena instance;
+
+    /**
+     * Most bytes which may be reserved for slabs.
+     */
+    private final long capacity;
+
+    /**
+     * Size of each slab, in bytes.
+     */
+    private final int slabSize;
+
+    /**
+     * Slot size of each size class, ascending.
+     */
+    private final int[] slotSizes;
+
+    /**
+     * Size classes, matching slotSizes.
+     */
+    private final SizeClass[] sizeClasses;
+
+    /**
+     * Bytes reserved for slabs.
+     */
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    /**
+     * Bytes of slots in use.
+     */
+    private final LongAdder slotBytes = new LongAdder();
+
+    /**
+     * Bytes of payload stored.
+     */
+    private final LongAdder payloadBytes = new LongAdder();
+
+    /**
+     * Live allocations.
+     */
+    private final LongAdder allocations = new LongAdder();
+
+    /**
+     * Payloads refused, because they were too large or the arena was full.
+     */
+    private final LongAdder refused = new LongAdder();
+
+    /**
+     * PayloadArena.
+     *
+     * @param maxBytes most bytes which may be reserved for slabs
+     * @param slab size of each slab, in bytes
+     * @param minSlotSize smallest slot size, in bytes
+     * @param maxSlotSize largest slot size, in bytes; larger payloads stay on the heap
+     */
+    public PayloadArena(final long maxBytes, final int slab, final int minSlotSize, final int maxSlotSize) {
+        if (minSlotSize <= 0 || maxSlotSize < minSlotSize || slab < maxSlotSize) {
+            throw new IllegalArgumentException("Slot sizes must satisfy 0 < min <= max <= slab size");
+        }
+        capacity = maxBytes;
+        slabSize = slab;
+        int[] sizes = new int[0];
+        for (int size = minSlotSize; size < maxSlotSize;
+             size += Math.max(MIN_CLASS_SPACING, Integer.highestOneBit(size) >> CLASS_SPACING_SHIFT)) {
+            sizes = Arrays.copyOf(sizes, sizes.length + 1);
+            sizes[sizes.length - 1] = size;
+        }
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        sizes[sizes.length - 1] = maxSlotSize;
+        slotSizes = sizes;
+        sizeClasses = new SizeClass[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizeClasses[i] = new SizeClass(sizes[i]);
+        }
+    }
+
+    /**
+     * Installed arena.
+     *
+     * @return PayloadArena, or null if payloads are kept on the heap
+     */
+    public static PayloadArena getInstance() {
+        return instance;
+    }
+
+    /**
+     * Installs the arena used for payloads stored from now on.
+     *
+     * @param arena PayloadArena, or null to keep payloads on the heap
+     */
+    public static void install(final PayloadArena arena) {
+        instance = arena;
+    }
+
+    /**
+     * Copies a payload into the arena.
+     *
+     * @param bytes payload
+     * @return Allocation, or null if the payload was refused
+     */
+    public Allocation allocate(final byte[] bytes) {
+        int index = Arrays.binarySearch(slotSizes, bytes.length);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (bytes.length == 0 || index == slotSizes.length) {
+            refused.increment();
+            return null;
+        }
+        final SizeClass sizeClass = sizeClasses[index];
+        final Region region = sizeClass.take(bytes.length);
+        if (region == null) {
+            refused.increment();
+            return null;
+        }
+        region.slab.buffer.put(region.offset, bytes, 0, bytes.length);
+        slotBytes.add(sizeClass.slotSize);
+        payloadBytes.add(bytes.length);
+        allocations.increment();
+        return new Allocation(region);
+    }
+
+    /**
+     * Bytes reserved for slabs.
+     *
+     * @return reserved bytes
+     */
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    /**
+     * Bytes of slots in use.
+     *
+     * @return used bytes
+     */
+    public long getUsedBytes() {
+        return slotBytes.sum();
+    }
+
+    /**
+     * Bytes of payload stored.
+     *
+     * @return payload bytes
+     */
+    public long getPayloadBytes() {
+        return payloadBytes.sum();
+    }
+
+    /**
+     * Live allocations.
+     *
+     * @return allocation count
+     */
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * Payloads refused since startup, because they were too large or the arena was full.
+     *
+     * @return refused count
+     */
+    public long getRefused() {
+        return refused.sum();
+    }
+
+    /**
+     * Share of the slots in use lost to rounding payloads up to their size class.
+     *
+     * @return internal fragmentation, between 0 and 1
+     */
+    public double getInternalFragmentation() {
+        final long used = getUsedBytes();
+        if (used == 0) {
+            return 0;
+        }
+        return 1 - (double) getPayloadBytes() / used;
+    }
+
+    /**
+     * Share of the reserved slabs not occupied by slots in use.
+     *
+     * @return external fragmentation, between 0 and 1
+     */
+    public double getExternalFragmentation() {
+        final long reserved = getReservedBytes();
+        if (reserved == 0) {
+            return 0;
+        }
+        return 1 - (double) getUsedBytes() / reserved;
+    }
+
+    /**
+     * Reserves room for one more slab, unless that would exceed the capacity.
+     *
+     * @return true if reserved
+     */
+    private boolean reserveSlab() {
+        long reserved;
+        do {
+            reserved = reservedBytes.get();
+            if (reserved + slabSize > capacity) {
+                return false;
+            }
+        } while (!reservedBytes.compareAndSet(reserved, reserved + slabSize));
+        return true;
+    }
+
+    /**
+     * Returns a region's slot to its slab.
+     *
+     * @param region Region
+     */
+    private void release(final Region region) {
+        region.slab.sizeClass.give(region.slab, region.offset);
+        slotBytes.add(-region.slab.sizeClass.slotSize);
+        payloadBytes.add(-region.length);
+        allocations.decrement();
+    }
+
+    /**
+     * A payload stored in the arena.
+     */
+    public static final class Allocation {
+
+        /**
+         * Region holding the payload.
+         */
+        private final Region region;
+
+        /**
+         * Frees the region, at most once.
+         */
+        private final Cleaner.Cleanable cleanable;
+
+        private Allocation(final Region r) {
+            region = r;
+            cleanable = CLEANER.register(this, r);
+        }
+
+        /**
+         * Copies the payload back onto the heap.
+         *
+         * @return payload
+         */
+        public byte[] read() {
+            final byte[] bytes = new byte[region.length];
+            region.slab.buffer.get(region.offset, bytes, 0, region.length);
+            return bytes;
+        }
+
+        /**
+         * Payload length.
+         *
+         * @return length in bytes
+         */
+        public int getLength() {
+            return region.length;
+        }
+
+        /**
+         * Returns the slot to the arena. Further calls have no effect.
+         */
+        public void free() {
+            cleanable.clean();
+        }
+    }
+
+    /**
+     * Slots of one size, carved out of slabs.
+     */
+    private final class SizeClass {
+
+        /**
+         * Slot size, in bytes.
+         */
+        private final int slotSize;
+
+        /**
+         * Slabs with at least one free slot.
+         */
+        private final Deque<Slab> partial = new ArrayDeque<>();
+
+        private SizeClass(final int size) {
+            slotSize = size;
+        }
+
+        /**
+         * Takes a free slot, reserving a new slab if none has room.
+         *
+         * @param length payload length
+         * @return Region, or null if the arena is full
+         */
+        private synchronized Region take(final int length) {
+            Slab slab = partial.peekFirst();
+            if (slab == null) {
+                if (!reserveSlab()) {
+                    return null;
+                }
+                slab = new Slab(this, slabSize / slotSize);
+                partial.addFirst(slab);
+            }
+            final Region region = new Region(slab, slab.take(), length);
+            if (slab.isFull()) {
+                partial.removeFirst();
+            }
+            return region;
+        }
+
+        private synchronized void give(final Slab slab, final int offset) {
+            final boolean wasFull = slab.isFull();
+            slab.give(offset);
+            if (wasFull) {
+                partial.addLast(slab);
+            } else if (slab.isEmpty() && partial.size() > 1) {
+                partial.remove(slab);
+                reservedBytes.addAndGet(-slabSize);
+            }
+        }
+
+        private PayloadArena arena() {
+            return PayloadArena.this;
+        }
+    }
+
+    /**
+     * A direct buffer divided into equal slots.
+     */
+    private static final class Slab {
+
+        /**
+         * Size class the slab belongs to.
+         */
+        private final SizeClass sizeClass;
+
+        /**
+         * Off-heap memory.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Free slot indexes, used as a stack.
+         */
+        private final int[] free;
+
+        /**
+         * Number of free slots.
+         */
+        private int freeCount;
+
+        private Slab(final SizeClass owner, final int slots) {
+            sizeClass = owner;
+            buffer = ByteBuffer.allocateDirect(slots * owner.slotSize);
+            free = new int[slots];
+            for (int i = 0; i < slots; i++) {
+                free[i] = slots - 1 - i;
+            }
+            freeCount = slots;
+        }
+
+        private int take() {
+            return free[--freeCount] * sizeClass.slotSize;
+        }
+
+        private void give(final int offset) {
+            free[freeCount++] = offset / sizeClass.slotSize;
+        }
+
+        private boolean isFull() {
+            return freeCount == 0;
+        }
+
+        private boolean isEmpty() {
+            return freeCount == free.length;
+        }
+    }
+
+    /**
+     * The slot holding a payload. Runs once, to free the slot.
+     */
+    private static final class Region implements Runnable {
+
+        /**
+         * Slab.
+         */
+        private final Slab slab;
+
+        /**
+         * Offset within the slab, in bytes.
+         */
+        private final int offset;
+
+        /**
+         * Payload length.
+         */
+        private final int length;
+
+        private Region(final Slab s, final int o, final int l) {
+            slab = s;
+            offset = o;
+            length = l;
+        }
+
+        @Override
+        public void run() {
+            slab.sizeClass.arena().release(this);
+        }
+    }
+}
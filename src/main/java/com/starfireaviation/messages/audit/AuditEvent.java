@@ -0,0 +1,43 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.audit;
+
+/**
+ * Message lifecycle event recorded in the audit trail.
+ */
+public enum AuditEvent {
+
+    /**
+     * Message added to an organization's queue.
+     */
+    STORED,
+
+    /**
+     * Message for a single client removed from the queue or leased by a caller.
+     */
+    DELIVERED,
+
+    /**
+     * Message for every client returned to a caller, who will not receive it again.
+     */
+    SEEN,
+
+    /**
+     * Message removed from the queue once its expiration time passed.
+     */
+    EXPIRED
+}
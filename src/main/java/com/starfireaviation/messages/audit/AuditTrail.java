@@ -0,0 +1,691 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.audit;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Audit trail of message lifecycle events, written asynchronously to rotating files on local disk.
+ *
+ * Events are recorded into a ring of fixed-size binary records allocated up front. A caller claims the next record
+ * with a compare-and-set, fills it in and publishes it, so recording takes no lock and allocates nothing. Strings are
+ * encoded straight into the record as UTF-8 and truncated to FIELD_SIZE bytes. When the writer falls a full ring
+ * behind, further events are dropped and counted rather than making callers wait.
+ *
+ * A single writer thread copies published records, in the order they were claimed, into a buffer written to the
+ * active file whenever no more records are ready or the buffer is full. On disk each record is stored without the
+ * unused part of its string fields. A file is closed once it reaches the file size and a new one started, and the
+ * oldest files beyond the file limit are deleted. Unlike spill segments, files left by an earlier process are kept.
+ *
+ * The trail is shared by the whole process, so that entry processors running on the member owning a queue can
+ * record events too.
+ */
+@Slf4j
+public final class AuditTrail {
+
+    /**
+     * Largest number of UTF-8 bytes kept from each string field.
+     */
+    public static final int FIELD_SIZE = 64;
+
+    /**
+     * Bytes before the string fields: timestamp, message ID, event, priority and notification type, and one spare.
+     */
+    private static final int HEADER_SIZE = 20;
+
+    /**
+     * Bytes taken by a string field in the ring: its length followed by up to FIELD_SIZE bytes.
+     */
+    private static final int SLOT_FIELD_SIZE = Short.BYTES + FIELD_SIZE;
+
+    /**
+     * Number of string fields: organization, client ID and correlation ID.
+     */
+    private static final int FIELDS = 3;
+
+    /**
+     * Bytes taken by a record in the ring.
+     */
+    private static final int RECORD_SIZE = HEADER_SIZE + FIELDS * SLOT_FIELD_SIZE;
+
+    /**
+     * Offset of the message ID within a record.
+     */
+    private static final int MESSAGE_ID_OFFSET = 8;
+
+    /**
+     * Offset of the event within a record.
+     */
+    private static final int EVENT_OFFSET = 16;
+
+    /**
+     * Offset of the priority within a record.
+     */
+    private static final int PRIORITY_OFFSET = 17;
+
+    /**
+     * Offset of the notification type within a record.
+     */
+    private static final int NOTIFICATION_TYPE_OFFSET = 18;
+
+    /**
+     * Length recorded for a null string.
+     */
+    private static final short NULL_LENGTH = -1;
+
+    /**
+     * Value recorded for a null message ID or enum.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Smallest code point needing each further UTF-8 byte.
+     */
+    private static final int[] UTF8_LIMITS = {0x80, 0x800, Character.MIN_SUPPLEMENTARY_CODE_POINT};
+
+    /**
+     * Bits set in the first UTF-8 byte of a code point, by number of bytes less one.
+     */
+    private static final int[] UTF8_LEADING = {0x00, 0xC0, 0xE0, 0xF0};
+
+    /**
+     * Bits set in each following UTF-8 byte.
+     */
+    private static final int UTF8_CONTINUATION = 0x80;
+
+    /**
+     * Code point bits held by each following UTF-8 byte.
+     */
+    private static final int UTF8_CONTINUATION_BITS = 6;
+
+    /**
+     * Mask of the code point bits held by each following UTF-8 byte.
+     */
+    private static final int UTF8_CONTINUATION_MASK = (1 << UTF8_CONTINUATION_BITS) - 1;
+
+    /**
+     * Size of the writer's output buffer, in bytes.
+     */
+    private static final int OUTPUT_SIZE = 256 * 1024;
+
+    /**
+     * Time the writer waits when no records are ready, in nanoseconds.
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Audit file name prefix.
+     */
+    private static final String FILE_PREFIX = "audit-";
+
+    /**
+     * Audit file name suffix.
+     */
+    private static final String FILE_SUFFIX = ".bin";
+
+    /**
+     * Longs within the record bytes.
+     */
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Shorts within the record bytes.
+     */
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Installed trail, or null if events are not audited.
+     */
+    private static volatile AuditTrail instance;
+
+    /**
+     * Directory holding the audit files.
+     */
+    private final Path directory;
+
+    /**
+     * Size at which an audit file is closed, in bytes.
+     */
+    private final long fileSize;
+
+    /**
+     * Most audit files kept.
+     */
+    private final int maxFiles;
+
+    /**
+     * Number of records in the ring, a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * Record bytes, RECORD_SIZE per record.
+     */
+    private final byte[] records;
+
+    /**
+     * Sequence each record was last published with, plus one, so that a record still holding an earlier sequence is
+     * never mistaken for a published one.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * Sequence of the next record claimed.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Sequence of the next record copied by the writer. Records before it may be claimed again.
+     */
+    private volatile long head;
+
+    /**
+     * Whether the trail no longer accepts events.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Records copied into the output buffer and not yet written.
+     */
+    private final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_SIZE);
+
+    /**
+     * Writer thread.
+     */
+    private final Thread writer;
+
+    /**
+     * Number of records in the output buffer.
+     */
+    private int buffered;
+
+    /**
+     * Active audit file, or null until the first records are written.
+     */
+    private FileChannel active;
+
+    /**
+     * Bytes written to the active audit file.
+     */
+    private long activeSize;
+
+    /**
+     * Number of the next audit file created.
+     */
+    private long nextFile;
+
+    /**
+     * Events recorded since startup.
+     */
+    private final LongAdder recorded = new LongAdder();
+
+    /**
+     * Events dropped since startup, because the ring was full, the trail was closed or a write failed.
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Bytes written since startup.
+     */
+    private final LongAdder written = new LongAdder();
+
+    /**
+     * AuditTrail, starting its writer thread.
+     *
+     * @param path directory holding the audit files, created if missing
+     * @param size number of records in the ring, rounded up to a power of two
+     * @param maxFileSize size at which an audit file is closed, in bytes
+     * @param files most audit files kept
+     * @throws IOException if the directory cannot be prepared
+     */
+    public AuditTrail(final Path path, final int size, final long maxFileSize, final int files) throws IOException {
+        directory = Files.createDirectories(path);
+        fileSize = maxFileSize;
+        maxFiles = files;
+        capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        records = new byte[capacity * RECORD_SIZE];
+        published = new AtomicLongArray(capacity);
+        final TreeMap<Long, Path> existing = files();
+        if (!existing.isEmpty()) {
+            nextFile = existing.lastKey() + 1;
+        }
+        writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Installed trail.
+     *
+     * @return AuditTrail, or null if events are not audited
+     */
+    public static AuditTrail getInstance() {
+        return instance;
+    }
+
+    /**
+     * Installs the trail events are recorded in from now on.
+     *
+     * @param trail AuditTrail, or null to stop auditing events
+     */
+    public static void install(final AuditTrail trail) {
+        instance = trail;
+    }
+
+    /**
+     * Records an event for a message in the installed trail, if any.
+     *
+     * @param event AuditEvent
+     * @param organization Organization
+     * @param message Message
+     * @param clientId ClientID, or null
+     * @param correlationId CorrelationID, or null
+     */
+    public static void audit(final AuditEvent event,
+                             final String organization,
+                             final Message message,
+                             final String clientId,
+                             final String correlationId) {
+        final AuditTrail trail = instance;
+        if (trail != null) {
+            trail.record(event, organization, message, clientId, correlationId);
+        }
+    }
+
+    /**
+     * Records an event for a message. Neither blocks nor allocates; the event is dropped if the ring is full.
+     *
+     * @param event AuditEvent
+     * @param organization Organization
+     * @param message Message
+     * @param clientId ClientID, or null
+     * @param correlationId CorrelationID, or null
+     */
+    public void record(final AuditEvent event,
+                       final String organization,
+                       final Message message,
+                       final String clientId,
+                       final String correlationId) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (closed || sequence - head >= capacity) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        final int index = (int) (sequence & (capacity - 1));
+        final int offset = index * RECORD_SIZE;
+        LONG.set(records, offset, System.currentTimeMillis());
+        final Long messageId = message.getId();
+        if (messageId == null) {
+            LONG.set(records, offset + MESSAGE_ID_OFFSET, (long) NONE);
+        } else {
+            LONG.set(records, offset + MESSAGE_ID_OFFSET, messageId.longValue());
+        }
+        records[offset + EVENT_OFFSET] = (byte) event.ordinal();
+        records[offset + PRIORITY_OFFSET] = ordinal(message.getPriority());
+        records[offset + NOTIFICATION_TYPE_OFFSET] = ordinal(message.getNotificationType());
+        encode(offset + HEADER_SIZE, organization);
+        encode(offset + HEADER_SIZE + SLOT_FIELD_SIZE, clientId);
+        encode(offset + HEADER_SIZE + 2 * SLOT_FIELD_SIZE, correlationId);
+        published.set(index, sequence + 1);
+        recorded.increment();
+    }
+
+    /**
+     * Stops accepting events, writes those already recorded and closes the active file.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Number of records in the ring.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Events recorded since startup.
+     *
+     * @return count
+     */
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    /**
+     * Events dropped since startup.
+     *
+     * @return count
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Bytes written since startup.
+     *
+     * @return bytes
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Events recorded and not yet copied by the writer.
+     *
+     * @return count
+     */
+    public long getPending() {
+        return tail.get() - head;
+    }
+
+    /**
+     * Reads the events held in an audit file.
+     *
+     * @param file audit file
+     * @return Entry(s), in the order they were recorded
+     * @throws IOException if the file cannot be read
+     */
+    public static List<Entry> read(final Path file) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        final List<Entry> entries = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            final Entry entry = new Entry();
+            entry.setTimestamp(buffer.getLong());
+            final long messageId = buffer.getLong();
+            if (messageId != NONE) {
+                entry.setMessageId(messageId);
+            }
+            entry.setEvent(AuditEvent.values()[buffer.get()]);
+            final byte priority = buffer.get();
+            if (priority != NONE) {
+                entry.setPriority(Priority.values()[priority]);
+            }
+            final byte notificationType = buffer.get();
+            if (notificationType != NONE) {
+                entry.setNotificationType(NotificationType.values()[notificationType]);
+            }
+            buffer.get();
+            entry.setOrganization(decode(buffer));
+            entry.setClientId(decode(buffer));
+            entry.setCorrelationId(decode(buffer));
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Audit files in the directory.
+     *
+     * @return audit files by number, oldest first
+     * @throws IOException if the directory cannot be listed
+     */
+    TreeMap<Long, Path> files() throws IOException {
+        final TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (final Path file : stream) {
+                final String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(FILE_PREFIX.length(),
+                            name.length() - FILE_SUFFIX.length())), file);
+                } catch (final NumberFormatException e) {
+                    log.debug("Ignoring file: {}", file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static byte ordinal(final Enum<?> value) {
+        if (value == null) {
+            return NONE;
+        }
+        return (byte) value.ordinal();
+    }
+
+    /**
+     * Encodes a string into a record field as UTF-8, stopping at the last whole character that fits.
+     *
+     * @param offset offset of the field within the record bytes
+     * @param value string, or null
+     */
+    private void encode(final int offset, final String value) {
+        if (value == null) {
+            SHORT.set(records, offset, NULL_LENGTH);
+            return;
+        }
+        int position = offset + Short.BYTES;
+        final int limit = position + FIELD_SIZE;
+        int i = 0;
+        while (i < value.length()) {
+            final int codePoint = value.codePointAt(i);
+            int bytes = 1;
+            while (bytes <= UTF8_LIMITS.length && codePoint >= UTF8_LIMITS[bytes - 1]) {
+                bytes++;
+            }
+            if (position + bytes > limit) {
+                break;
+            }
+            int remaining = codePoint;
+            for (int b = bytes - 1; b > 0; b--) {
+                records[position + b] = (byte) (UTF8_CONTINUATION | remaining & UTF8_CONTINUATION_MASK);
+                remaining >>>= UTF8_CONTINUATION_BITS;
+            }
+            records[position] = (byte) (UTF8_LEADING[bytes - 1] | remaining);
+            position += bytes;
+            i += Character.charCount(codePoint);
+        }
+        SHORT.set(records, offset, (short) (position - offset - Short.BYTES));
+    }
+
+    /**
+     * Writer loop: copies published records and writes them whenever no more are ready, until closed and drained.
+     */
+    private void drain() {
+        while (true) {
+            final boolean finished = closed;
+            if (copy() == 0) {
+                flush();
+                if (finished && head == tail.get()) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+        closeActive();
+    }
+
+    /**
+     * Copies published records, in sequence, into the output buffer, writing it out whenever it fills up. Each record
+     * is released to callers as soon as it has been copied.
+     *
+     * @return number of records copied
+     */
+    private int copy() {
+        long sequence = head;
+        int copied = 0;
+        while (true) {
+            final int index = (int) (sequence & (capacity - 1));
+            if (published.get(index) != sequence + 1) {
+                return copied;
+            }
+            if (output.remaining() < RECORD_SIZE) {
+                flush();
+            }
+            final int offset = index * RECORD_SIZE;
+            output.put(records, offset, HEADER_SIZE);
+            for (int field = 0; field < FIELDS; field++) {
+                final int fieldOffset = offset + HEADER_SIZE + field * SLOT_FIELD_SIZE;
+                final short length = (short) SHORT.get(records, fieldOffset);
+                output.put(records, fieldOffset, Short.BYTES + Math.max(length, 0));
+            }
+            buffered++;
+            sequence++;
+            head = sequence;
+            copied++;
+        }
+    }
+
+    /**
+     * Writes the output buffer to the active file, starting a new file first if it would grow past the file size.
+     * Records which cannot be written are dropped.
+     */
+    private void flush() {
+        output.flip();
+        try {
+            if (output.hasRemaining()) {
+                if (active == null || activeSize > 0 && activeSize + output.remaining() > fileSize) {
+                    rotate();
+                }
+                while (output.hasRemaining()) {
+                    final int bytes = active.write(output);
+                    activeSize += bytes;
+                    written.add(bytes);
+                }
+            }
+        } catch (final IOException e) {
+            log.warn("Unable to write {} audit record(s) to {}", buffered, directory, e);
+            dropped.add(buffered);
+            closeActive();
+        }
+        output.clear();
+        buffered = 0;
+    }
+
+    /**
+     * Closes the active file and starts the next one, deleting the oldest files beyond the file limit.
+     *
+     * @throws IOException if the file cannot be created
+     */
+    private void rotate() throws IOException {
+        closeActive();
+        active = FileChannel.open(directory.resolve(FILE_PREFIX + nextFile++ + FILE_SUFFIX),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeSize = 0;
+        final TreeMap<Long, Path> files = files();
+        while (files.size() > maxFiles) {
+            Files.deleteIfExists(files.pollFirstEntry().getValue());
+        }
+    }
+
+    /**
+     * Forces the active file to disk and closes it.
+     */
+    private void closeActive() {
+        if (active == null) {
+            return;
+        }
+        try (FileChannel channel = active) {
+            channel.force(false);
+        } catch (final IOException e) {
+            log.warn("Unable to close audit file in {}", directory, e);
+        }
+        active = null;
+    }
+
+    private static String decode(final ByteBuffer buffer) {
+        final short length = buffer.getShort();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        final String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * An event read back from an audit file.
+     */
+    @Data
+    public static class Entry {
+
+        /**
+         * Time the event was recorded, in epoch milliseconds.
+         */
+        private long timestamp;
+
+        /**
+         * AuditEvent.
+         */
+        private AuditEvent event;
+
+        /**
+         * MessageID.
+         */
+        private Long messageId;
+
+        /**
+         * Priority.
+         */
+        private Priority priority;
+
+        /**
+         * NotificationType.
+         */
+        private NotificationType notificationType;
+
+        /**
+         * Organization.
+         */
+        private String organization;
+
+        /**
+         * ClientID.
+         */
+        private String clientId;
+
+        /**
+         * CorrelationID.
+         */
+        private String correlationId;
+    }
+}
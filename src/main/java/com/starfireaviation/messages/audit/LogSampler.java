@@ -0,0 +1,48 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.audit;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which requests write verbose diagnostic logs, so that their cost can be kept to a small sample under load.
+ */
+public final class LogSampler {
+
+    /**
+     * Share of requests logged, from 0 for none to 1 for all.
+     */
+    private final double rate;
+
+    /**
+     * LogSampler.
+     *
+     * @param sampleRate share of requests logged, from 0 for none to 1 for all
+     */
+    public LogSampler(final double sampleRate) {
+        rate = sampleRate;
+    }
+
+    /**
+     * Whether the current request is logged.
+     *
+     * @return true if logged
+     */
+    public boolean sample() {
+        return rate >= 1 || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
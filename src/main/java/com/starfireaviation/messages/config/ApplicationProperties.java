@@ -16,10 +16,454 @@
 
 package com.starfireaviation.messages.config;
 
+import com.hazelcast.config.Config;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.DeliveryOrder;
+import com.starfireaviation.messages.model.Durability;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 @Data
 @ConfigurationProperties("messages")
 public class ApplicationProperties {
+
+    /**
+     * Lease settings.
+     */
+    private Lease lease = new Lease();
+
+    /**
+     * Shutdown settings.
+     */
+    private Shutdown shutdown = new Shutdown();
+
+    /**
+     * Hazelcast topology settings.
+     */
+    private Hazelcast hazelcast = new Hazelcast();
+
+    /**
+     * Claim settings.
+     */
+    private Claim claim = new Claim();
+
+    /**
+     * Off-heap payload arena settings.
+     */
+    private Arena arena = new Arena();
+
+    /**
+     * Disk spill settings.
+     */
+    private Spill spill = new Spill();
+
+    /**
+     * Push delivery settings.
+     */
+    private Push push = new Push();
+
+    /**
+     * Request validation settings.
+     */
+    private Validation validation = new Validation();
+
+    /**
+     * Bulk export and import settings.
+     */
+    private Transfer transfer = new Transfer();
+
+    /**
+     * Audit trail and diagnostic logging settings.
+     */
+    private Audit audit = new Audit();
+
+    /**
+     * Durability tier settings.
+     */
+    private Tiers tiers = new Tiers();
+
+    /**
+     * Hot spot tracking settings.
+     */
+    private Hotspots hotspots = new Hotspots();
+
+    /**
+     * Lease settings for at-least-once delivery.
+     */
+    @Data
+    public static class Lease {
+
+        /**
+         * Lease duration used when a caller requests a lease without specifying one.
+         */
+        private Duration defaultDuration = Duration.ofSeconds(CommonConstants.DEFAULT_LEASE_SECONDS);
+
+        /**
+         * Longest lease a caller may request.
+         */
+        private Duration maxDuration = Duration.ofMinutes(CommonConstants.MESSAGE_EXPIRATION_TIME);
+    }
+
+    /**
+     * Claim settings.
+     */
+    @Data
+    public static class Claim {
+
+        /**
+         * Whether concurrent claims for the same organization on this instance are combined into batched claims.
+         */
+        private boolean coalesce = true;
+
+        /**
+         * Largest number of claims combined into one batch.
+         */
+        private int maxBatchSize = CommonConstants.MAX_CLAIM_BATCH_SIZE;
+
+        /**
+         * Order messages of the same Priority are delivered in: ARRIVAL, or DEADLINE for earliest expiration first.
+         */
+        private DeliveryOrder order = DeliveryOrder.ARRIVAL;
+    }
+
+    /**
+     * Off-heap payload arena settings.
+     */
+    @Data
+    public static class Arena {
+
+        /**
+         * Whether message payloads are stored off-heap. Direct memory must allow for maxSize, see
+         * -XX:MaxDirectMemorySize.
+         */
+        private boolean enabled;
+
+        /**
+         * Most off-heap memory reserved for payloads on this instance. Payloads beyond it stay on the heap.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(CommonConstants.ARENA_MAX_SIZE_MEGABYTES);
+
+        /**
+         * Size of each slab reserved at once.
+         */
+        private DataSize slabSize = DataSize.ofMegabytes(CommonConstants.ARENA_SLAB_SIZE_MEGABYTES);
+
+        /**
+         * Smallest slot a payload is rounded up to.
+         */
+        private DataSize minSlotSize = DataSize.ofBytes(CommonConstants.ARENA_MIN_SLOT_SIZE_BYTES);
+
+        /**
+         * Largest payload stored off-heap. Larger payloads stay on the heap.
+         */
+        private DataSize maxSlotSize = DataSize.ofKilobytes(CommonConstants.ARENA_MAX_SLOT_SIZE_KILOBYTES);
+    }
+
+    /**
+     * Settings for spilling cold low priority messages to local disk.
+     */
+    @Data
+    public static class Spill {
+
+        /**
+         * Whether the payloads of cold low priority messages are spilled to disk above the heap watermark.
+         */
+        private boolean enabled;
+
+        /**
+         * Directory holding the segment files. Its contents are deleted at startup.
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/messages-spill";
+
+        /**
+         * Share of the heap, in percent, above which messages are spilled.
+         */
+        private int heapWatermark = CommonConstants.SPILL_HEAP_WATERMARK_PERCENT;
+
+        /**
+         * Size at which a segment file is sealed and a new one started.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(CommonConstants.SPILL_SEGMENT_SIZE_MEGABYTES);
+
+        /**
+         * Most disk space used. Messages are kept in memory once it is reached.
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(CommonConstants.SPILL_MAX_SIZE_GIGABYTES);
+
+        /**
+         * Number of low priority messages at the head of each queue kept in memory.
+         */
+        private int residentHead = CommonConstants.SPILL_RESIDENT_HEAD;
+
+        /**
+         * Most messages spilled from each queue per sweep.
+         */
+        private int batchSize = CommonConstants.SPILL_BATCH_SIZE;
+    }
+
+    /**
+     * Settings for pushing messages to registered callback endpoints.
+     */
+    @Data
+    public static class Push {
+
+        /**
+         * Whether subscriptions may be registered and messages pushed to them.
+         */
+        private boolean enabled;
+
+        /**
+         * Largest number of messages a subscription may receive in one request.
+         */
+        private int maxBatchSize = CommonConstants.PUSH_MAX_BATCH_SIZE;
+
+        /**
+         * Most requests in flight from this instance across all destinations.
+         */
+        private int maxInFlight = CommonConstants.PUSH_MAX_IN_FLIGHT;
+
+        /**
+         * Most requests in flight to a single destination. Batches are delivered in order only when this is 1.
+         */
+        private int maxInFlightPerDestination = 1;
+
+        /**
+         * Attempts made to deliver a batch before giving up on it.
+         */
+        private int maxAttempts = CommonConstants.PUSH_MAX_ATTEMPTS;
+
+        /**
+         * Delay before retrying a destination after its first failure, doubled after each further failure.
+         */
+        private Duration initialBackoff = Duration.ofMillis(CommonConstants.PUSH_INITIAL_BACKOFF_MILLIS);
+
+        /**
+         * Longest delay between retries.
+         */
+        private Duration maxBackoff = Duration.ofSeconds(CommonConstants.PUSH_MAX_BACKOFF_SECONDS);
+
+        /**
+         * Time allowed to connect to a destination and for it to respond.
+         */
+        private Duration requestTimeout = Duration.ofSeconds(CommonConstants.PUSH_REQUEST_TIMEOUT_SECONDS);
+
+        /**
+         * Hosts destinations may address. When set, no other host is accepted, and a listed host may resolve to any
+         * address, including an internal one. An entry starting with "*." matches every subdomain of the rest.
+         */
+        private List<String> allowedHosts = new ArrayList<>();
+
+        /**
+         * Whether destinations may address loopback, link-local, private and other internal networks. Only applies
+         * while allowedHosts is empty.
+         */
+        private boolean allowPrivateAddresses;
+    }
+
+    /**
+     * Limits applied while message requests are parsed.
+     */
+    @Data
+    public static class Validation {
+
+        /**
+         * Largest request body accepted for a message.
+         */
+        private DataSize maxBodySize = DataSize.ofKilobytes(CommonConstants.VALIDATION_MAX_BODY_SIZE_KILOBYTES);
+
+        /**
+         * Longest payload accepted, in characters.
+         */
+        private int maxPayloadLength = CommonConstants.VALIDATION_MAX_PAYLOAD_LENGTH;
+
+        /**
+         * Longest field name or value, other than the payload, accepted in characters.
+         */
+        private int maxFieldLength = CommonConstants.VALIDATION_MAX_FIELD_LENGTH;
+    }
+
+    /**
+     * Bulk export and import settings.
+     */
+    @Data
+    public static class Transfer {
+
+        /**
+         * Messages read per export page, and written per import batch.
+         */
+        private int batchSize = CommonConstants.TRANSFER_BATCH_SIZE;
+    }
+
+    /**
+     * Durability tier settings. Messages are stored with the tier of their organization if it has one, and with the
+     * tier of their priority otherwise. Tiers default to SYNC.
+     */
+    @Data
+    public static class Tiers {
+
+        /**
+         * Durability by Priority.
+         */
+        private Map<Priority, Durability> priorities = new EnumMap<>(Priority.class);
+
+        /**
+         * Durability of grouped messages, whatever their priority, so that each group is kept in order.
+         */
+        private Durability groups = Durability.SYNC;
+
+        /**
+         * Durability by organization, overriding the tier of every priority.
+         */
+        private Map<String, Durability> organizations = new HashMap<>();
+    }
+
+    /**
+     * Hot spot tracking settings. Memory used is fixed at eight sketches of sketchDepth by sketchWidth counters.
+     */
+    @Data
+    public static class Hotspots {
+
+        /**
+         * Whether the busiest organizations and clients are tracked.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Most organizations and clients reported per measure.
+         */
+        private int size = CommonConstants.HOTSPOT_SIZE;
+
+        /**
+         * Rows in each sketch. Each row halves the chance of an estimate beyond the error bound.
+         */
+        private int sketchDepth = CommonConstants.HOTSPOT_SKETCH_DEPTH;
+
+        /**
+         * Counters in each sketch row, rounded up to a power of two. Estimates are within 2/sketchWidth of the total
+         * count of the window.
+         */
+        private int sketchWidth = CommonConstants.HOTSPOT_SKETCH_WIDTH;
+    }
+
+    /**
+     * Audit trail and diagnostic logging settings.
+     */
+    @Data
+    public static class Audit {
+
+        /**
+         * Whether message lifecycle events are written to the audit trail.
+         */
+        private boolean enabled;
+
+        /**
+         * Directory holding the audit files. Files from earlier runs are kept, up to maxFiles.
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/messages-audit";
+
+        /**
+         * Number of events buffered for the writer, rounded up to a power of two. Events are dropped once it is full.
+         */
+        private int bufferSize = CommonConstants.AUDIT_BUFFER_SIZE;
+
+        /**
+         * Size at which an audit file is closed and a new one started.
+         */
+        private DataSize fileSize = DataSize.ofMegabytes(CommonConstants.AUDIT_FILE_SIZE_MEGABYTES);
+
+        /**
+         * Most audit files kept. The oldest are deleted beyond it.
+         */
+        private int maxFiles = CommonConstants.AUDIT_MAX_FILES;
+
+        /**
+         * Share of requests, from 0 to 1, whose verbose diagnostic logs are written.
+         */
+        private double logSampleRate = 1.0;
+    }
+
+    /**
+     * Graceful shutdown settings.
+     */
+    @Data
+    public static class Shutdown {
+
+        /**
+         * Time between reporting not ready and closing the web server, so load balancers stop routing to the pod.
+         */
+        private Duration drainDelay = Duration.ofSeconds(CommonConstants.SHUTDOWN_DRAIN_DELAY_SECONDS);
+
+        /**
+         * Longest time to wait for the cluster to become partition-safe before leaving it.
+         */
+        private Duration clusterSafeTimeout = Duration.ofSeconds(CommonConstants.SHUTDOWN_CLUSTER_SAFE_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Hazelcast topology settings.
+     */
+    @Data
+    public static class Hazelcast {
+
+        /**
+         * How the application attaches to the cluster storing messages.
+         */
+        private Mode mode = Mode.EMBEDDED;
+
+        /**
+         * Client settings, used in client mode.
+         */
+        private Client client = new Client();
+
+        /**
+         * Hazelcast topology.
+         */
+        public enum Mode {
+
+            /**
+             * Each instance starts a data member and holds a share of the messages.
+             */
+            EMBEDDED,
+
+            /**
+             * Each instance connects as a client to separately deployed data members and holds no messages.
+             */
+            CLIENT
+        }
+    }
+
+    /**
+     * Hazelcast client settings.
+     */
+    @Data
+    public static class Client {
+
+        /**
+         * Cluster name of the data members.
+         */
+        private String clusterName = Config.DEFAULT_CLUSTER_NAME;
+
+        /**
+         * Addresses of the data members, as host or host:port. Only needs to reach one of them.
+         */
+        private List<String> addresses = new ArrayList<>();
+
+        /**
+         * Whether the client connects to every member and sends each operation straight to the partition owner,
+         * rather than routing everything through a single member.
+         */
+        private boolean smartRouting = true;
+
+        /**
+         * How long to keep trying to reach the cluster, at startup or after losing it, before giving up.
+         */
+        private Duration connectTimeout = Duration.ofSeconds(CommonConstants.CLIENT_CONNECT_TIMEOUT_SECONDS);
+    }
 }
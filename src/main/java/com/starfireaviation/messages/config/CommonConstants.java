@@ -23,6 +23,61 @@ public class CommonConstants {
      */
     public static final String DEFAULT_ORGANIZATION = "DEFAULT";
 
+    /**
+     * Messages map name, for messages with synchronous backups.
+     */
+    public static final String MESSAGES_MAP = "messages";
+
+    /**
+     * Map name for messages with asynchronous backups.
+     */
+    public static final String MESSAGES_ASYNC_MAP = "messages-async";
+
+    /**
+     * Map name for messages held in memory without backups.
+     */
+    public static final String MESSAGES_MEMORY_MAP = "messages-memory";
+
+    /**
+     * Push subscriptions map name.
+     */
+    public static final String SUBSCRIPTIONS_MAP = "subscriptions";
+
+    /**
+     * Maximum number of messages returned by a peek.
+     */
+    public static final int MAX_PEEK_COUNT = 100;
+
+    /**
+     * Maximum number of clients a message may be targeted at.
+     */
+    public static final int MAX_TARGETS = 100;
+
+    /**
+     * Maximum length of a message group key.
+     */
+    public static final int MAX_GROUP_KEY_LENGTH = 128;
+
+    /**
+     * Maximum length of a consumer group.
+     */
+    public static final int MAX_CONSUMER_GROUP_LENGTH = 128;
+
+    /**
+     * Trace key holding the correlation ID of the request a span belongs to.
+     */
+    public static final String TRACE_CORRELATION_ID = "correlation.id";
+
+    /**
+     * Trace key holding the organization a span operates on.
+     */
+    public static final String TRACE_ORGANIZATION = "organization";
+
+    /**
+     * Name Hazelcast calls are observed under.
+     */
+    public static final String HAZELCAST_OBSERVATION = "messages.hazelcast";
+
     /**
      * Cleanup Delay.
      */
@@ -33,6 +88,181 @@ public class CommonConstants {
      */
     public static final int MESSAGE_EXPIRATION_TIME = 5;
 
+    /**
+     * Default Lease Seconds.
+     */
+    public static final int DEFAULT_LEASE_SECONDS = 30;
+
+    /**
+     * Shutdown Drain Delay Seconds.
+     */
+    public static final int SHUTDOWN_DRAIN_DELAY_SECONDS = 5;
+
+    /**
+     * Shutdown Cluster Safe Timeout Seconds.
+     */
+    public static final int SHUTDOWN_CLUSTER_SAFE_TIMEOUT_SECONDS = 60;
+
+    /**
+     * Client Connect Timeout Seconds.
+     */
+    public static final int CLIENT_CONNECT_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Max Claim Batch Size.
+     */
+    public static final int MAX_CLAIM_BATCH_SIZE = 64;
+
+    /**
+     * Payload Arena Max Size Megabytes.
+     */
+    public static final int ARENA_MAX_SIZE_MEGABYTES = 512;
+
+    /**
+     * Payload Arena Slab Size Megabytes.
+     */
+    public static final int ARENA_SLAB_SIZE_MEGABYTES = 1;
+
+    /**
+     * Payload Arena Min Slot Size Bytes.
+     */
+    public static final int ARENA_MIN_SLOT_SIZE_BYTES = 64;
+
+    /**
+     * Payload Arena Max Slot Size Kilobytes.
+     */
+    public static final int ARENA_MAX_SLOT_SIZE_KILOBYTES = 64;
+
+    /**
+     * Spill Delay.
+     */
+    public static final int SPILL_DELAY = 5000;
+
+    /**
+     * Spill Heap Watermark Percent.
+     */
+    public static final int SPILL_HEAP_WATERMARK_PERCENT = 75;
+
+    /**
+     * Spill Segment Size Megabytes.
+     */
+    public static final int SPILL_SEGMENT_SIZE_MEGABYTES = 64;
+
+    /**
+     * Spill Max Size Gigabytes.
+     */
+    public static final int SPILL_MAX_SIZE_GIGABYTES = 10;
+
+    /**
+     * Spill Resident Head.
+     */
+    public static final int SPILL_RESIDENT_HEAD = 1000;
+
+    /**
+     * Spill Batch Size.
+     */
+    public static final int SPILL_BATCH_SIZE = 10000;
+
+    /**
+     * Push Delay.
+     */
+    public static final int PUSH_DELAY = 200;
+
+    /**
+     * Push Max Batch Size.
+     */
+    public static final int PUSH_MAX_BATCH_SIZE = 100;
+
+    /**
+     * Push Max In Flight.
+     */
+    public static final int PUSH_MAX_IN_FLIGHT = 64;
+
+    /**
+     * Push Max Attempts.
+     */
+    public static final int PUSH_MAX_ATTEMPTS = 5;
+
+    /**
+     * Push Initial Backoff Milliseconds.
+     */
+    public static final int PUSH_INITIAL_BACKOFF_MILLIS = 500;
+
+    /**
+     * Push Max Backoff Seconds.
+     */
+    public static final int PUSH_MAX_BACKOFF_SECONDS = 30;
+
+    /**
+     * Push Request Timeout Seconds.
+     */
+    public static final int PUSH_REQUEST_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Validation Max Body Size Kilobytes.
+     */
+    public static final int VALIDATION_MAX_BODY_SIZE_KILOBYTES = 1024;
+
+    /**
+     * Validation Max Payload Length.
+     */
+    public static final int VALIDATION_MAX_PAYLOAD_LENGTH = 512 * 1024;
+
+    /**
+     * Validation Max Field Length.
+     */
+    public static final int VALIDATION_MAX_FIELD_LENGTH = 64;
+
+    /**
+     * Default number of messages per export page or import batch.
+     */
+    public static final int TRANSFER_BATCH_SIZE = 1000;
+
+    /**
+     * Default number of records in the audit ring.
+     */
+    public static final int AUDIT_BUFFER_SIZE = 65536;
+
+    /**
+     * Default size at which an audit file is closed, in megabytes.
+     */
+    public static final int AUDIT_FILE_SIZE_MEGABYTES = 64;
+
+    /**
+     * Default number of audit files kept.
+     */
+    public static final int AUDIT_MAX_FILES = 20;
+
+    /**
+     * Default number of organizations and clients reported per hot spot measure.
+     */
+    public static final int HOTSPOT_SIZE = 10;
+
+    /**
+     * Default number of rows in each hot spot sketch.
+     */
+    public static final int HOTSPOT_SKETCH_DEPTH = 4;
+
+    /**
+     * Default number of counters in each hot spot sketch row.
+     */
+    public static final int HOTSPOT_SKETCH_WIDTH = 1024;
+
+    /**
+     * Number of message IDs drawn from the cluster ahead of time.
+     */
+    public static final int ID_PREFETCH_SIZE = 100;
+
+    /**
+     * Longest wait for in-flight claim batches and background work when the message service closes, in milliseconds.
+     */
+    public static final long SERVICE_CLOSE_TIMEOUT_MILLIS = 10000L;
+
+    /**
+     * Interval between checks for in-flight claim batches while the message service closes, in milliseconds.
+     */
+    public static final long SERVICE_CLOSE_POLL_MILLIS = 20L;
+
     /**
      * FIFTEEN.
      */
@@ -0,0 +1,124 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.config;
+
+import com.hazelcast.cluster.Member;
+import com.hazelcast.core.HazelcastInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Drains the instance before the web server shuts down.
+ *
+ * Stopping runs in a phase ahead of the web server's graceful shutdown. Readiness is reported as down first and the
+ * instance keeps serving for the drain delay, so the load balancer takes it out of rotation before connections are
+ * refused. The instance then waits for the cluster to become partition-safe, so that leaving does not take the last
+ * copy of a partition with it. Afterwards the web server finishes in-flight requests, and the Hazelcast member is shut
+ * down gracefully, migrating its partitions away. A Hazelcast client holds no partitions, so it does not wait for the
+ * cluster.
+ */
+@Slf4j
+public final class GracefulShutdown implements SmartLifecycle {
+
+    /**
+     * Interval between cluster safety checks, in milliseconds.
+     */
+    private static final long SAFETY_POLL_INTERVAL = 500L;
+
+    /**
+     * HazelcastInstance.
+     */
+    private final HazelcastInstance hazelcastInstance;
+
+    /**
+     * Shutdown settings.
+     */
+    private final ApplicationProperties.Shutdown properties;
+
+    /**
+     * Whether the instance accepts traffic.
+     */
+    private volatile boolean running;
+
+    /**
+     * GracefulShutdown Constructor.
+     *
+     * @param hInstance HazelcastInstance
+     * @param sProperties shutdown settings
+     */
+    public GracefulShutdown(final HazelcastInstance hInstance, final ApplicationProperties.Shutdown sProperties) {
+        hazelcastInstance = hInstance;
+        properties = sProperties;
+    }
+
+    /**
+     * Whether the instance should receive traffic. False until the context has started and once shutdown begins.
+     *
+     * @return accepting traffic
+     */
+    public boolean isAcceptingTraffic() {
+        return running;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        log.info("Draining for {} before shutdown", properties.getDrainDelay());
+        try {
+            Thread.sleep(properties.getDrainDelay().toMillis());
+            final long deadline = System.currentTimeMillis() + properties.getClusterSafeTimeout().toMillis();
+            while (!isClusterSafe()) {
+                if (System.currentTimeMillis() >= deadline) {
+                    log.warn("Cluster not partition-safe after {}; shutting down anyway",
+                            properties.getClusterSafeTimeout());
+                    return;
+                }
+                Thread.sleep(SAFETY_POLL_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops before the web server begins its graceful shutdown.
+     *
+     * @return phase
+     */
+    @Override
+    public int getPhase() {
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE + 1;
+    }
+
+    private boolean isClusterSafe() {
+        return !(hazelcastInstance.getLocalEndpoint() instanceof Member)
+                || !hazelcastInstance.getLifecycleService().isRunning()
+                || hazelcastInstance.getPartitionService().isClusterSafe();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.config;
+
+import com.starfireaviation.messages.validation.MessageDecoder;
+import com.starfireaviation.messages.validation.MessageReader;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Reactive web stack, enabled with the reactive profile.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig implements WebFluxConfigurer {
+
+    /**
+     * MessageReader.
+     */
+    private final MessageReader messageReader;
+
+    /**
+     * ApplicationProperties.
+     */
+    private final ApplicationProperties applicationProperties;
+
+    /**
+     * ObservationRegistry.
+     */
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * ReactiveConfig.
+     *
+     * @param reader MessageReader
+     * @param properties ApplicationProperties
+     * @param registry ObservationRegistry
+     */
+    public ReactiveConfig(final MessageReader reader,
+                          final ApplicationProperties properties,
+                          final ObservationRegistry registry) {
+        messageReader = reader;
+        applicationProperties = properties;
+        observationRegistry = registry;
+    }
+
+    /**
+     * Serves the reactive stack from Netty rather than Tomcat, which would otherwise be preferred as it is also on
+     * the classpath for the servlet stack.
+     *
+     * @return NettyReactiveWebServerFactory
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Decodes Message request bodies with the MessageReader, ahead of the Jackson decoder. Other bodies, such as each
+     * line of an import, are buffered up to the largest message body accepted.
+     *
+     * @param configurer ServerCodecConfigurer
+     */
+    @Override
+    public void configureHttpMessageCodecs(final ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(new MessageDecoder(messageReader, observationRegistry));
+        configurer.defaultCodecs().maxInMemorySize(
+                (int) applicationProperties.getValidation().getMaxBodySize().toBytes());
+    }
+}
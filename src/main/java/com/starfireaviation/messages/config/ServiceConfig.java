@@ -16,11 +16,38 @@
 
 package com.starfireaviation.messages.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.LifecycleEvent;
+import com.hazelcast.spi.properties.ClusterProperty;
+import com.starfireaviation.messages.arena.PayloadArena;
+import com.starfireaviation.messages.audit.AuditTrail;
+import com.starfireaviation.messages.hotspot.Hotspots;
+import com.starfireaviation.messages.model.Durability;
 import com.starfireaviation.messages.service.MessageService;
+import com.starfireaviation.messages.service.PushDispatcher;
+import com.starfireaviation.messages.spill.SpillStore;
+import com.starfireaviation.messages.validation.MessageHttpMessageConverter;
+import com.starfireaviation.messages.validation.MessageReader;
 import com.starfireaviation.messages.validation.MessageValidator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,15 +60,41 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 })
 public class ServiceConfig {
 
+    /**
+     * Hot spot tracker, unless disabled.
+     *
+     * @param applicationProperties ApplicationProperties
+     * @param meterRegistry MeterRegistry
+     * @return Hotspots
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "messages.hotspots", name = "enabled", matchIfMissing = true)
+    public Hotspots hotspots(final ApplicationProperties applicationProperties, final MeterRegistry meterRegistry) {
+        final ApplicationProperties.Hotspots hotspots = applicationProperties.getHotspots();
+        return new Hotspots(hotspots.getSize(), hotspots.getSketchDepth(), hotspots.getSketchWidth(), meterRegistry);
+    }
+
     /**
      * MessageService.
      *
      * @param hazelcastInstance HazelcastInstance
+     * @param applicationProperties ApplicationProperties
+     * @param observationRegistry ObservationRegistry
+     * @param meterRegistry MeterRegistry
+     * @param hotspots Hotspots, if tracked
      * @return MessageService
      */
     @Bean
-    public MessageService messageService(@Qualifier("app") final HazelcastInstance hazelcastInstance) {
-        return new MessageService(hazelcastInstance);
+    public MessageService messageService(@Qualifier("app") final HazelcastInstance hazelcastInstance,
+                                         final ApplicationProperties applicationProperties,
+                                         final ObservationRegistry observationRegistry,
+                                         final MeterRegistry meterRegistry,
+                                         final ObjectProvider<Hotspots> hotspots) {
+        final MessageService messageService = new MessageService(hazelcastInstance, applicationProperties.getClaim(),
+                applicationProperties.getSpill(), applicationProperties.getAudit(), applicationProperties.getTiers(),
+                observationRegistry, meterRegistry);
+        messageService.setHotspots(hotspots.getIfAvailable());
+        return messageService;
     }
 
     /**
@@ -54,13 +107,232 @@ public class ServiceConfig {
         return new MessageValidator();
     }
 
+    /**
+     * MessageReader.
+     *
+     * @param applicationProperties ApplicationProperties
+     * @return MessageReader
+     */
+    @Bean
+    public MessageReader messageReader(final ApplicationProperties applicationProperties) {
+        return new MessageReader(applicationProperties.getValidation());
+    }
+
+    /**
+     * Reads Message request bodies on the servlet stack with the MessageReader, ahead of the Jackson converter.
+     *
+     * @param messageReader MessageReader
+     * @param observationRegistry ObservationRegistry
+     * @return MessageHttpMessageConverter
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public MessageHttpMessageConverter messageHttpMessageConverter(final MessageReader messageReader,
+                                                                   final ObservationRegistry observationRegistry) {
+        return new MessageHttpMessageConverter(messageReader, observationRegistry);
+    }
+
+    /**
+     * GracefulShutdown.
+     *
+     * @param hazelcastInstance HazelcastInstance
+     * @param applicationProperties ApplicationProperties
+     * @return GracefulShutdown
+     */
+    @Bean
+    public GracefulShutdown gracefulShutdown(@Qualifier("app") final HazelcastInstance hazelcastInstance,
+                                             final ApplicationProperties applicationProperties) {
+        return new GracefulShutdown(hazelcastInstance, applicationProperties.getShutdown());
+    }
+
+    /**
+     * PushDispatcher.
+     *
+     * @param hazelcastInstance HazelcastInstance
+     * @param messageService MessageService
+     * @param applicationProperties ApplicationProperties
+     * @param objectMapper ObjectMapper
+     * @param meterRegistry MeterRegistry
+     * @return PushDispatcher
+     */
+    @Bean
+    public PushDispatcher pushDispatcher(@Qualifier("app") final HazelcastInstance hazelcastInstance,
+                                         final MessageService messageService,
+                                         final ApplicationProperties applicationProperties,
+                                         final ObjectMapper objectMapper,
+                                         final MeterRegistry meterRegistry) {
+        return new PushDispatcher(hazelcastInstance, messageService, applicationProperties.getPush(), objectMapper,
+                meterRegistry);
+    }
+
+    /**
+     * Payload arena usage and fragmentation metrics, reported while an arena is installed.
+     *
+     * @return MeterBinder
+     */
+    @Bean
+    public MeterBinder payloadArenaMetrics() {
+        return registry -> {
+            final Supplier<PayloadArena> arena = PayloadArena::getInstance;
+            gauge(registry, "messages.arena.reserved", "bytes", arena, PayloadArena::getReservedBytes);
+            gauge(registry, "messages.arena.used", "bytes", arena, PayloadArena::getUsedBytes);
+            gauge(registry, "messages.arena.payload", "bytes", arena, PayloadArena::getPayloadBytes);
+            gauge(registry, "messages.arena.allocations", null, arena, PayloadArena::getAllocations);
+            gauge(registry, "messages.arena.refused", null, arena, PayloadArena::getRefused);
+            gauge(registry, "messages.arena.fragmentation.internal", null, arena,
+                    PayloadArena::getInternalFragmentation);
+            gauge(registry, "messages.arena.fragmentation.external", null, arena,
+                    PayloadArena::getExternalFragmentation);
+        };
+    }
+
+    /**
+     * Disk spill usage metrics, reported while a spill store is installed.
+     *
+     * @return MeterBinder
+     */
+    @Bean
+    public MeterBinder spillStoreMetrics() {
+        return registry -> {
+            final Supplier<SpillStore> store = SpillStore::getInstance;
+            gauge(registry, "messages.spill.records", null, store, SpillStore::getRecords);
+            gauge(registry, "messages.spill.payload", "bytes", store, SpillStore::getRecordBytes);
+            gauge(registry, "messages.spill.disk", "bytes", store, SpillStore::getDiskBytes);
+            gauge(registry, "messages.spill.segments", null, store, SpillStore::getSegments);
+            gauge(registry, "messages.spill.spilled", null, store, SpillStore::getSpilled);
+            gauge(registry, "messages.spill.paged.in", null, store, SpillStore::getPagedIn);
+        };
+    }
+
+    /**
+     * Audit trail metrics, reported while a trail is installed.
+     *
+     * @return MeterBinder
+     */
+    @Bean
+    public MeterBinder auditTrailMetrics() {
+        return registry -> {
+            final Supplier<AuditTrail> trail = AuditTrail::getInstance;
+            gauge(registry, "messages.audit.recorded", null, trail, AuditTrail::getRecorded);
+            gauge(registry, "messages.audit.dropped", null, trail, AuditTrail::getDropped);
+            gauge(registry, "messages.audit.pending", null, trail, AuditTrail::getPending);
+            gauge(registry, "messages.audit.written", "bytes", trail, AuditTrail::getWritten);
+        };
+    }
+
     /**
      * HazelcastInstance.
      *
+     * Message queues are stored in object form so that entry processors operate on them in place rather than
+     * deserializing the whole queue on every operation.
+     *
+     * In client mode the instance is a client of separately deployed data members, so that scaling the API does not
+     * migrate partitions. The data members run this application in embedded mode, since the entry processors and
+     * model classes must be on their classpath.
+     *
+     * The payload arena and spill store, if enabled, are installed first so that queues received from other members
+     * are stored in them. The audit trail, if enabled, is installed first too, and closed once the instance has shut
+     * down, so that events recorded while partitions migrate away are still written.
+     *
+     * @param applicationProperties ApplicationProperties
      * @return HazelcastInstance
+     * @throws IOException if the spill or audit directory cannot be prepared
+     */
+    @Bean(value = "app", destroyMethod = "shutdown")
+    public HazelcastInstance hazelcastInstance(final ApplicationProperties applicationProperties) throws IOException {
+        final ApplicationProperties.Arena arena = applicationProperties.getArena();
+        if (arena.isEnabled()) {
+            PayloadArena.install(new PayloadArena(arena.getMaxSize().toBytes(),
+                    (int) arena.getSlabSize().toBytes(),
+                    (int) arena.getMinSlotSize().toBytes(),
+                    (int) arena.getMaxSlotSize().toBytes()));
+        }
+        final ApplicationProperties.Spill spill = applicationProperties.getSpill();
+        if (spill.isEnabled()) {
+            SpillStore.install(new SpillStore(Path.of(spill.getDirectory()),
+                    spill.getSegmentSize().toBytes(),
+                    spill.getMaxSize().toBytes(),
+                    spill.getHeapWatermark()));
+        }
+        final ApplicationProperties.Audit audit = applicationProperties.getAudit();
+        AuditTrail trail = null;
+        if (audit.isEnabled()) {
+            trail = new AuditTrail(Path.of(audit.getDirectory()), audit.getBufferSize(),
+                    audit.getFileSize().toBytes(), audit.getMaxFiles());
+            AuditTrail.install(trail);
+        }
+        final ApplicationProperties.Hazelcast hazelcast = applicationProperties.getHazelcast();
+        final HazelcastInstance instance;
+        if (hazelcast.getMode() == ApplicationProperties.Hazelcast.Mode.CLIENT) {
+            instance = HazelcastClient.newHazelcastClient(clientConfig(hazelcast.getClient()));
+        } else {
+            instance = Hazelcast.newHazelcastInstance(configure(Config.load()));
+        }
+        if (trail != null) {
+            final AuditTrail installed = trail;
+            instance.getLifecycleService().addLifecycleListener(event -> {
+                if (event.getState() == LifecycleEvent.LifecycleState.SHUTDOWN) {
+                    installed.close();
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * Applies the map settings message storage relies on. Each durability tier has its own map, stored in object
+     * form and backed up as the tier requires.
+     *
+     * Hazelcast's own JVM shutdown hook terminates the member without migrating its partitions. It is disabled so
+     * that the member is shut down gracefully when the Spring context closes.
+     *
+     * @param config Config
+     * @return Config
      */
-    @Bean("app")
-    public HazelcastInstance hazelcastInstance() {
-        return Hazelcast.newHazelcastInstance();
+    public static Config configure(final Config config) {
+        for (final Durability durability : Durability.values()) {
+            config.getMapConfig(durability.getMapName())
+                    .setInMemoryFormat(InMemoryFormat.OBJECT)
+                    .setBackupCount(durability.getBackupCount())
+                    .setAsyncBackupCount(durability.getAsyncBackupCount());
+        }
+        config.setProperty(ClusterProperty.SHUTDOWNHOOK_ENABLED.getName(), "false");
+        return config;
+    }
+
+    /**
+     * Builds the configuration for connecting to the data members as a client.
+     *
+     * No near cache is configured. Every operation on the messages map is an entry processor, which always executes
+     * on the partition owner, so a near cache would never be read and would only add invalidation traffic. Smart
+     * routing is what removes the extra hop.
+     *
+     * @param client client settings
+     * @return ClientConfig
+     */
+    public static ClientConfig clientConfig(final ApplicationProperties.Client client) {
+        final ClientConfig config = new ClientConfig();
+        config.setClusterName(client.getClusterName());
+        config.getNetworkConfig()
+                .setAddresses(new ArrayList<>(client.getAddresses()))
+                .setSmartRouting(client.isSmartRouting());
+        config.getConnectionStrategyConfig()
+                .getConnectionRetryConfig()
+                .setClusterConnectTimeoutMillis(client.getConnectTimeout().toMillis());
+        return config;
+    }
+
+    private static <T> void gauge(final MeterRegistry registry,
+                                  final String name,
+                                  final String unit,
+                                  final Supplier<T> source,
+                                  final ToDoubleFunction<T> value) {
+        Gauge.builder(name, () -> {
+            final T instance = source.get();
+            if (instance == null) {
+                return Double.NaN;
+            }
+            return value.applyAsDouble(instance);
+        }).baseUnit(unit).register(registry);
     }
 }
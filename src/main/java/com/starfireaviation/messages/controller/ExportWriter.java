@@ -0,0 +1,72 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.starfireaviation.messages.model.ExportedMessage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes pages of exported messages as newline delimited JSON, shared by the servlet and reactive controllers.
+ *
+ * Each message is generated straight into the given stream, which is the response stream or buffer, without being
+ * rendered to an intermediate string first.
+ */
+final class ExportWriter {
+
+    /**
+     * ObjectMapper.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Writer for ExportedMessage(s), which leaves flushing to the end of each page.
+     */
+    private final ObjectWriter writer;
+
+    /**
+     * ExportWriter.
+     *
+     * @param mapper ObjectMapper
+     */
+    ExportWriter(final ObjectMapper mapper) {
+        objectMapper = mapper;
+        writer = mapper.writerFor(ExportedMessage.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes a page, one message per line, and flushes it.
+     *
+     * @param page ExportedMessage(s)
+     * @param out stream written to, which is left open
+     * @throws IOException when the stream cannot be written
+     */
+    void write(final List<ExportedMessage> page, final OutputStream out) throws IOException {
+        final JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(null);
+        for (final ExportedMessage exported : page) {
+            writer.writeValue(generator, exported);
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+}
@@ -14,9 +14,18 @@
  *  limitations under the License.
  */
 
+
 package com.starfireaviation.messages.controller;
 
+import com.hazelcast.cluster.ClusterState;
+import com.hazelcast.cluster.Member;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.LifecycleEvent.LifecycleState;
+import com.starfireaviation.messages.config.GracefulShutdown;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -26,6 +35,51 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/health")
 public class HealthController {
 
+    /**
+     * OK.
+     */
+    private static final String OK = "OK";
+
+    /**
+     * HazelcastInstance.
+     */
+    private final HazelcastInstance hazelcastInstance;
+
+    /**
+     * GracefulShutdown.
+     */
+    private final GracefulShutdown gracefulShutdown;
+
+    /**
+     * Whether the application is a Hazelcast client rather than a data member.
+     */
+    private final boolean client;
+
+    /**
+     * Whether the client is connected to the cluster. Clients are connected once started and reconnect in the
+     * background when the connection is lost.
+     */
+    private volatile boolean connected = true;
+
+    /**
+     * HealthController Constructor.
+     *
+     * @param hInstance HazelcastInstance
+     * @param gShutdown GracefulShutdown
+     */
+    public HealthController(@Qualifier("app") final HazelcastInstance hInstance, final GracefulShutdown gShutdown) {
+        hazelcastInstance = hInstance;
+        gracefulShutdown = gShutdown;
+        client = !(hInstance.getLocalEndpoint() instanceof Member);
+        hInstance.getLifecycleService().addLifecycleListener(event -> {
+            if (event.getState() == LifecycleState.CLIENT_CONNECTED) {
+                connected = true;
+            } else if (event.getState() == LifecycleState.CLIENT_DISCONNECTED) {
+                connected = false;
+            }
+        });
+    }
+
     /**
      * Endpoint to test application.
      *
@@ -33,6 +87,60 @@ public class HealthController {
      */
     @GetMapping()
     public String health() {
-        return "OK";
+        return OK;
+    }
+
+    /**
+     * Liveness. Fails only when the Hazelcast member is no longer running, or a client has given up reconnecting,
+     * which a restart fixes.
+     *
+     * @return OK, or 503 if the member or client has stopped
+     */
+    @GetMapping("/liveness")
+    public ResponseEntity<String> liveness() {
+        if (!hazelcastInstance.getLifecycleService().isRunning()) {
+            return unavailable("Hazelcast member is not running");
+        }
+        return ResponseEntity.ok(OK);
+    }
+
+    /**
+     * Readiness. The instance is ready once it has started, its member has joined an active cluster and the partitions
+     * it owns are backed up, and it is not shutting down.
+     *
+     * A client is ready while it is connected to the cluster.
+     *
+     * Only the local member's safety is checked. Cluster-wide safety fails on every member while any migration is in
+     * progress, so checking it would take all pods out of rotation whenever one joins or leaves.
+     *
+     * @return OK, or 503 with the reason
+     */
+    @GetMapping("/readiness")
+    public ResponseEntity<String> readiness() {
+        if (!gracefulShutdown.isAcceptingTraffic()) {
+            return unavailable("Not accepting traffic");
+        }
+        if (!hazelcastInstance.getLifecycleService().isRunning()) {
+            return unavailable("Hazelcast member is not running");
+        }
+        if (client) {
+            if (!connected) {
+                return unavailable("Not connected to the cluster");
+            }
+            return ResponseEntity.ok(OK);
+        }
+        final ClusterState state = hazelcastInstance.getCluster().getClusterState();
+        if (state != ClusterState.ACTIVE) {
+            return unavailable("Cluster state is " + state);
+        }
+        if (!hazelcastInstance.getPartitionService().isLocalMemberSafe()) {
+            return unavailable("Partition backups are not in sync");
+        }
+        return ResponseEntity.ok(OK);
+    }
+
+    private static ResponseEntity<String> unavailable(final String reason) {
+        log.debug("Not ready: {}", reason);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(reason);
     }
 }
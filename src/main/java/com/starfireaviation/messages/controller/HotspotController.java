@@ -0,0 +1,59 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.controller;
+
+import com.starfireaviation.common.exception.ResourceNotFoundException;
+import com.starfireaviation.messages.hotspot.Hotspots;
+import com.starfireaviation.messages.model.HotspotReport;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/hotspots")
+public class HotspotController {
+
+    /**
+     * Hot spot tracker, or null if hot spots are not tracked.
+     */
+    private final Hotspots hotspots;
+
+    /**
+     * HotspotController.
+     *
+     * @param tracker Hotspots, if tracked
+     */
+    public HotspotController(final ObjectProvider<Hotspots> tracker) {
+        hotspots = tracker.getIfAvailable();
+    }
+
+    /**
+     * Reports the organizations and clients this instance has seen make the most requests and store the most payload
+     * bytes over the last minute or two, and those with the most messages waiting.
+     *
+     * @return HotspotReport
+     * @throws ResourceNotFoundException when hot spots are not tracked
+     */
+    @GetMapping
+    public HotspotReport get() throws ResourceNotFoundException {
+        if (hotspots == null) {
+            throw new ResourceNotFoundException("Hot spot tracking is disabled");
+        }
+        return hotspots.report();
+    }
+}
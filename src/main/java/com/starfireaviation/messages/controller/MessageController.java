@@ -16,24 +16,41 @@
 
 package com.starfireaviation.messages.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.starfireaviation.common.exception.InsufficientStorageException;
 import com.starfireaviation.common.exception.InvalidPayloadException;
 import com.starfireaviation.common.exception.ResourceNotFoundException;
 import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.model.ExportedMessage;
+import com.starfireaviation.messages.model.QueueStats;
 import com.starfireaviation.messages.service.MessageService;
 import com.starfireaviation.messages.validation.MessageValidator;
-import com.starfireaviation.common.model.NotificationType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping({ "/api/messages" })
 public class MessageController {
 
@@ -47,16 +64,38 @@ public class MessageController {
      */
     private final MessageValidator messageValidator;
 
+    /**
+     * ApplicationProperties.
+     */
+    private final ApplicationProperties applicationProperties;
+
+    /**
+     * ObjectMapper.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * ExportWriter.
+     */
+    private final ExportWriter exportWriter;
+
     /**
      * MessageController.
      *
      * @param mService MessageService
      * @param mValidator MessageValidator
+     * @param aProperties ApplicationProperties
+     * @param mapper ObjectMapper
      */
     public MessageController(final MessageService mService,
-                             final MessageValidator mValidator) {
+                             final MessageValidator mValidator,
+                             final ApplicationProperties aProperties,
+                             final ObjectMapper mapper) {
         messageService = mService;
         messageValidator = mValidator;
+        applicationProperties = aProperties;
+        objectMapper = mapper;
+        exportWriter = new ExportWriter(mapper);
     }
 
     /**
@@ -64,39 +103,59 @@ public class MessageController {
      *
      * @param organization organization
      * @param correlationId CorrelationID
+     * @param targets optional ClientID(s) the message is delivered to, once each, instead of any client
+     * @param group optional group key, within which messages are delivered in order, one at a time
      * @param message Message
-     * @throws InvalidPayloadException when message payload is not valid
+     * @return ID assigned to the stored message
+     * @throws InvalidPayloadException when message payload, targets or group key are not valid
      * @throws InsufficientStorageException when message add fails
      */
     @PostMapping
-    public void post(@RequestHeader("organization") final String organization,
+    public Long post(@RequestHeader("organization") final String organization,
                      @RequestHeader("correlation-id") final String correlationId,
+                     @RequestHeader(value = "target-client-id", required = false) final List<String> targets,
+                     @RequestHeader(value = "group-key", required = false) final String group,
                      @RequestBody final Message message) throws InvalidPayloadException, InsufficientStorageException {
         messageValidator.validate(message);
-        final boolean success = messageService.addMessage(message, organization, correlationId);
+        final Set<String> clientIds = RequestParameters.getTargets(targets);
+        final boolean success = messageService.addMessage(message, clientIds,
+                RequestParameters.getGroup(group, clientIds), organization, correlationId);
         if (!success) {
             throw new InsufficientStorageException("Message add failed");
         }
+        return message.getId();
     }
 
     /**
      * Retrieves a message.
      *
+     * When ack is requested, a directed message is leased to the caller rather than removed, and must be
+     * acknowledged before the lease expires or it will be delivered again. A caller in a consumer group shares
+     * delivery of messages for every client with the rest of its group, so that the group receives each one once.
+     *
      * @param organization Organization
      * @param correlationId CorrelationID
      * @param clientId ClientID
+     * @param consumerGroup optional consumer group
      * @param notificationType optional NotificationType query parameter
+     * @param ack optional flag requesting at-least-once delivery
+     * @param lease optional lease duration, in seconds
      * @return Message
      * @throws ResourceNotFoundException when no message is found
+     * @throws InvalidPayloadException when the requested lease or consumer group is not valid
      */
     @GetMapping
     public Message get(@RequestHeader("organization") final String organization,
                        @RequestHeader("correlation-id") final String correlationId,
                        @RequestHeader("client-id") final String clientId,
-                       @RequestParam(name = "notificationType", required = false) final String notificationType) 
-                       throws ResourceNotFoundException {
-        final Message message = 
-                messageService.getMessage(organization, getType(notificationType), clientId, correlationId);
+                       @RequestHeader(value = "consumer-group", required = false) final String consumerGroup,
+                       @RequestParam(name = "notificationType", required = false) final String notificationType,
+                       @RequestParam(name = "ack", defaultValue = "false") final boolean ack,
+                       @RequestParam(name = "lease", required = false) final Long lease)
+                       throws ResourceNotFoundException, InvalidPayloadException {
+        final Message message = messageService.getMessage(organization, RequestParameters.getType(notificationType),
+                clientId, RequestParameters.getConsumerGroup(consumerGroup), correlationId,
+                RequestParameters.getLease(ack, lease, applicationProperties.getLease()));
         if (message == null) {
             throw new ResourceNotFoundException("No message matching provided criteria was found");
         }
@@ -104,17 +163,167 @@ public class MessageController {
     }
 
     /**
-     * Get NotificationType.
+     * Retrieves a stored message by ID without claiming it.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param id Message ID
+     * @return Message
+     * @throws ResourceNotFoundException when no message is found
+     */
+    @GetMapping("/{id}")
+    public Message getById(@RequestHeader("organization") final String organization,
+                           @RequestHeader("correlation-id") final String correlationId,
+                           @PathVariable("id") final Long id) throws ResourceNotFoundException {
+        final Message message = messageService.findMessage(organization, id, correlationId);
+        if (message == null) {
+            throw new ResourceNotFoundException("No message with ID " + id + " was found");
+        }
+        return message;
+    }
+
+    /**
+     * Cancels a stored message so that it is never delivered.
      *
-     * @param type user input
-     * @return NotificationType
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param id Message ID
+     * @throws ResourceNotFoundException when no message is found
      */
-    private NotificationType getType(final String type) {
-        if (type == null) {
-            return NotificationType.ALL;
-        } else {
-            return NotificationType.valueOf(type.toUpperCase());
+    @DeleteMapping("/{id}")
+    public void delete(@RequestHeader("organization") final String organization,
+                       @RequestHeader("correlation-id") final String correlationId,
+                       @PathVariable("id") final Long id) throws ResourceNotFoundException {
+        final Message message = messageService.cancelMessage(organization, id, correlationId);
+        if (message == null) {
+            throw new ResourceNotFoundException("No message with ID " + id + " was found");
         }
     }
 
+    /**
+     * Retrieves statistics for an organization's queue.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return QueueStats
+     */
+    @GetMapping("/stats")
+    public QueueStats stats(@RequestHeader("organization") final String organization,
+                            @RequestHeader("correlation-id") final String correlationId) {
+        return messageService.getStats(organization, correlationId);
+    }
+
+    /**
+     * Retrieves the next messages in delivery order without claiming them.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param notificationType optional NotificationType query parameter
+     * @param count optional maximum number of messages to return
+     * @return messages
+     * @throws InvalidPayloadException when the count is not valid
+     */
+    @GetMapping("/peek")
+    public List<Message> peek(@RequestHeader("organization") final String organization,
+                              @RequestHeader("correlation-id") final String correlationId,
+                              @RequestParam(name = "notificationType", required = false) final String notificationType,
+                              @RequestParam(name = "count", defaultValue = "1") final int count)
+                              throws InvalidPayloadException {
+        return messageService.peek(organization, RequestParameters.getType(notificationType),
+                RequestParameters.getCount(count), correlationId);
+    }
+
+    /**
+     * Acknowledges previously leased messages.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param ids Message IDs
+     * @return IDs of the messages which were acknowledged
+     * @throws InvalidPayloadException when no message IDs are provided
+     */
+    @PostMapping("/ack")
+    public List<Long> ack(@RequestHeader("organization") final String organization,
+                          @RequestHeader("correlation-id") final String correlationId,
+                          @RequestBody final List<Long> ids) throws InvalidPayloadException {
+        if (ids == null || ids.isEmpty()) {
+            throw new InvalidPayloadException("No message IDs were provided");
+        }
+        return messageService.acknowledge(organization, ids, correlationId);
+    }
+
+    /**
+     * Streams an organization's stored messages, in queue order, as newline delimited JSON.
+     *
+     * Messages are read a page at a time and written straight to the response, so the export runs in constant memory
+     * however long the queue is.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return ExportedMessage(s), one per line
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody export(@RequestHeader("organization") final String organization,
+                                        @RequestHeader("correlation-id") final String correlationId) {
+        final int pageSize = applicationProperties.getTransfer().getBatchSize();
+        return out -> {
+            long after = -1;
+            List<ExportedMessage> page;
+            do {
+                page = messageService.exportMessages(organization, after, pageSize, correlationId);
+                exportWriter.write(page, out);
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1).getSequence();
+                }
+            } while (page.size() == pageSize);
+        };
+    }
+
+    /**
+     * Adds messages streamed as newline delimited JSON, as written by an export, to the end of an organization's
+     * queue.
+     *
+     * The body is parsed as it arrives and stored in batches, with one batch stored while the next is read. Messages
+     * keep their IDs and seen state, and messages already stored are skipped, so a failed import can be repeated.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param body ExportedMessage(s), one per line
+     * @return number of messages added
+     * @throws InvalidPayloadException when a line is not an exported message
+     * @throws IOException when the body cannot be read
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public long importMessages(@RequestHeader("organization") final String organization,
+                               @RequestHeader("correlation-id") final String correlationId,
+                               final InputStream body) throws InvalidPayloadException, IOException {
+        final int batchSize = applicationProperties.getTransfer().getBatchSize();
+        long imported = 0;
+        CompletableFuture<Integer> pending = CompletableFuture.completedFuture(0);
+        List<ExportedMessage> batch = new ArrayList<>(batchSize);
+        try (MappingIterator<ExportedMessage> records = objectMapper.readerFor(ExportedMessage.class)
+                .readValues(body)) {
+            while (records.hasNextValue()) {
+                batch.add(RequestParameters.getExported(records.nextValue()));
+                if (batch.size() == batchSize) {
+                    imported += pending.join();
+                    pending = messageService.importMessagesAsync(organization, batch, correlationId)
+                            .toCompletableFuture();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            final StringBuilder error = new StringBuilder("Malformed JSON");
+            if (e.getLocation() != null) {
+                error.append(" at line ").append(e.getLocation().getLineNr());
+            }
+            throw new InvalidPayloadException(error.append("; messages before it may already have been imported")
+                    .toString());
+        }
+        imported += pending.join();
+        if (!batch.isEmpty()) {
+            imported += messageService.importMessages(organization, batch, correlationId);
+        }
+        return imported;
+    }
 }
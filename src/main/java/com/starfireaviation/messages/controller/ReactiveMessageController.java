@@ -0,0 +1,346 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.starfireaviation.common.exception.InvalidPayloadException;
+import com.starfireaviation.common.exception.InsufficientStorageException;
+import com.starfireaviation.common.exception.ResourceNotFoundException;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.model.ExportedMessage;
+import com.starfireaviation.messages.model.QueueStats;
+import com.starfireaviation.messages.service.MessageService;
+import com.starfireaviation.messages.validation.MessageValidator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+
+/**
+ * Reactive variant of MessageController, active when the application runs as a reactive web application.
+ *
+ * Each endpoint composes the asynchronous MessageService operations, so no request thread waits on Hazelcast.
+ */
+@Slf4j
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping({ "/api/messages" })
+public class ReactiveMessageController {
+
+    /**
+     * Initial size of a buffer holding a page of exported messages, which grows as needed.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * MessageService.
+     */
+    private final MessageService messageService;
+
+    /**
+     * MessageValidator.
+     */
+    private final MessageValidator messageValidator;
+
+    /**
+     * ApplicationProperties.
+     */
+    private final ApplicationProperties applicationProperties;
+
+    /**
+     * ExportWriter.
+     */
+    private final ExportWriter exportWriter;
+
+    /**
+     * ReactiveMessageController.
+     *
+     * @param mService MessageService
+     * @param mValidator MessageValidator
+     * @param aProperties ApplicationProperties
+     * @param mapper ObjectMapper
+     */
+    public ReactiveMessageController(final MessageService mService,
+                                     final MessageValidator mValidator,
+                                     final ApplicationProperties aProperties,
+                                     final ObjectMapper mapper) {
+        messageService = mService;
+        messageValidator = mValidator;
+        applicationProperties = aProperties;
+        exportWriter = new ExportWriter(mapper);
+    }
+
+    /**
+     * Stores a message for later retrieval.
+     *
+     * @param organization organization
+     * @param correlationId CorrelationID
+     * @param targets optional ClientID(s) the message is delivered to, once each, instead of any client
+     * @param group optional group key, within which messages are delivered in order, one at a time
+     * @param body Message
+     * @return ID assigned to the stored message
+     */
+    @PostMapping
+    public Mono<Long> post(@RequestHeader("organization") final String organization,
+                           @RequestHeader("correlation-id") final String correlationId,
+                           @RequestHeader(value = "target-client-id", required = false) final List<String> targets,
+                           @RequestHeader(value = "group-key", required = false) final String group,
+                           @RequestBody final Mono<Message> body) {
+        final Set<String> clientIds;
+        final String groupKey;
+        try {
+            clientIds = RequestParameters.getTargets(targets);
+            groupKey = RequestParameters.getGroup(group, clientIds);
+        } catch (InvalidPayloadException e) {
+            return Mono.error(e);
+        }
+        return body
+                .switchIfEmpty(Mono.error(() -> new InvalidPayloadException("No message information was provided")))
+                .flatMap(message -> {
+                    try {
+                        messageValidator.validate(message);
+                    } catch (InvalidPayloadException e) {
+                        return Mono.error(e);
+                    }
+                    return Mono.fromCompletionStage(messageService.addMessageAsync(message, clientIds,
+                                    groupKey, organization, correlationId))
+                            .filter(Boolean::booleanValue)
+                            .switchIfEmpty(Mono.error(() -> new InsufficientStorageException("Message add failed")))
+                            .map(success -> message.getId());
+                });
+    }
+
+    /**
+     * Retrieves a message.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param clientId ClientID
+     * @param consumerGroup optional consumer group
+     * @param notificationType optional NotificationType query parameter
+     * @param ack optional flag requesting at-least-once delivery
+     * @param lease optional lease duration, in seconds
+     * @return Message
+     */
+    @GetMapping
+    public Mono<Message> get(@RequestHeader("organization") final String organization,
+                             @RequestHeader("correlation-id") final String correlationId,
+                             @RequestHeader("client-id") final String clientId,
+                             @RequestHeader(value = "consumer-group", required = false) final String consumerGroup,
+                             @RequestParam(name = "notificationType", required = false) final String notificationType,
+                             @RequestParam(name = "ack", defaultValue = "false") final boolean ack,
+                             @RequestParam(name = "lease", required = false) final Long lease) {
+        final Duration duration;
+        final String group;
+        try {
+            duration = RequestParameters.getLease(ack, lease, applicationProperties.getLease());
+            group = RequestParameters.getConsumerGroup(consumerGroup);
+        } catch (InvalidPayloadException e) {
+            return Mono.error(e);
+        }
+        return Mono.fromCompletionStage(messageService.getMessageAsync(organization,
+                        RequestParameters.getType(notificationType), clientId, group, correlationId, duration))
+                .switchIfEmpty(Mono.error(() ->
+                        new ResourceNotFoundException("No message matching provided criteria was found")));
+    }
+
+    /**
+     * Retrieves a stored message by ID without claiming it.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param id Message ID
+     * @return Message
+     */
+    @GetMapping("/{id}")
+    public Mono<Message> getById(@RequestHeader("organization") final String organization,
+                                 @RequestHeader("correlation-id") final String correlationId,
+                                 @PathVariable("id") final Long id) {
+        return Mono.fromCompletionStage(messageService.findMessageAsync(organization, id, correlationId))
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("No message with ID " + id
+                        + " was found")));
+    }
+
+    /**
+     * Cancels a stored message so that it is never delivered.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param id Message ID
+     * @return completion
+     */
+    @DeleteMapping("/{id}")
+    public Mono<Void> delete(@RequestHeader("organization") final String organization,
+                             @RequestHeader("correlation-id") final String correlationId,
+                             @PathVariable("id") final Long id) {
+        return Mono.fromCompletionStage(messageService.cancelMessageAsync(organization, id, correlationId))
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("No message with ID " + id
+                        + " was found")))
+                .then();
+    }
+
+    /**
+     * Retrieves statistics for an organization's queue.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return QueueStats
+     */
+    @GetMapping("/stats")
+    public Mono<QueueStats> stats(@RequestHeader("organization") final String organization,
+                                  @RequestHeader("correlation-id") final String correlationId) {
+        return Mono.fromCompletionStage(messageService.getStatsAsync(organization, correlationId));
+    }
+
+    /**
+     * Retrieves the next messages in delivery order without claiming them.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param notificationType optional NotificationType query parameter
+     * @param count optional maximum number of messages to return
+     * @return messages
+     */
+    @GetMapping("/peek")
+    public Mono<List<Message>> peek(@RequestHeader("organization") final String organization,
+                                    @RequestHeader("correlation-id") final String correlationId,
+                                    @RequestParam(name = "notificationType", required = false)
+                                    final String notificationType,
+                                    @RequestParam(name = "count", defaultValue = "1") final int count) {
+        final int maxCount;
+        try {
+            maxCount = RequestParameters.getCount(count);
+        } catch (InvalidPayloadException e) {
+            return Mono.error(e);
+        }
+        return Mono.fromCompletionStage(messageService.peekAsync(organization,
+                RequestParameters.getType(notificationType), maxCount, correlationId));
+    }
+
+    /**
+     * Acknowledges previously leased messages.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param ids Message IDs
+     * @return IDs of the messages which were acknowledged
+     */
+    @PostMapping("/ack")
+    public Mono<List<Long>> ack(@RequestHeader("organization") final String organization,
+                                @RequestHeader("correlation-id") final String correlationId,
+                                @RequestBody final List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Mono.error(new InvalidPayloadException("No message IDs were provided"));
+        }
+        return Mono.fromCompletionStage(messageService.acknowledgeAsync(organization, ids, correlationId));
+    }
+
+    /**
+     * Streams an organization's stored messages, in queue order, as newline delimited JSON.
+     *
+     * Each page of messages is written into a single response buffer, so the export runs in constant memory and is
+     * flushed once per page rather than once per message.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param response ServerHttpResponse, whose buffers pages are written into
+     * @return ExportedMessage(s), one per line
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> export(@RequestHeader("organization") final String organization,
+                                   @RequestHeader("correlation-id") final String correlationId,
+                                   final ServerHttpResponse response) {
+        final int pageSize = applicationProperties.getTransfer().getBatchSize();
+        return Mono.fromCompletionStage(messageService.exportMessagesAsync(organization, -1, pageSize, correlationId))
+                .expand(page -> {
+                    if (page.size() < pageSize) {
+                        return Mono.empty();
+                    }
+                    return Mono.fromCompletionStage(messageService.exportMessagesAsync(organization,
+                            page.get(page.size() - 1).getSequence(), pageSize, correlationId));
+                })
+                .map(page -> write(page, response.bufferFactory()));
+    }
+
+    /**
+     * Adds messages streamed as newline delimited JSON, as written by an export, to the end of an organization's
+     * queue, in batches.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param body ExportedMessage(s), one per line
+     * @return number of messages added
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<Long> importMessages(@RequestHeader("organization") final String organization,
+                                     @RequestHeader("correlation-id") final String correlationId,
+                                     @RequestBody final Flux<ExportedMessage> body) {
+        return body
+                .handle((ExportedMessage exported, SynchronousSink<ExportedMessage> sink) -> {
+                    try {
+                        sink.next(RequestParameters.getExported(exported));
+                    } catch (InvalidPayloadException e) {
+                        sink.error(e);
+                    }
+                })
+                .buffer(applicationProperties.getTransfer().getBatchSize())
+                .concatMap(batch -> Mono.fromCompletionStage(messageService.importMessagesAsync(organization, batch,
+                        correlationId)), 1)
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Writes a page of exported messages into a response buffer.
+     *
+     * @param page ExportedMessage(s)
+     * @param bufferFactory DataBufferFactory
+     * @return DataBuffer
+     */
+    private DataBuffer write(final List<ExportedMessage> page, final DataBufferFactory bufferFactory) {
+        final DataBuffer buffer = bufferFactory.allocateBuffer(BUFFER_SIZE);
+        try (OutputStream out = buffer.asOutputStream()) {
+            exportWriter.write(page, out);
+            return buffer;
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        }
+    }
+}
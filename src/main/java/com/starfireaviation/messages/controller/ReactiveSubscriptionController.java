@@ -0,0 +1,120 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.controller;
+
+import com.starfireaviation.common.exception.InvalidPayloadException;
+import com.starfireaviation.common.exception.ResourceNotFoundException;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.model.Subscription;
+import com.starfireaviation.messages.service.PushDispatcher;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive variant of SubscriptionController, active when the application runs as a reactive web application.
+ */
+@Slf4j
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping({ "/api/subscriptions" })
+public class ReactiveSubscriptionController {
+
+    /**
+     * PushDispatcher.
+     */
+    private final PushDispatcher pushDispatcher;
+
+    /**
+     * ApplicationProperties.
+     */
+    private final ApplicationProperties applicationProperties;
+
+    /**
+     * ReactiveSubscriptionController.
+     *
+     * @param dispatcher PushDispatcher
+     * @param aProperties ApplicationProperties
+     */
+    public ReactiveSubscriptionController(final PushDispatcher dispatcher, final ApplicationProperties aProperties) {
+        pushDispatcher = dispatcher;
+        applicationProperties = aProperties;
+    }
+
+    /**
+     * Registers the caller's callback endpoint, replacing any previous registration.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param clientId ClientID
+     * @param subscription Subscription
+     * @return registered Subscription
+     */
+    @PostMapping
+    public Mono<Subscription> post(@RequestHeader("organization") final String organization,
+                                   @RequestHeader("correlation-id") final String correlationId,
+                                   @RequestHeader("client-id") final String clientId,
+                                   @RequestBody final Subscription subscription) {
+        final Subscription registered;
+        try {
+            registered = RequestParameters.getSubscription(subscription, clientId, applicationProperties);
+        } catch (InvalidPayloadException e) {
+            return Mono.error(e);
+        }
+        return Mono.fromCompletionStage(pushDispatcher.subscribeAsync(organization, registered, correlationId))
+                .thenReturn(registered);
+    }
+
+    /**
+     * Retrieves an organization's subscriptions.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return subscriptions
+     */
+    @GetMapping
+    public Mono<List<Subscription>> get(@RequestHeader("organization") final String organization,
+                                        @RequestHeader("correlation-id") final String correlationId) {
+        return Mono.fromCompletionStage(pushDispatcher.getSubscriptionsAsync(organization, correlationId));
+    }
+
+    /**
+     * Removes the caller's subscription. Batches already in flight are still delivered.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param clientId ClientID
+     * @return completion
+     */
+    @DeleteMapping
+    public Mono<Void> delete(@RequestHeader("organization") final String organization,
+                             @RequestHeader("correlation-id") final String correlationId,
+                             @RequestHeader("client-id") final String clientId) {
+        return Mono.fromCompletionStage(pushDispatcher.unsubscribeAsync(organization, clientId, correlationId))
+                .switchIfEmpty(Mono.error(() ->
+                        new ResourceNotFoundException("No subscription for client " + clientId + " was found")))
+                .then();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.controller;
+
+import com.starfireaviation.common.exception.InvalidPayloadException;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.config.CommonConstants;
+import com.starfireaviation.messages.model.ExportedMessage;
+import com.starfireaviation.messages.model.Subscription;
+import com.starfireaviation.messages.service.CallbackAddresses;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parsing of request parameters shared by the servlet and reactive controllers.
+ */
+final class RequestParameters {
+
+    /**
+     * RequestParameters.
+     */
+    private RequestParameters() {
+    }
+
+    /**
+     * Get lease duration.
+     *
+     * @param ack whether the caller will acknowledge the message
+     * @param lease user input, in seconds
+     * @param properties lease settings
+     * @return lease duration, or null for at-most-once delivery
+     * @throws InvalidPayloadException when the lease is not positive or exceeds the maximum
+     */
+    static Duration getLease(final boolean ack, final Long lease, final ApplicationProperties.Lease properties)
+            throws InvalidPayloadException {
+        if (!ack && lease == null) {
+            return null;
+        }
+        if (lease == null) {
+            return properties.getDefaultDuration();
+        }
+        final Duration duration = Duration.ofSeconds(lease);
+        if (duration.isNegative() || duration.isZero() || duration.compareTo(properties.getMaxDuration()) > 0) {
+            throw new InvalidPayloadException("Lease must be between 1 and "
+                    + properties.getMaxDuration().toSeconds() + " seconds");
+        }
+        return duration;
+    }
+
+    /**
+     * Get NotificationType.
+     *
+     * @param type user input
+     * @return NotificationType
+     */
+    static NotificationType getType(final String type) {
+        if (type == null) {
+            return NotificationType.ALL;
+        } else {
+            return NotificationType.valueOf(type.toUpperCase());
+        }
+    }
+
+    /**
+     * Get peek count.
+     *
+     * @param count user input
+     * @return count
+     * @throws InvalidPayloadException when the count is not valid
+     */
+    static int getCount(final int count) throws InvalidPayloadException {
+        if (count < 1 || count > CommonConstants.MAX_PEEK_COUNT) {
+            throw new InvalidPayloadException("Count must be between 1 and " + CommonConstants.MAX_PEEK_COUNT);
+        }
+        return count;
+    }
+
+    /**
+     * Get target ClientIDs.
+     *
+     * @param targets user input, possibly repeated or comma separated
+     * @return ClientID(s), or null when the message is not targeted
+     * @throws InvalidPayloadException when too many targets are provided
+     */
+    static Set<String> getTargets(final List<String> targets) throws InvalidPayloadException {
+        if (targets == null) {
+            return null;
+        }
+        final Set<String> clientIds = new HashSet<>();
+        for (final String target : targets) {
+            if (target != null && !target.isBlank()) {
+                clientIds.add(target.trim());
+            }
+        }
+        if (clientIds.size() > CommonConstants.MAX_TARGETS) {
+            throw new InvalidPayloadException("At most " + CommonConstants.MAX_TARGETS + " target clients are allowed");
+        }
+        if (clientIds.isEmpty()) {
+            return null;
+        }
+        return clientIds;
+    }
+
+    /**
+     * Get group key.
+     *
+     * @param group user input
+     * @param targets target ClientIDs, which a grouped message may not have
+     * @return group key, or null when the message is not grouped
+     * @throws InvalidPayloadException when the group key is too long or the message is also targeted
+     */
+    static String getGroup(final String group, final Set<String> targets) throws InvalidPayloadException {
+        if (group == null || group.isBlank()) {
+            return null;
+        }
+        final String key = group.trim();
+        if (key.length() > CommonConstants.MAX_GROUP_KEY_LENGTH) {
+            throw new InvalidPayloadException("Group key must be at most " + CommonConstants.MAX_GROUP_KEY_LENGTH
+                    + " characters");
+        }
+        if (targets != null) {
+            throw new InvalidPayloadException("A message cannot have both a group key and target clients");
+        }
+        return key;
+    }
+
+    /**
+     * Get consumer group.
+     *
+     * @param consumerGroup user input
+     * @return consumer group, or null when the caller is not in one
+     * @throws InvalidPayloadException when the consumer group is too long
+     */
+    static String getConsumerGroup(final String consumerGroup) throws InvalidPayloadException {
+        if (consumerGroup == null || consumerGroup.isBlank()) {
+            return null;
+        }
+        final String group = consumerGroup.trim();
+        if (group.length() > CommonConstants.MAX_CONSUMER_GROUP_LENGTH) {
+            throw new InvalidPayloadException("Consumer group must be at most "
+                    + CommonConstants.MAX_CONSUMER_GROUP_LENGTH + " characters");
+        }
+        return group;
+    }
+
+    /**
+     * Get an imported message.
+     *
+     * @param exported user input
+     * @return ExportedMessage
+     * @throws InvalidPayloadException when no message is provided
+     */
+    static ExportedMessage getExported(final ExportedMessage exported) throws InvalidPayloadException {
+        if (exported == null || exported.getMessage() == null) {
+            throw new InvalidPayloadException("Each line must hold an exported message");
+        }
+        return exported;
+    }
+
+    /**
+     * Get a subscription to register for a client, with its lease resolved.
+     *
+     * @param subscription user input
+     * @param clientId ClientID subscribing
+     * @param properties ApplicationProperties
+     * @return Subscription
+     * @throws InvalidPayloadException when push delivery is disabled or the subscription is not valid
+     */
+    static Subscription getSubscription(final Subscription subscription,
+                                        final String clientId,
+                                        final ApplicationProperties properties) throws InvalidPayloadException {
+        final ApplicationProperties.Push push = properties.getPush();
+        if (!push.isEnabled()) {
+            throw new InvalidPayloadException("Push delivery is disabled");
+        }
+        final URI url = getHttpUrl(subscription.getUrl());
+        if (url == null) {
+            throw new InvalidPayloadException("URL must be an absolute http or https URL");
+        }
+        if (!CallbackAddresses.isRegistrable(url, push)) {
+            throw new InvalidPayloadException("URL must not address an internal or unlisted host");
+        }
+        if (subscription.getBatchSize() < 1 || subscription.getBatchSize() > push.getMaxBatchSize()) {
+            throw new InvalidPayloadException("Batch size must be between 1 and " + push.getMaxBatchSize());
+        }
+        final Duration lease = getLease(subscription.isAck(), subscription.getLease(), properties.getLease());
+        subscription.setClientId(clientId);
+        subscription.setAck(lease != null);
+        subscription.setLease(null);
+        if (lease != null) {
+            subscription.setLease(lease.toSeconds());
+        }
+        return subscription;
+    }
+
+    private static URI getHttpUrl(final String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            final URI uri = URI.create(url);
+            if (uri.getHost() != null && ("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()))) {
+                return uri;
+            }
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
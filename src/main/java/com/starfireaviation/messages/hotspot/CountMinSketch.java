@@ -0,0 +1,145 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.hotspot;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch: approximate counts of any number of keys in a fixed amount of memory.
+ *
+ * Each key adds its count to one counter in each row, chosen by a different hash per row. Other keys sharing a counter
+ * can only inflate it, so the smallest of a key's counters is its estimate, which is never below its true count. With
+ * a width of w, a counter exceeds a key's true count by more than 2/w of the total count in at most one row in two,
+ * so at most one in 2^depth estimates is off by that much.
+ *
+ * Counters are updated with atomic adds and no locks, so that the sketch can be shared by every request thread.
+ */
+public final class CountMinSketch {
+
+    /**
+     * Odd constant separating the hashes of successive rows.
+     */
+    private static final int GOLDEN = 0x9E3779B9;
+
+    /**
+     * Murmur3 finalizer multipliers.
+     */
+    private static final int[] MIX = {0x85EBCA6B, 0xC2B2AE35};
+
+    /**
+     * Murmur3 finalizer shifts.
+     */
+    private static final int[] SHIFTS = {16, 13, 16};
+
+    /**
+     * Number of rows.
+     */
+    private final int depth;
+
+    /**
+     * Counters per row, a power of two.
+     */
+    private final int width;
+
+    /**
+     * Counters, row after row.
+     */
+    private final AtomicLongArray counters;
+
+    /**
+     * CountMinSketch.
+     *
+     * @param rows number of rows, each halving the chance of an estimate beyond the error bound
+     * @param columns counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(final int rows, final int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("Sketch rows and columns must be positive");
+        }
+        depth = rows;
+        width = Integer.highestOneBit(columns - 1 | 1) << 1;
+        counters = new AtomicLongArray(depth * width);
+    }
+
+    /**
+     * Adds to the count of a key.
+     *
+     * @param key key
+     * @param count amount added
+     * @return estimated count of the key, including this addition
+     */
+    public long add(final String key, final long count) {
+        final int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(row, hash), count));
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimated count of a key, never less than its true count.
+     *
+     * @param key key
+     * @return estimated count
+     */
+    public long estimate(final String key) {
+        final int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Memory held by the counters.
+     *
+     * @return size, in bytes
+     */
+    public long getSize() {
+        return (long) counters.length() * Long.BYTES;
+    }
+
+    /**
+     * Counter of a key in a row. Each row mixes the key's hash afresh, rather than deriving every row from two hashes,
+     * so that two keys sharing a counter in one row are no more likely to share one in the next.
+     *
+     * @param row row
+     * @param hash hash of the key
+     * @return counter index
+     */
+    private int index(final int row, final int hash) {
+        return row * width + (mix(hash + row * GOLDEN) & width - 1);
+    }
+
+    /**
+     * Murmur3 32-bit finalizer, spreading every input bit across the hash.
+     *
+     * @param hash hash
+     * @return mixed hash
+     */
+    private static int mix(final int hash) {
+        int mixed = hash;
+        mixed ^= mixed >>> SHIFTS[0];
+        mixed *= MIX[0];
+        mixed ^= mixed >>> SHIFTS[1];
+        mixed *= MIX[1];
+        mixed ^= mixed >>> SHIFTS[2];
+        return mixed;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.hotspot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Data;
+
+/**
+ * The keys with the largest counts, found in a single pass with a fixed amount of memory.
+ *
+ * Every count goes into a CountMinSketch, and a key becomes a candidate once its estimate reaches the smallest estimate
+ * among the current candidates, displacing that one. Adding to a key which is already a candidate, or which is too
+ * small to become one, reads a volatile and a concurrent set after updating the sketch, and takes no lock.
+ */
+public final class HeavyHitters {
+
+    /**
+     * Counts of every key.
+     */
+    private final CountMinSketch sketch;
+
+    /**
+     * Most keys reported.
+     */
+    private final int capacity;
+
+    /**
+     * Candidate keys.
+     */
+    private final Set<String> candidates = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Smallest estimate among the candidates once there are as many as reported, zero until then. Estimates only grow,
+     * so this may trail the true smallest estimate; a key between the two is let in and displaced straight away.
+     */
+    private volatile long floor;
+
+    /**
+     * HeavyHitters.
+     *
+     * @param size most keys reported
+     * @param rows sketch rows
+     * @param columns sketch counters per row
+     */
+    public HeavyHitters(final int size, final int rows, final int columns) {
+        capacity = size;
+        sketch = new CountMinSketch(rows, columns);
+    }
+
+    /**
+     * Adds to the count of a key.
+     *
+     * @param key key
+     * @param count amount added
+     */
+    public void add(final String key, final long count) {
+        final long estimate = sketch.add(key, count);
+        if (estimate > floor && !candidates.contains(key)) {
+            admit(key);
+        }
+    }
+
+    /**
+     * Estimated count of a key, whether or not it is a candidate.
+     *
+     * @param key key
+     * @return estimated count
+     */
+    public long estimate(final String key) {
+        return sketch.estimate(key);
+    }
+
+    /**
+     * Candidate keys, with the largest counts.
+     *
+     * @return key(s), at most as many as reported
+     */
+    public Set<String> keys() {
+        return Set.copyOf(candidates);
+    }
+
+    /**
+     * Candidate keys and their estimated counts, largest first.
+     *
+     * @return Hitter(s), at most as many as reported
+     */
+    public List<Hitter> top() {
+        final List<Hitter> top = new ArrayList<>();
+        candidates.forEach(key -> top.add(new Hitter(key, sketch.estimate(key))));
+        top.sort(Comparator.comparingLong(Hitter::getCount).reversed());
+        return top;
+    }
+
+    /**
+     * Makes a key a candidate, displacing the candidate with the smallest estimate if there are too many.
+     *
+     * @param key key
+     */
+    private synchronized void admit(final String key) {
+        if (!candidates.add(key) || candidates.size() < capacity) {
+            return;
+        }
+        String smallest = null;
+        long min = Long.MAX_VALUE;
+        long next = Long.MAX_VALUE;
+        for (final String candidate : candidates) {
+            final long estimate = sketch.estimate(candidate);
+            if (estimate < min) {
+                next = min;
+                min = estimate;
+                smallest = candidate;
+            } else if (estimate < next) {
+                next = estimate;
+            }
+        }
+        if (candidates.size() > capacity) {
+            candidates.remove(smallest);
+            floor = next;
+        } else {
+            floor = min;
+        }
+    }
+
+    /**
+     * A key and its estimated count.
+     */
+    @Data
+    public static class Hitter {
+
+        /**
+         * Key.
+         */
+        private final String key;
+
+        /**
+         * Estimated count.
+         */
+        private final long count;
+    }
+}
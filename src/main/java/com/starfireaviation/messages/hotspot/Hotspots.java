@@ -0,0 +1,510 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.hotspot;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.model.HotspotReport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Tracks the organizations and clients making the most requests, storing the most payload bytes and with the most
+ * messages waiting, in a fixed amount of memory however many there are.
+ *
+ * Requests and stored bytes are counted on the request path in HeavyHitters, one per measure for organizations and one
+ * for clients. Counts are kept per window, and a report covers the last complete window together with the current
+ * one, so that it always spans at least one full window. Queue depths are measured by the periodic cleanup, which
+ * visits every queue anyway, and only the deepest are kept. Each instance tracks the requests it serves.
+ */
+public final class Hotspots {
+
+    /**
+     * Separates organization and ClientID in client keys. Cannot appear in a header value.
+     */
+    private static final char SEPARATOR = '\n';
+
+    /**
+     * Characters below this take one byte in UTF-8.
+     */
+    private static final char ONE_BYTE_LIMIT = 0x80;
+
+    /**
+     * Characters below this take two bytes in UTF-8.
+     */
+    private static final char TWO_BYTE_LIMIT = 0x800;
+
+    /**
+     * Milliseconds per second.
+     */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    /**
+     * Most organizations and clients reported per measure.
+     */
+    private final int size;
+
+    /**
+     * Sketch rows.
+     */
+    private final int rows;
+
+    /**
+     * Sketch counters per row.
+     */
+    private final int columns;
+
+    /**
+     * Window being counted.
+     */
+    private volatile Window current;
+
+    /**
+     * Last complete window.
+     */
+    private volatile Window previous;
+
+    /**
+     * Deepest queues and inboxes at the last measurement.
+     */
+    private volatile Depths depths = new Depths(null, List.of(), List.of());
+
+    /**
+     * Gauges of the busiest organizations and clients over the last complete window, or null without a registry.
+     */
+    private final Gauges gauges;
+
+    /**
+     * Hotspots.
+     *
+     * @param top most organizations and clients reported per measure
+     * @param sketchRows sketch rows
+     * @param sketchColumns sketch counters per row
+     * @param registry MeterRegistry the busiest are reported to at the end of each window, or null
+     */
+    public Hotspots(final int top, final int sketchRows, final int sketchColumns, final MeterRegistry registry) {
+        size = top;
+        rows = sketchRows;
+        columns = sketchColumns;
+        current = new Window(this, System.currentTimeMillis());
+        previous = current;
+        if (registry != null) {
+            gauges = new Gauges(registry);
+        } else {
+            gauges = null;
+        }
+    }
+
+    /**
+     * Counts a request.
+     *
+     * @param organization Organization
+     * @param clientId ClientID, or null if the request was not made for a client
+     */
+    public void request(final String organization, final String clientId) {
+        final Window window = current;
+        window.organizationRequests.add(organization, 1);
+        if (clientId != null) {
+            window.clientRequests.add(key(organization, clientId), 1);
+        }
+    }
+
+    /**
+     * Counts the payload bytes of a stored message. Bytes are counted against the organization, and against each
+     * client the message is targeted at.
+     *
+     * @param organization Organization
+     * @param targets ClientID(s) the message is targeted at, or null
+     * @param message Message
+     */
+    public void stored(final String organization, final Set<String> targets, final Message message) {
+        final Window window = current;
+        final long bytes = encodedLength(message.getPayload());
+        window.organizationBytes.add(organization, bytes);
+        if (targets != null) {
+            targets.forEach(clientId -> window.clientBytes.add(key(organization, clientId), bytes));
+        }
+    }
+
+    /**
+     * Most organizations and clients reported per measure.
+     *
+     * @return size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Ends the current window and records the queue depths just measured, then reports the busiest organizations and
+     * clients of the window that ended to the gauges.
+     *
+     * @param organizations available messages, by organization
+     * @param inboxes targeted messages waiting in the largest inboxes, by organization then ClientID
+     */
+    public synchronized void rotate(final Map<String, Integer> organizations,
+                                    final Map<String, Map<String, Integer>> inboxes) {
+        final long now = System.currentTimeMillis();
+        final List<HotspotReport.Depth> organizationDepths = new ArrayList<>();
+        organizations.forEach((organization, messages) -> organizationDepths.add(depth(organization, null, messages)));
+        final List<HotspotReport.Depth> clientDepths = new ArrayList<>();
+        inboxes.forEach((organization, clients) -> clients.forEach((clientId, messages) ->
+                clientDepths.add(depth(organization, clientId, messages))));
+        depths = new Depths(Instant.ofEpochMilli(now), deepest(organizationDepths), deepest(clientDepths));
+        previous = current;
+        current = new Window(this, now);
+        if (gauges != null) {
+            gauges.update(report(previous, previous, now));
+        }
+    }
+
+    /**
+     * Busiest organizations and clients over the last complete window and the current one, and the deepest queues.
+     *
+     * @return HotspotReport
+     */
+    public HotspotReport report() {
+        return report(previous, current, System.currentTimeMillis());
+    }
+
+    /**
+     * Busiest organizations and clients over the given windows.
+     *
+     * @param first first window
+     * @param last last window, the same as the first to report a single window
+     * @param end end of the last window, in epoch milliseconds
+     * @return HotspotReport
+     */
+    private HotspotReport report(final Window first, final Window last, final long end) {
+        final double seconds = Math.max(end - first.start, 1) / MILLIS_PER_SECOND;
+        final HotspotReport report = new HotspotReport();
+        report.setSince(Instant.ofEpochMilli(first.start));
+        report.setUntil(Instant.ofEpochMilli(end));
+        report.getOrganizations().setRequests(rates(first, last, window -> window.organizationRequests, seconds));
+        report.getOrganizations().setBytesStored(rates(first, last, window -> window.organizationBytes, seconds));
+        report.getClients().setRequests(rates(first, last, window -> window.clientRequests, seconds));
+        report.getClients().setBytesStored(rates(first, last, window -> window.clientBytes, seconds));
+        final Depths measured = depths;
+        report.setDepthsAt(measured.at);
+        report.getOrganizations().setDepth(measured.organizations);
+        report.getClients().setDepth(measured.clients);
+        return report;
+    }
+
+    /**
+     * Largest keys of one measure over the given windows.
+     *
+     * @param first first window
+     * @param last last window
+     * @param measure HeavyHitters of the measure in a window
+     * @param seconds length of the windows, in seconds
+     * @return Rate(s), largest first
+     */
+    private List<HotspotReport.Rate> rates(final Window first,
+                                           final Window last,
+                                           final Function<Window, HeavyHitters> measure,
+                                           final double seconds) {
+        final Set<String> keys = new HashSet<>(measure.apply(first).keys());
+        keys.addAll(measure.apply(last).keys());
+        final List<HotspotReport.Rate> rates = new ArrayList<>();
+        for (final String key : keys) {
+            long total = measure.apply(last).estimate(key);
+            if (first != last) {
+                total += measure.apply(first).estimate(key);
+            }
+            final HotspotReport.Rate rate = new HotspotReport.Rate();
+            final int separator = key.indexOf(SEPARATOR);
+            if (separator < 0) {
+                rate.setOrganization(key);
+            } else {
+                rate.setOrganization(key.substring(0, separator));
+                rate.setClientId(key.substring(separator + 1));
+            }
+            rate.setTotal(total);
+            rate.setPerSecond(total / seconds);
+            rates.add(rate);
+        }
+        rates.sort(Comparator.comparingLong(HotspotReport.Rate::getTotal).reversed());
+        return List.copyOf(rates.subList(0, Math.min(size, rates.size())));
+    }
+
+    /**
+     * Deepest entries, largest first.
+     *
+     * @param measured Depth(s)
+     * @return at most size Depth(s)
+     */
+    private List<HotspotReport.Depth> deepest(final List<HotspotReport.Depth> measured) {
+        measured.sort(Comparator.comparingInt(HotspotReport.Depth::getMessages).reversed());
+        return List.copyOf(measured.subList(0, Math.min(size, measured.size())));
+    }
+
+    /**
+     * Depth of an organization or client.
+     *
+     * @param organization Organization
+     * @param clientId ClientID, or null
+     * @param messages number of messages
+     * @return Depth
+     */
+    private static HotspotReport.Depth depth(final String organization, final String clientId, final int messages) {
+        final HotspotReport.Depth depth = new HotspotReport.Depth();
+        depth.setOrganization(organization);
+        depth.setClientId(clientId);
+        depth.setMessages(messages);
+        return depth;
+    }
+
+    /**
+     * Key of a client, unique across organizations.
+     *
+     * @param organization Organization
+     * @param clientId ClientID
+     * @return key
+     */
+    private static String key(final String organization, final String clientId) {
+        return organization + SEPARATOR + clientId;
+    }
+
+    /**
+     * Length of a string in UTF-8, without encoding it.
+     *
+     * @param value string, or null
+     * @return length, in bytes
+     */
+    static long encodedLength(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        long bytes = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c >= TWO_BYTE_LIMIT && !Character.isSurrogate(c)) {
+                bytes += 2;
+            } else if (c >= ONE_BYTE_LIMIT) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Requests and stored bytes counted in one window.
+     */
+    private static final class Window {
+
+        /**
+         * Start of the window, in epoch milliseconds.
+         */
+        private final long start;
+
+        /**
+         * Requests by organization.
+         */
+        private final HeavyHitters organizationRequests;
+
+        /**
+         * Requests by client.
+         */
+        private final HeavyHitters clientRequests;
+
+        /**
+         * Stored payload bytes by organization.
+         */
+        private final HeavyHitters organizationBytes;
+
+        /**
+         * Stored payload bytes by targeted client.
+         */
+        private final HeavyHitters clientBytes;
+
+        /**
+         * Window.
+         *
+         * @param hotspots sizes of the windows' HeavyHitters
+         * @param startTime start of the window, in epoch milliseconds
+         */
+        private Window(final Hotspots hotspots, final long startTime) {
+            start = startTime;
+            organizationRequests = new HeavyHitters(hotspots.size, hotspots.rows, hotspots.columns);
+            clientRequests = new HeavyHitters(hotspots.size, hotspots.rows, hotspots.columns);
+            organizationBytes = new HeavyHitters(hotspots.size, hotspots.rows, hotspots.columns);
+            clientBytes = new HeavyHitters(hotspots.size, hotspots.rows, hotspots.columns);
+        }
+    }
+
+    /**
+     * Gauges reporting one row per organization or client.
+     */
+    private static final class Gauges {
+
+        /**
+         * Requests per second by organization.
+         */
+        private final MultiGauge organizationRequests;
+
+        /**
+         * Requests per second by client.
+         */
+        private final MultiGauge clientRequests;
+
+        /**
+         * Stored payload bytes per second by organization.
+         */
+        private final MultiGauge organizationBytes;
+
+        /**
+         * Stored payload bytes per second by targeted client.
+         */
+        private final MultiGauge clientBytes;
+
+        /**
+         * Messages waiting by organization.
+         */
+        private final MultiGauge organizationDepth;
+
+        /**
+         * Targeted messages waiting by client.
+         */
+        private final MultiGauge clientDepth;
+
+        /**
+         * Gauges.
+         *
+         * @param registry MeterRegistry
+         */
+        private Gauges(final MeterRegistry registry) {
+            organizationRequests = gauge(registry, "messages.hotspot.organization.requests", "requests/s");
+            clientRequests = gauge(registry, "messages.hotspot.client.requests", "requests/s");
+            organizationBytes = gauge(registry, "messages.hotspot.organization.stored", "bytes/s");
+            clientBytes = gauge(registry, "messages.hotspot.client.stored", "bytes/s");
+            organizationDepth = gauge(registry, "messages.hotspot.organization.depth", "messages");
+            clientDepth = gauge(registry, "messages.hotspot.client.depth", "messages");
+        }
+
+        /**
+         * Replaces every row with those of a report.
+         *
+         * @param report HotspotReport
+         */
+        private void update(final HotspotReport report) {
+            update(organizationRequests, report.getOrganizations().getRequests());
+            update(clientRequests, report.getClients().getRequests());
+            update(organizationBytes, report.getOrganizations().getBytesStored());
+            update(clientBytes, report.getClients().getBytesStored());
+            updateDepths(organizationDepth, report.getOrganizations().getDepth());
+            updateDepths(clientDepth, report.getClients().getDepth());
+        }
+
+        /**
+         * Replaces the rows of a rate gauge.
+         *
+         * @param gauge MultiGauge
+         * @param rates Rate(s)
+         */
+        private static void update(final MultiGauge gauge, final List<HotspotReport.Rate> rates) {
+            gauge.register(rates.stream()
+                    .map(rate -> MultiGauge.Row.of(tags(rate.getOrganization(), rate.getClientId()),
+                            rate.getPerSecond()))
+                    .toList(), true);
+        }
+
+        /**
+         * Replaces the rows of a depth gauge.
+         *
+         * @param gauge MultiGauge
+         * @param measured Depth(s)
+         */
+        private static void updateDepths(final MultiGauge gauge, final List<HotspotReport.Depth> measured) {
+            gauge.register(measured.stream()
+                    .map(depth -> MultiGauge.Row.of(tags(depth.getOrganization(), depth.getClientId()),
+                            depth.getMessages()))
+                    .toList(), true);
+        }
+
+        /**
+         * Gauge tags of an organization or client.
+         *
+         * @param organization Organization
+         * @param clientId ClientID, or null
+         * @return Tags
+         */
+        private static Tags tags(final String organization, final String clientId) {
+            final Tags tags = Tags.of("organization", organization);
+            if (clientId == null) {
+                return tags;
+            }
+            return tags.and("client", clientId);
+        }
+
+        /**
+         * Registers a gauge reporting one row per organization or client.
+         *
+         * @param registry MeterRegistry
+         * @param name gauge name
+         * @param unit base unit
+         * @return MultiGauge
+         */
+        private static MultiGauge gauge(final MeterRegistry registry, final String name, final String unit) {
+            return MultiGauge.builder(name).baseUnit(unit).register(registry);
+        }
+    }
+
+    /**
+     * Deepest queues and inboxes at one measurement.
+     */
+    private static final class Depths {
+
+        /**
+         * Time measured, or null if not yet measured.
+         */
+        private final Instant at;
+
+        /**
+         * Deepest queues.
+         */
+        private final List<HotspotReport.Depth> organizations;
+
+        /**
+         * Deepest inboxes.
+         */
+        private final List<HotspotReport.Depth> clients;
+
+        /**
+         * Depths.
+         *
+         * @param measuredAt time measured, or null if not yet measured
+         * @param queues deepest queues
+         * @param inboxes deepest inboxes
+         */
+        private Depths(final Instant measuredAt,
+                       final List<HotspotReport.Depth> queues,
+                       final List<HotspotReport.Depth> inboxes) {
+            at = measuredAt;
+            organizations = queues;
+            clients = inboxes;
+        }
+    }
+}
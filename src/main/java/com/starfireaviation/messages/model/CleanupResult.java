@@ -0,0 +1,51 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.model;
+
+import com.starfireaviation.common.model.Priority;
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * Outcome of cleaning up an organization's queue, along with the queue depths found while doing so.
+ */
+@Data
+public class CleanupResult implements Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of expired messages removed which were never delivered, by Priority.
+     */
+    private Map<Priority, Integer> undelivered = new EnumMap<>(Priority.class);
+
+    /**
+     * Number of messages left available.
+     */
+    private int depth;
+
+    /**
+     * Targeted messages left waiting in the largest inboxes, by ClientID.
+     */
+    private Map<String, Integer> inboxes = new HashMap<>();
+}
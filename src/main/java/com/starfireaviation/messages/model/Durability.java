@@ -0,0 +1,90 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.model;
+
+import com.starfireaviation.messages.config.CommonConstants;
+
+/**
+ * How messages are backed up, each tier being stored in its own map with its own backup settings.
+ */
+public enum Durability {
+
+    /**
+     * One synchronous backup. A store completes once the backup has been written, so the message survives the loss
+     * of a member.
+     */
+    SYNC(CommonConstants.MESSAGES_MAP, 1, 0),
+
+    /**
+     * One asynchronous backup. A store completes without waiting for the backup, so the latest messages of a member
+     * may be lost with it.
+     */
+    ASYNC(CommonConstants.MESSAGES_ASYNC_MAP, 0, 1),
+
+    /**
+     * No backup. Messages are lost with the member holding them, and are not replicated at all.
+     */
+    NONE(CommonConstants.MESSAGES_MEMORY_MAP, 0, 0);
+
+    /**
+     * Name of the map holding the tier's queues.
+     */
+    private final String mapName;
+
+    /**
+     * Number of synchronous backups.
+     */
+    private final int backupCount;
+
+    /**
+     * Number of asynchronous backups.
+     */
+    private final int asyncBackupCount;
+
+    Durability(final String map, final int backups, final int asyncBackups) {
+        mapName = map;
+        backupCount = backups;
+        asyncBackupCount = asyncBackups;
+    }
+
+    /**
+     * Name of the map holding the tier's queues.
+     *
+     * @return map name
+     */
+    public String getMapName() {
+        return mapName;
+    }
+
+    /**
+     * Number of synchronous backups.
+     *
+     * @return backup count
+     */
+    public int getBackupCount() {
+        return backupCount;
+    }
+
+    /**
+     * Number of asynchronous backups.
+     *
+     * @return async backup count
+     */
+    public int getAsyncBackupCount() {
+        return asyncBackupCount;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.model;
+
+import com.starfireaviation.common.model.Message;
+import java.io.Serializable;
+import java.util.Set;
+import lombok.Data;
+
+/**
+ * A stored message along with its delivery state, as written by an export and read back by an import.
+ */
+@Data
+public class ExportedMessage implements Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Queue sequence in the exporting queue, which orders exported messages. Ignored on import.
+     */
+    private long sequence;
+
+    /**
+     * Time the message was enqueued, in epoch milliseconds.
+     */
+    private long enqueuedAt;
+
+    /**
+     * Message, with its payload.
+     */
+    private Message message;
+
+    /**
+     * Clients the message is still to be delivered to, or null if it is not targeted.
+     */
+    private Set<String> targets;
+
+    /**
+     * Group the message is delivered in order within, or null if it is not grouped.
+     */
+    private String group;
+
+    /**
+     * Clients which have already seen a message for every client, or null if none have.
+     */
+    private Set<String> seenBy;
+
+    /**
+     * Consumer groups which have already seen a message for every client, or null if none have.
+     */
+    private Set<String> seenByConsumerGroups;
+}
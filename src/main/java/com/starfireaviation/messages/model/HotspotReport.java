@@ -0,0 +1,125 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * Organizations and clients generating the most load, as seen by one instance.
+ */
+@Data
+public class HotspotReport {
+
+    /**
+     * Start of the period request and storage rates cover.
+     */
+    private Instant since;
+
+    /**
+     * End of the period request and storage rates cover.
+     */
+    private Instant until;
+
+    /**
+     * Time queue depths were last measured, or null if not yet measured.
+     */
+    private Instant depthsAt;
+
+    /**
+     * Busiest organizations.
+     */
+    private Ranking organizations = new Ranking();
+
+    /**
+     * Busiest clients.
+     */
+    private Ranking clients = new Ranking();
+
+    /**
+     * Busiest organizations or clients by each measure, largest first.
+     */
+    @Data
+    public static class Ranking {
+
+        /**
+         * By requests.
+         */
+        private List<Rate> requests = new ArrayList<>();
+
+        /**
+         * By payload bytes stored.
+         */
+        private List<Rate> bytesStored = new ArrayList<>();
+
+        /**
+         * By messages waiting, for clients only counting messages targeted at them.
+         */
+        private List<Depth> depth = new ArrayList<>();
+    }
+
+    /**
+     * Estimated total and rate of an organization or client over the period.
+     */
+    @Data
+    public static class Rate {
+
+        /**
+         * Organization.
+         */
+        private String organization;
+
+        /**
+         * ClientID, or null when ranking organizations.
+         */
+        private String clientId;
+
+        /**
+         * Estimated total over the period, never less than the true total.
+         */
+        private long total;
+
+        /**
+         * Estimated total per second.
+         */
+        private double perSecond;
+    }
+
+    /**
+     * Messages waiting for an organization or client.
+     */
+    @Data
+    public static class Depth {
+
+        /**
+         * Organization.
+         */
+        private String organization;
+
+        /**
+         * ClientID, or null when ranking organizations.
+         */
+        private String clientId;
+
+        /**
+         * Number of messages.
+         */
+        private int messages;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.model;
+
+import java.io.Serializable;
+import lombok.Data;
+
+/**
+ * Lease held by a client on a claimed message until it is acknowledged or the lease expires.
+ */
+@Data
+public class Lease implements Serializable, Comparable<Lease> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Leased message, along with the queue position it is restored to on expiry.
+     */
+    private QueuedMessage queuedMessage;
+
+    /**
+     * ClientID holding the lease.
+     */
+    private String clientId;
+
+    /**
+     * Lease deadline, in epoch milliseconds.
+     */
+    private long deadline;
+
+    /**
+     * Orders leases by deadline, then by sequence.
+     *
+     * @param other Lease
+     * @return comparison result
+     */
+    @Override
+    public int compareTo(final Lease other) {
+        final int result = Long.compare(deadline, other.deadline);
+        if (result != 0) {
+            return result;
+        }
+        return Long.compare(queuedMessage.getSequence(), other.queuedMessage.getSequence());
+    }
+}
@@ -0,0 +1,1137 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.model;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.spill.SpillStore;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Messages stored for a single organization.
+ *
+ * Available messages are kept per Priority in arrival order. Leased messages are hidden from callers until they are
+ * either acknowledged or their lease expires, at which point they return to their original position in the queue.
+ * Counts by Priority and NotificationType, along with expiration and lease deadline indexes, are maintained as
+ * messages are added, claimed and expired so that statistics never require a scan. Messages delivered to every
+ * client track which clients have seen them, so that the seen state goes away with the message. Callers in a consumer
+ * group share their seen state instead, so that the group as a whole sees each such message once, and its members
+ * compete for it.
+ *
+ * Payloads may be held off-heap, see QueuedMessage. They are read back only for messages handed to callers, and freed
+ * when a message leaves the queue for good. Payloads of cold messages may also be spilled to disk, leaving their
+ * metadata in the indexes so that ordering, statistics and expiry never read them back. A spilled message is paged
+ * back in, together with the spilled messages following it, once it reaches the head of the queue.
+ *
+ * Messages targeted at specific clients are kept out of the shared queue, in an inbox per target client instead. A
+ * caller's inbox is checked before the shared queue at each Priority, so a claim never looks at messages meant for
+ * other clients and its cost does not grow with the number of clients. A targeted message is delivered once to each
+ * of its targets, and leaves the queue once the last of them has claimed it.
+ *
+ * Messages sharing a group key are delivered in arrival order, one at a time. Only the oldest message of each group
+ * is in the shared queue; the others wait in their group until it has been claimed, or acknowledged if it was leased.
+ * Different groups are independent of one another, so they can be consumed in parallel by different clients.
+ *
+ * Within each Priority, the shared queue is delivered in arrival order by default. It can instead be delivered
+ * earliest deadline first, from an index of available messages by expiration time, so that messages close to expiry
+ * are not held up behind newer ones.
+ */
+public class MessageQueue implements Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Order in which priorities are delivered.
+     */
+    private static final Priority[] DELIVERY_ORDER = {Priority.HIGH, Priority.NORMAL, Priority.LOW};
+
+    /**
+     * Every Priority.
+     */
+    private static final Set<Priority> ALL_PRIORITIES = Collections.unmodifiableSet(EnumSet.allOf(Priority.class));
+
+    /**
+     * Most spilled messages paged back in at once.
+     */
+    private static final int PAGE_IN_BATCH = 64;
+
+    /**
+     * Next sequence number to be assigned.
+     */
+    private long nextSequence;
+
+    /**
+     * Available messages.
+     * Note: Key = Priority; Value = (Key = sequence; Value = QueuedMessage)
+     */
+    private final Map<Priority, TreeMap<Long, QueuedMessage>> available = new EnumMap<>(Priority.class);
+
+    /**
+     * Available messages ordered by expiration time, for delivery earliest deadline first.
+     * Note: Key = Priority; Value = QueuedMessage(s)
+     */
+    private final Map<Priority, TreeSet<QueuedMessage>> deadlines = new EnumMap<>(Priority.class);
+
+    /**
+     * Available targeted messages, in arrival order.
+     * Note: Key = sequence; Value = QueuedMessage
+     */
+    private final TreeMap<Long, QueuedMessage> targeted = new TreeMap<>();
+
+    /**
+     * Available targeted messages by target client, in delivery order.
+     * Note: Key = ClientID; Value = QueuedMessage(s)
+     */
+    private final Map<String, TreeSet<QueuedMessage>> inboxes = new HashMap<>();
+
+    /**
+     * Available grouped messages by group, in arrival order. Only the first message of a group is also available in
+     * the shared queue, and only while no message of the group is leased.
+     * Note: Key = group; Value = (Key = sequence; Value = QueuedMessage)
+     */
+    private final Map<String, TreeMap<Long, QueuedMessage>> groups = new HashMap<>();
+
+    /**
+     * Groups with a leased message, which hold back the rest of the group until it is acknowledged or its lease
+     * expires.
+     */
+    private final Set<String> blocked = new HashSet<>();
+
+    /**
+     * Available messages indexed by ID.
+     * Note: Key = Message ID; Value = QueuedMessage
+     */
+    private final Map<Long, QueuedMessage> ids = new HashMap<>();
+
+    /**
+     * Available messages ordered by expiration time.
+     */
+    private final TreeSet<QueuedMessage> expirations = new TreeSet<>(new QueuedMessage.ExpirationComparator());
+
+    /**
+     * Available message count by Priority.
+     */
+    private final Map<Priority, Integer> priorities = new EnumMap<>(Priority.class);
+
+    /**
+     * Available message count by NotificationType.
+     */
+    private final Map<NotificationType, Integer> notificationTypes = new EnumMap<>(NotificationType.class);
+
+    /**
+     * Clients which have seen a message.
+     * Note: Key = Message ID; Value = ClientID(s)
+     */
+    private final Map<Long, Set<String>> seen = new HashMap<>();
+
+    /**
+     * Consumer groups which have seen a message.
+     * Note: Key = Message ID; Value = consumer group(s)
+     */
+    private final Map<Long, Set<String>> seenByConsumerGroups = new HashMap<>();
+
+    /**
+     * Outstanding leases.
+     * Note: Key = Message ID; Value = Lease
+     */
+    private final Map<Long, Lease> leases = new HashMap<>();
+
+    /**
+     * Outstanding leases ordered by deadline.
+     */
+    private final TreeSet<Lease> leaseExpiries = new TreeSet<>();
+
+    /**
+     * MessageQueue.
+     */
+    public MessageQueue() {
+        for (final Priority priority : Priority.values()) {
+            available.put(priority, new TreeMap<>());
+            deadlines.put(priority, new TreeSet<>(new QueuedMessage.ExpirationComparator()));
+        }
+    }
+
+    /**
+     * Adds a message to the end of the queue.
+     *
+     * @param message Message
+     * @param now current time, in epoch milliseconds
+     */
+    public void add(final Message message, final long now) {
+        add(message, null, null, now);
+    }
+
+    /**
+     * Adds a message to the end of the queue, or to the end of each target's inbox if it is targeted. A grouped
+     * message is added to the end of its group, and is not delivered until the messages before it in the group are.
+     *
+     * @param message Message
+     * @param targets ClientID(s) the message is targeted at, or null for any client
+     * @param group group key, or null if the message is not grouped
+     * @param now current time, in epoch milliseconds
+     */
+    public void add(final Message message, final Set<String> targets, final String group, final long now) {
+        enqueue(message, targets, group, now);
+    }
+
+    /**
+     * Adds an exported message to the end of the queue, keeping its original enqueue time and seen state. A message
+     * whose ID is already queued or leased, or which has expired, is skipped so that an import can be repeated.
+     *
+     * @param exported ExportedMessage
+     * @param now current time
+     * @return true if the message was added
+     */
+    public boolean restore(final ExportedMessage exported, final Instant now) {
+        final Message message = exported.getMessage();
+        if (ids.containsKey(message.getId()) || leases.containsKey(message.getId())
+                || !message.getExpirationTime().isAfter(now)) {
+            return false;
+        }
+        final QueuedMessage queuedMessage = enqueue(message, exported.getTargets(), exported.getGroup(),
+                exported.getEnqueuedAt());
+        if (!queuedMessage.isTargeted() && !queuedMessage.isGrouped()) {
+            if (exported.getSeenBy() != null && !exported.getSeenBy().isEmpty()) {
+                seen.put(message.getId(), new HashSet<>(exported.getSeenBy()));
+            }
+            if (exported.getSeenByConsumerGroups() != null && !exported.getSeenByConsumerGroups().isEmpty()) {
+                seenByConsumerGroups.put(message.getId(), new HashSet<>(exported.getSeenByConsumerGroups()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queued and leased messages after the given queue position, in queue order, with their delivery state. Leased
+     * messages are included as if they were available.
+     *
+     * @param after queue sequence to start after, or -1 to start at the beginning
+     * @param limit most messages returned
+     * @return ExportedMessage(s)
+     */
+    public List<ExportedMessage> export(final long after, final int limit) {
+        final TreeMap<Long, QueuedMessage> page = new TreeMap<>();
+        for (final TreeMap<Long, QueuedMessage> messages : available.values()) {
+            collect(page, messages.tailMap(after, false).values(), limit);
+        }
+        collect(page, targeted.tailMap(after, false).values(), limit);
+        for (final TreeMap<Long, QueuedMessage> group : groups.values()) {
+            collect(page, group.tailMap(after, false).values(), limit);
+        }
+        for (final Lease lease : leases.values()) {
+            if (lease.getQueuedMessage().getSequence() > after) {
+                offer(page, lease.getQueuedMessage(), limit);
+            }
+        }
+        final List<ExportedMessage> exported = new ArrayList<>(page.size());
+        for (final QueuedMessage queuedMessage : page.values()) {
+            final ExportedMessage exportedMessage = new ExportedMessage();
+            exportedMessage.setSequence(queuedMessage.getSequence());
+            exportedMessage.setEnqueuedAt(queuedMessage.getEnqueuedAt());
+            exportedMessage.setMessage(queuedMessage.toMessage());
+            exportedMessage.setGroup(queuedMessage.getGroup());
+            if (queuedMessage.isTargeted()) {
+                exportedMessage.setTargets(new HashSet<>(queuedMessage.getTargets()));
+            }
+            final Set<String> clientIds = seen.get(queuedMessage.getMessage().getId());
+            if (clientIds != null) {
+                exportedMessage.setSeenBy(new HashSet<>(clientIds));
+            }
+            final Set<String> consumerGroups = seenByConsumerGroups.get(queuedMessage.getMessage().getId());
+            if (consumerGroups != null) {
+                exportedMessage.setSeenByConsumerGroups(new HashSet<>(consumerGroups));
+            }
+            exported.add(exportedMessage);
+        }
+        return exported;
+    }
+
+    /**
+     * Available untargeted messages with the given Priority, in arrival order.
+     *
+     * @param priority Priority
+     * @return available messages
+     */
+    public Stream<Message> getAvailable(final Priority priority) {
+        return available.get(priority).values().stream().map(QueuedMessage::toMessage);
+    }
+
+    /**
+     * Finds an available or leased message by ID.
+     *
+     * @param id Message ID
+     * @return Message, or null if not found
+     */
+    public Message get(final Long id) {
+        final QueuedMessage queuedMessage = ids.get(id);
+        if (queuedMessage != null) {
+            return queuedMessage.toMessage();
+        }
+        final Lease lease = leases.get(id);
+        if (lease != null) {
+            return lease.getQueuedMessage().toMessage();
+        }
+        return null;
+    }
+
+    /**
+     * Removes an available message from the queue.
+     *
+     * @param message Message
+     * @return true if the message was available
+     */
+    public boolean remove(final Message message) {
+        seen.remove(message.getId());
+        seenByConsumerGroups.remove(message.getId());
+        final QueuedMessage queuedMessage = unindex(message.getId());
+        if (queuedMessage == null) {
+            return false;
+        }
+        queuedMessage.release();
+        return true;
+    }
+
+    /**
+     * Removes an available or leased message, along with any seen state referencing it.
+     *
+     * @param id Message ID
+     * @return cancelled Message, or null if not found
+     */
+    public Message cancel(final Long id) {
+        seen.remove(id);
+        seenByConsumerGroups.remove(id);
+        QueuedMessage queuedMessage = unindex(id);
+        if (queuedMessage == null) {
+            final Lease lease = leases.remove(id);
+            if (lease == null) {
+                return null;
+            }
+            leaseExpiries.remove(lease);
+            queuedMessage = lease.getQueuedMessage();
+            unblock(queuedMessage);
+        }
+        final Message message = queuedMessage.toMessage();
+        queuedMessage.release();
+        return message;
+    }
+
+    /**
+     * Denotes a message as having been seen by a caller.
+     *
+     * @param id Message ID
+     * @param clientId ClientID
+     */
+    public void markSeen(final Long id, final String clientId) {
+        markSeen(id, clientId, null);
+    }
+
+    /**
+     * Denotes a message as having been seen by a caller, or by the caller's consumer group if it is in one.
+     *
+     * @param id Message ID
+     * @param clientId ClientID
+     * @param consumerGroup consumer group, or null if the caller is not in one
+     */
+    public void markSeen(final Long id, final String clientId, final String consumerGroup) {
+        if (consumerGroup == null) {
+            seen.computeIfAbsent(id, key -> new HashSet<>()).add(clientId);
+        } else {
+            seenByConsumerGroups.computeIfAbsent(id, key -> new HashSet<>()).add(consumerGroup);
+        }
+    }
+
+    /**
+     * Whether a message has been seen by a caller.
+     *
+     * @param id Message ID
+     * @param clientId ClientID
+     * @return true if seen
+     */
+    public boolean isSeen(final Long id, final String clientId) {
+        return isSeen(id, clientId, null);
+    }
+
+    /**
+     * Whether a message has been seen by a caller, or by the caller's consumer group if it is in one.
+     *
+     * @param id Message ID
+     * @param clientId ClientID
+     * @param consumerGroup consumer group, or null if the caller is not in one
+     * @return true if seen
+     */
+    public boolean isSeen(final Long id, final String clientId, final String consumerGroup) {
+        if (consumerGroup == null) {
+            final Set<String> clientIds = seen.get(id);
+            return clientIds != null && clientIds.contains(clientId);
+        }
+        final Set<String> consumerGroups = seenByConsumerGroups.get(id);
+        return consumerGroups != null && consumerGroups.contains(consumerGroup);
+    }
+
+    /**
+     * Hides an available message from other callers until the lease is acknowledged or expires.
+     *
+     * @param message Message
+     * @param clientId ClientID
+     * @param deadline lease deadline, in epoch milliseconds
+     * @return Lease, or null if the message was not available
+     */
+    public Lease lease(final Message message, final String clientId, final long deadline) {
+        final QueuedMessage candidate = ids.get(message.getId());
+        if (candidate == null) {
+            return null;
+        }
+        if (candidate.isGrouped()) {
+            blocked.add(candidate.getGroup());
+        }
+        final QueuedMessage queuedMessage = unindex(message.getId());
+        final Lease lease = new Lease();
+        lease.setQueuedMessage(queuedMessage);
+        lease.setClientId(clientId);
+        lease.setDeadline(deadline);
+        leases.put(message.getId(), lease);
+        leaseExpiries.add(lease);
+        return lease;
+    }
+
+    /**
+     * Acknowledges a leased message, removing it permanently.
+     *
+     * @param id Message ID
+     * @return true if an outstanding lease was acknowledged
+     */
+    public boolean acknowledge(final Long id) {
+        final Lease lease = leases.remove(id);
+        if (lease == null) {
+            return false;
+        }
+        leaseExpiries.remove(lease);
+        unblock(lease.getQueuedMessage());
+        lease.getQueuedMessage().release();
+        return true;
+    }
+
+    /**
+     * Returns messages whose lease deadline has passed to their original queue position.
+     *
+     * @param now current time, in epoch milliseconds
+     * @return number of leases released
+     */
+    public int releaseExpiredLeases(final long now) {
+        int released = 0;
+        while (!leaseExpiries.isEmpty() && leaseExpiries.first().getDeadline() <= now) {
+            final Lease lease = leaseExpiries.pollFirst();
+            leases.remove(lease.getQueuedMessage().getMessage().getId());
+            blocked.remove(lease.getQueuedMessage().getGroup());
+            index(lease.getQueuedMessage());
+            released++;
+        }
+        return released;
+    }
+
+    /**
+     * Removes available messages whose expiration time has passed.
+     *
+     * @param now current time
+     * @return removed messages, without payloads held off-heap, which are freed without being read
+     */
+    public List<Message> removeExpired(final Instant now) {
+        return removeExpired(now, new EnumMap<>(Priority.class));
+    }
+
+    /**
+     * Removes available messages whose expiration time has passed, counting those which expired undelivered. A
+     * message for every client counts as delivered once any client or consumer group has seen it.
+     *
+     * @param now current time
+     * @param undelivered count of messages which expired undelivered by Priority, added to
+     * @return removed messages, without payloads held off-heap, which are freed without being read
+     */
+    public List<Message> removeExpired(final Instant now, final Map<Priority, Integer> undelivered) {
+        final List<Message> expired = new ArrayList<>();
+        while (!expirations.isEmpty() && expirations.first().getMessage().getExpirationTime().isBefore(now)) {
+            final QueuedMessage queuedMessage = expirations.first();
+            final Message message = queuedMessage.getMessage();
+            if (queuedMessage.isTargeted() || queuedMessage.isGrouped()
+                    || message.getNotificationType() != NotificationType.ALL
+                    || !seen.containsKey(message.getId()) && !seenByConsumerGroups.containsKey(message.getId())) {
+                undelivered.merge(message.getPriority(), 1, Integer::sum);
+            }
+            unindex(message.getId()).release();
+            seen.remove(message.getId());
+            seenByConsumerGroups.remove(message.getId());
+            expired.add(message);
+        }
+        return expired;
+    }
+
+    /**
+     * Next message deliverable to a caller, in priority then arrival order, without claiming it.
+     *
+     * @param notificationType NotificationType
+     * @param clientId ClientID, used to skip messages already seen by the caller
+     * @param now current time
+     * @return Message, or null if none is deliverable
+     */
+    public Message next(final NotificationType notificationType, final String clientId, final Instant now) {
+        return next(notificationType, clientId, now, DeliveryOrder.ARRIVAL);
+    }
+
+    /**
+     * Next message deliverable to a caller, in priority then the given order, without claiming it.
+     *
+     * @param notificationType NotificationType
+     * @param clientId ClientID, used to skip messages already seen by the caller
+     * @param now current time
+     * @param order DeliveryOrder within each Priority
+     * @return Message, or null if none is deliverable
+     */
+    public Message next(final NotificationType notificationType,
+                        final String clientId,
+                        final Instant now,
+                        final DeliveryOrder order) {
+        final QueuedMessage queuedMessage = nextQueued(notificationType, clientId, null, now, order, ALL_PRIORITIES);
+        if (queuedMessage == null) {
+            return null;
+        }
+        return queuedMessage.toMessage();
+    }
+
+    /**
+     * Claims the next deliverable message for a caller. A message for every client is marked as seen by the caller; a
+     * directed message is leased when a lease deadline is provided, and removed otherwise. A targeted message is
+     * taken out of the caller's inbox, and treated as a directed message once the caller is its last target. A grouped
+     * message is always treated as a directed message, so that each message of a group is delivered to one caller.
+     *
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param leaseDeadline lease deadline, in epoch milliseconds, or null for at-most-once delivery
+     * @param now current time
+     * @return claimed Message, or null if none is deliverable
+     */
+    public Message claim(final NotificationType notificationType,
+                         final String clientId,
+                         final Long leaseDeadline,
+                         final Instant now) {
+        return claim(notificationType, clientId, leaseDeadline, now, DeliveryOrder.ARRIVAL);
+    }
+
+    /**
+     * Claims the next deliverable message for a caller, in priority then the given order.
+     *
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param leaseDeadline lease deadline, in epoch milliseconds, or null for at-most-once delivery
+     * @param now current time
+     * @param order DeliveryOrder within each Priority
+     * @return claimed Message, or null if none is deliverable
+     * @see #claim(NotificationType, String, Long, Instant)
+     */
+    public Message claim(final NotificationType notificationType,
+                         final String clientId,
+                         final Long leaseDeadline,
+                         final Instant now,
+                         final DeliveryOrder order) {
+        return claim(notificationType, clientId, leaseDeadline, now, order, ALL_PRIORITIES);
+    }
+
+    /**
+     * Claims the next deliverable message with one of the given priorities for a caller, in priority then the given
+     * order.
+     *
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param leaseDeadline lease deadline, in epoch milliseconds, or null for at-most-once delivery
+     * @param now current time
+     * @param order DeliveryOrder within each Priority
+     * @param eligible Priority(s) claimed from
+     * @return claimed Message, or null if none is deliverable
+     * @see #claim(NotificationType, String, Long, Instant)
+     */
+    public Message claim(final NotificationType notificationType,
+                         final String clientId,
+                         final Long leaseDeadline,
+                         final Instant now,
+                         final DeliveryOrder order,
+                         final Set<Priority> eligible) {
+        return claim(notificationType, clientId, null, leaseDeadline, now, order, eligible);
+    }
+
+    /**
+     * Claims the next deliverable message with one of the given priorities for a caller in a consumer group, in
+     * priority then the given order. A message for every client is marked as seen by the consumer group rather than
+     * the caller, so that it is delivered to only one member of the group.
+     *
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param consumerGroup consumer group, or null if the caller is not in one
+     * @param leaseDeadline lease deadline, in epoch milliseconds, or null for at-most-once delivery
+     * @param now current time
+     * @param order DeliveryOrder within each Priority
+     * @param eligible Priority(s) claimed from
+     * @return claimed Message, or null if none is deliverable
+     * @see #claim(NotificationType, String, Long, Instant)
+     */
+    public Message claim(final NotificationType notificationType,
+                         final String clientId,
+                         final String consumerGroup,
+                         final Long leaseDeadline,
+                         final Instant now,
+                         final DeliveryOrder order,
+                         final Set<Priority> eligible) {
+        final QueuedMessage queuedMessage = nextQueued(notificationType, clientId, consumerGroup, now, order,
+                eligible);
+        if (queuedMessage == null) {
+            return null;
+        }
+        final Message message = queuedMessage.toMessage();
+        if (queuedMessage.isTargeted() && queuedMessage.getTargets().size() > 1) {
+            untarget(queuedMessage, clientId);
+        } else if (!queuedMessage.isTargeted() && !queuedMessage.isGrouped()
+                && message.getNotificationType() == NotificationType.ALL) {
+            markSeen(message.getId(), clientId, consumerGroup);
+        } else if (leaseDeadline != null) {
+            lease(message, clientId, leaseDeadline);
+        } else {
+            remove(message);
+        }
+        return message;
+    }
+
+    /**
+     * Next available untargeted messages in delivery order, without claiming them.
+     *
+     * @param count maximum number of messages to return
+     * @param notificationType NotificationType
+     * @param now current time
+     * @return messages
+     */
+    public List<Message> peek(final int count, final NotificationType notificationType, final Instant now) {
+        return peek(count, notificationType, now, DeliveryOrder.ARRIVAL);
+    }
+
+    /**
+     * Next available untargeted messages in priority then the given order, without claiming them.
+     *
+     * @param count maximum number of messages to return
+     * @param notificationType NotificationType
+     * @param now current time
+     * @param order DeliveryOrder within each Priority
+     * @return messages
+     */
+    public List<Message> peek(final int count,
+                              final NotificationType notificationType,
+                              final Instant now,
+                              final DeliveryOrder order) {
+        return peek(count, notificationType, now, order, ALL_PRIORITIES);
+    }
+
+    /**
+     * Next available untargeted messages with one of the given priorities, in priority then the given order, without
+     * claiming them.
+     *
+     * @param count maximum number of messages to return
+     * @param notificationType NotificationType
+     * @param now current time
+     * @param order DeliveryOrder within each Priority
+     * @param eligible Priority(s) read from
+     * @return messages
+     */
+    public List<Message> peek(final int count,
+                              final NotificationType notificationType,
+                              final Instant now,
+                              final DeliveryOrder order,
+                              final Set<Priority> eligible) {
+        final List<Message> messages = new ArrayList<>();
+        for (final Priority priority : DELIVERY_ORDER) {
+            if (!eligible.contains(priority)) {
+                continue;
+            }
+            candidates(priority, order, now).stream()
+                    .filter(queuedMessage -> isDeliverable(queuedMessage.getMessage(), notificationType, now))
+                    .limit(count - messages.size())
+                    .map(QueuedMessage::toMessage)
+                    .forEach(messages::add);
+            if (messages.size() >= count) {
+                break;
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Spills the payloads of the oldest available messages with the given Priority, leaving the messages at the head
+     * of the queue in memory.
+     *
+     * @param priority Priority
+     * @param resident number of messages at the head of the queue kept in memory
+     * @param limit most messages spilled
+     * @param store SpillStore
+     * @return number of messages spilled
+     */
+    public int spill(final Priority priority, final int resident, final int limit, final SpillStore store) {
+        int position = 0;
+        int spilled = 0;
+        for (final QueuedMessage queuedMessage : available.get(priority).values()) {
+            if (spilled >= limit) {
+                break;
+            }
+            if (position++ >= resident && queuedMessage.spill(store)) {
+                spilled++;
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * Current queue statistics.
+     *
+     * @param now current time, in epoch milliseconds
+     * @return QueueStats
+     */
+    public QueueStats getStats(final long now) {
+        final QueueStats stats = new QueueStats();
+        stats.setAvailable(ids.size());
+        stats.setLeased(leases.size());
+        stats.setTargeted(targeted.size());
+        stats.setInboxes(inboxes.size());
+        stats.setGroups(groups.size());
+        stats.setBlockedGroups(blocked.size());
+        QueuedMessage oldest = null;
+        if (!targeted.isEmpty()) {
+            oldest = targeted.firstEntry().getValue();
+        }
+        for (final Priority priority : DELIVERY_ORDER) {
+            final TreeMap<Long, QueuedMessage> messages = available.get(priority);
+            stats.getPriorities().put(priority, priorities.getOrDefault(priority, 0));
+            if (!messages.isEmpty()
+                    && (oldest == null || messages.firstEntry().getValue().getEnqueuedAt() < oldest.getEnqueuedAt())) {
+                oldest = messages.firstEntry().getValue();
+            }
+        }
+        stats.getNotificationTypes().putAll(notificationTypes);
+        if (oldest != null) {
+            stats.setOldestMessageAge(now - oldest.getEnqueuedAt());
+        }
+        if (!expirations.isEmpty()) {
+            stats.setNextExpiration(expirations.first().getMessage().getExpirationTime());
+        }
+        return stats;
+    }
+
+    /**
+     * Number of available messages.
+     *
+     * @return available message count
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Priorities of the available and leased messages.
+     *
+     * @return Priority(s)
+     */
+    public Set<Priority> heldPriorities() {
+        final Set<Priority> held = EnumSet.noneOf(Priority.class);
+        held.addAll(priorities.keySet());
+        leases.values().forEach(lease -> held.add(lease.getQueuedMessage().getMessage().getPriority()));
+        return held;
+    }
+
+    /**
+     * Clients with the most targeted messages waiting in their inbox.
+     *
+     * @param limit most clients returned
+     * @return inbox size by ClientID
+     */
+    public Map<String, Integer> largestInboxes(final int limit) {
+        final PriorityQueue<Map.Entry<String, TreeSet<QueuedMessage>>> largest =
+                new PriorityQueue<>(Comparator.comparingInt(inbox -> inbox.getValue().size()));
+        for (final Map.Entry<String, TreeSet<QueuedMessage>> inbox : inboxes.entrySet()) {
+            largest.add(inbox);
+            if (largest.size() > limit) {
+                largest.poll();
+            }
+        }
+        final Map<String, Integer> sizes = new HashMap<>();
+        largest.forEach(inbox -> sizes.put(inbox.getKey(), inbox.getValue().size()));
+        return sizes;
+    }
+
+    /**
+     * Whether the queue holds neither available nor leased messages.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return ids.isEmpty() && leases.isEmpty();
+    }
+
+    /**
+     * Next queued message deliverable to a caller, in priority then the given order. At each Priority, the caller's
+     * inbox, which is always in arrival order, comes before the shared queue.
+     *
+     * @param notificationType NotificationType
+     * @param clientId ClientID, used to find the caller's inbox and to skip messages already seen by the caller
+     * @param consumerGroup consumer group, used instead of the ClientID to skip messages already seen, or null
+     * @param now current time
+     * @param order DeliveryOrder within each Priority
+     * @param eligible Priority(s) considered
+     * @return QueuedMessage, or null if none is deliverable
+     */
+    private QueuedMessage nextQueued(final NotificationType notificationType,
+                                     final String clientId,
+                                     final String consumerGroup,
+                                     final Instant now,
+                                     final DeliveryOrder order,
+                                     final Set<Priority> eligible) {
+        final QueuedMessage inboxed = nextInboxed(notificationType, clientId, now, eligible);
+        for (final Priority priority : DELIVERY_ORDER) {
+            if (!eligible.contains(priority)) {
+                continue;
+            }
+            if (inboxed != null && inboxed.getMessage().getPriority() == priority) {
+                return inboxed;
+            }
+            final QueuedMessage queuedMessage = candidates(priority, order, now).stream()
+                    .filter(candidate -> isDeliverable(candidate.getMessage(), notificationType, now))
+                    .filter(candidate -> !isSeen(candidate.getMessage().getId(), clientId, consumerGroup))
+                    .findFirst()
+                    .orElse(null);
+            if (queuedMessage != null) {
+                if (queuedMessage.isSpilled()) {
+                    pageIn(priority, queuedMessage.getSequence());
+                }
+                return queuedMessage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Available messages with the given Priority in delivery order. In deadline order, messages which have already
+     * expired are skipped through the index rather than one by one.
+     *
+     * @param priority Priority
+     * @param order DeliveryOrder
+     * @param now current time
+     * @return QueuedMessage(s)
+     */
+    private Collection<QueuedMessage> candidates(final Priority priority,
+                                                 final DeliveryOrder order,
+                                                 final Instant now) {
+        if (order == DeliveryOrder.DEADLINE) {
+            final QueuedMessage expiring = new QueuedMessage();
+            expiring.setSequence(Long.MAX_VALUE);
+            expiring.setMessage(new Message());
+            expiring.getMessage().setExpirationTime(now);
+            return deadlines.get(priority).tailSet(expiring, false);
+        }
+        return available.get(priority).values();
+    }
+
+    /**
+     * Makes a message available in the shared queue.
+     *
+     * @param queuedMessage QueuedMessage
+     */
+    private void share(final QueuedMessage queuedMessage) {
+        final Priority priority = queuedMessage.getMessage().getPriority();
+        available.get(priority).put(queuedMessage.getSequence(), queuedMessage);
+        deadlines.get(priority).add(queuedMessage);
+    }
+
+    /**
+     * Takes a message out of the shared queue, if it is there.
+     *
+     * @param queuedMessage QueuedMessage
+     */
+    private void unshare(final QueuedMessage queuedMessage) {
+        final Priority priority = queuedMessage.getMessage().getPriority();
+        if (available.get(priority).remove(queuedMessage.getSequence()) != null) {
+            deadlines.get(priority).remove(queuedMessage);
+        }
+    }
+
+    /**
+     * Creates a queued message at the end of the queue and indexes it.
+     *
+     * @param message Message
+     * @param targets ClientID(s) the message is targeted at, or null for any client
+     * @param group group key, or null if the message is not grouped
+     * @param enqueuedAt time the message was enqueued, in epoch milliseconds
+     * @return QueuedMessage
+     */
+    private QueuedMessage enqueue(final Message message,
+                                  final Set<String> targets,
+                                  final String group,
+                                  final long enqueuedAt) {
+        final QueuedMessage queuedMessage = new QueuedMessage();
+        queuedMessage.setSequence(nextSequence++);
+        queuedMessage.setEnqueuedAt(enqueuedAt);
+        queuedMessage.setMessage(message);
+        if (targets != null && !targets.isEmpty()) {
+            queuedMessage.setTargets(new HashSet<>(targets));
+        } else {
+            queuedMessage.setGroup(group);
+        }
+        queuedMessage.moveOffHeap();
+        index(queuedMessage);
+        return queuedMessage;
+    }
+
+    /**
+     * Offers messages in queue order to an export page, stopping once the rest would fall after a full page.
+     *
+     * @param page export page, by queue sequence
+     * @param messages messages in queue order
+     * @param limit most messages in the page
+     */
+    private static void collect(final TreeMap<Long, QueuedMessage> page,
+                                final Iterable<QueuedMessage> messages,
+                                final int limit) {
+        for (final QueuedMessage queuedMessage : messages) {
+            if (!offer(page, queuedMessage, limit)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Offers a message to an export page, keeping only the earliest messages once the page is full.
+     *
+     * @param page export page, by queue sequence
+     * @param queuedMessage QueuedMessage
+     * @param limit most messages in the page
+     * @return false if the message falls after a full page
+     */
+    private static boolean offer(final TreeMap<Long, QueuedMessage> page,
+                                 final QueuedMessage queuedMessage,
+                                 final int limit) {
+        if (page.size() >= limit && queuedMessage.getSequence() > page.lastKey()) {
+            return false;
+        }
+        page.put(queuedMessage.getSequence(), queuedMessage);
+        if (page.size() > limit) {
+            page.pollLastEntry();
+        }
+        return true;
+    }
+
+    /**
+     * Next message with one of the given priorities in a caller's inbox deliverable to it, in priority then arrival
+     * order.
+     *
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param now current time
+     * @param eligible Priority(s) considered
+     * @return QueuedMessage, or null if none is deliverable
+     */
+    private QueuedMessage nextInboxed(final NotificationType notificationType,
+                                      final String clientId,
+                                      final Instant now,
+                                      final Set<Priority> eligible) {
+        final TreeSet<QueuedMessage> inbox = inboxes.get(clientId);
+        if (inbox == null) {
+            return null;
+        }
+        for (final QueuedMessage candidate : inbox) {
+            if (eligible.contains(candidate.getMessage().getPriority())
+                    && isDeliverable(candidate.getMessage(), notificationType, now)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes a targeted message out of one target's inbox, leaving it queued for its other targets.
+     *
+     * @param queuedMessage QueuedMessage
+     * @param clientId ClientID
+     */
+    private void untarget(final QueuedMessage queuedMessage, final String clientId) {
+        queuedMessage.getTargets().remove(clientId);
+        removeFromInbox(clientId, queuedMessage);
+    }
+
+    /**
+     * Removes a message from a client's inbox, dropping the inbox once it is empty.
+     *
+     * @param clientId ClientID
+     * @param queuedMessage QueuedMessage
+     */
+    private void removeFromInbox(final String clientId, final QueuedMessage queuedMessage) {
+        final TreeSet<QueuedMessage> inbox = inboxes.get(clientId);
+        if (inbox != null && inbox.remove(queuedMessage) && inbox.isEmpty()) {
+            inboxes.remove(clientId);
+        }
+    }
+
+    /**
+     * Pages spilled messages back in, starting at the given queue position.
+     *
+     * @param priority Priority
+     * @param sequence sequence of the first message
+     */
+    private void pageIn(final Priority priority, final long sequence) {
+        available.get(priority).tailMap(sequence, true).values().stream()
+                .limit(PAGE_IN_BATCH)
+                .forEach(QueuedMessage::pageIn);
+    }
+
+    /**
+     * Whether a message is unexpired and matches the requested NotificationType.
+     *
+     * @param message Message
+     * @param notificationType NotificationType
+     * @param now current time
+     * @return true if deliverable
+     */
+    private static boolean isDeliverable(final Message message,
+                                         final NotificationType notificationType,
+                                         final Instant now) {
+        return message.getExpirationTime().isAfter(now)
+                && (message.getNotificationType() == notificationType
+                || message.getNotificationType() == NotificationType.ALL);
+    }
+
+    /**
+     * Makes a queued message available.
+     *
+     * @param queuedMessage QueuedMessage
+     */
+    private void index(final QueuedMessage queuedMessage) {
+        final Message message = queuedMessage.getMessage();
+        if (queuedMessage.isTargeted()) {
+            targeted.put(queuedMessage.getSequence(), queuedMessage);
+            for (final String target : queuedMessage.getTargets()) {
+                inboxes.computeIfAbsent(target, key -> new TreeSet<>(new QueuedMessage.DeliveryComparator()))
+                        .add(queuedMessage);
+            }
+        } else if (queuedMessage.isGrouped()) {
+            groups.computeIfAbsent(queuedMessage.getGroup(), key -> new TreeMap<>())
+                    .put(queuedMessage.getSequence(), queuedMessage);
+            promote(queuedMessage.getGroup());
+        } else {
+            share(queuedMessage);
+        }
+        ids.put(message.getId(), queuedMessage);
+        expirations.add(queuedMessage);
+        priorities.merge(message.getPriority(), 1, Integer::sum);
+        notificationTypes.merge(message.getNotificationType(), 1, Integer::sum);
+    }
+
+    /**
+     * Makes a queued message unavailable.
+     *
+     * @param id Message ID
+     * @return QueuedMessage, or null if the message was not available
+     */
+    private QueuedMessage unindex(final Long id) {
+        final QueuedMessage queuedMessage = ids.remove(id);
+        if (queuedMessage == null) {
+            return null;
+        }
+        final Message message = queuedMessage.getMessage();
+        if (queuedMessage.isTargeted()) {
+            targeted.remove(queuedMessage.getSequence());
+            for (final String target : queuedMessage.getTargets()) {
+                removeFromInbox(target, queuedMessage);
+            }
+        } else if (queuedMessage.isGrouped()) {
+            unshare(queuedMessage);
+            final TreeMap<Long, QueuedMessage> group = groups.get(queuedMessage.getGroup());
+            group.remove(queuedMessage.getSequence());
+            if (group.isEmpty()) {
+                groups.remove(queuedMessage.getGroup());
+            } else {
+                promote(queuedMessage.getGroup());
+            }
+        } else {
+            unshare(queuedMessage);
+        }
+        expirations.remove(queuedMessage);
+        decrement(priorities, message.getPriority());
+        decrement(notificationTypes, message.getNotificationType());
+        return queuedMessage;
+    }
+
+    /**
+     * Makes the first message of a group available in the shared queue, unless the group is blocked by a lease.
+     *
+     * @param group group key
+     */
+    private void promote(final String group) {
+        final TreeMap<Long, QueuedMessage> messages = groups.get(group);
+        if (messages == null || blocked.contains(group)) {
+            return;
+        }
+        share(messages.firstEntry().getValue());
+    }
+
+    /**
+     * Releases the group of a message leaving its lease, making the group's next message available.
+     *
+     * @param queuedMessage QueuedMessage
+     */
+    private void unblock(final QueuedMessage queuedMessage) {
+        if (queuedMessage.isGrouped() && blocked.remove(queuedMessage.getGroup())) {
+            promote(queuedMessage.getGroup());
+        }
+    }
+
+    /**
+     * Decrements a count, removing it once it reaches zero.
+     *
+     * @param counts counts
+     * @param key key
+     * @param <K> key type
+     */
+    private static <K> void decrement(final Map<K, Integer> counts, final K key) {
+        counts.computeIfPresent(key, (k, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            return null;
+        });
+    }
+}
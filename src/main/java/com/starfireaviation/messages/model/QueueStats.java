@@ -0,0 +1,114 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.model;
+
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * Point-in-time statistics for an organization's queue.
+ */
+@Data
+public class QueueStats implements Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of messages available for delivery.
+     */
+    private int available;
+
+    /**
+     * Number of messages currently leased to callers.
+     */
+    private int leased;
+
+    /**
+     * Number of available messages targeted at specific clients.
+     */
+    private int targeted;
+
+    /**
+     * Number of clients with targeted messages waiting in their inbox.
+     */
+    private int inboxes;
+
+    /**
+     * Number of groups with available messages.
+     */
+    private int groups;
+
+    /**
+     * Number of groups held back by a leased message.
+     */
+    private int blockedGroups;
+
+    /**
+     * Available message count by Priority.
+     */
+    private Map<Priority, Integer> priorities = new EnumMap<>(Priority.class);
+
+    /**
+     * Available message count by NotificationType.
+     */
+    private Map<NotificationType, Integer> notificationTypes = new EnumMap<>(NotificationType.class);
+
+    /**
+     * Age of the oldest available message, in milliseconds, or null if none are available.
+     */
+    private Long oldestMessageAge;
+
+    /**
+     * Earliest expiration time of any available message, or null if none are available.
+     */
+    private Instant nextExpiration;
+
+    /**
+     * Adds the statistics of another queue of the same organization, such as one in another durability tier.
+     *
+     * @param other QueueStats
+     * @return this QueueStats
+     */
+    public QueueStats add(final QueueStats other) {
+        available += other.available;
+        leased += other.leased;
+        targeted += other.targeted;
+        inboxes += other.inboxes;
+        groups += other.groups;
+        blockedGroups += other.blockedGroups;
+        other.priorities.forEach((priority, count) -> priorities.merge(priority, count, Integer::sum));
+        other.notificationTypes.forEach((type, count) -> notificationTypes.merge(type, count, Integer::sum));
+        if (other.oldestMessageAge != null
+                && (oldestMessageAge == null || other.oldestMessageAge > oldestMessageAge)) {
+            oldestMessageAge = other.oldestMessageAge;
+        }
+        if (other.nextExpiration != null
+                && (nextExpiration == null || other.nextExpiration.isBefore(nextExpiration))) {
+            nextExpiration = other.nextExpiration;
+        }
+        return this;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.model;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.arena.PayloadArena;
+import com.starfireaviation.messages.spill.SpillStore;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Set;
+import lombok.Data;
+
+/**
+ * Message along with the bookkeeping needed to keep it in its queue position.
+ *
+ * When a PayloadArena is installed, the payload is held off-heap and the message kept here carries only the metadata
+ * used for ordering and filtering. The payload is written inline when the queue is serialized, and stored in the
+ * receiving process's arena when it is deserialized.
+ *
+ * A cold message's payload may instead be spilled to a SpillStore, and paged back in before the message is delivered.
+ * Spilled payloads are likewise written inline, and kept in memory by the receiving process.
+ *
+ * A targeted message carries the clients it is still to be delivered to, and is queued in each of their inboxes
+ * rather than in the organization's shared queue.
+ *
+ * A grouped message carries its group key, and only enters the shared queue once the messages before it in its group
+ * have been delivered.
+ */
+@Data
+public class QueuedMessage implements Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Queue sequence, assigned in arrival order.
+     */
+    private long sequence;
+
+    /**
+     * Time the message was enqueued, in epoch milliseconds.
+     */
+    private long enqueuedAt;
+
+    /**
+     * Message, without its payload if the payload is held off-heap.
+     */
+    private Message message;
+
+    /**
+     * Clients the message is still to be delivered to, or null if it is not targeted.
+     */
+    private Set<String> targets;
+
+    /**
+     * Group the message is delivered in order within, or null if it is not grouped.
+     */
+    private String group;
+
+    /**
+     * Off-heap payload, or null if the payload is part of the message.
+     */
+    private transient PayloadArena.Allocation offHeapPayload;
+
+    /**
+     * Spilled payload, or null if the payload is held in memory.
+     */
+    private transient SpillStore.Record spilledPayload;
+
+    /**
+     * Moves the payload into the installed PayloadArena, if there is one and it accepts the payload. The message is
+     * replaced by a copy without the payload, so the caller's message is left untouched.
+     */
+    public void moveOffHeap() {
+        final PayloadArena arena = PayloadArena.getInstance();
+        if (arena == null || message.getPayload() == null) {
+            return;
+        }
+        final PayloadArena.Allocation allocation =
+                arena.allocate(message.getPayload().getBytes(StandardCharsets.UTF_8));
+        if (allocation != null) {
+            offHeapPayload = allocation;
+            message = copy(message, null);
+        }
+    }
+
+    /**
+     * Writes the payload to a SpillStore, freeing the memory it occupied. Messages without a payload, or whose payload
+     * the store refuses, are left as they are.
+     *
+     * @param store SpillStore
+     * @return true if the payload was spilled
+     */
+    public boolean spill(final SpillStore store) {
+        final byte[] payload = getPayloadBytes();
+        if (spilledPayload != null || payload == null) {
+            return false;
+        }
+        final SpillStore.Record record = store.write(payload);
+        if (record == null) {
+            return false;
+        }
+        release();
+        spilledPayload = record;
+        message = copy(message, null);
+        return true;
+    }
+
+    /**
+     * Reads a spilled payload back into memory, off-heap if an arena accepts it.
+     */
+    public void pageIn() {
+        if (spilledPayload == null) {
+            return;
+        }
+        final String payload = new String(spilledPayload.read(), StandardCharsets.UTF_8);
+        spilledPayload.free();
+        spilledPayload = null;
+        message = copy(message, payload);
+        moveOffHeap();
+    }
+
+    /**
+     * Whether the payload is spilled to disk.
+     *
+     * @return true if spilled
+     */
+    public boolean isSpilled() {
+        return spilledPayload != null;
+    }
+
+    /**
+     * Whether the message is targeted at specific clients.
+     *
+     * @return true if targeted
+     */
+    public boolean isTargeted() {
+        return targets != null;
+    }
+
+    /**
+     * Whether the message belongs to a group delivered in order.
+     *
+     * @return true if grouped
+     */
+    public boolean isGrouped() {
+        return group != null;
+    }
+
+    /**
+     * Message with its payload, read back from the arena or from disk if it is not part of the message.
+     *
+     * @return Message
+     */
+    public Message toMessage() {
+        if (offHeapPayload == null && spilledPayload == null) {
+            return message;
+        }
+        return copy(message, new String(getPayloadBytes(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Frees the off-heap or spilled payload once the message has left the queue for good.
+     */
+    public void release() {
+        if (offHeapPayload != null) {
+            offHeapPayload.free();
+            offHeapPayload = null;
+        }
+        if (spilledPayload != null) {
+            spilledPayload.free();
+            spilledPayload = null;
+        }
+    }
+
+    /**
+     * Payload bytes, wherever the payload is held.
+     *
+     * @return payload, or null if the message has none
+     */
+    private byte[] getPayloadBytes() {
+        if (offHeapPayload != null) {
+            return offHeapPayload.read();
+        }
+        if (spilledPayload != null) {
+            return spilledPayload.read();
+        }
+        if (message.getPayload() == null) {
+            return null;
+        }
+        return message.getPayload().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (offHeapPayload == null && spilledPayload == null) {
+            out.writeObject(null);
+        } else {
+            out.writeObject(getPayloadBytes());
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final byte[] payload = (byte[]) in.readObject();
+        if (payload != null) {
+            final PayloadArena arena = PayloadArena.getInstance();
+            if (arena != null) {
+                offHeapPayload = arena.allocate(payload);
+            }
+            if (offHeapPayload == null) {
+                message.setPayload(new String(payload, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static Message copy(final Message source, final String payload) {
+        final Message copy = new Message();
+        copy.setId(source.getId());
+        copy.setPriority(source.getPriority());
+        copy.setNotificationType(source.getNotificationType());
+        copy.setExpirationTime(source.getExpirationTime());
+        copy.setPayload(payload);
+        return copy;
+    }
+
+    /**
+     * Orders queued messages by expiration time, then by sequence.
+     */
+    public static class ExpirationComparator implements Comparator<QueuedMessage>, Serializable {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Compares two queued messages by expiration time, then by sequence.
+         *
+         * @param first QueuedMessage
+         * @param second QueuedMessage
+         * @return comparison result
+         */
+        @Override
+        public int compare(final QueuedMessage first, final QueuedMessage second) {
+            final int result = first.getMessage().getExpirationTime()
+                    .compareTo(second.getMessage().getExpirationTime());
+            if (result != 0) {
+                return result;
+            }
+            return Long.compare(first.getSequence(), second.getSequence());
+        }
+    }
+
+    /**
+     * Orders queued messages by Priority, in delivery order, then by sequence.
+     */
+    public static class DeliveryComparator implements Comparator<QueuedMessage>, Serializable {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Compares two queued messages by Priority, then by sequence.
+         *
+         * @param first QueuedMessage
+         * @param second QueuedMessage
+         * @return comparison result
+         */
+        @Override
+        public int compare(final QueuedMessage first, final QueuedMessage second) {
+            final int result = first.getMessage().getPriority().compareTo(second.getMessage().getPriority());
+            if (result != 0) {
+                return result;
+            }
+            return Long.compare(first.getSequence(), second.getSequence());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.model;
+
+import com.starfireaviation.common.model.NotificationType;
+import java.io.Serializable;
+import lombok.Data;
+
+/**
+ * Callback endpoint registered by a client to have its messages pushed rather than polled.
+ *
+ * Pushed messages are claimed exactly as by a GET from the same client: with ack or a lease, each batch is leased and
+ * acknowledged once the endpoint accepts it, otherwise it is removed when claimed.
+ */
+@Data
+public class Subscription implements Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ClientID the messages are claimed for.
+     */
+    private String clientId;
+
+    /**
+     * Endpoint each batch is POSTed to, as a JSON array of messages.
+     */
+    private String url;
+
+    /**
+     * NotificationType to deliver, or null for all.
+     */
+    private NotificationType notificationType;
+
+    /**
+     * Largest number of messages sent in one request.
+     */
+    private int batchSize = 1;
+
+    /**
+     * Whether messages are leased until the endpoint accepts them.
+     */
+    private boolean ack;
+
+    /**
+     * Lease duration, in seconds, or null for at-most-once delivery.
+     */
+    private Long lease;
+}
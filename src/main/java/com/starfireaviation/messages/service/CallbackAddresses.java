@@ -0,0 +1,176 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service;
+
+import com.starfireaviation.messages.config.ApplicationProperties;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which hosts push destinations may address.
+ *
+ * Unless a host is allowed, a destination may not reach the deployment's own network: wildcard, loopback, link-local
+ * (which includes cloud metadata endpoints), private, unique local, shared (carrier-grade NAT) and multicast addresses
+ * are refused. Literal addresses and localhost are refused when a subscription is registered, without resolving
+ * anything. Host names are resolved and checked before every request, which also covers subscriptions registered
+ * before the settings changed and names whose records change after registration.
+ */
+public final class CallbackAddresses {
+
+    /**
+     * Name of the local host.
+     */
+    private static final String LOCALHOST = "localhost";
+
+    /**
+     * Prefix of an allowed host entry matching every subdomain.
+     */
+    private static final String WILDCARD = "*.";
+
+    /**
+     * Hosts which are literal IPv4 addresses, in any of the forms InetAddress parses without a lookup.
+     */
+    private static final Pattern IPV4_LITERAL = Pattern.compile("[0-9.]+");
+
+    /**
+     * Mask of the fc00::/7 unique local prefix over the first byte.
+     */
+    private static final int UNIQUE_LOCAL_MASK = 0xFE;
+
+    /**
+     * First byte of a unique local IPv6 address.
+     */
+    private static final int UNIQUE_LOCAL_PREFIX = 0xFC;
+
+    /**
+     * First byte of the 100.64.0.0/10 shared address space.
+     */
+    private static final int SHARED_FIRST_OCTET = 100;
+
+    /**
+     * Mask of the 100.64.0.0/10 shared address space over the second byte.
+     */
+    private static final int SHARED_MASK = 0xC0;
+
+    /**
+     * Second byte of the 100.64.0.0/10 shared address space, once masked.
+     */
+    private static final int SHARED_SECOND_OCTET = 0x40;
+
+    /**
+     * CallbackAddresses.
+     */
+    private CallbackAddresses() {
+    }
+
+    /**
+     * Whether a subscription may be registered for a URL, decided without resolving its host.
+     *
+     * @param uri absolute destination URL
+     * @param push push settings
+     * @return true if the host is allowed, or is a name which can only be checked once resolved
+     */
+    public static boolean isRegistrable(final URI uri, final ApplicationProperties.Push push) {
+        final String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (isListed(host, push)) {
+            return true;
+        }
+        if (!push.getAllowedHosts().isEmpty()) {
+            return false;
+        }
+        if (push.isAllowPrivateAddresses()) {
+            return true;
+        }
+        if (LOCALHOST.equals(host) || host.endsWith("." + LOCALHOST)) {
+            return false;
+        }
+        if (!host.startsWith("[") && !IPV4_LITERAL.matcher(host).matches()) {
+            return true;
+        }
+        try {
+            return !isInternal(InetAddress.getByName(host));
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks a destination just before a request is sent to it, resolving its host unless it is allowed.
+     *
+     * The lookup goes through the JVM's address cache, which the HTTP client's own lookup then hits, so the request
+     * connects to an address that was checked.
+     *
+     * @param uri absolute destination URL
+     * @param push push settings
+     * @throws IOException if the host cannot be resolved or addresses a network it may not reach
+     */
+    static void check(final URI uri, final ApplicationProperties.Push push) throws IOException {
+        if (!isRegistrable(uri, push)) {
+            throw new IOException("Destination host " + uri.getHost() + " is not allowed");
+        }
+        if (isListed(uri.getHost().toLowerCase(Locale.ROOT), push) || push.isAllowPrivateAddresses()) {
+            return;
+        }
+        for (final InetAddress address : InetAddress.getAllByName(uri.getHost())) {
+            if (isInternal(address)) {
+                throw new IOException("Destination host " + uri.getHost() + " resolves to internal address "
+                        + address.getHostAddress());
+            }
+        }
+    }
+
+    /**
+     * Whether an address belongs to a network a destination may not reach unless allowed.
+     *
+     * @param address InetAddress
+     * @return true for wildcard, loopback, link-local, private, unique local, shared and multicast addresses
+     */
+    static boolean isInternal(final InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        final byte[] bytes = address.getAddress();
+        if (address instanceof Inet6Address) {
+            return (bytes[0] & UNIQUE_LOCAL_MASK) == UNIQUE_LOCAL_PREFIX;
+        }
+        return bytes[0] == 0 || bytes[0] == SHARED_FIRST_OCTET && (bytes[1] & SHARED_MASK) == SHARED_SECOND_OCTET;
+    }
+
+    /**
+     * Whether a host is on the allow-list.
+     *
+     * @param host lower case host
+     * @param push push settings
+     * @return true if an entry names the host, or is a wildcard over one of its parent domains
+     */
+    private static boolean isListed(final String host, final ApplicationProperties.Push push) {
+        for (final String entry : push.getAllowedHosts()) {
+            final String allowed = entry.toLowerCase(Locale.ROOT);
+            if (allowed.equals(host)
+                    || allowed.startsWith(WILDCARD) && host.endsWith(allowed.substring(1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service;
+
+import com.hazelcast.map.IMap;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.model.MessageQueue;
+import com.starfireaviation.messages.service.processor.BatchClaimProcessor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coalesces concurrent claims for the same organization into batched claims.
+ *
+ * At most one claim operation per organization is in flight from this node. Claims arriving in the meantime wait and
+ * are submitted together as a single BatchClaimProcessor once it completes, in arrival order. Under contention the
+ * number of storage round trips therefore follows the number of batches rather than the number of callers, while an
+ * uncontended claim is submitted straight away on its own.
+ *
+ * The next batch is submitted from an executor rather than from the completion of the previous one, so a batch which
+ * completes straight away does not submit the next one inline. A batch which fails, including one which cannot be
+ * submitted at all, fails each of its callers and the organization moves on to its next batch. Once the executor
+ * has been shut down, the next batch is submitted inline instead, so that claims made while closing still complete.
+ */
+@Slf4j
+final class ClaimCoalescer {
+
+    /**
+     * Messages map.
+     */
+    private final IMap<String, MessageQueue> map;
+
+    /**
+     * Largest number of claims submitted in one batch.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * Submits each organization's next batch.
+     */
+    private final Executor executor;
+
+    /**
+     * Claims waiting for the in-flight batch to complete, per organization. An organization has an entry, possibly
+     * empty, exactly while one of its batches is in flight. Deques are only accessed within compute calls.
+     */
+    private final ConcurrentMap<String, Deque<Waiter>> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * Number of batches submitted.
+     */
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * ClaimCoalescer.
+     *
+     * @param messages messages map
+     * @param batchSize largest number of claims submitted in one batch
+     * @param background submits each organization's next batch
+     */
+    ClaimCoalescer(final IMap<String, MessageQueue> messages, final int batchSize, final Executor background) {
+        map = messages;
+        maxBatchSize = batchSize;
+        executor = background;
+    }
+
+    /**
+     * Claims a message, joining the organization's next batch if one is in flight.
+     *
+     * @param organization Organization
+     * @param claim Claim
+     * @return claimed Message, or null if none is deliverable
+     */
+    CompletionStage<Message> claim(final String organization, final BatchClaimProcessor.Claim claim) {
+        final Waiter waiter = new Waiter(claim);
+        final boolean[] idle = new boolean[1];
+        waiting.compute(organization, (key, queue) -> {
+            Deque<Waiter> waiters = queue;
+            if (waiters == null) {
+                waiters = new ArrayDeque<>();
+                idle[0] = true;
+            }
+            waiters.add(waiter);
+            return waiters;
+        });
+        if (idle[0]) {
+            submit(organization);
+        }
+        return waiter.result;
+    }
+
+    /**
+     * Whether no batch is in flight.
+     *
+     * @return true if idle
+     */
+    boolean isIdle() {
+        return waiting.isEmpty();
+    }
+
+    /**
+     * Number of batches submitted so far.
+     *
+     * @return batch count
+     */
+    long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Submits the organization's waiting claims as one batch, or marks the organization idle if none are waiting.
+     *
+     * @param organization Organization
+     */
+    private void submit(final String organization) {
+        final List<Waiter> batch = new ArrayList<>();
+        waiting.computeIfPresent(organization, (key, waiters) -> {
+            while (!waiters.isEmpty() && batch.size() < maxBatchSize) {
+                batch.add(waiters.poll());
+            }
+            if (batch.isEmpty()) {
+                return null;
+            }
+            return waiters;
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.increment();
+        log.debug("Claiming {} message(s) for organization: {}", batch.size(), organization);
+        final List<BatchClaimProcessor.Claim> claims = batch.stream().map(waiter -> waiter.claim).toList();
+        final CompletionStage<List<Message>> claimed;
+        try {
+            claimed = map.submitToKey(organization, new BatchClaimProcessor(claims, System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            complete(organization, batch, null, e);
+            return;
+        }
+        claimed.whenComplete((messages, error) -> complete(organization, batch, messages, error));
+    }
+
+    /**
+     * Completes a batch's callers, then hands the organization's next batch to the executor.
+     *
+     * @param organization Organization
+     * @param batch callers in the batch
+     * @param messages claimed Messages, positionally matching the batch, or null if the batch failed
+     * @param error failure, or null if the batch succeeded
+     */
+    private void complete(final String organization,
+                          final List<Waiter> batch,
+                          final List<Message> messages,
+                          final Throwable error) {
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                if (error != null) {
+                    batch.get(i).result.completeExceptionally(error);
+                } else {
+                    batch.get(i).result.complete(messages.get(i));
+                }
+            }
+        } finally {
+            try {
+                executor.execute(() -> submit(organization));
+            } catch (RejectedExecutionException e) {
+                submit(organization);
+            }
+        }
+    }
+
+    /**
+     * A caller waiting for its claim.
+     */
+    private static final class Waiter {
+
+        /**
+         * Claim.
+         */
+        private final BatchClaimProcessor.Claim claim;
+
+        /**
+         * Claimed message.
+         */
+        private final CompletableFuture<Message> result = new CompletableFuture<>();
+
+        private Waiter(final BatchClaimProcessor.Claim c) {
+            claim = c;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service;
+
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.model.Durability;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Data;
+
+/**
+ * Assigns an organization's messages to durability tiers, and plans the order in which the tiers are read so that
+ * messages are still delivered in priority order across them.
+ *
+ * Grouped messages are all kept in one tier, whatever their priority, so that each group is still delivered in order
+ * and one message at a time. That tier is therefore read for every priority.
+ *
+ * Priorities are visited from highest to lowest, visiting each tier that may hold the priority. Consecutive visits
+ * to the same tier are read from it together. With every priority in one tier, which is also the case for an
+ * organization with its own tier, a read therefore takes a single visit.
+ *
+ * Messages stored before the tiers were last changed may be held in a tier no longer assigned to their priority or
+ * organization. The priorities each organization holds in each tier are therefore found periodically, and tiers
+ * holding priorities they are not assigned are read for those priorities too, in priority order, until they are
+ * found empty.
+ */
+final class DurabilityTiers {
+
+    /**
+     * Priorities, in the order they are delivered.
+     */
+    private static final Priority[] DELIVERY_ORDER = {Priority.HIGH, Priority.NORMAL, Priority.LOW};
+
+    /**
+     * Durability by Priority.
+     */
+    private final Map<Priority, Durability> priorities = new EnumMap<>(Priority.class);
+
+    /**
+     * Durability of grouped messages, for organizations without their own tier.
+     */
+    private final Durability groups;
+
+    /**
+     * Durability by organization, for organizations with their own tier.
+     */
+    private final Map<String, Durability> organizations;
+
+    /**
+     * Visits for organizations without their own tier.
+     */
+    private final List<Visit> plan;
+
+    /**
+     * Visits for organizations with their own tier.
+     */
+    private final Map<Durability, List<Visit>> single = new EnumMap<>(Durability.class);
+
+    /**
+     * Visits for organizations last found holding messages in tiers not assigned to them, by organization.
+     */
+    private volatile Map<String, List<Visit>> strays = Map.of();
+
+    /**
+     * DurabilityTiers.
+     *
+     * @param tiers durability tier settings
+     */
+    DurabilityTiers(final ApplicationProperties.Tiers tiers) {
+        for (final Priority priority : Priority.values()) {
+            priorities.put(priority, tiers.getPriorities().getOrDefault(priority, Durability.SYNC));
+        }
+        groups = tiers.getGroups();
+        organizations = new HashMap<>(tiers.getOrganizations());
+        plan = plan(reads(null));
+        for (final Durability durability : Durability.values()) {
+            single.put(durability, List.of(new Visit(durability, EnumSet.allOf(Priority.class))));
+        }
+    }
+
+    /**
+     * Tier a message is stored in.
+     *
+     * @param organization Organization
+     * @param priority message Priority
+     * @param grouped whether the message is grouped
+     * @return Durability
+     */
+    Durability of(final String organization, final Priority priority, final boolean grouped) {
+        final Durability durability = organizations.get(organization);
+        if (durability != null) {
+            return durability;
+        }
+        if (grouped) {
+            return groups;
+        }
+        return priorities.get(priority);
+    }
+
+    /**
+     * Visits that read an organization's messages in priority order.
+     *
+     * @param organization Organization
+     * @return Visit(s), in order
+     */
+    List<Visit> plan(final String organization) {
+        final List<Visit> stray = strays.get(organization);
+        if (stray != null) {
+            return stray;
+        }
+        final Durability durability = organizations.get(organization);
+        if (durability != null) {
+            return single.get(durability);
+        }
+        return plan;
+    }
+
+    /**
+     * Tiers that may hold an organization's messages.
+     *
+     * @param organization Organization
+     * @return Durability(s), in declaration order
+     */
+    List<Durability> tiers(final String organization) {
+        final Set<Durability> tiers = EnumSet.noneOf(Durability.class);
+        plan(organization).forEach(visit -> tiers.add(visit.getDurability()));
+        return List.copyOf(tiers);
+    }
+
+    /**
+     * Tiers that may hold any organization's messages, which is every tier since the tiers assigned may have changed.
+     *
+     * @return Durability(s), in declaration order
+     */
+    List<Durability> tiers() {
+        return List.of(Durability.values());
+    }
+
+    /**
+     * Records the priorities each organization was found holding in each tier. Organizations holding priorities in
+     * tiers not assigned to them are read from those tiers too, until found holding none.
+     *
+     * @param held Priority(s) held, by organization then Durability
+     */
+    void found(final Map<String, Map<Durability, Set<Priority>>> held) {
+        final Map<String, List<Visit>> plans = new HashMap<>();
+        held.forEach((organization, tiers) -> {
+            final Map<Durability, Set<Priority>> reads = reads(organization);
+            boolean stray = false;
+            for (final Map.Entry<Durability, Set<Priority>> tier : tiers.entrySet()) {
+                stray |= reads.computeIfAbsent(tier.getKey(), key -> EnumSet.noneOf(Priority.class))
+                        .addAll(tier.getValue());
+            }
+            if (stray) {
+                plans.put(organization, plan(reads));
+            }
+        });
+        strays = plans;
+    }
+
+    /**
+     * Priorities read from each tier for an organization, as assigned.
+     *
+     * @param organization Organization, or null for an organization without its own tier
+     * @return Priority(s) read, by Durability
+     */
+    private Map<Durability, Set<Priority>> reads(final String organization) {
+        final Map<Durability, Set<Priority>> reads = new EnumMap<>(Durability.class);
+        final Durability durability = organizations.get(organization);
+        if (durability != null) {
+            reads.put(durability, EnumSet.allOf(Priority.class));
+            return reads;
+        }
+        priorities.forEach((priority, assigned) ->
+                reads.computeIfAbsent(assigned, key -> EnumSet.noneOf(Priority.class)).add(priority));
+        reads.computeIfAbsent(groups, key -> EnumSet.noneOf(Priority.class)).addAll(EnumSet.allOf(Priority.class));
+        return reads;
+    }
+
+    /**
+     * Plans visits reading the given priorities from each tier, in priority order. Each priority starts with the tier
+     * last visited, when it holds the priority, so that the two are read together.
+     *
+     * @param reads Priority(s) read, by Durability
+     * @return Visit(s), in order
+     */
+    private static List<Visit> plan(final Map<Durability, Set<Priority>> reads) {
+        final List<Visit> visits = new ArrayList<>();
+        for (final Priority priority : DELIVERY_ORDER) {
+            final List<Durability> holding = new ArrayList<>();
+            reads.forEach((durability, read) -> {
+                if (read.contains(priority)) {
+                    holding.add(durability);
+                }
+            });
+            if (!visits.isEmpty() && holding.remove(visits.get(visits.size() - 1).getDurability())) {
+                visits.get(visits.size() - 1).getPriorities().add(priority);
+            }
+            holding.forEach(durability -> visits.add(new Visit(durability, EnumSet.of(priority))));
+        }
+        return List.copyOf(visits);
+    }
+
+    /**
+     * Reads priorities from one tier.
+     */
+    @Data
+    static final class Visit {
+
+        /**
+         * Tier read.
+         */
+        private final Durability durability;
+
+        /**
+         * Priority(s) read. Not modified once planned.
+         */
+        private final Set<Priority> priorities;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service;
+
+import com.hazelcast.flakeidgen.FlakeIdGenerator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands out message IDs without blocking the calling thread.
+ *
+ * A FlakeIdGenerator serves IDs from a batch it holds locally, but blocks while it fetches the next batch, which is a
+ * remote call when running as a Hazelcast client. IDs are therefore drawn from the generator ahead of time in the
+ * background, and callers take them from a local buffer. A caller finding the buffer empty is handed an ID drawn in
+ * the background rather than waiting on the generator itself. Once the executor has been shut down, the buffer is no
+ * longer refilled.
+ */
+@Slf4j
+final class IdPrefetcher {
+
+    /**
+     * FlakeIdGenerator.
+     */
+    private final FlakeIdGenerator generator;
+
+    /**
+     * Runs calls to the generator, which may block.
+     */
+    private final Executor executor;
+
+    /**
+     * Number of IDs buffered once a refill completes.
+     */
+    private final int capacity;
+
+    /**
+     * Buffered IDs.
+     */
+    private final Queue<Long> ids = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of buffered IDs, kept alongside the queue as its size is not constant time.
+     */
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    /**
+     * Whether a refill is running.
+     */
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    /**
+     * IdPrefetcher, which starts filling its buffer straight away.
+     *
+     * @param idGenerator FlakeIdGenerator
+     * @param background runs calls to the generator
+     * @param size number of IDs buffered
+     */
+    IdPrefetcher(final FlakeIdGenerator idGenerator, final Executor background, final int size) {
+        generator = idGenerator;
+        executor = background;
+        capacity = size;
+        refill();
+    }
+
+    /**
+     * Takes the next ID, refilling the buffer in the background once it is half empty.
+     *
+     * @return ID, already complete unless the buffer was empty
+     */
+    CompletionStage<Long> next() {
+        final Long id = ids.poll();
+        if (id != null && buffered.decrementAndGet() > capacity / 2) {
+            return CompletableFuture.completedFuture(id);
+        }
+        refill();
+        if (id != null) {
+            return CompletableFuture.completedFuture(id);
+        }
+        return CompletableFuture.supplyAsync(generator::newId, executor);
+    }
+
+    /**
+     * Fills the buffer in the background, unless a refill is already running.
+     */
+    private void refill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    while (buffered.get() < capacity) {
+                        ids.add(generator.newId());
+                        buffered.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Unable to prefetch message IDs: {}", e.getMessage());
+                } finally {
+                    refilling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refilling.set(false);
+        }
+    }
+}
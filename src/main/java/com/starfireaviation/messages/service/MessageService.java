@@ -17,52 +17,275 @@
 package com.starfireaviation.messages.service;
 
 import com.hazelcast.core.HazelcastInstance;
-import com.hazelcast.flakeidgen.FlakeIdGenerator;
+import com.hazelcast.map.EntryProcessor;
 import com.hazelcast.map.IMap;
+import com.starfireaviation.messages.audit.AuditEvent;
+import com.starfireaviation.messages.audit.AuditTrail;
+import com.starfireaviation.messages.audit.LogSampler;
+import com.starfireaviation.messages.config.ApplicationProperties;
 import com.starfireaviation.messages.config.CommonConstants;
+import com.starfireaviation.messages.hotspot.Hotspots;
 import com.starfireaviation.common.model.Message;
 import com.starfireaviation.common.model.NotificationType;
 import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.DeliveryOrder;
+import com.starfireaviation.messages.model.Durability;
+import com.starfireaviation.messages.model.ExportedMessage;
+import com.starfireaviation.messages.model.MessageQueue;
+import com.starfireaviation.messages.model.QueueStats;
+import com.starfireaviation.messages.service.processor.AcknowledgeProcessor;
+import com.starfireaviation.messages.service.processor.AddProcessor;
+import com.starfireaviation.messages.service.processor.BatchClaimProcessor;
+import com.starfireaviation.messages.service.processor.CancelProcessor;
+import com.starfireaviation.messages.service.processor.ClaimProcessor;
+import com.starfireaviation.messages.service.processor.CleanupProcessor;
+import com.starfireaviation.messages.service.processor.ExportProcessor;
+import com.starfireaviation.messages.service.processor.ImportProcessor;
+import com.starfireaviation.messages.service.processor.LookupProcessor;
+import com.starfireaviation.messages.service.processor.PeekProcessor;
+import com.starfireaviation.messages.service.processor.PrioritiesProcessor;
+import com.starfireaviation.messages.service.processor.QueueStatsProcessor;
+import com.starfireaviation.messages.service.processor.SpillProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 
 
+/**
+ * MessageService.
+ *
+ * Every change to an organization's queue is made by an entry processor, which Hazelcast runs atomically on the
+ * member owning that organization. Concurrent callers on any member therefore never overwrite one another's
+ * changes, and the queue itself never crosses the network.
+ *
+ * Concurrent claims for the same organization on this instance are coalesced into batched claims unless disabled.
+ * When spilling is enabled, cold low priority messages are periodically spilled to disk on members above their heap
+ * watermark.
+ *
+ * Each operation is observed from its start until its result completes, with child observations for the stages it
+ * runs on the calling thread and for each Hazelcast call, all tagged with the caller's correlation ID. With tracing,
+ * these become one span per stage beneath the request's span.
+ *
+ * Stored, delivered, seen and expired messages are recorded in the audit trail when one is installed. Verbose
+ * per-request logs are only written for a sample of requests.
+ */
 @Slf4j
 public class MessageService {
 
     /**
-     * Message map.
-     * Note: Key = organization; Value = List of Messages
+     * Exported sequences hold the durability tier in their top bits, above the queue sequence.
      */
-    private final IMap<String, List<Message>> map;
+    private static final int TIER_SHIFT = 56;
 
     /**
-     * Seen ID map.
-     * Note: Outer Key = organization; Inner Key = clientIPAddress; Value(s) = Message ID(s)
+     * Bits of an exported sequence holding the queue sequence.
      */
-    private final IMap<String, Map<String, List<Long>>> seenMap;
+    private static final long SEQUENCE_MASK = (1L << TIER_SHIFT) - 1;
 
     /**
-     * ID generator.
+     * Message map of each durability tier.
+     * Note: Key = organization; Value = MessageQueue
      */
-    private final FlakeIdGenerator flakeIdGenerator;
+    private final Map<Durability, IMap<String, MessageQueue>> maps = new EnumMap<>(Durability.class);
 
     /**
-     * MessageService.
+     * Durability tiers messages are stored in.
+     */
+    private final DurabilityTiers tiers;
+
+    /**
+     * Message IDs, drawn from the cluster's ID generator ahead of time.
+     */
+    private final IdPrefetcher idPrefetcher;
+
+    /**
+     * Claim coalescer of each durability tier, none if claims are submitted individually.
+     */
+    private final Map<Durability, ClaimCoalescer> claimCoalescers = new EnumMap<>(Durability.class);
+
+    /**
+     * Spill settings.
+     */
+    private final ApplicationProperties.Spill spill;
+
+    /**
+     * Registry operations are observed with.
+     */
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Order messages of the same Priority are delivered in.
+     */
+    private final DeliveryOrder order;
+
+    /**
+     * Messages removed on expiry without ever having been delivered, by Priority.
+     */
+    private final Map<Priority, Counter> expiredUndelivered = new EnumMap<>(Priority.class);
+
+    /**
+     * Decides which requests write verbose diagnostic logs.
+     */
+    private final LogSampler diagnostics;
+
+    /**
+     * Runs claim batch submissions and message ID prefetches, which must not run on the caller's thread.
+     */
+    private final ExecutorService background;
+
+    /**
+     * Tracker requests and stored messages are counted in, or null if hot spots are not tracked.
+     */
+    private Hotspots hotspots;
+
+    /**
+     * MessageService with default claim settings.
      *
      * @param hazelcastInstance HazelcastInstance
      */
     public MessageService(final HazelcastInstance hazelcastInstance) {
-        map = hazelcastInstance.getMap("messages");
-        seenMap = hazelcastInstance.getMap("seen");
-        flakeIdGenerator = hazelcastInstance.getFlakeIdGenerator("messageIds");
+        this(hazelcastInstance, new ApplicationProperties.Claim());
+    }
+
+    /**
+     * MessageService.
+     *
+     * @param hazelcastInstance HazelcastInstance
+     * @param claim claim settings
+     */
+    public MessageService(final HazelcastInstance hazelcastInstance, final ApplicationProperties.Claim claim) {
+        this(hazelcastInstance, claim, new ApplicationProperties.Spill());
+    }
+
+    /**
+     * MessageService.
+     *
+     * @param hazelcastInstance HazelcastInstance
+     * @param claim claim settings
+     * @param spillSettings spill settings
+     */
+    public MessageService(final HazelcastInstance hazelcastInstance,
+                          final ApplicationProperties.Claim claim,
+                          final ApplicationProperties.Spill spillSettings) {
+        this(hazelcastInstance, claim, spillSettings, ObservationRegistry.NOOP);
+    }
+
+    /**
+     * MessageService.
+     *
+     * @param hazelcastInstance HazelcastInstance
+     * @param claim claim settings
+     * @param spillSettings spill settings
+     * @param registry ObservationRegistry
+     */
+    public MessageService(final HazelcastInstance hazelcastInstance,
+                          final ApplicationProperties.Claim claim,
+                          final ApplicationProperties.Spill spillSettings,
+                          final ObservationRegistry registry) {
+        this(hazelcastInstance, claim, spillSettings, new ApplicationProperties.Audit(),
+                new ApplicationProperties.Tiers(), registry, new SimpleMeterRegistry());
+    }
+
+    /**
+     * MessageService.
+     *
+     * @param hazelcastInstance HazelcastInstance
+     * @param claim claim settings
+     * @param spillSettings spill settings
+     * @param audit audit and diagnostic logging settings
+     * @param tierSettings durability tier settings
+     * @param registry ObservationRegistry
+     * @param meterRegistry MeterRegistry
+     */
+    public MessageService(final HazelcastInstance hazelcastInstance,
+                          final ApplicationProperties.Claim claim,
+                          final ApplicationProperties.Spill spillSettings,
+                          final ApplicationProperties.Audit audit,
+                          final ApplicationProperties.Tiers tierSettings,
+                          final ObservationRegistry registry,
+                          final MeterRegistry meterRegistry) {
+        spill = spillSettings;
+        tiers = new DurabilityTiers(tierSettings);
+        diagnostics = new LogSampler(audit.getLogSampleRate());
+        observationRegistry = registry;
+        order = claim.getOrder();
+        for (final Priority priority : Priority.values()) {
+            expiredUndelivered.put(priority, Counter.builder("messages.expired.undelivered")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+        }
+        background = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("messages-", 0).factory());
+        for (final Durability durability : Durability.values()) {
+            final IMap<String, MessageQueue> map = hazelcastInstance.getMap(durability.getMapName());
+            maps.put(durability, map);
+            if (claim.isCoalesce()) {
+                claimCoalescers.put(durability, new ClaimCoalescer(map, claim.getMaxBatchSize(), background));
+            }
+        }
+        idPrefetcher = new IdPrefetcher(hazelcastInstance.getFlakeIdGenerator("messageIds"), background,
+                CommonConstants.ID_PREFETCH_SIZE);
+        locate();
+    }
+
+    /**
+     * Waits for in-flight claim batches to complete, then stops the background threads. Runs as the context closes,
+     * after the graceful drain and the web server's in-flight requests have finished.
+     */
+    @PreDestroy
+    public void close() {
+        final long deadline = System.currentTimeMillis() + CommonConstants.SERVICE_CLOSE_TIMEOUT_MILLIS;
+        try {
+            while (!claimCoalescers.values().stream().allMatch(ClaimCoalescer::isIdle)) {
+                if (System.currentTimeMillis() >= deadline) {
+                    log.warn("Claim batches still in flight after {} ms; closing anyway",
+                            CommonConstants.SERVICE_CLOSE_TIMEOUT_MILLIS);
+                    break;
+                }
+                Thread.sleep(CommonConstants.SERVICE_CLOSE_POLL_MILLIS);
+            }
+            background.shutdown();
+            if (!background.awaitTermination(Math.max(deadline - System.currentTimeMillis(), 0),
+                    TimeUnit.MILLISECONDS)) {
+                log.warn("Background work still running after {} ms; closing anyway",
+                        CommonConstants.SERVICE_CLOSE_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sets the tracker requests and stored messages are counted in.
+     *
+     * @param tracker Hotspots, or null to stop tracking hot spots
+     */
+    public void setHotspots(final Hotspots tracker) {
+        hotspots = tracker;
     }
 
     /**
@@ -74,20 +297,106 @@ public class MessageService {
      * @return message add success
      */
     public boolean addMessage(final Message message, final String organization, final String correlationId) {
-        ensureIDIsSet(message);
+        return addMessage(message, null, null, organization, correlationId);
+    }
+
+    /**
+     * Adds a message to the queue, targeted at specific clients or delivered in order within a group.
+     *
+     * @param message Message
+     * @param targets ClientID(s) the message is targeted at, or null for any client
+     * @param group group key, or null if the message is not grouped
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return message add success
+     */
+    public boolean addMessage(final Message message,
+                              final Set<String> targets,
+                              final String group,
+                              final String organization,
+                              final String correlationId) {
+        return await(addMessageAsync(message, targets, group, organization, correlationId));
+    }
+
+    /**
+     * Adds a message to the queue without blocking the calling thread.
+     *
+     * @param message Message
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return message add success
+     */
+    public CompletionStage<Boolean> addMessageAsync(final Message message,
+                                                    final String organization,
+                                                    final String correlationId) {
+        return addMessageAsync(message, null, null, organization, correlationId);
+    }
+
+    /**
+     * Adds a message to the queue, targeted at specific clients or delivered in order within a group, without
+     * blocking the calling thread. A targeted message is only delivered to its targets, once each. A grouped message
+     * is only delivered once the messages before it in its group have been claimed, or acknowledged if leased.
+     *
+     * @param message Message
+     * @param targets ClientID(s) the message is targeted at, or null for any client
+     * @param group group key, or null if the message is not grouped
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return message add success
+     */
+    public CompletionStage<Boolean> addMessageAsync(final Message message,
+                                                    final Set<String> targets,
+                                                    final String group,
+                                                    final String organization,
+                                                    final String correlationId) {
+        return observe("messages.add", organization, correlationId, () -> {
+            final Observation add = observationRegistry.getCurrentObservation();
+            return stage("messages.id", correlationId, idPrefetcher::next)
+                    .thenCompose(id -> Observation.tryScoped(add, () -> store(message, id, targets, group,
+                            organization, correlationId)));
+        });
+    }
+
+    /**
+     * Stores a message once its ID is known.
+     *
+     * @param message Message
+     * @param id Message ID
+     * @param targets ClientID(s) the message is targeted at, or null for any client
+     * @param group group key, or null if the message is not grouped
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return message add success
+     */
+    private CompletionStage<Boolean> store(final Message message,
+                                           final Long id,
+                                           final Set<String> targets,
+                                           final String group,
+                                           final String organization,
+                                           final String correlationId) {
+        message.setId(id);
         ensureExpirationTimeIsSet(message);
         ensurePriorityIsSet(message);
         ensureNotificationTypeIsSet(message);
-        log.info("Adding message: {} with ID: {} to organization: {}; correlationId: {}", 
-                 message, message.getId(), organization, correlationId);
-        List<Message> messages = map.get(organization);
-        if (messages == null) {
-            messages = new ArrayList<>();
+        final boolean logged = diagnostics.sample();
+        if (logged) {
+            log.info("Adding message: {} with ID: {} to organization: {} for targets: {} in group: {}; "
+                    + "correlationId: {}", message, message.getId(), organization, targets, group, correlationId);
         }
-        final boolean success = messages.add(message);
-        map.put(organization, messages);
-        log.info("Returning success={}", success);
-        return success;
+        return submit(tiers.of(organization, message.getPriority(), group != null), organization, correlationId,
+                      new AddProcessor(message, targets, group, System.currentTimeMillis()))
+                .thenApply(success -> {
+                    if (Boolean.TRUE.equals(success)) {
+                        AuditTrail.audit(AuditEvent.STORED, organization, message, null, correlationId);
+                        if (hotspots != null) {
+                            hotspots.stored(organization, targets, message);
+                        }
+                    }
+                    if (logged) {
+                        log.info("Returning success={}", success);
+                    }
+                    return success;
+                });
     }
 
     /**
@@ -103,138 +412,850 @@ public class MessageService {
                               final NotificationType notificationType,
                               final String clientId,
                               final String correlationId) {
-        log.info("Getting message for organization: {}; notificationType: {}; clientId: {}; correlationId: {}",
-                organization, notificationType, clientId, correlationId);
-        List<Message> messages = map.get(organization);
-        if (messages == null) {
-            return null;
+        return getMessage(organization, notificationType, clientId, correlationId, null);
+    }
+
+    /**
+     * Gets a message from the queue, or null if no messages are available.
+     *
+     * When a lease is provided, a directed message is hidden from other callers rather than removed, and is only
+     * removed once acknowledged. If the lease expires first, the message becomes available again.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param correlationId CorrelationID
+     * @param lease optional lease duration
+     * @return Message
+     */
+    public Message getMessage(final String organization,
+                              final NotificationType notificationType,
+                              final String clientId,
+                              final String correlationId,
+                              final Duration lease) {
+        return getMessage(organization, notificationType, clientId, null, correlationId, lease);
+    }
+
+    /**
+     * Gets a message from the queue for a caller in a consumer group, or null if no messages are available.
+     *
+     * A message for every client is delivered once to the consumer group as a whole rather than to each of its
+     * members, so members of a group compete for it as they do for directed messages.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param consumerGroup consumer group, or null if the caller is not in one
+     * @param correlationId CorrelationID
+     * @param lease optional lease duration
+     * @return Message
+     */
+    public Message getMessage(final String organization,
+                              final NotificationType notificationType,
+                              final String clientId,
+                              final String consumerGroup,
+                              final String correlationId,
+                              final Duration lease) {
+        return await(getMessageAsync(organization, notificationType, clientId, consumerGroup, correlationId, lease));
+    }
+
+    /**
+     * Gets a message from the queue without blocking the calling thread, completing with null if no messages are
+     * available.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param correlationId CorrelationID
+     * @param lease optional lease duration
+     * @return Message
+     */
+    public CompletionStage<Message> getMessageAsync(final String organization,
+                                                    final NotificationType notificationType,
+                                                    final String clientId,
+                                                    final String correlationId,
+                                                    final Duration lease) {
+        return getMessageAsync(organization, notificationType, clientId, null, correlationId, lease);
+    }
+
+    /**
+     * Gets a message from the queue for a caller in a consumer group without blocking the calling thread, completing
+     * with null if no messages are available.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param consumerGroup consumer group, or null if the caller is not in one
+     * @param correlationId CorrelationID
+     * @param lease optional lease duration
+     * @return Message
+     * @see #getMessage(String, NotificationType, String, String, String, Duration)
+     */
+    public CompletionStage<Message> getMessageAsync(final String organization,
+                                                    final NotificationType notificationType,
+                                                    final String clientId,
+                                                    final String consumerGroup,
+                                                    final String correlationId,
+                                                    final Duration lease) {
+        return observe("messages.claim", organization, clientId, correlationId, () -> {
+            final boolean logged = diagnostics.sample();
+            if (logged) {
+                log.info("Getting message for organization: {}; notificationType: {}; clientId: {}; "
+                        + "consumerGroup: {}; correlationId: {}; lease: {}",
+                        organization, notificationType, clientId, consumerGroup, correlationId, lease);
+            }
+            final long now = System.currentTimeMillis();
+            Long deadline = null;
+            if (lease != null) {
+                deadline = now + lease.toMillis();
+            }
+            final Long leaseDeadline = deadline;
+            final CompletionStage<Message> claimed = claim(tiers.plan(organization), 0, visit -> {
+                final ClaimCoalescer claimCoalescer = claimCoalescers.get(visit.getDurability());
+                if (claimCoalescer != null) {
+                    return hazelcast("coalescedSubmitToKey", BatchClaimProcessor.class.getSimpleName(),
+                            correlationId, () -> claimCoalescer.claim(organization, new BatchClaimProcessor.Claim(
+                                    notificationType, clientId, consumerGroup, leaseDeadline, order,
+                                    visit.getPriorities())));
+                }
+                return submit(visit.getDurability(), organization, correlationId, new ClaimProcessor(
+                        notificationType, clientId, consumerGroup, leaseDeadline, order, visit.getPriorities(), now));
+            });
+            return claimed.thenApply(message -> {
+                audit(organization, message, clientId, correlationId);
+                if (!logged) {
+                    return message;
+                }
+                if (message == null) {
+                    log.info("Returning null");
+                } else if (message.getNotificationType() == NotificationType.ALL) {
+                    log.info("Returning message with ID: {} to caller: {}", message.getId(), message);
+                } else if (leaseDeadline != null) {
+                    log.info("Leased message with ID: {} to caller: {} for {}", message.getId(), clientId, lease);
+                } else {
+                    log.info("Removed and returning message with ID: {} to caller: {}", message.getId(), message);
+                }
+                return message;
+            });
+        });
+    }
+
+    /**
+     * Gets up to count messages from the queue for one caller, claimed in a single operation with the same semantics
+     * as getMessage.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param count maximum number of messages to claim
+     * @param correlationId CorrelationID
+     * @param lease optional lease duration
+     * @return claimed messages, in delivery order
+     */
+    public List<Message> getMessages(final String organization,
+                                     final NotificationType notificationType,
+                                     final String clientId,
+                                     final int count,
+                                     final String correlationId,
+                                     final Duration lease) {
+        return getMessages(organization, notificationType, clientId, null, count, correlationId, lease);
+    }
+
+    /**
+     * Gets up to count messages from the queue for one caller in a consumer group, claimed in a single operation with
+     * the same semantics as getMessage.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param consumerGroup consumer group, or null if the caller is not in one
+     * @param count maximum number of messages to claim
+     * @param correlationId CorrelationID
+     * @param lease optional lease duration
+     * @return claimed messages, in delivery order
+     */
+    public List<Message> getMessages(final String organization,
+                                     final NotificationType notificationType,
+                                     final String clientId,
+                                     final String consumerGroup,
+                                     final int count,
+                                     final String correlationId,
+                                     final Duration lease) {
+        return await(getMessagesAsync(organization, notificationType, clientId, consumerGroup, count, correlationId,
+                lease));
+    }
+
+    /**
+     * Gets up to count messages from the queue for one caller without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param count maximum number of messages to claim
+     * @param correlationId CorrelationID
+     * @param lease optional lease duration
+     * @return claimed messages, in delivery order
+     */
+    public CompletionStage<List<Message>> getMessagesAsync(final String organization,
+                                                           final NotificationType notificationType,
+                                                           final String clientId,
+                                                           final int count,
+                                                           final String correlationId,
+                                                           final Duration lease) {
+        return getMessagesAsync(organization, notificationType, clientId, null, count, correlationId, lease);
+    }
+
+    /**
+     * Gets up to count messages from the queue for one caller in a consumer group without blocking the calling
+     * thread.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param clientId ClientID
+     * @param consumerGroup consumer group, or null if the caller is not in one
+     * @param count maximum number of messages to claim
+     * @param correlationId CorrelationID
+     * @param lease optional lease duration
+     * @return claimed messages, in delivery order
+     */
+    public CompletionStage<List<Message>> getMessagesAsync(final String organization,
+                                                           final NotificationType notificationType,
+                                                           final String clientId,
+                                                           final String consumerGroup,
+                                                           final int count,
+                                                           final String correlationId,
+                                                           final Duration lease) {
+        return observe("messages.claim.batch", organization, clientId, correlationId, () -> {
+            log.debug("Getting {} message(s) for organization: {}; notificationType: {}; clientId: {}; "
+                    + "consumerGroup: {}; correlationId: {}; lease: {}",
+                    count, organization, notificationType, clientId, consumerGroup, correlationId, lease);
+            final long now = System.currentTimeMillis();
+            Long deadline = null;
+            if (lease != null) {
+                deadline = now + lease.toMillis();
+            }
+            final Long leaseDeadline = deadline;
+            return collect(tiers.plan(organization), 0, count, new ArrayList<>(), (visit, remaining) -> {
+                final List<BatchClaimProcessor.Claim> claims = Collections.nCopies(remaining,
+                        new BatchClaimProcessor.Claim(notificationType, clientId, consumerGroup, leaseDeadline,
+                                order, visit.getPriorities()));
+                return submit(visit.getDurability(), organization, correlationId,
+                        new BatchClaimProcessor(claims, now))
+                        .thenApply(messages -> messages.stream().filter(Objects::nonNull).toList());
+            }).thenApply(messages -> {
+                messages.forEach(message -> audit(organization, message, clientId, correlationId));
+                return messages;
+            });
+        });
+    }
+
+    /**
+     * Acknowledges leased messages, removing them permanently.
+     *
+     * @param organization Organization
+     * @param ids Message IDs
+     * @param correlationId CorrelationID
+     * @return IDs of the messages whose lease was acknowledged
+     */
+    public List<Long> acknowledge(final String organization, final List<Long> ids, final String correlationId) {
+        return await(acknowledgeAsync(organization, ids, correlationId));
+    }
+
+    /**
+     * Acknowledges leased messages without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param ids Message IDs
+     * @param correlationId CorrelationID
+     * @return IDs of the messages whose lease was acknowledged
+     */
+    public CompletionStage<List<Long>> acknowledgeAsync(final String organization,
+                                                        final List<Long> ids,
+                                                        final String correlationId) {
+        return observe("messages.acknowledge", organization, correlationId, () -> {
+            final boolean logged = diagnostics.sample();
+            if (logged) {
+                log.info("Acknowledging messages with IDs: {} for organization: {}; correlationId: {}",
+                        ids, organization, correlationId);
+            }
+            final long now = System.currentTimeMillis();
+            return everyTier(organization, correlationId, () -> new AcknowledgeProcessor(ids, now))
+                    .thenApply(results -> results.stream().flatMap(List::stream).toList())
+                    .thenApply(acknowledged -> {
+                        if (logged) {
+                            log.info("Acknowledged messages with IDs: {}", acknowledged);
+                        }
+                        return acknowledged;
+                    });
+        });
+    }
+
+    /**
+     * Finds a stored message by ID without claiming it.
+     *
+     * @param organization Organization
+     * @param id Message ID
+     * @param correlationId CorrelationID
+     * @return Message, or null if not found
+     */
+    public Message findMessage(final String organization, final Long id, final String correlationId) {
+        return await(findMessageAsync(organization, id, correlationId));
+    }
+
+    /**
+     * Finds a stored message by ID without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param id Message ID
+     * @param correlationId CorrelationID
+     * @return Message, or null if not found
+     */
+    public CompletionStage<Message> findMessageAsync(final String organization,
+                                                     final Long id,
+                                                     final String correlationId) {
+        return observe("messages.find", organization, correlationId, () -> {
+            if (diagnostics.sample()) {
+                log.info("Finding message with ID: {} for organization: {}; correlationId: {}",
+                        id, organization, correlationId);
+            }
+            return everyTier(organization, correlationId, () -> new LookupProcessor(id))
+                    .thenApply(MessageService::first);
+        });
+    }
+
+    /**
+     * Cancels a stored message so that it is never delivered.
+     *
+     * @param organization Organization
+     * @param id Message ID
+     * @param correlationId CorrelationID
+     * @return cancelled Message, or null if not found
+     */
+    public Message cancelMessage(final String organization, final Long id, final String correlationId) {
+        return await(cancelMessageAsync(organization, id, correlationId));
+    }
+
+    /**
+     * Cancels a stored message without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param id Message ID
+     * @param correlationId CorrelationID
+     * @return cancelled Message, or null if not found
+     */
+    public CompletionStage<Message> cancelMessageAsync(final String organization,
+                                                       final Long id,
+                                                       final String correlationId) {
+        return observe("messages.cancel", organization, correlationId, () -> {
+            if (diagnostics.sample()) {
+                log.info("Cancelling message with ID: {} for organization: {}; correlationId: {}",
+                        id, organization, correlationId);
+            }
+            return everyTier(organization, correlationId, () -> new CancelProcessor(id))
+                    .thenApply(MessageService::first);
+        });
+    }
+
+    /**
+     * Gets statistics for an organization's queue.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return QueueStats
+     */
+    public QueueStats getStats(final String organization, final String correlationId) {
+        return await(getStatsAsync(organization, correlationId));
+    }
+
+    /**
+     * Gets statistics for an organization's queue without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return QueueStats
+     */
+    public CompletionStage<QueueStats> getStatsAsync(final String organization, final String correlationId) {
+        return observe("messages.stats", organization, correlationId, () -> {
+            log.debug("Getting stats for organization: {}; correlationId: {}", organization, correlationId);
+            final long now = System.currentTimeMillis();
+            return everyTier(organization, correlationId, () -> new QueueStatsProcessor(now))
+                    .thenApply(results -> results.stream().reduce(new QueueStats(), QueueStats::add));
+        });
+    }
+
+    /**
+     * Gets the next messages in delivery order without claiming them.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param count maximum number of messages to return
+     * @param correlationId CorrelationID
+     * @return messages
+     */
+    public List<Message> peek(final String organization,
+                              final NotificationType notificationType,
+                              final int count,
+                              final String correlationId) {
+        return await(peekAsync(organization, notificationType, count, correlationId));
+    }
+
+    /**
+     * Gets the next messages in delivery order without claiming them or blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param notificationType NotificationType
+     * @param count maximum number of messages to return
+     * @param correlationId CorrelationID
+     * @return messages
+     */
+    public CompletionStage<List<Message>> peekAsync(final String organization,
+                                                    final NotificationType notificationType,
+                                                    final int count,
+                                                    final String correlationId) {
+        return observe("messages.peek", organization, correlationId, () -> {
+            log.debug("Peeking at {} message(s) for organization: {}; notificationType: {}; correlationId: {}",
+                    count, organization, notificationType, correlationId);
+            final Instant now = Instant.now();
+            return collect(tiers.plan(organization), 0, count, new ArrayList<>(), (visit, remaining) ->
+                    submit(visit.getDurability(), organization, correlationId,
+                            new PeekProcessor(remaining, notificationType, order, visit.getPriorities(), now)));
+        });
+    }
+
+    /**
+     * Gets a page of an organization's stored messages, in queue order, along with their delivery state.
+     *
+     * @param organization Organization
+     * @param after queue sequence of the last message of the previous page, or -1 for the first page
+     * @param limit most messages returned
+     * @param correlationId CorrelationID
+     * @return ExportedMessage(s), fewer than the limit only on the last page
+     */
+    public List<ExportedMessage> exportMessages(final String organization,
+                                                final long after,
+                                                final int limit,
+                                                final String correlationId) {
+        return await(exportMessagesAsync(organization, after, limit, correlationId));
+    }
+
+    /**
+     * Gets a page of an organization's stored messages without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param after queue sequence of the last message of the previous page, or -1 for the first page
+     * @param limit most messages returned
+     * @param correlationId CorrelationID
+     * @return ExportedMessage(s), fewer than the limit only on the last page
+     */
+    public CompletionStage<List<ExportedMessage>> exportMessagesAsync(final String organization,
+                                                                      final long after,
+                                                                      final int limit,
+                                                                      final String correlationId) {
+        return observe("messages.export", organization, correlationId, () -> {
+            log.debug("Exporting {} message(s) after {} for organization: {}; correlationId: {}",
+                    limit, after, organization, correlationId);
+            final List<Durability> remaining = tiers.tiers(organization).stream()
+                    .filter(durability -> after < 0 || durability.ordinal() >= after >>> TIER_SHIFT)
+                    .toList();
+            if (remaining.isEmpty()) {
+                return CompletableFuture.completedFuture(List.of());
+            }
+            long sequence = -1;
+            if (after >= 0 && remaining.get(0).ordinal() == after >>> TIER_SHIFT) {
+                sequence = after & SEQUENCE_MASK;
+            }
+            return export(remaining, 0, sequence, limit, new ArrayList<>(), organization, correlationId);
+        });
+    }
+
+    /**
+     * Adds a batch of exported messages to the end of an organization's queue.
+     *
+     * @param organization Organization
+     * @param messages ExportedMessage(s), in queue order
+     * @param correlationId CorrelationID
+     * @return number of messages added
+     */
+    public int importMessages(final String organization,
+                              final List<ExportedMessage> messages,
+                              final String correlationId) {
+        return await(importMessagesAsync(organization, messages, correlationId));
+    }
+
+    /**
+     * Adds a batch of exported messages to the end of an organization's queue without blocking the calling thread.
+     * Messages keep their IDs, which are only assigned to messages without one. Messages already stored or expired
+     * are skipped, so a failed import can be repeated.
+     *
+     * @param organization Organization
+     * @param messages ExportedMessage(s), in queue order
+     * @param correlationId CorrelationID
+     * @return number of messages added
+     */
+    public CompletionStage<Integer> importMessagesAsync(final String organization,
+                                                        final List<ExportedMessage> messages,
+                                                        final String correlationId) {
+        return observe("messages.import", organization, correlationId, () -> {
+            final Observation imports = observationRegistry.getCurrentObservation();
+            CompletableFuture<Void> identified = CompletableFuture.completedFuture(null);
+            for (final ExportedMessage exported : messages) {
+                final Message message = exported.getMessage();
+                if (message.getId() == null) {
+                    identified = identified.thenAcceptBoth(idPrefetcher.next(), (ignored, id) -> message.setId(id));
+                }
+                ensureExpirationTimeIsSet(message);
+                ensurePriorityIsSet(message);
+                ensureNotificationTypeIsSet(message);
+            }
+            return identified.thenCompose(ignored -> Observation.tryScoped(imports, () -> restore(organization,
+                    messages, correlationId)));
+        });
+    }
+
+    /**
+     * Adds exported messages, which all have IDs, to the end of an organization's queue.
+     *
+     * @param organization Organization
+     * @param messages ExportedMessage(s), in queue order
+     * @param correlationId CorrelationID
+     * @return number of messages added
+     */
+    private CompletionStage<Integer> restore(final String organization,
+                                             final List<ExportedMessage> messages,
+                                             final String correlationId) {
+        log.info("Importing {} message(s) to organization: {}; correlationId: {}",
+                messages.size(), organization, correlationId);
+        final long now = System.currentTimeMillis();
+        final Map<Durability, List<ExportedMessage>> batches = new EnumMap<>(Durability.class);
+        messages.forEach(exported -> batches.computeIfAbsent(tiers.of(organization,
+                exported.getMessage().getPriority(), exported.getGroup() != null), tier -> new ArrayList<>())
+                .add(exported));
+        CompletableFuture<Integer> imported = CompletableFuture.completedFuture(0);
+        for (final Map.Entry<Durability, List<ExportedMessage>> batch : batches.entrySet()) {
+            imported = imported.thenCombine(submit(batch.getKey(), organization, correlationId,
+                    new ImportProcessor(batch.getValue(), now)), Integer::sum);
         }
+        return imported;
+    }
 
-        // Apply filters
-        log.info("Message count before filters: {}", messages.size());
-        messages = filterExpired(messages);
-        messages = filterNotificationType(messages, notificationType);
-        messages = filterSeen(messages, organization, clientId);
-        log.info("Message count after filters: {}", messages.size());
+    /**
+     * Observes an operation from its start until its result completes. Stages started while the operation is set
+     * up on the calling thread are observed as its children.
+     *
+     * @param name observation name
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param operation starts the operation
+     * @param <T> result type
+     * @return result
+     */
+    private <T> CompletionStage<T> observe(final String name,
+                                           final String organization,
+                                           final String correlationId,
+                                           final Supplier<CompletionStage<T>> operation) {
+        return observe(name, organization, null, correlationId, operation);
+    }
 
-        // Get message in priority order
-        Message message = getMessageByPriority(messages, Priority.HIGH);
-        if (message == null) {
-            message = getMessageByPriority(messages, Priority.NORMAL);
+    /**
+     * Observes an operation made for a client from its start until its result completes, counting the request
+     * against the organization and client.
+     *
+     * @param name observation name
+     * @param organization Organization
+     * @param clientId ClientID, or null if the operation is not made for a client
+     * @param correlationId CorrelationID
+     * @param operation starts the operation
+     * @param <T> result type
+     * @return result
+     */
+    private <T> CompletionStage<T> observe(final String name,
+                                           final String organization,
+                                           final String clientId,
+                                           final String correlationId,
+                                           final Supplier<CompletionStage<T>> operation) {
+        if (hotspots != null) {
+            hotspots.request(organization, clientId);
         }
-        if (message == null) {
-            message = getMessageByPriority(messages, Priority.LOW);
+        final Observation observation = Observation.createNotStarted(name, observationRegistry);
+        tag(observation, CommonConstants.TRACE_ORGANIZATION, organization);
+        tag(observation, CommonConstants.TRACE_CORRELATION_ID, correlationId);
+        observation.start();
+        try (Observation.Scope scope = observation.openScope()) {
+            return operation.get().whenComplete((result, error) -> stop(observation, error));
+        } catch (RuntimeException e) {
+            stop(observation, e);
+            throw e;
         }
+    }
 
-        // Cleanup
-        if (message != null && message.getNotificationType() != NotificationType.ALL) {
-            log.info("Removing and returning message with ID: {} to caller: {}", message.getId(), message);
-            map.get(organization).remove(message);
-        } else if (message != null && message.getNotificationType() == NotificationType.ALL) {
-            log.info("Returning message with ID: {} to caller: {}", message.getId(), message);
-            markMessageAsSeenForCaller(clientId, organization, message);
-        } else if (message == null) {
-            log.info("Returning null");
+    /**
+     * Observes a stage of an operation from its start until its result completes.
+     *
+     * @param name observation name
+     * @param correlationId CorrelationID
+     * @param stage starts the stage
+     * @param <T> result type
+     * @return result
+     */
+    private <T> CompletionStage<T> stage(final String name,
+                                         final String correlationId,
+                                         final Supplier<CompletionStage<T>> stage) {
+        final Observation observation = Observation.createNotStarted(name, observationRegistry);
+        tag(observation, CommonConstants.TRACE_CORRELATION_ID, correlationId);
+        observation.start();
+        try (Observation.Scope scope = observation.openScope()) {
+            return stage.get().whenComplete((result, error) -> stop(observation, error));
+        } catch (RuntimeException e) {
+            stop(observation, e);
+            throw e;
         }
-        return message;
     }
 
     /**
-     * Retrieves first message in the list with a matching priority.
+     * Submits an entry processor to the member owning an organization's queue in a durability tier, observing the
+     * call.
+     *
+     * @param durability Durability tier
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param processor EntryProcessor
+     * @param <T> result type
+     * @return result
+     */
+    private <T> CompletionStage<T> submit(final Durability durability,
+                                          final String organization,
+                                          final String correlationId,
+                                          final EntryProcessor<String, MessageQueue, T> processor) {
+        return hazelcast("submitToKey", processor.getClass().getSimpleName(), correlationId,
+                () -> maps.get(durability).submitToKey(organization, processor));
+    }
+
+    /**
+     * Submits an entry processor to an organization's queue in every tier that may hold its messages, at once.
      *
-     * @param messages to be searched
-     * @param priority search criteria
-     * @return matching message
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @param processor creates the EntryProcessor
+     * @param <T> result type
+     * @return results, by tier
      */
-    private Message getMessageByPriority(final List<Message> messages, final Priority priority) {
-        return messages.stream().filter(message -> message.getPriority() == priority).findFirst().orElse(null);
+    private <T> CompletionStage<List<T>> everyTier(final String organization,
+                                                   final String correlationId,
+                                                   final Supplier<EntryProcessor<String, MessageQueue, T>> processor) {
+        final List<CompletableFuture<T>> results = tiers.tiers(organization).stream()
+                .map(durability -> submit(durability, organization, correlationId, processor.get())
+                        .toCompletableFuture())
+                .toList();
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(done -> results.stream().map(CompletableFuture::join).toList());
     }
 
     /**
-     * Denotes a message as having been seen by a caller.
+     * Claims a message from the first visit, in plan order, which has one for the caller.
      *
-     * This is to allow for message intended to be delivered to multiple recipients to be delivered to more than
-     * one receiver, without being seen more than once by any given caller.
+     * @param plan Visit(s), in priority order
+     * @param index index of the next visit
+     * @param claim claims a message in a visit
+     * @return claimed Message, or null if no visit had one
+     */
+    private static CompletionStage<Message> claim(final List<DurabilityTiers.Visit> plan,
+                                                  final int index,
+                                                  final Function<DurabilityTiers.Visit,
+                                                          CompletionStage<Message>> claim) {
+        return claim.apply(plan.get(index)).thenCompose(message -> {
+            if (message != null || index + 1 == plan.size()) {
+                return CompletableFuture.completedFuture(message);
+            }
+            return claim(plan, index + 1, claim);
+        });
+    }
+
+    /**
+     * Reads up to count messages from visits in plan order, moving on to the next visit while fewer were read.
      *
-     * @param clientId ClientID
-     * @param org organization
-     * @param message Message
+     * @param plan Visit(s), in priority order
+     * @param index index of the next visit
+     * @param count number of messages still wanted
+     * @param collected messages read so far, added to
+     * @param read reads up to the given number of messages in a visit
+     * @return messages read, in plan order
      */
-    private void markMessageAsSeenForCaller(final String clientId, final String org, final Message message) {
-        final List<Long> seenList = new ArrayList<>();
-        seenList.add(message.getId());
-        Map<String, List<Long>> idMap = seenMap.get(org);
-        if (idMap == null) {
-            idMap = new HashMap<>();
-            idMap.put(clientId, seenList);
-        } else {
-            final List<Long> priorSeenList = idMap.get(clientId);
-            if (priorSeenList != null) {
-                seenList.addAll(priorSeenList);
+    private static CompletionStage<List<Message>> collect(final List<DurabilityTiers.Visit> plan,
+                                                          final int index,
+                                                          final int count,
+                                                          final List<Message> collected,
+                                                          final BiFunction<DurabilityTiers.Visit, Integer,
+                                                                  CompletionStage<List<Message>>> read) {
+        return read.apply(plan.get(index), count - collected.size()).thenCompose(messages -> {
+            collected.addAll(messages);
+            if (collected.size() >= count || index + 1 == plan.size()) {
+                return CompletableFuture.completedFuture(collected);
             }
-            idMap.put(clientId, seenList);
+            return collect(plan, index + 1, count, collected, read);
+        });
+    }
+
+    /**
+     * Exports a page from the tiers holding an organization's messages, one tier after another. Exported sequences
+     * carry the tier, so that the next page starts in the tier where this one ended.
+     *
+     * @param stored tiers that may hold the organization's messages
+     * @param index index of the tier read next
+     * @param after queue sequence within that tier to start after, or -1 to start at its beginning
+     * @param limit most messages returned
+     * @param page messages exported so far, added to
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return ExportedMessage(s)
+     */
+    private CompletionStage<List<ExportedMessage>> export(final List<Durability> stored,
+                                                          final int index,
+                                                          final long after,
+                                                          final int limit,
+                                                          final List<ExportedMessage> page,
+                                                          final String organization,
+                                                          final String correlationId) {
+        final Durability durability = stored.get(index);
+        return submit(durability, organization, correlationId, new ExportProcessor(after, limit - page.size()))
+                .thenCompose(exported -> {
+                    for (final ExportedMessage message : exported.getMessages()) {
+                        message.setSequence((long) durability.ordinal() << TIER_SHIFT | message.getSequence());
+                        page.add(message);
+                    }
+                    if (page.size() >= limit || index + 1 == stored.size()) {
+                        return CompletableFuture.completedFuture(page);
+                    }
+                    return export(stored, index + 1, -1, limit, page, organization, correlationId);
+                });
+    }
+
+    /**
+     * First non-null result.
+     *
+     * @param results results
+     * @param <T> result type
+     * @return result, or null if every result is null
+     */
+    private static <T> T first(final List<T> results) {
+        return results.stream().filter(Objects::nonNull).findFirst().orElse(null);
+    }
+
+    /**
+     * Runs an entry processor on every organization's queue in every tier in use, observing each call.
+     *
+     * @param processor creates the EntryProcessor
+     * @param <T> result type
+     * @return results per organization, one entry per tier holding the organization's queue
+     */
+    private <T> List<Map.Entry<String, T>> executeOnEntries(
+            final Supplier<EntryProcessor<String, MessageQueue, T>> processor) {
+        final List<Map.Entry<String, T>> results = new ArrayList<>();
+        for (final Durability durability : tiers.tiers()) {
+            results.addAll(executeOnEntries(durability, processor.get()));
         }
-        seenMap.put(org, idMap);
+        return results;
     }
 
     /**
-     * Filter Expired.
+     * Runs an entry processor on every organization's queue in one tier, observing the call.
      *
-     * @param messages to be filtered
-     * @return filtered messages
+     * @param durability Durability tier
+     * @param processor EntryProcessor
+     * @param <T> result type
+     * @return results per organization holding a queue in the tier
      */
-    private List<Message> filterExpired(final List<Message> messages) {
-        return messages.stream()
-                .filter(message -> message.getExpirationTime().isAfter(Instant.now()))
-                .collect(Collectors.toList());
+    private <T> Set<Map.Entry<String, T>> executeOnEntries(final Durability durability,
+                                                           final EntryProcessor<String, MessageQueue, T> processor) {
+        return hazelcastObservation("executeOnEntries", processor.getClass().getSimpleName(), null)
+                .observe(() -> maps.get(durability).executeOnEntries(processor)).entrySet();
     }
 
     /**
-     * Filter NotificationType.
+     * Observes an asynchronous Hazelcast call until its result completes.
      *
-     * @param messages to be filtered
-     * @param notificationType user input
-     * @return filtered messages
+     * @param operation IMap operation
+     * @param processor entry processor name
+     * @param correlationId CorrelationID
+     * @param call makes the call
+     * @param <T> result type
+     * @return result
      */
-    private List<Message> filterNotificationType(final List<Message> messages,
-                                                 final NotificationType notificationType) {
-        return messages
-                .stream()
-                .filter(message -> message.getNotificationType() == notificationType
-                        || message.getNotificationType() == NotificationType.ALL)
-                .collect(Collectors.toList());
+    private <T> CompletionStage<T> hazelcast(final String operation,
+                                             final String processor,
+                                             final String correlationId,
+                                             final Supplier<CompletionStage<T>> call) {
+        final Observation observation = hazelcastObservation(operation, processor, correlationId).start();
+        try {
+            return call.get().whenComplete((result, error) -> stop(observation, error));
+        } catch (RuntimeException e) {
+            stop(observation, e);
+            throw e;
+        }
     }
 
     /**
-     * Filter already seen messages.
+     * Creates the observation of a Hazelcast call, which covers the round trip to the owning members and the
+     * processor's run there.
      *
-     * @param messages to be filtered
-     * @param organization filter criteria
-     * @param clientId filter criteria
-     * @return filtered messages
+     * @param operation IMap operation
+     * @param processor entry processor name
+     * @param correlationId CorrelationID, or null outside of a request
+     * @return Observation, not yet started
      */
-    private List<Message> filterSeen(final List<Message> messages,
-                                     final String organization,
-                                     final String clientId) {
-        final Map<String, List<Long>> idMap = seenMap.get(organization);
-        if (idMap != null) {
-            final List<Long> seenList = idMap.get(clientId);
-            if (seenList != null) {
-                return messages.stream()
-                        .filter(message -> !seenList.contains(message.getId()))
-                        .collect(Collectors.toList());
-            }
+    private Observation hazelcastObservation(final String operation,
+                                             final String processor,
+                                             final String correlationId) {
+        final Observation observation = Observation.createNotStarted(CommonConstants.HAZELCAST_OBSERVATION,
+                        observationRegistry)
+                .contextualName("hazelcast " + operation)
+                .lowCardinalityKeyValue("hazelcast.operation", operation)
+                .lowCardinalityKeyValue("hazelcast.processor", processor);
+        tag(observation, CommonConstants.TRACE_CORRELATION_ID, correlationId);
+        return observation;
+    }
+
+    /**
+     * Adds a high cardinality key value to an observation when a value is present.
+     *
+     * @param observation Observation
+     * @param key key
+     * @param value value, or null
+     */
+    private static void tag(final Observation observation, final String key, final String value) {
+        if (value != null) {
+            observation.highCardinalityKeyValue(key, value);
         }
-        return messages;
     }
 
     /**
-     * Ensures the message ID is set before being stored.
+     * Stops an observation, recording the error it failed with if any.
      *
-     * @param message to be modified
+     * @param observation Observation
+     * @param error error, or null
      */
-    private void ensureIDIsSet(final Message message) {
-        message.setId(flakeIdGenerator.newId());
+    private static void stop(final Observation observation, final Throwable error) {
+        if (error != null) {
+            observation.error(error);
+        }
+        observation.stop();
+    }
+
+    /**
+     * Waits for an asynchronous operation, rethrowing its failure as is.
+     *
+     * @param stage CompletionStage
+     * @param <T> result type
+     * @return result
+     */
+    static <T> T await(final CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -259,6 +1280,28 @@ public class MessageService {
         }
     }
 
+    /**
+     * Records a claimed message in the audit trail, as seen if it is for every client and delivered otherwise.
+     *
+     * @param organization Organization
+     * @param message claimed Message, or null if none was claimed
+     * @param clientId ClientID
+     * @param correlationId CorrelationID
+     */
+    private static void audit(final String organization,
+                              final Message message,
+                              final String clientId,
+                              final String correlationId) {
+        if (message == null) {
+            return;
+        }
+        AuditEvent event = AuditEvent.DELIVERED;
+        if (message.getNotificationType() == NotificationType.ALL) {
+            event = AuditEvent.SEEN;
+        }
+        AuditTrail.audit(event, organization, message, clientId, correlationId);
+    }
+
     /**
      * Ensures expirationTime attribute is set.
      *
@@ -271,31 +1314,72 @@ public class MessageService {
     }
 
     /**
-     * Performs message cleanup.
+     * Performs message cleanup, counting messages which expired without ever being delivered. The queue depths found
+     * along the way are passed to the hot spot tracker, if installed, which then starts a new window. The tiers
+     * holding each organization's messages are then found again.
      */
     @Scheduled(fixedDelay = CommonConstants.CLEANUP_DELAY)
-    private void cleanup() {
-        log.info("Performing cleanup");
-        map.keySet()
-                .forEach(key -> {
-                    final List<Message> messages = map.get(key);
-                    messages.forEach(message -> {
-                        boolean expired = message.getExpirationTime().isBefore(Instant.now());
-                        if (expired) {
-                            messages.remove(message);
-                            final Map<String, List<Long>> ipMap = seenMap.get(key);
-                            if (ipMap != null) {
-                                ipMap.keySet().forEach(ipKey -> {
-                                    final List<Long> seenList = ipMap.get(ipKey);
-                                    seenList.remove(message.getId());
-                                });
-                            }
-                        }
-                    });
-                });
-        new ArrayList<>(map.keySet()).forEach(key -> {
-            if (map.get(key).isEmpty()) {
-                map.remove(key);
+    void cleanup() {
+        Observation.createNotStarted("messages.cleanup", observationRegistry).observe(() -> {
+            log.debug("Performing cleanup");
+            final long now = System.currentTimeMillis();
+            final Hotspots tracker = hotspots;
+            int inboxLimit = 0;
+            if (tracker != null) {
+                inboxLimit = tracker.getSize();
+            }
+            final int inboxes = inboxLimit;
+            final Map<String, Integer> depths = new HashMap<>();
+            final Map<String, Map<String, Integer>> inboxDepths = new HashMap<>();
+            executeOnEntries(() -> new CleanupProcessor(now, inboxes)).forEach(cleaned -> {
+                final String organization = cleaned.getKey();
+                final Map<Priority, Integer> undelivered = cleaned.getValue().getUndelivered();
+                undelivered.forEach((priority, count) -> expiredUndelivered.get(priority).increment(count));
+                if (!undelivered.isEmpty()) {
+                    log.info("Removed expired message(s) never delivered for organization: {}; by priority: {}",
+                            organization, undelivered);
+                }
+                depths.merge(organization, cleaned.getValue().getDepth(), Integer::sum);
+                cleaned.getValue().getInboxes().forEach((clientId, depth) -> inboxDepths
+                        .computeIfAbsent(organization, key -> new HashMap<>())
+                        .merge(clientId, depth, Integer::sum));
+            });
+            if (tracker != null) {
+                tracker.rotate(depths, inboxDepths);
+            }
+            locate();
+        });
+    }
+
+    /**
+     * Finds the priorities each organization holds in each tier, so that messages left in a tier by earlier tier
+     * settings are still read, in priority order, until they are gone.
+     */
+    private void locate() {
+        final Map<String, Map<Durability, Set<Priority>>> held = new HashMap<>();
+        for (final Durability durability : tiers.tiers()) {
+            executeOnEntries(durability, new PrioritiesProcessor()).forEach(found -> {
+                if (!found.getValue().isEmpty()) {
+                    held.computeIfAbsent(found.getKey(), key -> new EnumMap<>(Durability.class))
+                            .put(durability, found.getValue());
+                }
+            });
+        }
+        tiers.found(held);
+    }
+
+    /**
+     * Spills cold low priority messages on members above their heap watermark.
+     */
+    @Scheduled(fixedDelay = CommonConstants.SPILL_DELAY)
+    void spill() {
+        if (!spill.isEnabled()) {
+            return;
+        }
+        executeOnEntries(() -> new SpillProcessor(spill.getResidentHead(), spill.getBatchSize())).forEach(spilled -> {
+            if (spilled.getValue() > 0) {
+                log.info("Spilled {} low priority message(s) for organization: {}", spilled.getValue(),
+                        spilled.getKey());
             }
         });
     }
@@ -0,0 +1,562 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.cluster.Member;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.config.CommonConstants;
+import com.starfireaviation.messages.model.Subscription;
+import com.starfireaviation.messages.service.processor.SubscriptionProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Pushes messages to the callback endpoints registered by clients.
+ *
+ * Subscriptions are stored by organization, so they live in the same partition as the organization's queue. Each
+ * member dispatches only the subscriptions it owns, which keeps claims local and ensures every subscription is served
+ * by exactly one member. Clients of the data members do not dispatch.
+ *
+ * On every tick each destination is sent batches of up to its batch size, claimed with the same semantics as
+ * getMessage, while it has fewer than the per-destination limit in flight and the instance-wide limit allows. A batch
+ * the endpoint does not accept with a 2xx response is retried before any new batch, after an exponential backoff, up
+ * to the configured number of attempts. Leased messages in a batch that is given up on return to the queue when their
+ * lease expires; other messages are lost, as for a GET whose response never arrives.
+ *
+ * Before each request the destination is checked by CallbackAddresses, and one which may not be reached fails like an
+ * unreachable endpoint. A leased batch is acknowledged once accepted; messages whose acknowledgement fails, typically
+ * because their lease expired first, are counted and may be delivered again.
+ */
+@Slf4j
+public class PushDispatcher {
+
+    /**
+     * Largest shift applied when doubling the backoff.
+     */
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    /**
+     * Width of an HTTP status class.
+     */
+    private static final int STATUS_CLASS = 100;
+
+    /**
+     * Latency percentiles published for each destination.
+     */
+    private static final double[] LATENCY_PERCENTILES = {0.5, 0.99};
+
+    /**
+     * Subscriptions map.
+     * Note: Key = organization; Value = (Key = ClientID; Value = Subscription)
+     */
+    private final IMap<String, Map<String, Subscription>> subscriptions;
+
+    /**
+     * MessageService.
+     */
+    private final MessageService messageService;
+
+    /**
+     * Push settings.
+     */
+    private final ApplicationProperties.Push push;
+
+    /**
+     * ObjectMapper.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * MeterRegistry.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * HttpClient.
+     */
+    private final HttpClient httpClient;
+
+    /**
+     * Whether this instance is a data member, and therefore owns subscriptions.
+     */
+    private final boolean member;
+
+    /**
+     * Requests which may still be started across all destinations.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Destinations being dispatched to.
+     * Note: Key = organization/ClientID; Value = Destination
+     */
+    private final Map<String, Destination> destinations = new ConcurrentHashMap<>();
+
+    /**
+     * Messages accepted by their endpoint.
+     */
+    private final Counter delivered;
+
+    /**
+     * Requests which failed or were not accepted.
+     */
+    private final Counter failed;
+
+    /**
+     * Messages in batches given up on.
+     */
+    private final Counter dropped;
+
+    /**
+     * Accepted messages whose acknowledgement failed.
+     */
+    private final Counter ackFailed;
+
+    /**
+     * PushDispatcher.
+     *
+     * @param hazelcastInstance HazelcastInstance
+     * @param mService MessageService
+     * @param settings push settings
+     * @param mapper ObjectMapper
+     * @param registry MeterRegistry
+     */
+    public PushDispatcher(final HazelcastInstance hazelcastInstance,
+                          final MessageService mService,
+                          final ApplicationProperties.Push settings,
+                          final ObjectMapper mapper,
+                          final MeterRegistry registry) {
+        subscriptions = hazelcastInstance.getMap(CommonConstants.SUBSCRIPTIONS_MAP);
+        member = hazelcastInstance.getLocalEndpoint() instanceof Member;
+        messageService = mService;
+        push = settings;
+        objectMapper = mapper;
+        meterRegistry = registry;
+        httpClient = HttpClient.newBuilder().connectTimeout(settings.getRequestTimeout()).build();
+        permits = new Semaphore(settings.getMaxInFlight());
+        delivered = Counter.builder("messages.push.delivered").register(registry);
+        failed = Counter.builder("messages.push.failed").register(registry);
+        dropped = Counter.builder("messages.push.dropped").register(registry);
+        ackFailed = Counter.builder("messages.push.ack.failed").register(registry);
+        Gauge.builder("messages.push.in.flight", permits,
+                semaphore -> push.getMaxInFlight() - semaphore.availablePermits()).register(registry);
+    }
+
+    /**
+     * Registers a client's subscription, replacing any previous one.
+     *
+     * @param organization Organization
+     * @param subscription Subscription
+     * @param correlationId CorrelationID
+     */
+    public void subscribe(final String organization, final Subscription subscription, final String correlationId) {
+        MessageService.await(subscribeAsync(organization, subscription, correlationId));
+    }
+
+    /**
+     * Registers a client's subscription, replacing any previous one, without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param subscription Subscription
+     * @param correlationId CorrelationID
+     * @return the replaced Subscription, or null if there was none
+     */
+    public CompletionStage<Subscription> subscribeAsync(final String organization,
+                                                        final Subscription subscription,
+                                                        final String correlationId) {
+        log.info("Subscribing client: {} of organization: {} to {}; correlationId: {}",
+                subscription.getClientId(), organization, subscription.getUrl(), correlationId);
+        return subscriptions.submitToKey(organization,
+                new SubscriptionProcessor(subscription.getClientId(), subscription));
+    }
+
+    /**
+     * Removes a client's subscription.
+     *
+     * @param organization Organization
+     * @param clientId ClientID
+     * @param correlationId CorrelationID
+     * @return removed Subscription, or null if there was none
+     */
+    public Subscription unsubscribe(final String organization, final String clientId, final String correlationId) {
+        return MessageService.await(unsubscribeAsync(organization, clientId, correlationId));
+    }
+
+    /**
+     * Removes a client's subscription without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param clientId ClientID
+     * @param correlationId CorrelationID
+     * @return removed Subscription, or null if there was none
+     */
+    public CompletionStage<Subscription> unsubscribeAsync(final String organization,
+                                                          final String clientId,
+                                                          final String correlationId) {
+        log.info("Unsubscribing client: {} of organization: {}; correlationId: {}", clientId, organization,
+                correlationId);
+        return subscriptions.submitToKey(organization, new SubscriptionProcessor(clientId, null));
+    }
+
+    /**
+     * An organization's subscriptions.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return subscriptions, ordered by ClientID
+     */
+    public List<Subscription> getSubscriptions(final String organization, final String correlationId) {
+        return MessageService.await(getSubscriptionsAsync(organization, correlationId));
+    }
+
+    /**
+     * An organization's subscriptions, read without blocking the calling thread.
+     *
+     * @param organization Organization
+     * @param correlationId CorrelationID
+     * @return subscriptions, ordered by ClientID
+     */
+    public CompletionStage<List<Subscription>> getSubscriptionsAsync(final String organization,
+                                                                     final String correlationId) {
+        log.debug("Getting subscriptions for organization: {}; correlationId: {}", organization, correlationId);
+        return subscriptions.getAsync(organization).thenApply(registered -> {
+            if (registered == null) {
+                return List.of();
+            }
+            final List<Subscription> result = new ArrayList<>(registered.values());
+            result.sort(Comparator.comparing(Subscription::getClientId));
+            return result;
+        });
+    }
+
+    /**
+     * Dispatches to every subscription owned by this member.
+     */
+    @Scheduled(fixedDelay = CommonConstants.PUSH_DELAY)
+    void dispatch() {
+        if (!push.isEnabled() || !member) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final Set<String> active = new HashSet<>();
+        for (final String organization : subscriptions.localKeySet()) {
+            final Map<String, Subscription> registered = subscriptions.get(organization);
+            if (registered == null) {
+                continue;
+            }
+            for (final Subscription subscription : registered.values()) {
+                final String key = organization + "/" + subscription.getClientId();
+                active.add(key);
+                final Destination destination = destinations.computeIfAbsent(key,
+                        k -> new Destination(organization, subscription.getClientId()));
+                destination.subscription = subscription;
+                dispatch(destination, now);
+            }
+        }
+        destinations.entrySet().removeIf(entry -> {
+            if (active.contains(entry.getKey())) {
+                return false;
+            }
+            meterRegistry.remove(entry.getValue().latency);
+            return true;
+        });
+    }
+
+    /**
+     * Starts as many requests to a destination as its backoff and the in-flight limits allow.
+     *
+     * @param destination Destination
+     * @param now current time, in epoch milliseconds
+     */
+    private void dispatch(final Destination destination, final long now) {
+        while (now >= destination.nextAttempt
+                && destination.inFlight.get() < push.getMaxInFlightPerDestination()
+                && permits.tryAcquire()) {
+            Batch batch = destination.retries.pollFirst();
+            if (batch == null) {
+                final List<Message> messages;
+                try {
+                    messages = claim(destination);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to claim messages for {}", destination.key(), e);
+                    permits.release();
+                    return;
+                }
+                if (messages.isEmpty()) {
+                    permits.release();
+                    return;
+                }
+                batch = new Batch(messages);
+            }
+            send(destination, batch);
+        }
+    }
+
+    /**
+     * Claims the next batch for a destination.
+     *
+     * @param destination Destination
+     * @return claimed messages
+     */
+    private List<Message> claim(final Destination destination) {
+        final Subscription subscription = destination.subscription;
+        NotificationType notificationType = subscription.getNotificationType();
+        if (notificationType == null) {
+            notificationType = NotificationType.ALL;
+        }
+        Duration lease = null;
+        if (subscription.getLease() != null) {
+            lease = Duration.ofSeconds(subscription.getLease());
+        }
+        return messageService.getMessages(destination.organization, notificationType, destination.clientId,
+                Math.min(subscription.getBatchSize(), push.getMaxBatchSize()), UUID.randomUUID().toString(), lease);
+    }
+
+    /**
+     * POSTs a batch to its destination.
+     *
+     * @param destination Destination
+     * @param batch Batch
+     */
+    private void send(final Destination destination, final Batch batch) {
+        destination.inFlight.incrementAndGet();
+        batch.attempts++;
+        final HttpRequest request;
+        try {
+            final URI url = URI.create(destination.subscription.getUrl());
+            CallbackAddresses.check(url, push);
+            request = HttpRequest.newBuilder(url)
+                    .timeout(push.getRequestTimeout())
+                    .header("Content-Type", "application/json")
+                    .header("organization", destination.organization)
+                    .header("client-id", destination.clientId)
+                    .header("correlation-id", batch.correlationId)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch.messages)))
+                    .build();
+        } catch (IOException | IllegalArgumentException e) {
+            completed(destination, batch, null, e);
+            return;
+        }
+        final long start = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            destination.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            completed(destination, batch, response, failure);
+        });
+    }
+
+    /**
+     * Acknowledges an accepted batch, or schedules a retry of a failed one.
+     *
+     * @param destination Destination
+     * @param batch Batch
+     * @param response HttpResponse, or null if the request failed
+     * @param failure request failure, or null
+     */
+    private void completed(final Destination destination,
+                           final Batch batch,
+                           final HttpResponse<Void> response,
+                           final Throwable failure) {
+        destination.inFlight.decrementAndGet();
+        permits.release();
+        if (failure == null && response.statusCode() / STATUS_CLASS == 2) {
+            destination.failures.set(0);
+            delivered.increment(batch.messages.size());
+            if (destination.subscription.getLease() != null) {
+                acknowledge(destination, batch);
+            }
+            return;
+        }
+        failed.increment();
+        final int failures = destination.failures.incrementAndGet();
+        final long backoff = Math.min(push.getMaxBackoff().toMillis(),
+                push.getInitialBackoff().toMillis() << Math.min(failures - 1, MAX_BACKOFF_SHIFT));
+        destination.nextAttempt = System.currentTimeMillis() + backoff;
+        if (batch.attempts < push.getMaxAttempts()) {
+            log.warn("Push of {} message(s) to {} failed on attempt {}, retrying in {} ms: {}",
+                    batch.messages.size(), destination.key(), batch.attempts, backoff, describe(response, failure));
+            destination.retries.addFirst(batch);
+        } else {
+            log.warn("Giving up pushing {} message(s) to {} after {} attempts: {}",
+                    batch.messages.size(), destination.key(), batch.attempts, describe(response, failure));
+            dropped.increment(batch.messages.size());
+        }
+    }
+
+    /**
+     * Acknowledges the leased messages of an accepted batch, recording any which could not be acknowledged.
+     *
+     * @param destination Destination
+     * @param batch Batch
+     */
+    private void acknowledge(final Destination destination, final Batch batch) {
+        final List<Long> ids = batch.messages.stream().map(Message::getId).toList();
+        final CompletionStage<List<Long>> acknowledged;
+        try {
+            acknowledged = messageService.acknowledgeAsync(destination.organization, ids, batch.correlationId);
+        } catch (RuntimeException e) {
+            acknowledgeFailed(destination, batch, ids.size(), e.toString());
+            return;
+        }
+        acknowledged.whenComplete((acked, failure) -> {
+            if (failure != null) {
+                acknowledgeFailed(destination, batch, ids.size(), failure.toString());
+            } else if (acked.size() < ids.size()) {
+                acknowledgeFailed(destination, batch, ids.size() - acked.size(), "lease no longer held");
+            }
+        });
+    }
+
+    /**
+     * Logs and counts messages which were accepted but not acknowledged.
+     *
+     * @param destination Destination
+     * @param batch Batch
+     * @param count messages not acknowledged
+     * @param reason why they were not acknowledged
+     */
+    private void acknowledgeFailed(final Destination destination,
+                                   final Batch batch,
+                                   final int count,
+                                   final String reason) {
+        log.warn("Unable to acknowledge {} of {} message(s) pushed to {}, they may be delivered again; "
+                        + "correlationId: {}: {}",
+                count, batch.messages.size(), destination.key(), batch.correlationId, reason);
+        ackFailed.increment(count);
+    }
+
+    private static String describe(final HttpResponse<Void> response, final Throwable failure) {
+        if (failure != null) {
+            return failure.toString();
+        }
+        return "HTTP " + response.statusCode();
+    }
+
+    /**
+     * Dispatch state for one subscription.
+     */
+    private final class Destination {
+
+        /**
+         * Organization.
+         */
+        private final String organization;
+
+        /**
+         * ClientID.
+         */
+        private final String clientId;
+
+        /**
+         * Latest registered subscription.
+         */
+        private volatile Subscription subscription;
+
+        /**
+         * Requests in flight.
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * Consecutive failed requests.
+         */
+        private final AtomicInteger failures = new AtomicInteger();
+
+        /**
+         * Earliest time of the next request, in epoch milliseconds.
+         */
+        private volatile long nextAttempt;
+
+        /**
+         * Batches awaiting a retry, sent before any new batch.
+         */
+        private final Deque<Batch> retries = new ConcurrentLinkedDeque<>();
+
+        /**
+         * Request latency.
+         */
+        private final Timer latency;
+
+        private Destination(final String org, final String client) {
+            organization = org;
+            clientId = client;
+            latency = Timer.builder("messages.push.latency")
+                    .tag("organization", org)
+                    .tag("client", client)
+                    .publishPercentiles(LATENCY_PERCENTILES)
+                    .register(meterRegistry);
+        }
+
+        private String key() {
+            return organization + "/" + clientId;
+        }
+    }
+
+    /**
+     * Messages sent together.
+     */
+    private static final class Batch {
+
+        /**
+         * Messages, in delivery order.
+         */
+        private final List<Message> messages;
+
+        /**
+         * CorrelationID sent with every attempt, so that the endpoint can detect a redelivery.
+         */
+        private final String correlationId = UUID.randomUUID().toString();
+
+        /**
+         * Attempts made.
+         */
+        private int attempts;
+
+        private Batch(final List<Message> batch) {
+            messages = batch;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acknowledges leased messages in an organization's queue, removing them permanently.
+ */
+public class AcknowledgeProcessor implements EntryProcessor<String, MessageQueue, List<Long>> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Message IDs.
+     */
+    private final List<Long> ids;
+
+    /**
+     * Current time, in epoch milliseconds.
+     */
+    private final long now;
+
+    /**
+     * AcknowledgeProcessor.
+     *
+     * @param messageIds Message IDs
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public AcknowledgeProcessor(final List<Long> messageIds, final long currentTime) {
+        ids = new ArrayList<>(messageIds);
+        now = currentTime;
+    }
+
+    /**
+     * Acknowledges the messages.
+     *
+     * @param entry organization entry
+     * @return IDs of the messages whose lease was acknowledged
+     */
+    @Override
+    public List<Long> process(final Map.Entry<String, MessageQueue> entry) {
+        final List<Long> acknowledged = new ArrayList<>();
+        final MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            return acknowledged;
+        }
+        queue.releaseExpiredLeases(now);
+        ids.forEach(id -> {
+            if (queue.acknowledge(id)) {
+                acknowledged.add(id);
+            }
+        });
+        if (queue.isEmpty()) {
+            entry.setValue(null);
+        } else {
+            entry.setValue(queue);
+        }
+        return acknowledged;
+    }
+}
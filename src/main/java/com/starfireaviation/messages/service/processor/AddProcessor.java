@@ -0,0 +1,102 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Appends a message to an organization's queue, creating the queue if needed.
+ *
+ * The same processor is applied to backups so that the queue is never copied in full.
+ */
+public class AddProcessor implements EntryProcessor<String, MessageQueue, Boolean> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Message.
+     */
+    private final Message message;
+
+    /**
+     * ClientID(s) the message is targeted at, or null for any client.
+     */
+    private final Set<String> targets;
+
+    /**
+     * Group key, or null if the message is not grouped.
+     */
+    private final String group;
+
+    /**
+     * Current time, in epoch milliseconds.
+     */
+    private final long now;
+
+    /**
+     * AddProcessor.
+     *
+     * @param newMessage Message
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public AddProcessor(final Message newMessage, final long currentTime) {
+        this(newMessage, null, null, currentTime);
+    }
+
+    /**
+     * AddProcessor.
+     *
+     * @param newMessage Message
+     * @param clientIds ClientID(s) the message is targeted at, or null for any client
+     * @param groupKey group key, or null if the message is not grouped
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public AddProcessor(final Message newMessage,
+                        final Set<String> clientIds,
+                        final String groupKey,
+                        final long currentTime) {
+        message = newMessage;
+        targets = clientIds;
+        group = groupKey;
+        now = currentTime;
+    }
+
+    /**
+     * Adds the message.
+     *
+     * @param entry organization entry
+     * @return true
+     */
+    @Override
+    public Boolean process(final Map.Entry<String, MessageQueue> entry) {
+        MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            queue = new MessageQueue();
+        }
+        queue.add(message, targets, group, now);
+        entry.setValue(queue);
+        return true;
+    }
+}
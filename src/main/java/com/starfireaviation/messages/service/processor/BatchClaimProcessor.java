@@ -0,0 +1,139 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.DeliveryOrder;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Data;
+
+/**
+ * Claims messages for several callers from an organization's queue in one operation.
+ *
+ * Claims are applied one after another in the order given, exactly as if each had been submitted on its own in that
+ * order, so earlier callers receive the higher-priority messages. Selection depends only on the queue and the
+ * processor's own fields, so applying the same processor to backups claims the same messages there.
+ */
+public class BatchClaimProcessor implements EntryProcessor<String, MessageQueue, List<Message>> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Claims, in the order they are applied.
+     */
+    private final List<Claim> claims;
+
+    /**
+     * Current time, in epoch milliseconds.
+     */
+    private final long now;
+
+    /**
+     * BatchClaimProcessor.
+     *
+     * @param batch claims, in the order they are applied
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public BatchClaimProcessor(final List<Claim> batch, final long currentTime) {
+        claims = new ArrayList<>(batch);
+        now = currentTime;
+    }
+
+    /**
+     * Claims a message for each caller.
+     *
+     * @param entry organization entry
+     * @return claimed Messages, positionally matching the claims, with null where none was deliverable
+     */
+    @Override
+    public List<Message> process(final Map.Entry<String, MessageQueue> entry) {
+        final List<Message> messages = new ArrayList<>(claims.size());
+        final MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            claims.forEach(claim -> messages.add(null));
+            return messages;
+        }
+        boolean modified = queue.releaseExpiredLeases(now) > 0;
+        final Instant instant = Instant.ofEpochMilli(now);
+        for (final Claim claim : claims) {
+            final Message message = queue.claim(claim.getNotificationType(), claim.getClientId(),
+                    claim.getConsumerGroup(), claim.getLeaseDeadline(), instant, claim.getOrder(),
+                    claim.getPriorities());
+            modified |= message != null;
+            messages.add(message);
+        }
+        if (modified) {
+            entry.setValue(queue);
+        }
+        return messages;
+    }
+
+    /**
+     * A single caller's claim.
+     */
+    @Data
+    public static class Claim implements Serializable {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * NotificationType.
+         */
+        private final NotificationType notificationType;
+
+        /**
+         * ClientID.
+         */
+        private final String clientId;
+
+        /**
+         * Consumer group, or null if the caller is not in one.
+         */
+        private final String consumerGroup;
+
+        /**
+         * Lease deadline, in epoch milliseconds, or null for at-most-once delivery.
+         */
+        private final Long leaseDeadline;
+
+        /**
+         * DeliveryOrder within each Priority.
+         */
+        private final DeliveryOrder order;
+
+        /**
+         * Priority(s) claimed from.
+         */
+        private final Set<Priority> priorities;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.DeliveryOrder;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Claims the next deliverable message from an organization's queue.
+ *
+ * Directed messages are removed, or leased when a lease deadline is provided. Messages for every client are marked
+ * as seen by the caller, or by its consumer group when it is in one. Selection depends only on the queue and the
+ * processor's own fields, so applying the same processor to backups claims the same message there.
+ */
+public class ClaimProcessor implements EntryProcessor<String, MessageQueue, Message> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * NotificationType.
+     */
+    private final NotificationType notificationType;
+
+    /**
+     * ClientID.
+     */
+    private final String clientId;
+
+    /**
+     * Consumer group, or null if the caller is not in one.
+     */
+    private final String consumerGroup;
+
+    /**
+     * Lease deadline, in epoch milliseconds, or null for at-most-once delivery.
+     */
+    private final Long leaseDeadline;
+
+    /**
+     * DeliveryOrder within each Priority.
+     */
+    private final DeliveryOrder order;
+
+    /**
+     * Priority(s) claimed from.
+     */
+    private final Set<Priority> priorities;
+
+    /**
+     * Current time, in epoch milliseconds.
+     */
+    private final long now;
+
+    /**
+     * ClaimProcessor delivering in arrival order.
+     *
+     * @param type NotificationType
+     * @param client ClientID
+     * @param deadline lease deadline, in epoch milliseconds, or null for at-most-once delivery
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public ClaimProcessor(final NotificationType type,
+                          final String client,
+                          final Long deadline,
+                          final long currentTime) {
+        this(type, client, deadline, DeliveryOrder.ARRIVAL, EnumSet.allOf(Priority.class), currentTime);
+    }
+
+    /**
+     * ClaimProcessor.
+     *
+     * @param type NotificationType
+     * @param client ClientID
+     * @param deadline lease deadline, in epoch milliseconds, or null for at-most-once delivery
+     * @param deliveryOrder DeliveryOrder within each Priority
+     * @param claimed Priority(s) claimed from
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public ClaimProcessor(final NotificationType type,
+                          final String client,
+                          final Long deadline,
+                          final DeliveryOrder deliveryOrder,
+                          final Set<Priority> claimed,
+                          final long currentTime) {
+        this(type, client, null, deadline, deliveryOrder, claimed, currentTime);
+    }
+
+    /**
+     * ClaimProcessor for a caller in a consumer group.
+     *
+     * @param type NotificationType
+     * @param client ClientID
+     * @param group consumer group, or null if the caller is not in one
+     * @param deadline lease deadline, in epoch milliseconds, or null for at-most-once delivery
+     * @param deliveryOrder DeliveryOrder within each Priority
+     * @param claimed Priority(s) claimed from
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public ClaimProcessor(final NotificationType type,
+                          final String client,
+                          final String group,
+                          final Long deadline,
+                          final DeliveryOrder deliveryOrder,
+                          final Set<Priority> claimed,
+                          final long currentTime) {
+        notificationType = type;
+        clientId = client;
+        consumerGroup = group;
+        leaseDeadline = deadline;
+        order = deliveryOrder;
+        priorities = claimed;
+        now = currentTime;
+    }
+
+    /**
+     * Claims a message.
+     *
+     * @param entry organization entry
+     * @return claimed Message, or null if none is deliverable
+     */
+    @Override
+    public Message process(final Map.Entry<String, MessageQueue> entry) {
+        final MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            return null;
+        }
+        final boolean released = queue.releaseExpiredLeases(now) > 0;
+        final Message message = queue.claim(notificationType, clientId, consumerGroup, leaseDeadline,
+                Instant.ofEpochMilli(now), order, priorities);
+        if (released || message != null) {
+            entry.setValue(queue);
+        }
+        return message;
+    }
+}
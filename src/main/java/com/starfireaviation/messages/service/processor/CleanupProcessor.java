@@ -0,0 +1,130 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.audit.AuditEvent;
+import com.starfireaviation.messages.audit.AuditTrail;
+import com.starfireaviation.messages.model.CleanupResult;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Releases expired leases and removes expired messages from an organization's queue, removing the queue once empty.
+ *
+ * Expired messages are recorded in the audit trail of the member owning the queue. Backups apply the same cleanup
+ * without recording them again. The depth of the queue left behind is returned too, so that the deepest queues can be
+ * found without another pass over every organization.
+ */
+public class CleanupProcessor implements EntryProcessor<String, MessageQueue, CleanupResult> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Current time, in epoch milliseconds.
+     */
+    private final long now;
+
+    /**
+     * Whether expired messages are recorded in the audit trail.
+     */
+    private final boolean audited;
+
+    /**
+     * Most inboxes reported.
+     */
+    private final int inboxes;
+
+    /**
+     * CleanupProcessor.
+     *
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public CleanupProcessor(final long currentTime) {
+        this(currentTime, 0);
+    }
+
+    /**
+     * CleanupProcessor.
+     *
+     * @param currentTime current time, in epoch milliseconds
+     * @param inboxLimit most inboxes reported, largest first
+     */
+    public CleanupProcessor(final long currentTime, final int inboxLimit) {
+        this(currentTime, true, inboxLimit);
+    }
+
+    /**
+     * CleanupProcessor.
+     *
+     * @param currentTime current time, in epoch milliseconds
+     * @param audit whether expired messages are recorded in the audit trail
+     * @param inboxLimit most inboxes reported, largest first
+     */
+    private CleanupProcessor(final long currentTime, final boolean audit, final int inboxLimit) {
+        now = currentTime;
+        audited = audit;
+        inboxes = inboxLimit;
+    }
+
+    /**
+     * Cleans up the queue.
+     *
+     * @param entry organization entry
+     * @return expired messages removed which were never delivered, and the depth of the queue left
+     */
+    @Override
+    public CleanupResult process(final Map.Entry<String, MessageQueue> entry) {
+        final CleanupResult result = new CleanupResult();
+        final MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            return result;
+        }
+        final int released = queue.releaseExpiredLeases(now);
+        final List<Message> expired = queue.removeExpired(Instant.ofEpochMilli(now), result.getUndelivered());
+        if (audited) {
+            expired.forEach(message -> AuditTrail.audit(AuditEvent.EXPIRED, entry.getKey(), message, null, null));
+        }
+        if (queue.isEmpty()) {
+            entry.setValue(null);
+        } else if (released > 0 || !expired.isEmpty()) {
+            entry.setValue(queue);
+        }
+        result.setDepth(queue.size());
+        if (inboxes > 0) {
+            result.setInboxes(queue.largestInboxes(inboxes));
+        }
+        return result;
+    }
+
+    /**
+     * Applies the same cleanup to backups, without auditing.
+     *
+     * @return backup processor
+     */
+    @Override
+    public EntryProcessor<String, MessageQueue, CleanupResult> getBackupProcessor() {
+        return new CleanupProcessor(now, false, 0);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.core.ReadOnly;
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.messages.model.ExportPage;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.util.Map;
+
+/**
+ * Reads a page of an organization's stored messages, in queue order, on the member owning the organization.
+ *
+ * Each page starts after the last message of the previous one, so an export never holds more than a page in memory.
+ */
+public class ExportProcessor implements EntryProcessor<String, MessageQueue, ExportPage>, ReadOnly {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Queue sequence to start after.
+     */
+    private final long after;
+
+    /**
+     * Most messages returned.
+     */
+    private final int limit;
+
+    /**
+     * ExportProcessor.
+     *
+     * @param afterSequence queue sequence to start after, or -1 to start at the beginning
+     * @param pageSize most messages returned
+     */
+    public ExportProcessor(final long afterSequence, final int pageSize) {
+        after = afterSequence;
+        limit = pageSize;
+    }
+
+    /**
+     * Reads the page.
+     *
+     * @param entry organization entry
+     * @return ExportPage
+     */
+    @Override
+    public ExportPage process(final Map.Entry<String, MessageQueue> entry) {
+        final ExportPage page = new ExportPage();
+        final MessageQueue queue = entry.getValue();
+        if (queue != null) {
+            page.setMessages(queue.export(after, limit));
+        }
+        return page;
+    }
+
+    /**
+     * Read-only processors have no backup processor.
+     *
+     * @return null
+     */
+    @Override
+    public EntryProcessor<String, MessageQueue, ExportPage> getBackupProcessor() {
+        return null;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.messages.model.ExportedMessage;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends a batch of exported messages to an organization's queue, creating the queue if needed.
+ *
+ * The same processor is applied to backups so that the queue is never copied in full.
+ */
+public class ImportProcessor implements EntryProcessor<String, MessageQueue, Integer> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Exported messages, in queue order.
+     */
+    private final List<ExportedMessage> messages;
+
+    /**
+     * Current time, in epoch milliseconds.
+     */
+    private final long now;
+
+    /**
+     * ImportProcessor.
+     *
+     * @param exported ExportedMessage(s), in queue order
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public ImportProcessor(final List<ExportedMessage> exported, final long currentTime) {
+        messages = exported;
+        now = currentTime;
+    }
+
+    /**
+     * Adds the messages, skipping those already queued or expired.
+     *
+     * @param entry organization entry
+     * @return number of messages added
+     */
+    @Override
+    public Integer process(final Map.Entry<String, MessageQueue> entry) {
+        MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            queue = new MessageQueue();
+        }
+        final Instant time = Instant.ofEpochMilli(now);
+        int imported = 0;
+        for (final ExportedMessage exported : messages) {
+            if (queue.restore(exported, time)) {
+                imported++;
+            }
+        }
+        if (imported > 0) {
+            entry.setValue(queue);
+        }
+        return imported;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.core.ReadOnly;
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.util.Map;
+
+/**
+ * Finds a message by ID on the member owning the organization, without transferring the queue.
+ */
+public class LookupProcessor implements EntryProcessor<String, MessageQueue, Message>, ReadOnly {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Message ID.
+     */
+    private final Long id;
+
+    /**
+     * LookupProcessor.
+     *
+     * @param messageId Message ID
+     */
+    public LookupProcessor(final Long messageId) {
+        id = messageId;
+    }
+
+    /**
+     * Finds the message.
+     *
+     * @param entry organization entry
+     * @return Message, or null if not found
+     */
+    @Override
+    public Message process(final Map.Entry<String, MessageQueue> entry) {
+        final MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            return null;
+        }
+        return queue.get(id);
+    }
+
+    /**
+     * Read-only processors have no backup processor.
+     *
+     * @return null
+     */
+    @Override
+    public EntryProcessor<String, MessageQueue, Message> getBackupProcessor() {
+        return null;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.core.ReadOnly;
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.DeliveryOrder;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the next messages in delivery order on the member owning the organization, without claiming them.
+ */
+public class PeekProcessor implements EntryProcessor<String, MessageQueue, List<Message>>, ReadOnly {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximum number of messages to return.
+     */
+    private final int count;
+
+    /**
+     * NotificationType.
+     */
+    private final NotificationType notificationType;
+
+    /**
+     * Current time.
+     */
+    private final Instant now;
+
+    /**
+     * DeliveryOrder within each Priority.
+     */
+    private final DeliveryOrder order;
+
+    /**
+     * Priority(s) read from.
+     */
+    private final Set<Priority> priorities;
+
+    /**
+     * PeekProcessor reading in arrival order.
+     *
+     * @param maxCount maximum number of messages to return
+     * @param type NotificationType
+     * @param currentTime current time
+     */
+    public PeekProcessor(final int maxCount, final NotificationType type, final Instant currentTime) {
+        this(maxCount, type, DeliveryOrder.ARRIVAL, EnumSet.allOf(Priority.class), currentTime);
+    }
+
+    /**
+     * PeekProcessor.
+     *
+     * @param maxCount maximum number of messages to return
+     * @param type NotificationType
+     * @param deliveryOrder DeliveryOrder within each Priority
+     * @param read Priority(s) read from
+     * @param currentTime current time
+     */
+    public PeekProcessor(final int maxCount,
+                         final NotificationType type,
+                         final DeliveryOrder deliveryOrder,
+                         final Set<Priority> read,
+                         final Instant currentTime) {
+        count = maxCount;
+        notificationType = type;
+        order = deliveryOrder;
+        priorities = read;
+        now = currentTime;
+    }
+
+    /**
+     * Reads the next messages.
+     *
+     * @param entry organization entry
+     * @return messages
+     */
+    @Override
+    public List<Message> process(final Map.Entry<String, MessageQueue> entry) {
+        final MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            return new ArrayList<>();
+        }
+        return queue.peek(count, notificationType, now, order, priorities);
+    }
+
+    /**
+     * Read-only processors have no backup processor.
+     *
+     * @return null
+     */
+    @Override
+    public EntryProcessor<String, MessageQueue, List<Message>> getBackupProcessor() {
+        return null;
+    }
+}
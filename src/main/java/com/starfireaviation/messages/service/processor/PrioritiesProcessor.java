@@ -0,0 +1,61 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.core.ReadOnly;
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the priorities of the messages held in an organization's queue, without transferring the queue.
+ */
+public class PrioritiesProcessor implements EntryProcessor<String, MessageQueue, Set<Priority>>, ReadOnly {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Reads the priorities held.
+     *
+     * @param entry organization entry
+     * @return Priority(s) of the available and leased messages
+     */
+    @Override
+    public Set<Priority> process(final Map.Entry<String, MessageQueue> entry) {
+        final MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            return EnumSet.noneOf(Priority.class);
+        }
+        return queue.heldPriorities();
+    }
+
+    /**
+     * Read-only processors have no backup processor.
+     *
+     * @return null
+     */
+    @Override
+    public EntryProcessor<String, MessageQueue, Set<Priority>> getBackupProcessor() {
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.core.ReadOnly;
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.messages.model.MessageQueue;
+import com.starfireaviation.messages.model.QueueStats;
+import java.util.Map;
+
+/**
+ * Reads queue statistics on the member owning the organization, without transferring the queue.
+ */
+public class QueueStatsProcessor implements EntryProcessor<String, MessageQueue, QueueStats>, ReadOnly {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Current time, in epoch milliseconds.
+     */
+    private final long now;
+
+    /**
+     * QueueStatsProcessor.
+     *
+     * @param currentTime current time, in epoch milliseconds
+     */
+    public QueueStatsProcessor(final long currentTime) {
+        now = currentTime;
+    }
+
+    /**
+     * Reads queue statistics.
+     *
+     * @param entry organization entry
+     * @return QueueStats
+     */
+    @Override
+    public QueueStats process(final Map.Entry<String, MessageQueue> entry) {
+        final MessageQueue queue = entry.getValue();
+        if (queue == null) {
+            return new QueueStats();
+        }
+        return queue.getStats(now);
+    }
+
+    /**
+     * Read-only processors have no backup processor.
+     *
+     * @return null
+     */
+    @Override
+    public EntryProcessor<String, MessageQueue, QueueStats> getBackupProcessor() {
+        return null;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.MessageQueue;
+import com.starfireaviation.messages.spill.SpillStore;
+import java.util.Map;
+
+/**
+ * Spills the payloads of an organization's oldest low priority messages to disk while the member holding the queue
+ * is above its heap watermark.
+ *
+ * The store and the watermark are those of the member the processor runs on, so a backup replica is spilled by its
+ * own member as needed. Spilling does not change the queue's contents, so the entry is not written back.
+ */
+public class SpillProcessor implements EntryProcessor<String, MessageQueue, Integer> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of low priority messages at the head of each queue kept in memory.
+     */
+    private final int resident;
+
+    /**
+     * Most messages spilled from each queue at once.
+     */
+    private final int limit;
+
+    /**
+     * SpillProcessor.
+     *
+     * @param residentHead number of low priority messages at the head of each queue kept in memory
+     * @param batchSize most messages spilled from each queue at once
+     */
+    public SpillProcessor(final int residentHead, final int batchSize) {
+        resident = residentHead;
+        limit = batchSize;
+    }
+
+    /**
+     * Spills the queue's cold messages.
+     *
+     * @param entry organization entry
+     * @return number of messages spilled
+     */
+    @Override
+    public Integer process(final Map.Entry<String, MessageQueue> entry) {
+        final MessageQueue queue = entry.getValue();
+        final SpillStore store = SpillStore.getInstance();
+        if (queue == null || store == null || !store.isAboveWatermark()) {
+            return 0;
+        }
+        return queue.spill(Priority.LOW, resident, limit, store);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service.processor;
+
+import com.hazelcast.map.EntryProcessor;
+import com.starfireaviation.messages.model.Subscription;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registers or removes a client's push subscription for an organization, removing the entry once no subscriptions
+ * remain.
+ */
+public class SubscriptionProcessor implements EntryProcessor<String, Map<String, Subscription>, Subscription> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ClientID.
+     */
+    private final String clientId;
+
+    /**
+     * Subscription to register, or null to remove the client's subscription.
+     */
+    private final Subscription subscription;
+
+    /**
+     * SubscriptionProcessor.
+     *
+     * @param client ClientID
+     * @param registration Subscription to register, or null to remove the client's subscription
+     */
+    public SubscriptionProcessor(final String client, final Subscription registration) {
+        clientId = client;
+        subscription = registration;
+    }
+
+    /**
+     * Registers or removes the subscription.
+     *
+     * @param entry organization entry
+     * @return the client's previous Subscription, or null if there was none
+     */
+    @Override
+    public Subscription process(final Map.Entry<String, Map<String, Subscription>> entry) {
+        Map<String, Subscription> subscriptions = entry.getValue();
+        if (subscriptions == null) {
+            subscriptions = new HashMap<>();
+        }
+        final Subscription previous;
+        if (subscription == null) {
+            previous = subscriptions.remove(clientId);
+        } else {
+            previous = subscriptions.put(clientId, subscription);
+        }
+        if (subscriptions.isEmpty()) {
+            entry.setValue(null);
+        } else {
+            entry.setValue(subscriptions);
+        }
+        return previous;
+    }
+}
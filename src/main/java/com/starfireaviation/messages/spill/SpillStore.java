@@ -0,0 +1,467 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.spill;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only segment files holding the payloads of messages spilled out of memory.
+ *
+ * Payloads are appended back to back to the active segment, which is sealed once it reaches the segment size and
+ * replaced by a new one. Only the payload bytes are written: the message metadata stays in memory, so ordering,
+ * statistics and expiry never read from disk. A segment is deleted once every record in it has been freed. Messages
+ * are spilled oldest first and delivered in the same order, so segments drain roughly in the order they were written
+ * and are not compacted.
+ *
+ * Records should be freed explicitly as soon as their message leaves the queue or is paged back in. As with the
+ * payload arena, copies of a queue dropped by Hazelcast are never freed explicitly, so a record that becomes
+ * unreachable is also freed by a Cleaner.
+ *
+ * The store is shared by the whole process, for the same reason as the payload arena, and its data does not outlive
+ * it: segments left in the directory by an earlier process are deleted when the store is created.
+ */
+public final class SpillStore {
+
+    /**
+     * Segment file name prefix.
+     */
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    /**
+     * Segment file name suffix.
+     */
+    private static final String SEGMENT_SUFFIX = ".spill";
+
+    /**
+     * Percent.
+     */
+    private static final double PERCENT = 100.0;
+
+    /**
+     * Frees records which become unreachable without being freed.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * Installed store, or null if messages are never spilled.
+     */
+    private static volatile SpillStore instance;
+
+    /**
+     * Directory holding the segment files.
+     */
+    private final Path directory;
+
+    /**
+     * Size at which a segment is sealed, in bytes.
+     */
+    private final long segmentSize;
+
+    /**
+     * Most bytes which may be held in segment files.
+     */
+    private final long capacity;
+
+    /**
+     * Share of the heap, in percent, above which messages are spilled.
+     */
+    private final int heapWatermark;
+
+    /**
+     * Heap pool whose occupancy is compared with the watermark.
+     */
+    private final MemoryPoolMXBean heapPool;
+
+    /**
+     * Segment being appended to, or null until the first record is written.
+     */
+    private Segment active;
+
+    /**
+     * Number of the next segment created.
+     */
+    private long nextSegment;
+
+    /**
+     * Bytes held in segment files, including freed records.
+     */
+    private final LongAdder diskBytes = new LongAdder();
+
+    /**
+     * Bytes of live records.
+     */
+    private final LongAdder recordBytes = new LongAdder();
+
+    /**
+     * Live records.
+     */
+    private final LongAdder records = new LongAdder();
+
+    /**
+     * Segment files.
+     */
+    private final LongAdder segments = new LongAdder();
+
+    /**
+     * Records written since startup.
+     */
+    private final LongAdder spilled = new LongAdder();
+
+    /**
+     * Records read back since startup.
+     */
+    private final LongAdder pagedIn = new LongAdder();
+
+    /**
+     * SpillStore.
+     *
+     * @param path directory holding the segment files, created if missing
+     * @param segment size at which a segment is sealed, in bytes
+     * @param maxBytes most bytes which may be held in segment files
+     * @param watermark share of the heap, in percent, above which messages are spilled
+     * @throws IOException if the directory cannot be prepared
+     */
+    public SpillStore(final Path path, final long segment, final long maxBytes, final int watermark)
+            throws IOException {
+        directory = Files.createDirectories(path);
+        segmentSize = segment;
+        capacity = maxBytes;
+        heapWatermark = watermark;
+        heapPool = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported())
+                .findFirst()
+                .orElse(null);
+        try (DirectoryStream<Path> leftovers =
+                     Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (final Path leftover : leftovers) {
+                Files.delete(leftover);
+            }
+        }
+    }
+
+    /**
+     * Installed store.
+     *
+     * @return SpillStore, or null if messages are never spilled
+     */
+    public static SpillStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Installs the store used for messages spilled from now on.
+     *
+     * @param store SpillStore, or null to never spill messages
+     */
+    public static void install(final SpillStore store) {
+        instance = store;
+    }
+
+    /**
+     * Whether heap use has passed the watermark. The old generation is used where the collector has one, since it is
+     * where a backlog accumulates and its occupancy does not swing with every young collection.
+     *
+     * @return true if messages should be spilled
+     */
+    public boolean isAboveWatermark() {
+        long used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        long max = Runtime.getRuntime().maxMemory();
+        if (heapPool != null) {
+            final MemoryUsage usage = heapPool.getUsage();
+            if (usage.getMax() > 0) {
+                used = usage.getUsed();
+                max = usage.getMax();
+            }
+        }
+        return used * PERCENT / max >= heapWatermark;
+    }
+
+    /**
+     * Appends a payload to the active segment.
+     *
+     * @param bytes payload
+     * @return Record, or null if the store is full
+     */
+    public synchronized Record write(final byte[] bytes) {
+        try {
+            if (active == null || active.size + bytes.length > segmentSize && active.size > 0) {
+                if (diskBytes.sum() + Math.max(segmentSize, bytes.length) > capacity) {
+                    return null;
+                }
+                seal();
+                active = new Segment(directory.resolve(SEGMENT_PREFIX + nextSegment++ + SEGMENT_SUFFIX));
+                segments.increment();
+            }
+            final long offset = active.size;
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                active.channel.write(buffer, offset + buffer.position());
+            }
+            active.size += bytes.length;
+            active.live++;
+            diskBytes.add(bytes.length);
+            recordBytes.add(bytes.length);
+            records.increment();
+            spilled.increment();
+            return new Record(new Extent(active, offset, bytes.length));
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Unable to spill payload to " + directory, e);
+        }
+    }
+
+    /**
+     * Live records.
+     *
+     * @return record count
+     */
+    public long getRecords() {
+        return records.sum();
+    }
+
+    /**
+     * Bytes of live records.
+     *
+     * @return record bytes
+     */
+    public long getRecordBytes() {
+        return recordBytes.sum();
+    }
+
+    /**
+     * Bytes held in segment files, including freed records not yet deleted with their segment.
+     *
+     * @return disk bytes
+     */
+    public long getDiskBytes() {
+        return diskBytes.sum();
+    }
+
+    /**
+     * Segment files.
+     *
+     * @return segment count
+     */
+    public long getSegments() {
+        return segments.sum();
+    }
+
+    /**
+     * Records written since startup.
+     *
+     * @return spilled count
+     */
+    public long getSpilled() {
+        return spilled.sum();
+    }
+
+    /**
+     * Records read back since startup.
+     *
+     * @return paged in count
+     */
+    public long getPagedIn() {
+        return pagedIn.sum();
+    }
+
+    /**
+     * Seals the active segment, deleting it if every record in it has already been freed.
+     *
+     * @throws IOException if the segment cannot be deleted
+     */
+    private void seal() throws IOException {
+        if (active != null) {
+            active.sealed = true;
+            if (active.live == 0) {
+                delete(active);
+            }
+        }
+    }
+
+    /**
+     * Frees an extent, deleting its segment once sealed and empty.
+     *
+     * @param extent Extent
+     */
+    private synchronized void free(final Extent extent) {
+        recordBytes.add(-extent.length);
+        records.decrement();
+        final Segment segment = extent.segment;
+        segment.live--;
+        if (segment.live == 0 && segment.sealed) {
+            try {
+                delete(segment);
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Unable to delete spill segment " + segment.path, e);
+            }
+        }
+    }
+
+    private void delete(final Segment segment) throws IOException {
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        diskBytes.add(-segment.size);
+        segments.decrement();
+    }
+
+    /**
+     * A payload stored in a segment.
+     */
+    public static final class Record {
+
+        /**
+         * Extent holding the payload.
+         */
+        private final Extent extent;
+
+        /**
+         * Frees the extent, at most once.
+         */
+        private final Cleaner.Cleanable cleanable;
+
+        private Record(final Extent e) {
+            extent = e;
+            cleanable = CLEANER.register(this, e);
+        }
+
+        /**
+         * Reads the payload back from disk.
+         *
+         * @return payload
+         */
+        public byte[] read() {
+            final ByteBuffer buffer = ByteBuffer.allocate(extent.length);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (extent.segment.channel.read(buffer, extent.offset + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of " + extent.segment.path);
+                    }
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Unable to read spilled payload", e);
+            }
+            extent.store().pagedIn.increment();
+            return buffer.array();
+        }
+
+        /**
+         * Payload length.
+         *
+         * @return length in bytes
+         */
+        public int getLength() {
+            return extent.length;
+        }
+
+        /**
+         * Frees the record. Further calls have no effect.
+         */
+        public void free() {
+            cleanable.clean();
+        }
+    }
+
+    /**
+     * A segment file.
+     */
+    private final class Segment {
+
+        /**
+         * File path.
+         */
+        private final Path path;
+
+        /**
+         * Open channel, used for appending and positional reads.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Bytes written.
+         */
+        private long size;
+
+        /**
+         * Records not yet freed.
+         */
+        private int live;
+
+        /**
+         * Whether the segment no longer accepts records.
+         */
+        private boolean sealed;
+
+        private Segment(final Path file) throws IOException {
+            path = file;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        private SpillStore store() {
+            return SpillStore.this;
+        }
+    }
+
+    /**
+     * Location of a record within a segment. Run to free it.
+     */
+    private static final class Extent implements Runnable {
+
+        /**
+         * Segment holding the record.
+         */
+        private final Segment segment;
+
+        /**
+         * Offset within the segment.
+         */
+        private final long offset;
+
+        /**
+         * Record length.
+         */
+        private final int length;
+
+        private Extent(final Segment s, final long o, final int l) {
+            segment = s;
+            offset = o;
+            length = l;
+        }
+
+        private SpillStore store() {
+            return segment.store();
+        }
+
+        @Override
+        public void run() {
+            store().free(this);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.validation;
+
+import com.starfireaviation.common.exception.InvalidPayloadException;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.config.CommonConstants;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageDecoder;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decodes Message request bodies on the reactive stack with a MessageReader, ahead of the Jackson decoder. Each
+ * buffer is parsed and released as it arrives, so a request is rejected at the first buffer crossing a limit and the
+ * remainder of the body is never read.
+ *
+ * Each read is observed as messages.validate, a child of the request's observation, tagged with the request's
+ * correlation ID.
+ */
+public final class MessageDecoder implements HttpMessageDecoder<Message> {
+
+    /**
+     * Hint carrying the request's correlation ID.
+     */
+    private static final String CORRELATION_ID_HINT = MessageDecoder.class.getName() + ".correlationId";
+
+    /**
+     * Media types decoded.
+     */
+    private static final List<MimeType> MIME_TYPES = List.of(MediaType.APPLICATION_JSON,
+            new MediaType("application", "*+json"));
+
+    /**
+     * MessageReader.
+     */
+    private final MessageReader messageReader;
+
+    /**
+     * Registry reads are observed with.
+     */
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * MessageDecoder.
+     *
+     * @param reader MessageReader
+     * @param registry ObservationRegistry
+     */
+    public MessageDecoder(final MessageReader reader, final ObservationRegistry registry) {
+        messageReader = reader;
+        observationRegistry = registry;
+    }
+
+    @Override
+    public boolean canDecode(final ResolvableType elementType, final MimeType mimeType) {
+        return Message.class == elementType.toClass()
+                && (mimeType == null || MIME_TYPES.stream().anyMatch(type -> type.isCompatibleWith(mimeType)));
+    }
+
+    @Override
+    public Map<String, Object> getDecodeHints(final ResolvableType actualType, final ResolvableType elementType,
+                                              final ServerHttpRequest request, final ServerHttpResponse response) {
+        final String correlationId = request.getHeaders().getFirst("correlation-id");
+        if (correlationId == null) {
+            return Map.of();
+        }
+        return Map.of(CORRELATION_ID_HINT, correlationId);
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public Flux<Message> decode(final Publisher<DataBuffer> input, final ResolvableType elementType,
+                                final MimeType mimeType, final Map<String, Object> hints) {
+        return decodeToMono(input, elementType, mimeType, hints).flux();
+    }
+
+    @Override
+    public Mono<Message> decodeToMono(final Publisher<DataBuffer> input, final ResolvableType elementType,
+                                      final MimeType mimeType, final Map<String, Object> hints) {
+        return Mono.deferContextual(context -> {
+            final Observation observation = Observation.createNotStarted("messages.validate", observationRegistry);
+            context.<Observation>getOrEmpty(ObservationThreadLocalAccessor.KEY)
+                    .ifPresent(observation::parentObservation);
+            if (hints != null && hints.get(CORRELATION_ID_HINT) != null) {
+                observation.highCardinalityKeyValue(CommonConstants.TRACE_CORRELATION_ID,
+                        hints.get(CORRELATION_ID_HINT).toString());
+            }
+            observation.start();
+            return read(input)
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop());
+        });
+    }
+
+    private Mono<Message> read(final Publisher<DataBuffer> input) {
+        final MessageReader.Feed feed;
+        try {
+            feed = messageReader.feed();
+        } catch (IOException e) {
+            return Mono.error(e);
+        }
+        return Flux.from(input)
+                .concatMap(buffer -> write(feed, buffer))
+                .concatWith(Mono.defer(() -> end(feed)))
+                .next();
+    }
+
+    private static Mono<Message> write(final MessageReader.Feed feed, final DataBuffer buffer) {
+        try {
+            final byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return Mono.justOrEmpty(feed.write(bytes));
+        } catch (InvalidPayloadException e) {
+            return Mono.error(e);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    private static Mono<Message> end(final MessageReader.Feed feed) {
+        try {
+            return Mono.justOrEmpty(feed.end());
+        } catch (InvalidPayloadException e) {
+            return Mono.error(e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.validation;
+
+import com.starfireaviation.common.exception.InvalidPayloadException;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.config.CommonConstants;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.IOException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+/**
+ * Reads Message request bodies on the servlet stack with a MessageReader, ahead of the Jackson converter. Messages
+ * are still written by Jackson.
+ * <p>
+ * Validation failures are wrapped in HttpMessageNotReadableException, as the converter contract requires, and resolved
+ * to the status of the InvalidPayloadException they carry.
+ */
+public final class MessageHttpMessageConverter extends AbstractHttpMessageConverter<Message> {
+
+    /**
+     * MessageReader.
+     */
+    private final MessageReader messageReader;
+
+    /**
+     * Registry reads are observed with.
+     */
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * MessageHttpMessageConverter.
+     *
+     * @param reader MessageReader
+     * @param registry ObservationRegistry
+     */
+    public MessageHttpMessageConverter(final MessageReader reader, final ObservationRegistry registry) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        messageReader = reader;
+        observationRegistry = registry;
+    }
+
+    @Override
+    protected boolean supports(final Class<?> clazz) {
+        return Message.class == clazz;
+    }
+
+    @Override
+    public boolean canWrite(final Class<?> clazz, final MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Message readInternal(final Class<? extends Message> clazz, final HttpInputMessage inputMessage)
+            throws IOException {
+        final Observation observation = Observation.start("messages.validate", observationRegistry);
+        final String correlationId = inputMessage.getHeaders().getFirst("correlation-id");
+        if (correlationId != null) {
+            observation.highCardinalityKeyValue(CommonConstants.TRACE_CORRELATION_ID, correlationId);
+        }
+        try {
+            return messageReader.read(inputMessage.getBody(), inputMessage.getHeaders().getContentLength());
+        } catch (InvalidPayloadException e) {
+            observation.error(e);
+            throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+        } catch (IOException | RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    @Override
+    protected void writeInternal(final Message message, final HttpOutputMessage outputMessage) {
+        throw new HttpMessageNotWritableException("Messages are written by the Jackson converter");
+    }
+}
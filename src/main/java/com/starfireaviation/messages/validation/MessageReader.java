@@ -0,0 +1,452 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.validation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.exc.InputCoercionException;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import com.starfireaviation.common.exception.InvalidPayloadException;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads a Message from a request body, validating each token as it is parsed rather than once the whole Message has
+ * been bound. Requests which exceed the configured body size or field lengths, or which name an unknown Priority or
+ * NotificationType, are rejected at the offending token with its line and column. The body is never buffered: the
+ * size limit is checked against the Content-Length up front and against the bytes consumed as they are read, and
+ * string lengths are capped by the parser before a value is materialized.
+ * <p>
+ * Unknown fields are skipped, as the default ObjectMapper does.
+ */
+@Slf4j
+public final class MessageReader {
+
+    /**
+     * Deepest nesting accepted, for unknown fields. A Message itself is one level deep.
+     */
+    private static final int MAX_NESTING_DEPTH = 16;
+
+    /**
+     * Longest number accepted, in digits.
+     */
+    private static final int MAX_NUMBER_LENGTH = 32;
+
+    /**
+     * Digits of a fraction of a second held as nanoseconds.
+     */
+    private static final int NANO_DIGITS = 9;
+
+    /**
+     * Parser factory carrying the length limits.
+     */
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Largest body accepted, in bytes.
+     */
+    private final long maxBodySize;
+
+    /**
+     * Longest string accepted for fields other than the payload.
+     */
+    private final int maxFieldLength;
+
+    /**
+     * MessageReader.
+     *
+     * @param validation limits
+     */
+    public MessageReader(final ApplicationProperties.Validation validation) {
+        maxBodySize = validation.getMaxBodySize().toBytes();
+        maxFieldLength = validation.getMaxFieldLength();
+        jsonFactory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder()
+                        .maxStringLength(Math.max(validation.getMaxPayloadLength(), maxFieldLength))
+                        .maxNameLength(maxFieldLength)
+                        .maxNestingDepth(MAX_NESTING_DEPTH)
+                        .maxNumberLength(MAX_NUMBER_LENGTH)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Reads a Message from a blocking stream. Reading stops at the end of the Message, so trailing content is
+     * neither read nor counted.
+     *
+     * @param body request body
+     * @param contentLength declared length of the body, or -1 if unknown
+     * @return Message, or null if the body is empty
+     * @throws InvalidPayloadException when the body exceeds a limit or is not a valid Message
+     * @throws IOException when the body could not be read
+     */
+    public Message read(final InputStream body, final long contentLength) throws InvalidPayloadException,
+            IOException {
+        if (contentLength > maxBodySize) {
+            throw tooLarge();
+        }
+        final Tokens tokens = new Tokens();
+        try (JsonParser parser = jsonFactory.createParser(new LimitedInputStream(body))) {
+            try {
+                JsonToken token = parser.nextToken();
+                while (token != null) {
+                    tokens.accept(parser, token);
+                    if (tokens.message != null && tokens.depth == 0) {
+                        return tokens.message;
+                    }
+                    token = parser.nextToken();
+                }
+                return tokens.end(parser);
+            } catch (JsonProcessingException e) {
+                throw malformed(e, parser);
+            }
+        } catch (BodyTooLargeException e) {
+            throw tooLarge();
+        }
+    }
+
+    /**
+     * Starts reading a Message from a body delivered in chunks, without blocking for the rest of it.
+     *
+     * @return Feed to write the chunks to
+     * @throws IOException when the parser could not be created
+     */
+    public Feed feed() throws IOException {
+        return new Feed(jsonFactory.createNonBlockingByteArrayParser());
+    }
+
+    /**
+     * Non-blocking read of a single Message. Not thread-safe: chunks must be written by one thread at a time, in
+     * order.
+     */
+    public final class Feed {
+
+        /**
+         * Parser fed with each chunk.
+         */
+        private final JsonParser parser;
+
+        /**
+         * Token state.
+         */
+        private final Tokens tokens = new Tokens();
+
+        /**
+         * Bytes written so far.
+         */
+        private long size;
+
+        private Feed(final JsonParser asyncParser) {
+            parser = asyncParser;
+        }
+
+        /**
+         * Parses the next chunk of the body.
+         *
+         * @param bytes chunk
+         * @return Message once its closing brace has been parsed, otherwise null
+         * @throws InvalidPayloadException when the body exceeds a limit or is not a valid Message
+         */
+        public Message write(final byte[] bytes) throws InvalidPayloadException {
+            size += bytes.length;
+            if (size > maxBodySize) {
+                throw tooLarge();
+            }
+            try {
+                ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+                return drain();
+            } catch (IOException e) {
+                throw malformed(e, parser);
+            }
+        }
+
+        /**
+         * Signals the end of the body.
+         *
+         * @return Message, or null if the body was empty
+         * @throws InvalidPayloadException when the body ended before the Message did
+         */
+        public Message end() throws InvalidPayloadException {
+            try {
+                parser.getNonBlockingInputFeeder().endOfInput();
+                final Message message = drain();
+                if (message != null) {
+                    return message;
+                }
+                return tokens.end(parser);
+            } catch (IOException e) {
+                throw malformed(e, parser);
+            }
+        }
+
+        private Message drain() throws IOException, InvalidPayloadException {
+            JsonToken token = parser.nextToken();
+            while (token != null && token != JsonToken.NOT_AVAILABLE) {
+                tokens.accept(parser, token);
+                if (tokens.message != null && tokens.depth == 0) {
+                    return tokens.message;
+                }
+                token = parser.nextToken();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Binds tokens to a Message as they are parsed.
+     */
+    private final class Tokens {
+
+        /**
+         * Message being bound, created at the opening brace.
+         */
+        private Message message;
+
+        /**
+         * Current nesting depth. The Message is complete once it returns to zero.
+         */
+        private int depth;
+
+        /**
+         * Field the next value belongs to.
+         */
+        private String field;
+
+        private void accept(final JsonParser parser, final JsonToken token) throws IOException,
+                InvalidPayloadException {
+            if (message == null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw invalid(parser, "Message must be a JSON object");
+                }
+                message = new Message();
+                depth = 1;
+            } else if (depth > 1) {
+                nest(token);
+            } else if (token == JsonToken.FIELD_NAME) {
+                field = parser.currentName();
+            } else if (token == JsonToken.END_OBJECT) {
+                depth = 0;
+            } else {
+                bind(parser, token);
+                nest(token);
+            }
+        }
+
+        private Message end(final JsonParser parser) throws InvalidPayloadException {
+            if (message != null) {
+                throw invalid(parser, "Unexpected end of message");
+            }
+            return null;
+        }
+
+        private void nest(final JsonToken token) {
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+        }
+
+        private void bind(final JsonParser parser, final JsonToken token) throws IOException,
+                InvalidPayloadException {
+            switch (field) {
+                case "id":
+                    message.setId(readId(parser, token));
+                    break;
+                case "priority":
+                    message.setPriority(readEnum(parser, token, Priority.class));
+                    break;
+                case "notificationType":
+                    message.setNotificationType(readEnum(parser, token, NotificationType.class));
+                    break;
+                case "expirationTime":
+                    message.setExpirationTime(readInstant(parser, token));
+                    break;
+                case "payload":
+                    message.setPayload(readPayload(parser, token));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private Long readId(final JsonParser parser, final JsonToken token) throws IOException,
+                InvalidPayloadException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw invalid(parser, "Field 'id' must be a whole number");
+            }
+            try {
+                return parser.getLongValue();
+            } catch (InputCoercionException e) {
+                throw invalid(parser, "Field 'id' is out of range");
+            }
+        }
+
+        private <E extends Enum<E>> E readEnum(final JsonParser parser, final JsonToken token, final Class<E> type)
+                throws IOException, InvalidPayloadException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            final E[] values = type.getEnumConstants();
+            if (token == JsonToken.VALUE_STRING && parser.getTextLength() <= maxFieldLength) {
+                final String text = parser.getText();
+                for (final E value : values) {
+                    if (value.name().equals(text)) {
+                        return value;
+                    }
+                }
+            }
+            throw invalid(parser, "Field '" + field + "' must be one of " + Arrays.toString(values));
+        }
+
+        private Instant readInstant(final JsonParser parser, final JsonToken token) throws IOException,
+                InvalidPayloadException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            try {
+                if (token == JsonToken.VALUE_NUMBER_INT) {
+                    return Instant.ofEpochSecond(parser.getLongValue());
+                }
+                if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    final BigDecimal seconds = parser.getDecimalValue();
+                    return Instant.ofEpochSecond(seconds.longValue(),
+                            seconds.remainder(BigDecimal.ONE).movePointRight(NANO_DIGITS).intValue());
+                }
+                if (token == JsonToken.VALUE_STRING && parser.getTextLength() <= maxFieldLength) {
+                    return Instant.parse(parser.getText());
+                }
+            } catch (InputCoercionException | DateTimeParseException | ArithmeticException e) {
+                log.debug("Invalid expiration time", e);
+            }
+            throw invalid(parser, "Field 'expirationTime' must be an ISO-8601 instant or epoch seconds");
+        }
+
+        private String readPayload(final JsonParser parser, final JsonToken token) throws IOException,
+                InvalidPayloadException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.VALUE_STRING) {
+                throw invalid(parser, "Field 'payload' must be a string");
+            }
+            return parser.getText();
+        }
+    }
+
+    private InvalidPayloadException tooLarge() {
+        final String msg = "Message exceeds the maximum size of " + maxBodySize + " bytes";
+        log.warn(msg);
+        return new PayloadTooLargeException(msg);
+    }
+
+    private static InvalidPayloadException invalid(final JsonParser parser, final String reason) {
+        final String msg = reason + at(parser);
+        log.warn(msg);
+        return new InvalidPayloadException(msg);
+    }
+
+    private static InvalidPayloadException malformed(final IOException e, final JsonParser parser) {
+        String reason = "Message could not be read";
+        if (e instanceof StreamConstraintsException sce) {
+            reason = sce.getOriginalMessage().replaceFirst(", from `[^`]*`", "");
+        } else if (e instanceof JsonProcessingException) {
+            reason = "Malformed JSON";
+        }
+        final String msg = reason + at(parser.currentLocation());
+        log.warn(msg);
+        return new InvalidPayloadException(msg);
+    }
+
+    private static String at(final JsonParser parser) {
+        return at(parser.currentTokenLocation());
+    }
+
+    private static String at(final JsonLocation location) {
+        if (location == null) {
+            return "";
+        }
+        return " at line " + location.getLineNr() + ", column " + location.getColumnNr();
+    }
+
+    /**
+     * Signals the body limit was crossed from within the parser's reads.
+     */
+    private static final class BodyTooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Stream which fails as soon as more than the maximum body size has been read from it.
+     */
+    private final class LimitedInputStream extends FilterInputStream {
+
+        /**
+         * Bytes read so far.
+         */
+        private long size;
+
+        private LimitedInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(final int n) throws BodyTooLargeException {
+            size += n;
+            if (size > maxBodySize) {
+                throw new BodyTooLargeException();
+            }
+        }
+    }
+}
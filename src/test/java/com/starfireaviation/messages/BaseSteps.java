@@ -25,7 +25,17 @@ public class BaseSteps {
     /**
      * URL.
      */
-    protected static final String URL = "http://localhost:8080/messages";
+    protected static final String URL = "http://localhost:8080/api/messages";
+
+    /**
+     * HEALTH_URL.
+     */
+    protected static final String HEALTH_URL = "http://localhost:8080/health";
+
+    /**
+     * SUBSCRIPTIONS_URL.
+     */
+    protected static final String SUBSCRIPTIONS_URL = "http://localhost:8080/api/subscriptions";
 
     /**
      * ORGANIZATION.
@@ -16,7 +16,10 @@
 
 package com.starfireaviation.messages;
 
+import java.util.List;
 import java.util.UUID;
+import com.starfireaviation.messages.model.QueueStats;
+import com.starfireaviation.messages.model.Subscription;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import lombok.extern.slf4j.Slf4j;
@@ -33,6 +36,11 @@ public class CommonSteps extends BaseSteps {
         testContext.setOrganization(ORGANIZATION);
     }
 
+    @Given("^I provide the organization (.*)$")
+    public void iProvideTheOrganization(final String organization) throws Throwable {
+        testContext.setOrganization(organization);
+    }
+
     @Given("^I provide a correlation id")
     public void iProvideACorrelationId() throws Throwable {
         testContext.setCorrelationId(UUID.randomUUID().toString());
@@ -58,10 +66,49 @@ public class CommonSteps extends BaseSteps {
                 log.info("I should receive a message");
                 Assertions.assertSame(HttpStatus.OK, testContext.getResponse().getStatusCode());
                 break;
+            case "an acknowledgement":
+                log.info("I should receive an acknowledgement");
+                Assertions.assertSame(HttpStatus.OK, testContext.getResponse().getStatusCode());
+                Assertions.assertEquals(1, ((List<?>) testContext.getResponse().getBody()).size());
+                break;
+            case "queue statistics":
+                log.info("I should receive queue statistics");
+                Assertions.assertSame(HttpStatus.OK, testContext.getResponse().getStatusCode());
+                Assertions.assertTrue(((QueueStats) testContext.getResponse().getBody()).getAvailable() > 0);
+                break;
+            case "a list of messages":
+                log.info("I should receive a list of messages");
+                Assertions.assertSame(HttpStatus.OK, testContext.getResponse().getStatusCode());
+                Assertions.assertTrue(((String) testContext.getResponse().getBody()).startsWith("[{"));
+                break;
+            case "a healthy response":
+                log.info("I should receive a healthy response");
+                Assertions.assertSame(HttpStatus.OK, testContext.getResponse().getStatusCode());
+                Assertions.assertEquals("OK", testContext.getResponse().getBody());
+                break;
+            case "a subscription":
+                log.info("I should receive a subscription");
+                Assertions.assertSame(HttpStatus.OK, testContext.getResponse().getStatusCode());
+                Assertions.assertEquals(testContext.getClientId(),
+                        ((Subscription) testContext.getResponse().getBody()).getClientId());
+                break;
+            case "a list of subscriptions":
+                log.info("I should receive a list of subscriptions");
+                Assertions.assertSame(HttpStatus.OK, testContext.getResponse().getStatusCode());
+                Assertions.assertTrue(((String) testContext.getResponse().getBody()).startsWith("[{"));
+                break;
+            case "a successful response":
+                log.info("I should receive a successful response");
+                Assertions.assertSame(HttpStatus.OK, testContext.getResponse().getStatusCode());
+                break;
             case "an InvalidPayloadException":
                 log.info("I should receive an InvalidPayloadException");
                 Assertions.assertSame(HttpStatus.BAD_REQUEST, testContext.getResponse().getStatusCode());
                 break;
+            case "a PayloadTooLargeException":
+                log.info("I should receive a PayloadTooLargeException");
+                Assertions.assertSame(HttpStatus.PAYLOAD_TOO_LARGE, testContext.getResponse().getStatusCode());
+                break;
             default:
                 fail("Unexpected error");
         }
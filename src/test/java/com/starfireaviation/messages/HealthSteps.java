@@ -0,0 +1,37 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages;
+
+import io.cucumber.java.Before;
+import io.cucumber.java.en.When;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class HealthSteps extends BaseSteps {
+
+    @Before
+    public void init() {
+        testContext.reset();
+    }
+
+    @When("^I check (liveness|readiness)$")
+    public void iCheck(final String probe) throws Throwable {
+        log.info("I check {}", probe);
+        testContext.setResponse(restTemplate.getForEntity(HEALTH_URL + "/" + probe, String.class));
+    }
+}
@@ -19,12 +19,16 @@ package com.starfireaviation.messages;
 import com.starfireaviation.common.model.Message;
 import com.starfireaviation.common.model.NotificationType;
 import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.QueueStats;
 import io.cucumber.java.Before;
 import io.cucumber.java.en.And;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.When;
+import java.util.List;
+import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -69,6 +73,32 @@ public class MessageRetrievalSteps extends BaseSteps {
         }
     }
 
+    @And("^the message is targeted at (me|another client)$")
+    public void theMessageIsTargetedAt(final String target) throws Throwable {
+        if ("me".equals(target)) {
+            testContext.setTarget(testContext.getClientId());
+        } else {
+            testContext.setTarget(UUID.randomUUID().toString());
+        }
+    }
+
+    @And("^the message is in the group (.*)$")
+    public void theMessageIsInTheGroup(final String group) throws Throwable {
+        testContext.setGroup(group);
+    }
+
+    @And("^I am in the consumer group (.*)$")
+    public void iAmInTheConsumerGroup(final String consumerGroup) throws Throwable {
+        testContext.setConsumerGroup(consumerGroup);
+    }
+
+    @And("^another client in the consumer group (.*) gets a message$")
+    public void anotherClientInTheConsumerGroupGetsAMessage(final String consumerGroup) throws Throwable {
+        testContext.setClientId(UUID.randomUUID().toString());
+        testContext.setConsumerGroup(consumerGroup);
+        iGetAMessage();
+    }
+
     @And("^the message is next in the queue$")
     public void theMessageIsNextInTheQueue() throws Throwable {
         final HttpEntity<Message> httpEntity = new HttpEntity<>(testContext.getMessage(), getHeaders());
@@ -87,12 +117,44 @@ public class MessageRetrievalSteps extends BaseSteps {
         testContext.setResponse(restTemplate.exchange(URL + "?" + queryParams, HttpMethod.GET, new HttpEntity<Object>(getHeaders()), Message.class));
     }
 
+    @When("^I acknowledge the message$")
+    public void iAcknowledgeTheMessage() throws Throwable {
+        log.info("I acknowledge the message");
+        final Message message = (Message) testContext.getResponse().getBody();
+        final HttpEntity<List<Long>> httpEntity = new HttpEntity<>(List.of(message.getId()), getHeaders());
+        testContext.setResponse(restTemplate.exchange(URL + "/ack", HttpMethod.POST, httpEntity,
+                new ParameterizedTypeReference<List<Long>>() { }));
+    }
+
+    @When("^I get the queue statistics$")
+    public void iGetTheQueueStatistics() throws Throwable {
+        log.info("I get the queue statistics");
+        testContext.setResponse(restTemplate.exchange(URL + "/stats", HttpMethod.GET,
+                new HttpEntity<Object>(getHeaders()), QueueStats.class));
+    }
+
+    @When("^I peek at messages with (.*)$")
+    public void iPeekAtMessages(final String queryParams) throws Throwable {
+        log.info("I peek at messages with queryParams: {}", queryParams);
+        testContext.setResponse(restTemplate.exchange(URL + "/peek?" + queryParams, HttpMethod.GET,
+                new HttpEntity<Object>(getHeaders()), String.class));
+    }
+
     private HttpHeaders getHeaders() {
         final HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setContentType(MediaType.APPLICATION_JSON);
         if (testContext.getClientId() != null) {
             httpHeaders.add("client-id", testContext.getClientId());
         }
+        if (testContext.getTarget() != null) {
+            httpHeaders.add("target-client-id", testContext.getTarget());
+        }
+        if (testContext.getGroup() != null) {
+            httpHeaders.add("group-key", testContext.getGroup());
+        }
+        if (testContext.getConsumerGroup() != null) {
+            httpHeaders.add("consumer-group", testContext.getConsumerGroup());
+        }
         if (testContext.getOrganization() != null) {
             httpHeaders.add("organization", testContext.getOrganization());
         }
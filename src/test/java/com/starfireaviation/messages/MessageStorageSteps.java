@@ -24,11 +24,18 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 
 @Slf4j
 public class MessageStorageSteps extends BaseSteps {
 
+    /**
+     * Length of each padding value, well within the field length limits.
+     */
+    private static final int PADDING = 1000;
+
     @Before
     public void init() {
         testContext.reset();
@@ -39,19 +46,88 @@ public class MessageStorageSteps extends BaseSteps {
         testContext.setMessage(new Message());
     }
 
+    @Given("^I have a message with the body (.*)$")
+    public void iHaveAMessageWithTheBody(final String body) throws Throwable {
+        testContext.setMessage(new Message());
+        testContext.setBody(body);
+    }
+
+    @Given("^I have a message with a payload of (\\d+) characters$")
+    public void iHaveAMessageWithAPayloadOf(final int length) throws Throwable {
+        testContext.setMessage(new Message());
+        testContext.getMessage().setPayload("x".repeat(length));
+    }
+
+    @Given("^I have a message padded to (\\d+) bytes$")
+    public void iHaveAMessagePaddedTo(final int size) throws Throwable {
+        final String padding = "\"padding\":\"" + "x".repeat(PADDING) + "\",";
+        iHaveAMessageWithTheBody("{" + padding.repeat(size / padding.length() + 1) + "\"payload\":\"hello\"}");
+    }
+
     @When("^I add the message$")
     public void iAddTheMessage() throws Throwable {
         log.info("I add the message");
+        Object body = testContext.getMessage();
+        if (testContext.getBody() != null) {
+            body = testContext.getBody();
+        }
+        final HttpEntity<Object> httpEntity = new HttpEntity<>(body, getHeaders());
+        final ResponseEntity<String> response = restTemplate.postForEntity(URL, httpEntity, String.class);
+        testContext.setResponse(response);
+        if (response.getStatusCode().is2xxSuccessful()) {
+            testContext.getMessage().setId(Long.valueOf(response.getBody()));
+        }
+    }
+
+    @When("^I look up the message by ID$")
+    public void iLookUpTheMessageById() throws Throwable {
+        log.info("I look up the message by ID");
+        testContext.setResponse(restTemplate.exchange(URL + "/" + getMessageId(), HttpMethod.GET,
+                new HttpEntity<Object>(getHeaders()), Message.class));
+    }
+
+    @When("^I cancel the message by ID$")
+    public void iCancelTheMessageById() throws Throwable {
+        log.info("I cancel the message by ID");
+        testContext.setResponse(restTemplate.exchange(URL + "/" + getMessageId(), HttpMethod.DELETE,
+                new HttpEntity<Object>(getHeaders()), Void.class));
+    }
+
+    @When("^I export the messages and import them into the organization (.*)$")
+    public void iExportTheMessagesAndImportThemInto(final String organization) throws Throwable {
+        log.info("I export the messages and import them into the organization {}", organization);
+        final ResponseEntity<String> export = restTemplate.exchange(URL + "/export", HttpMethod.GET,
+                new HttpEntity<Object>(getHeaders()), String.class);
+        testContext.setOrganization(organization);
+        final HttpHeaders headers = getHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        testContext.setResponse(restTemplate.postForEntity(URL + "/import",
+                new HttpEntity<>(export.getBody(), headers), String.class));
+    }
+
+    private Long getMessageId() {
+        if (testContext.getMessage().getId() == null) {
+            return 0L;
+        }
+        return testContext.getMessage().getId();
+    }
+
+    private HttpHeaders getHeaders() {
         final HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
+        if (testContext.getTarget() != null) {
+            headers.add("target-client-id", testContext.getTarget());
+        }
+        if (testContext.getGroup() != null) {
+            headers.add("group-key", testContext.getGroup());
+        }
         if (testContext.getOrganization() != null) {
             headers.add("organization", testContext.getOrganization());
         }
         if (testContext.getCorrelationId() != null) {
             headers.add("correlation-id", testContext.getCorrelationId());
         }
-        final HttpEntity<Message> httpEntity = new HttpEntity<>(testContext.getMessage(), headers);
-        testContext.setResponse(restTemplate.postForEntity(URL, httpEntity, Void.class));
+        return headers;
     }
 
 }
@@ -17,14 +17,33 @@
 package com.starfireaviation.messages;
 
 import io.cucumber.spring.CucumberContextConfiguration;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 
 /**
  * Class that abstract test context management and REST API invocation.
  */
 @CucumberContextConfiguration
-@SpringBootTest(classes = MessagesApplication.class, webEnvironment = WebEnvironment.DEFINED_PORT)
+@SpringBootTest(classes = MessagesApplication.class, webEnvironment = WebEnvironment.DEFINED_PORT,
+        properties = {"messages.push.enabled=true", "management.tracing.sampling.probability=1.0"})
+@Import(SpringIntegrationTest.TracingConfiguration.class)
 public class SpringIntegrationTest {
 
+    @TestConfiguration
+    static class TracingConfiguration {
+
+        /**
+         * Keeps every exported span in memory so steps can inspect traces.
+         *
+         * @return InMemorySpanExporter
+         */
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages;
+
+import com.starfireaviation.messages.model.Subscription;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.When;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+
+@Slf4j
+public class SubscriptionSteps extends BaseSteps {
+
+    @Before
+    public void init() {
+        testContext.reset();
+    }
+
+    @Given("^A subscription to (.*)$")
+    public void aSubscriptionTo(final String url) throws Throwable {
+        final Subscription subscription = new Subscription();
+        subscription.setUrl(url);
+        subscription.setAck(true);
+        testContext.setSubscription(subscription);
+    }
+
+    @When("^I subscribe$")
+    public void iSubscribe() throws Throwable {
+        log.info("I subscribe");
+        final HttpEntity<Subscription> httpEntity = new HttpEntity<>(testContext.getSubscription(), getHeaders());
+        testContext.setResponse(restTemplate.postForEntity(SUBSCRIPTIONS_URL, httpEntity, Subscription.class));
+    }
+
+    @When("^I list subscriptions$")
+    public void iListSubscriptions() throws Throwable {
+        log.info("I list subscriptions");
+        testContext.setResponse(restTemplate.exchange(SUBSCRIPTIONS_URL, HttpMethod.GET,
+                new HttpEntity<Object>(getHeaders()), String.class));
+    }
+
+    @When("^I unsubscribe$")
+    public void iUnsubscribe() throws Throwable {
+        log.info("I unsubscribe");
+        testContext.setResponse(restTemplate.exchange(SUBSCRIPTIONS_URL, HttpMethod.DELETE,
+                new HttpEntity<Object>(getHeaders()), Void.class));
+    }
+
+    private HttpHeaders getHeaders() {
+        final HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.setContentType(MediaType.APPLICATION_JSON);
+        if (testContext.getClientId() != null) {
+            httpHeaders.add("client-id", testContext.getClientId());
+        }
+        if (testContext.getOrganization() != null) {
+            httpHeaders.add("organization", testContext.getOrganization());
+        }
+        if (testContext.getCorrelationId() != null) {
+            httpHeaders.add("correlation-id", testContext.getCorrelationId());
+        }
+        return httpHeaders;
+    }
+}
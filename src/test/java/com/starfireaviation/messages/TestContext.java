@@ -17,6 +17,7 @@
 package com.starfireaviation.messages;
 
 import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.model.Subscription;
 import lombok.Data;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
@@ -30,6 +31,16 @@ public class TestContext {
      */
     private Message message;
 
+    /**
+     * Raw message body, sent in place of the message when set.
+     */
+    private String body;
+
+    /**
+     * Subscription.
+     */
+    private Subscription subscription;
+
     /**
      * Response.
      */
@@ -50,14 +61,34 @@ public class TestContext {
      */
     private String clientId;
 
+    /**
+     * Target ClientID.
+     */
+    private String target;
+
+    /**
+     * Group key.
+     */
+    private String group;
+
+    /**
+     * Consumer group.
+     */
+    private String consumerGroup;
+
     /**
      * Resets attributes values to their defaults.
      */
     public void reset() {
         message = null;
+        body = null;
+        subscription = null;
         response = null;
         organization = null;
         correlationId = null;
         clientId = null;
+        target = null;
+        group = null;
+        consumerGroup = null;
     }
 }
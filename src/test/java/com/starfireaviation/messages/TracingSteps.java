@@ -0,0 +1,69 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages;
+
+import com.starfireaviation.messages.config.CommonConstants;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Then;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.springframework.beans.factory.annotation.Autowired;
+
+@Slf4j
+public class TracingSteps extends BaseSteps {
+
+    /**
+     * Correlation ID span attribute.
+     */
+    private static final AttributeKey<String> CORRELATION_ID =
+            AttributeKey.stringKey(CommonConstants.TRACE_CORRELATION_ID);
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Before
+    public void init() {
+        spanExporter.reset();
+    }
+
+    @Then("^the request should be traced through (.*)$")
+    public void theRequestShouldBeTracedThrough(final String names) throws Throwable {
+        log.info("the request should be traced through {}", names);
+        tracerProvider.forceFlush().join(CommonConstants.FIFTEEN, TimeUnit.SECONDS);
+        final List<SpanData> spans = spanExporter.getFinishedSpanItems();
+        for (final String name : names.split(", ")) {
+            final SpanData span = spans.stream()
+                    .filter(s -> name.equals(s.getName()))
+                    .filter(s -> testContext.getCorrelationId().equals(s.getAttributes().get(CORRELATION_ID)))
+                    .findFirst()
+                    .orElseThrow(() -> new AssertionError(name + " was not traced: " + spans));
+            Assertions.assertTrue(spans.stream().anyMatch(s -> s.getKind() == SpanKind.SERVER
+                    && s.getTraceId().equals(span.getTraceId())), name + " is not part of a request's trace");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.arena;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PayloadArenaTest {
+
+    private static final int SLAB = 4096;
+
+    private final PayloadArena arena = new PayloadArena(4 * SLAB, SLAB, 64, 1024);
+
+    @AfterEach
+    public void uninstall() {
+        PayloadArena.install(null);
+    }
+
+    @Test
+    public void payloadsAreReadBackAndFreedExactlyOnce() {
+        final PayloadArena.Allocation allocation = arena.allocate(bytes(100));
+        Assertions.assertArrayEquals(bytes(100), allocation.read());
+        Assertions.assertEquals(1, arena.getAllocations());
+        Assertions.assertEquals(100, arena.getPayloadBytes());
+        Assertions.assertEquals(112, arena.getUsedBytes());
+        Assertions.assertEquals(SLAB, arena.getReservedBytes());
+
+        allocation.free();
+        allocation.free();
+        Assertions.assertEquals(0, arena.getAllocations());
+        Assertions.assertEquals(0, arena.getPayloadBytes());
+        Assertions.assertEquals(0, arena.getUsedBytes());
+    }
+
+    @Test
+    public void freedSlotsAreReusedBeforeReservingMoreSlabs() {
+        final List<PayloadArena.Allocation> allocations = new ArrayList<>();
+        for (int i = 0; i < SLAB / 1024; i++) {
+            allocations.add(arena.allocate(bytes(1024)));
+        }
+        Assertions.assertEquals(SLAB, arena.getReservedBytes());
+        allocations.remove(0).free();
+        allocations.add(arena.allocate(bytes(1000)));
+        Assertions.assertEquals(SLAB, arena.getReservedBytes());
+        Assertions.assertEquals(1 - (3 * 1024 + 1000) / 4096.0, arena.getInternalFragmentation(), 1e-9);
+        Assertions.assertEquals(0, arena.getExternalFragmentation(), 1e-9);
+    }
+
+    @Test
+    public void emptySlabsAreReleasedWhileAnotherHasRoom() {
+        final List<PayloadArena.Allocation> first = new ArrayList<>();
+        for (int i = 0; i < SLAB / 1024; i++) {
+            first.add(arena.allocate(bytes(1024)));
+        }
+        final PayloadArena.Allocation second = arena.allocate(bytes(1024));
+        Assertions.assertEquals(2 * SLAB, arena.getReservedBytes());
+        first.forEach(PayloadArena.Allocation::free);
+        Assertions.assertEquals(SLAB, arena.getReservedBytes());
+        second.free();
+        Assertions.assertEquals(SLAB, arena.getReservedBytes());
+    }
+
+    @Test
+    public void oversizedPayloadsAndPayloadsBeyondCapacityAreRefused() {
+        Assertions.assertNull(arena.allocate(bytes(1025)));
+        for (int i = 0; i < 4 * SLAB / 1024; i++) {
+            Assertions.assertNotNull(arena.allocate(bytes(1024)));
+        }
+        Assertions.assertNull(arena.allocate(bytes(1024)));
+        Assertions.assertEquals(2, arena.getRefused());
+    }
+
+    @Test
+    public void queuedPayloadsLiveOffHeapAndSurviveSerialization() throws Exception {
+        PayloadArena.install(arena);
+        final long now = System.currentTimeMillis();
+        final MessageQueue queue = new MessageQueue();
+        final Message claimed = message(1L, Instant.ofEpochMilli(now).plusSeconds(60));
+        final Message expiring = message(2L, Instant.ofEpochMilli(now).plusSeconds(1));
+        queue.add(claimed, now);
+        queue.add(expiring, now);
+        Assertions.assertEquals("payload-1", claimed.getPayload());
+        Assertions.assertEquals(2, arena.getAllocations());
+
+        final MessageQueue copy = roundTrip(queue);
+        Assertions.assertEquals(4, arena.getAllocations());
+        Assertions.assertEquals("payload-1", copy.get(1L).getPayload());
+
+        final Message next = queue.claim(NotificationType.SMS, "client", null, Instant.ofEpochMilli(now));
+        Assertions.assertEquals(claimed, next);
+        Assertions.assertEquals(1, queue.removeExpired(Instant.ofEpochMilli(now).plusSeconds(2)).size());
+        Assertions.assertEquals(2, arena.getAllocations());
+        Assertions.assertEquals("payload-2", copy.get(2L).getPayload());
+    }
+
+    private static MessageQueue roundTrip(final MessageQueue queue) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(queue);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (MessageQueue) in.readObject();
+        }
+    }
+
+    private static Message message(final Long id, final Instant expiration) {
+        final Message message = new Message();
+        message.setId(id);
+        message.setPriority(Priority.NORMAL);
+        message.setNotificationType(NotificationType.SMS);
+        message.setExpirationTime(expiration);
+        message.setPayload("payload-" + id);
+        return message;
+    }
+
+    private static byte[] bytes(final int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.audit;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AuditTrailTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void eventsAreWrittenAndReadBack() throws Exception {
+        final AuditTrail trail = new AuditTrail(directory, 16, 1024 * 1024, 2);
+        trail.record(AuditEvent.STORED, "acme", message(1L), null, "corr-1");
+        trail.record(AuditEvent.DELIVERED, "acme", message(1L), "client-1", "corr-2");
+        trail.record(AuditEvent.EXPIRED, "acme", new Message(), null, null);
+        trail.close();
+
+        final List<AuditTrail.Entry> entries = entries(trail);
+        Assertions.assertEquals(3, entries.size());
+        Assertions.assertEquals(AuditEvent.STORED, entries.get(0).getEvent());
+        Assertions.assertEquals(1L, entries.get(0).getMessageId());
+        Assertions.assertEquals(Priority.HIGH, entries.get(0).getPriority());
+        Assertions.assertEquals(NotificationType.SMS, entries.get(0).getNotificationType());
+        Assertions.assertEquals("acme", entries.get(0).getOrganization());
+        Assertions.assertNull(entries.get(0).getClientId());
+        Assertions.assertEquals("corr-1", entries.get(0).getCorrelationId());
+        Assertions.assertEquals("client-1", entries.get(1).getClientId());
+        Assertions.assertNull(entries.get(2).getMessageId());
+        Assertions.assertNull(entries.get(2).getPriority());
+        Assertions.assertEquals(3, trail.getRecorded());
+        Assertions.assertEquals(0, trail.getDropped());
+        Assertions.assertEquals(0, trail.getPending());
+    }
+
+    @Test
+    public void longStringsAreTruncatedToWholeCharacters() throws Exception {
+        final AuditTrail trail = new AuditTrail(directory, 16, 1024 * 1024, 2);
+        trail.record(AuditEvent.SEEN, "é".repeat(40), message(1L), "🚀".repeat(20), "x".repeat(100));
+        trail.close();
+
+        final AuditTrail.Entry entry = entries(trail).get(0);
+        Assertions.assertEquals("é".repeat(AuditTrail.FIELD_SIZE / 2), entry.getOrganization());
+        Assertions.assertEquals("🚀".repeat(AuditTrail.FIELD_SIZE / 4), entry.getClientId());
+        Assertions.assertEquals("x".repeat(AuditTrail.FIELD_SIZE), entry.getCorrelationId());
+    }
+
+    @Test
+    public void concurrentEventsAreAllWrittenOrCountedAsDropped() throws Exception {
+        final AuditTrail trail = new AuditTrail(directory, 1000, 64 * 1024, 1000);
+        Assertions.assertEquals(1024, trail.getCapacity());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            final String client = "client-" + thread;
+            futures.add(executor.submit(() -> {
+                for (long id = 0; id < 25_000; id++) {
+                    trail.record(AuditEvent.DELIVERED, "acme", message(id), client, null);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        trail.close();
+
+        Assertions.assertEquals(100_000, trail.getRecorded() + trail.getDropped());
+        final List<AuditTrail.Entry> entries = entries(trail);
+        Assertions.assertEquals(trail.getRecorded(), entries.size());
+        for (int thread = 0; thread < 4; thread++) {
+            final String client = "client-" + thread;
+            final List<Long> ids = entries.stream()
+                    .filter(entry -> client.equals(entry.getClientId()))
+                    .map(AuditTrail.Entry::getMessageId)
+                    .toList();
+            for (int i = 1; i < ids.size(); i++) {
+                Assertions.assertTrue(ids.get(i - 1) < ids.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void filesAreRotatedAndTheOldestDeleted() throws Exception {
+        AuditTrail trail = new AuditTrail(directory, 16, 1, 3);
+        for (long id = 0; id < 5; id++) {
+            final long written = trail.getWritten();
+            trail.record(AuditEvent.STORED, "acme", message(id), null, null);
+            while (trail.getWritten() == written) {
+                Thread.sleep(1);
+            }
+        }
+        trail.close();
+        Assertions.assertEquals(List.of(2L, 3L, 4L), List.copyOf(trail.files().keySet()));
+        Assertions.assertEquals(List.of(2L, 3L, 4L), entries(trail).stream().map(AuditTrail.Entry::getMessageId)
+                .toList());
+
+        trail = new AuditTrail(directory, 16, 1, 3);
+        trail.record(AuditEvent.STORED, "acme", message(5L), null, null);
+        trail.close();
+        Assertions.assertEquals(List.of(3L, 4L, 5L), List.copyOf(trail.files().keySet()));
+    }
+
+    @Test
+    public void eventsAreDroppedOnceClosed() throws Exception {
+        final AuditTrail trail = new AuditTrail(directory, 16, 1024, 2);
+        trail.close();
+        trail.record(AuditEvent.STORED, "acme", message(1L), null, null);
+        Assertions.assertEquals(0, trail.getRecorded());
+        Assertions.assertEquals(1, trail.getDropped());
+        Assertions.assertTrue(trail.files().isEmpty());
+    }
+
+    private static List<AuditTrail.Entry> entries(final AuditTrail trail) throws Exception {
+        final List<AuditTrail.Entry> entries = new ArrayList<>();
+        for (final Path file : trail.files().values()) {
+            entries.addAll(AuditTrail.read(file));
+        }
+        return entries;
+    }
+
+    private static Message message(final Long id) {
+        final Message message = new Message();
+        message.setId(id);
+        message.setPriority(Priority.HIGH);
+        message.setNotificationType(NotificationType.SMS);
+        return message;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.hotspot;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.messages.model.HotspotReport;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+public class HotspotsTest {
+
+    @Test
+    public void sketchNeverUnderestimatesAndRarelyExceedsItsBound() {
+        final CountMinSketch sketch = new CountMinSketch(4, 1024);
+        final Map<String, Long> counts = new HashMap<>();
+        final Random random = new Random(42);
+        long total = 0;
+        for (int i = 0; i < 200_000; i++) {
+            final String key = "key-" + (int) Math.pow(random.nextInt(100) + 1, 2.5);
+            sketch.add(key, 1);
+            counts.merge(key, 1L, Long::sum);
+            total++;
+        }
+
+        int beyondBound = 0;
+        for (final Map.Entry<String, Long> count : counts.entrySet()) {
+            final long estimate = sketch.estimate(count.getKey());
+            Assertions.assertTrue(estimate >= count.getValue());
+            if (estimate - count.getValue() > 2 * total / 1024) {
+                beyondBound++;
+            }
+        }
+        Assertions.assertTrue(beyondBound <= counts.size() / 16 + 1, beyondBound + " of " + counts.size());
+        Assertions.assertEquals(4 * 1024 * Long.BYTES, sketch.getSize());
+    }
+
+    @Test
+    public void heavyHittersFindsTheLargestKeysAmongManySmallOnes() {
+        final HeavyHitters hitters = new HeavyHitters(5, 4, 1024);
+        final Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            if (random.nextInt(4) == 0) {
+                hitters.add("hot-" + random.nextInt(5), 1);
+            } else {
+                hitters.add("cold-" + random.nextInt(50_000), 1);
+            }
+        }
+
+        final List<HeavyHitters.Hitter> top = hitters.top();
+        Assertions.assertEquals(Set.of("hot-0", "hot-1", "hot-2", "hot-3", "hot-4"), hitters.keys());
+        Assertions.assertEquals(5, top.size());
+        Assertions.assertTrue(top.get(0).getCount() >= top.get(4).getCount());
+    }
+
+    @Test
+    public void reportsBusiestOrganizationsAndClientsAndDeepestQueues() {
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final Hotspots hotspots = new Hotspots(2, 4, 256, registry);
+        for (int i = 0; i < 30; i++) {
+            hotspots.request("acme", "client-1");
+        }
+        for (int i = 0; i < 10; i++) {
+            hotspots.request("globex", null);
+        }
+        hotspots.request("initech", "client-2");
+        hotspots.stored("acme", Set.of("client-1"), message("x".repeat(100)));
+        hotspots.stored("globex", null, message("é".repeat(500)));
+
+        HotspotReport report = hotspots.report();
+        Assertions.assertEquals(List.of("acme", "globex"),
+                report.getOrganizations().getRequests().stream().map(HotspotReport.Rate::getOrganization).toList());
+        Assertions.assertEquals(30, report.getOrganizations().getRequests().get(0).getTotal());
+        Assertions.assertEquals("client-1", report.getClients().getRequests().get(0).getClientId());
+        Assertions.assertEquals("acme", report.getClients().getRequests().get(0).getOrganization());
+        Assertions.assertEquals(1000, report.getOrganizations().getBytesStored().get(0).getTotal());
+        Assertions.assertEquals(100, report.getClients().getBytesStored().get(0).getTotal());
+        Assertions.assertNull(report.getDepthsAt());
+
+        hotspots.rotate(Map.of("acme", 5, "globex", 50, "initech", 1),
+                Map.of("acme", Map.of("client-1", 3), "initech", Map.of("client-2", 1)));
+        hotspots.request("acme", null);
+
+        report = hotspots.report();
+        Assertions.assertEquals(31, report.getOrganizations().getRequests().get(0).getTotal());
+        Assertions.assertNotNull(report.getDepthsAt());
+        Assertions.assertEquals(List.of(50, 5),
+                report.getOrganizations().getDepth().stream().map(HotspotReport.Depth::getMessages).toList());
+        Assertions.assertEquals("client-1", report.getClients().getDepth().get(0).getClientId());
+        final Gauge depth = registry.get("messages.hotspot.organization.depth").tag("organization", "globex").gauge();
+        Assertions.assertEquals(50, depth.value());
+        Assertions.assertEquals(2, registry.find("messages.hotspot.organization.requests").gauges().size());
+    }
+
+    @Test
+    public void encodedLengthMatchesUtf8() {
+        for (final String value : List.of("", "plain", "é", "€uro", "🚀 launch", "mixed é€🚀")) {
+            Assertions.assertEquals(value.getBytes(StandardCharsets.UTF_8).length, Hotspots.encodedLength(value));
+        }
+        Assertions.assertEquals(0, Hotspots.encodedLength(null));
+    }
+
+    @Test
+    public void countingRequestsIsCheapUnderContention() throws Exception {
+        final Hotspots hotspots = new Hotspots(10, 4, 1024, null);
+        final int threads = 8;
+        final int requests = 500_000;
+        final String[] organizations = new String[1000];
+        for (int i = 0; i < organizations.length; i++) {
+            organizations[i] = "org-" + i;
+        }
+        final String[] clients = {"client-1", "client-2", "client-3", "client-4"};
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<?>> results = new ArrayList<>();
+        final long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            results.add(executor.submit(() -> {
+                int state = seed;
+                for (int i = 0; i < requests; i++) {
+                    state = state * 1_103_515_245 + 12_345;
+                    final int hot = Math.min((state >>> 8) % organizations.length, (state >>> 4) & 15);
+                    hotspots.request(organizations[hot], clients[i & 3]);
+                }
+            }));
+        }
+        for (final Future<?> result : results) {
+            result.get();
+        }
+        final long nanosPerRequest = (System.nanoTime() - start) / ((long) threads * requests);
+        executor.shutdown();
+
+        log.info("Counted {} requests on {} threads and {} processor(s) at {} ns each", threads * requests, threads,
+                Runtime.getRuntime().availableProcessors(), nanosPerRequest);
+        Assertions.assertTrue(nanosPerRequest < 5_000, nanosPerRequest + " ns per request");
+        Assertions.assertEquals("org-0",
+                hotspots.report().getOrganizations().getRequests().get(0).getOrganization());
+    }
+
+    private static Message message(final String payload) {
+        final Message message = new Message();
+        message.setPayload(payload);
+        return message;
+    }
+}
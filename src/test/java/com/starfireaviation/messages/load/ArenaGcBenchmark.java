@@ -0,0 +1,117 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.load;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.arena.PayloadArena;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Workload run in a separate JVM by ArenaGcLoadIT. Fills message queues to the requested backlog, then keeps the
+ * backlog steady by claiming one message and adding another, so that GC pauses during the churn reflect the backlog
+ * held in memory.
+ *
+ * Arguments: heap|arena, backlog size, payload size in bytes, churn seconds, arena capacity in bytes.
+ */
+public final class ArenaGcBenchmark {
+
+    private static final int ORGANIZATIONS = 64;
+
+    private static final int PAYLOAD_VARIANTS = 64;
+
+    private static final int SLAB_SIZE = 1 << 20;
+
+    private static final int MIN_SLOT_SIZE = 64;
+
+    private static final int MAX_SLOT_SIZE = 64 << 10;
+
+    private static final long MEGABYTE = 1 << 20;
+
+    private ArenaGcBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+        final boolean arena = "arena".equals(args[0]);
+        final int backlog = Integer.parseInt(args[1]);
+        final int payloadSize = Integer.parseInt(args[2]);
+        final int seconds = Integer.parseInt(args[3]);
+        if (arena) {
+            PayloadArena.install(new PayloadArena(Long.parseLong(args[4]), SLAB_SIZE, MIN_SLOT_SIZE, MAX_SLOT_SIZE));
+        }
+        final byte[][] payloads = new byte[PAYLOAD_VARIANTS][payloadSize];
+        for (final byte[] payload : payloads) {
+            for (int i = 0; i < payloadSize; i++) {
+                payload[i] = (byte) ('a' + ThreadLocalRandom.current().nextInt(26));
+            }
+        }
+        final MessageQueue[] queues = new MessageQueue[ORGANIZATIONS];
+        for (int i = 0; i < ORGANIZATIONS; i++) {
+            queues[i] = new MessageQueue();
+        }
+        final long now = System.currentTimeMillis();
+        final Instant expiration = Instant.ofEpochMilli(now).plus(1, ChronoUnit.DAYS);
+        long id = 0;
+        final long fillStart = System.nanoTime();
+        for (int i = 0; i < backlog; i++) {
+            queues[i % ORGANIZATIONS].add(message(id++, expiration, payloads[i % PAYLOAD_VARIANTS]), now);
+        }
+        final double fillSeconds = (System.nanoTime() - fillStart) / 1e9;
+        System.gc();
+
+        System.out.println("CHURN_START " + ManagementFactory.getRuntimeMXBean().getUptime());
+        final Instant claimTime = Instant.ofEpochMilli(now);
+        final long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long operations = 0;
+        while (System.nanoTime() < deadline) {
+            final MessageQueue queue = queues[ThreadLocalRandom.current().nextInt(ORGANIZATIONS)];
+            queue.claim(NotificationType.SMS, "client", null, claimTime);
+            queue.add(message(id++, expiration, payloads[(int) (id % PAYLOAD_VARIANTS)]), now);
+            operations++;
+        }
+        System.out.println("CHURN_END " + ManagementFactory.getRuntimeMXBean().getUptime());
+
+        System.gc();
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final PayloadArena installed = PayloadArena.getInstance();
+        System.out.printf("RESULT fillSeconds=%.2f churnOpsPerSecond=%.0f liveHeapMb=%d arenaReservedMb=%d "
+                        + "arenaRefused=%d%n",
+                fillSeconds, operations / (double) seconds, heap.getUsed() / MEGABYTE,
+                installed == null ? 0 : installed.getReservedBytes() / MEGABYTE,
+                installed == null ? 0 : installed.getRefused());
+        Reference.reachabilityFence(queues);
+    }
+
+    private static Message message(final long id, final Instant expiration, final byte[] payload) {
+        final Message message = new Message();
+        message.setId(id);
+        message.setPriority(Priority.NORMAL);
+        message.setNotificationType(NotificationType.SMS);
+        message.setExpirationTime(expiration);
+        message.setPayload(new String(payload, StandardCharsets.ISO_8859_1));
+        return message;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Compares GC pauses with message payloads on the heap and in the off-heap PayloadArena. Each mode runs
+ * ArenaGcBenchmark in a fresh JVM with GC logging, and only pauses during the churn phase are counted.
+ *
+ * Run with: ./mvnw -Pload-test verify -Dit.test=ArenaGcLoadIT -Dloadtest.arena=true
+ * [-Dloadtest.arena.messages=1000000 -Dloadtest.arena.payloadSize=1024 -Dloadtest.arena.duration=60
+ * -Dloadtest.arena.heap=2g -Dloadtest.arena.direct=2g -Dloadtest.arena.gc=G1]
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "loadtest.arena", matches = "true")
+public class ArenaGcLoadIT {
+
+    private static final Pattern PAUSE = Pattern.compile("^\\[(\\d+[.,]\\d+)s].* Pause (\\w+).* (\\d+[.,]\\d+)ms$");
+
+    private static final Pattern MARKER = Pattern.compile("^(CHURN_START|CHURN_END) (\\d+)$");
+
+    private static final Pattern RESULT = Pattern.compile("(\\w+)=([\\d.]+)");
+
+    private final int messages = Integer.getInteger("loadtest.arena.messages", 1_000_000);
+
+    private final int payloadSize = Integer.getInteger("loadtest.arena.payloadSize", 1024);
+
+    private final int duration = Integer.getInteger("loadtest.arena.duration", 60);
+
+    private final String heap = System.getProperty("loadtest.arena.heap", "2g");
+
+    private final String direct = System.getProperty("loadtest.arena.direct", "2g");
+
+    private final String collector = System.getProperty("loadtest.arena.gc", "G1");
+
+    private final File directory = new File(new LoadTestConfig().getReport()).getParentFile();
+
+    @Test
+    public void compareGcPauses() throws Exception {
+        directory.mkdirs();
+        final Map<String, Object> report = new LinkedHashMap<>();
+        final Map<String, Object> workload = new LinkedHashMap<>();
+        workload.put("messages", messages);
+        workload.put("payloadSize", payloadSize);
+        workload.put("durationSeconds", duration);
+        workload.put("heap", heap);
+        workload.put("direct", direct);
+        workload.put("gc", collector);
+        report.put("workload", workload);
+        for (final String mode : List.of("heap", "arena")) {
+            report.put(mode, run(mode));
+        }
+        final File file = new File(directory, "arena-gc.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+        log.info("Arena GC report written to {}:\n{}", file,
+                new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report));
+    }
+
+    private Map<String, Object> run(final String mode) throws Exception {
+        final File gcLog = new File(directory, "arena-gc-" + mode + ".log");
+        final File output = new File(directory, "arena-gc-" + mode + ".out");
+        final long arenaCapacity = parseSize(direct);
+        final String classpath = System.getProperty("surefire.test.class.path",
+                System.getProperty("java.class.path"));
+        final List<String> command = new ArrayList<>(List.of(
+                System.getProperty("java.home") + "/bin/java",
+                "-Xms" + heap, "-Xmx" + heap, "-XX:MaxDirectMemorySize=" + direct,
+                "-XX:+Use" + collector + "GC",
+                "-Xlog:gc:file=" + gcLog.getPath() + ":uptime",
+                "-cp", classpath,
+                ArenaGcBenchmark.class.getName(),
+                mode, String.valueOf(messages), String.valueOf(payloadSize), String.valueOf(duration),
+                String.valueOf(arenaCapacity)));
+        log.info("Running {}", String.join(" ", command));
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output).start();
+        Assertions.assertTrue(process.waitFor(duration + 600L, TimeUnit.SECONDS), mode + " run timed out");
+        Assertions.assertEquals(0, process.exitValue(), mode + " run failed, see " + output);
+
+        double churnStart = 0;
+        double churnEnd = Double.MAX_VALUE;
+        final Map<String, Object> result = new LinkedHashMap<>();
+        for (final String line : Files.readAllLines(output.toPath())) {
+            final Matcher marker = MARKER.matcher(line);
+            if (marker.matches() && "CHURN_START".equals(marker.group(1))) {
+                churnStart = Long.parseLong(marker.group(2)) / 1000.0;
+            } else if (marker.matches()) {
+                churnEnd = Long.parseLong(marker.group(2)) / 1000.0;
+            } else if (line.startsWith("RESULT ")) {
+                final Matcher values = RESULT.matcher(line);
+                while (values.find()) {
+                    result.put(values.group(1), Double.valueOf(values.group(2)));
+                }
+            }
+        }
+
+        final Histogram pauses = new Histogram(3);
+        final Map<String, Integer> types = new LinkedHashMap<>();
+        for (final String line : Files.readAllLines(gcLog.toPath())) {
+            final Matcher pause = PAUSE.matcher(line);
+            if (pause.matches()) {
+                final double uptime = Double.parseDouble(pause.group(1).replace(',', '.'));
+                if (uptime >= churnStart && uptime <= churnEnd) {
+                    pauses.recordValue(Math.round(Double.parseDouble(pause.group(3).replace(',', '.')) * 1000));
+                    types.merge(pause.group(2), 1, Integer::sum);
+                }
+            }
+        }
+        final Map<String, Object> gc = new LinkedHashMap<>();
+        gc.put("count", pauses.getTotalCount());
+        gc.put("byType", types);
+        gc.put("totalMillis", Math.round(pauses.getMean() * pauses.getTotalCount() / 1000.0));
+        gc.put("p50Millis", pauses.getValueAtPercentile(50) / 1000.0);
+        gc.put("p99Millis", pauses.getValueAtPercentile(99) / 1000.0);
+        gc.put("maxMillis", pauses.getMaxValue() / 1000.0);
+        result.put("pauses", gc);
+        return result;
+    }
+
+    private static long parseSize(final String size) {
+        final char unit = Character.toLowerCase(size.charAt(size.length() - 1));
+        final long value = Long.parseLong(size.substring(0, size.length() - 1));
+        return switch (unit) {
+            case 'g' -> value << 30;
+            case 'm' -> value << 20;
+            case 'k' -> value << 10;
+            default -> Long.parseLong(size);
+        };
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Closed-loop HTTP load generator for the /api/messages endpoints.
+ *
+ * Producer threads POST messages and consumer threads GET them, each as fast as responses arrive. Latency is
+ * recorded per operation into HdrHistogram recorders, which are reset once warmup completes.
+ */
+@Slf4j
+public class LoadGenerator {
+
+    /**
+     * Operations recorded separately in the report.
+     */
+    public enum Operation {
+
+        /**
+         * Message stored.
+         */
+        POST,
+
+        /**
+         * Message returned.
+         */
+        GET_HIT,
+
+        /**
+         * No message available.
+         */
+        GET_EMPTY
+    }
+
+    /**
+     * Highest latency tracked, in microseconds.
+     */
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    /**
+     * Histogram precision.
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Workload.
+     */
+    private final LoadTestConfig config;
+
+    /**
+     * Base URL of the messages API.
+     */
+    private final URI uri;
+
+    /**
+     * HTTP client shared by all workers.
+     */
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    /**
+     * Latency recorders.
+     */
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+
+    /**
+     * Failed requests.
+     */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Whether workers should keep running.
+     */
+    private volatile boolean running;
+
+    /**
+     * LoadGenerator.
+     *
+     * @param loadTestConfig workload
+     * @param baseUrl base URL of the application, e.g. http://localhost:8080
+     */
+    public LoadGenerator(final LoadTestConfig loadTestConfig, final String baseUrl) {
+        config = loadTestConfig;
+        uri = URI.create(baseUrl + "/api/messages");
+        for (final Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS));
+        }
+    }
+
+    /**
+     * Runs the workload and returns the measured results.
+     *
+     * @return LoadReport
+     * @throws InterruptedException when interrupted while waiting for workers
+     */
+    public LoadReport run() throws InterruptedException {
+        running = true;
+        final List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < config.getProducers(); i++) {
+            workers.add(start("producer-" + i, this::produce));
+        }
+        for (int i = 0; i < config.getConsumers(); i++) {
+            workers.add(start("consumer-" + i, this::consume));
+        }
+
+        log.info("Warming up for {}s", config.getWarmup());
+        TimeUnit.SECONDS.sleep(config.getWarmup());
+        recorders.values().forEach(Recorder::reset);
+        errors.reset();
+
+        log.info("Measuring for {}s", config.getDuration());
+        final long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(config.getDuration());
+        final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        recorders.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+        final long elapsed = System.nanoTime() - start;
+        final long errorCount = errors.sum();
+
+        running = false;
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        return new LoadReport(config, histograms, errorCount, elapsed);
+    }
+
+    private Thread start(final String name, final Runnable task) {
+        final Thread thread = new Thread(() -> {
+            while (running) {
+                task.run();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void produce() {
+        final String body = "{\"priority\":\"" + config.nextPriority()
+                + "\",\"notificationType\":\"" + config.nextNotificationType()
+                + "\",\"" + config.getPayloadField() + "\":\"" + "x".repeat(config.nextPayloadSize()) + "\"}";
+        final HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .header("organization", config.nextOrganization())
+                .header("correlation-id", UUID.randomUUID().toString())
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        final long start = System.nanoTime();
+        final int status = send(request);
+        final long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start),
+                HIGHEST_TRACKABLE_MICROS);
+        if (status == HttpStatus.OK.value()) {
+            recorders.get(Operation.POST).recordValue(micros);
+        } else {
+            errors.increment();
+        }
+    }
+
+    private void consume() {
+        String query = "";
+        final String type = config.nextNotificationType().name();
+        if (!"ALL".equals(type)) {
+            query = "?notificationType=" + type;
+        }
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(uri + query))
+                .header("organization", config.nextOrganization())
+                .header("correlation-id", UUID.randomUUID().toString())
+                .header("client-id", config.nextClientId())
+                .GET()
+                .build();
+        final long start = System.nanoTime();
+        final int status = send(request);
+        final long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start),
+                HIGHEST_TRACKABLE_MICROS);
+        if (status == HttpStatus.OK.value()) {
+            recorders.get(Operation.GET_HIT).recordValue(micros);
+        } else if (status == HttpStatus.NOT_FOUND.value()) {
+            recorders.get(Operation.GET_EMPTY).recordValue(micros);
+        } else {
+            errors.increment();
+        }
+    }
+
+    private int send(final HttpRequest request) {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            return -1;
+        }
+    }
+}
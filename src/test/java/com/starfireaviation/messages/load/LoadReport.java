@@ -0,0 +1,113 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Results of a load test run, written as JSON so that runs can be diffed between builds.
+ */
+public class LoadReport {
+
+    /**
+     * Percentiles reported for each operation.
+     */
+    private static final String[] PERCENTILES = {"50", "90", "99", "99.9", "99.99"};
+
+    /**
+     * Report contents, in output order.
+     */
+    private final Map<String, Object> report = new LinkedHashMap<>();
+
+    /**
+     * LoadReport.
+     *
+     * @param config workload
+     * @param histograms latency by operation, in microseconds
+     * @param errors failed request count
+     * @param elapsedNanos measured duration
+     */
+    public LoadReport(final LoadTestConfig config,
+                      final Map<LoadGenerator.Operation, Histogram> histograms,
+                      final long errors,
+                      final long elapsedNanos) {
+        final double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        report.put("workload", config.toMap());
+        report.put("elapsedSeconds", round(seconds));
+        long total = 0;
+        final Map<String, Object> operations = new LinkedHashMap<>();
+        for (final Map.Entry<LoadGenerator.Operation, Histogram> entry : histograms.entrySet()) {
+            final Histogram histogram = entry.getValue();
+            total += histogram.getTotalCount();
+            final Map<String, Object> operation = new LinkedHashMap<>();
+            operation.put("count", histogram.getTotalCount());
+            operation.put("throughputPerSecond", round(histogram.getTotalCount() / seconds));
+            final Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("mean", round(histogram.getMean()));
+            for (final String percentile : PERCENTILES) {
+                latency.put("p" + percentile, histogram.getValueAtPercentile(Double.parseDouble(percentile)));
+            }
+            latency.put("max", histogram.getMaxValue());
+            operation.put("latencyMicros", latency);
+            operations.put(entry.getKey().name(), operation);
+        }
+        report.put("throughputPerSecond", round(total / seconds));
+        report.put("errors", errors);
+        report.put("operations", operations);
+    }
+
+    /**
+     * Total failed requests.
+     *
+     * @return error count
+     */
+    public long getErrors() {
+        return (long) report.get("errors");
+    }
+
+    /**
+     * Writes the report.
+     *
+     * @param file destination
+     * @throws IOException when the report cannot be written
+     */
+    public void write(final File file) throws IOException {
+        file.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+        } catch (IOException e) {
+            return report.toString();
+        }
+    }
+
+    private static double round(final double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.load;
+
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.Getter;
+
+/**
+ * Load test workload, read from {@code loadtest.*} system properties.
+ */
+@Getter
+public class LoadTestConfig {
+
+    /**
+     * Base URL of an already running instance. When blank, the application is booted in-process.
+     */
+    private final String url = System.getProperty("loadtest.url", "");
+
+    /**
+     * Spring profiles activated when booting in-process, e.g. reactive.
+     */
+    private final String profiles = System.getProperty("loadtest.profiles", "");
+
+    /**
+     * Label recorded in the report, used to tell runs apart (e.g. build or stack).
+     */
+    private final String label = System.getProperty("loadtest.label", "servlet");
+
+    /**
+     * Warmup seconds, excluded from the report.
+     */
+    private final int warmup = Integer.getInteger("loadtest.warmup", 5);
+
+    /**
+     * Measured seconds.
+     */
+    private final int duration = Integer.getInteger("loadtest.duration", 30);
+
+    /**
+     * Number of organizations.
+     */
+    private final int organizations = Integer.getInteger("loadtest.organizations", 4);
+
+    /**
+     * Number of distinct client IDs per organization.
+     */
+    private final int clients = Integer.getInteger("loadtest.clients", 16);
+
+    /**
+     * Producer threads.
+     */
+    private final int producers = Integer.getInteger("loadtest.producers", 8);
+
+    /**
+     * Consumer threads.
+     */
+    private final int consumers = Integer.getInteger("loadtest.consumers", 8);
+
+    /**
+     * Relative weight of each Priority, e.g. HIGH:1,NORMAL:8,LOW:1.
+     */
+    private final Map<Priority, Integer> priorityMix =
+            parseMix(System.getProperty("loadtest.priorityMix", "HIGH:1,NORMAL:8,LOW:1"));
+
+    /**
+     * Payload sizes in bytes, chosen uniformly.
+     */
+    private final List<Integer> payloadSizes =
+            parseSizes(System.getProperty("loadtest.payloadSizes", "256,1024,4096"));
+
+    /**
+     * Name of the Message attribute carrying the payload.
+     */
+    private final String payloadField = System.getProperty("loadtest.payloadField", "payload");
+
+    /**
+     * Fraction of produced messages sent as NotificationType.ALL broadcasts rather than directed messages, which is
+     * also the fraction of consumer requests that poll for broadcasts.
+     */
+    private final double broadcastRatio = Double.parseDouble(System.getProperty("loadtest.broadcastRatio", "0.2"));
+
+    /**
+     * Where the report is written.
+     */
+    private final String report = System.getProperty("loadtest.report", "target/load-test/report.json");
+
+    /**
+     * NotificationTypes used for directed messages.
+     */
+    private final List<NotificationType> directedTypes = Arrays.stream(NotificationType.values())
+            .filter(type -> type != NotificationType.ALL)
+            .toList();
+
+    /**
+     * Picks a Priority according to the configured mix.
+     *
+     * @return Priority
+     */
+    public Priority nextPriority() {
+        final int total = priorityMix.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (final Map.Entry<Priority, Integer> entry : priorityMix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        return Priority.NORMAL;
+    }
+
+    /**
+     * Picks a payload size.
+     *
+     * @return size in bytes
+     */
+    public int nextPayloadSize() {
+        return payloadSizes.get(ThreadLocalRandom.current().nextInt(payloadSizes.size()));
+    }
+
+    /**
+     * Picks a NotificationType, ALL with probability broadcastRatio.
+     *
+     * @return NotificationType
+     */
+    public NotificationType nextNotificationType() {
+        if (ThreadLocalRandom.current().nextDouble() < broadcastRatio) {
+            return NotificationType.ALL;
+        }
+        return directedTypes.get(ThreadLocalRandom.current().nextInt(directedTypes.size()));
+    }
+
+    /**
+     * Picks an organization.
+     *
+     * @return organization
+     */
+    public String nextOrganization() {
+        return "LOAD_ORG_" + ThreadLocalRandom.current().nextInt(organizations);
+    }
+
+    /**
+     * Picks a client ID.
+     *
+     * @return ClientID
+     */
+    public String nextClientId() {
+        return "load-client-" + ThreadLocalRandom.current().nextInt(clients);
+    }
+
+    /**
+     * Workload settings, as recorded in the report.
+     *
+     * @return settings
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("label", label);
+        map.put("profiles", profiles);
+        map.put("warmupSeconds", warmup);
+        map.put("durationSeconds", duration);
+        map.put("organizations", organizations);
+        map.put("clients", clients);
+        map.put("producers", producers);
+        map.put("consumers", consumers);
+        map.put("priorityMix", priorityMix);
+        map.put("payloadSizes", payloadSizes);
+        map.put("broadcastRatio", broadcastRatio);
+        return map;
+    }
+
+    private static Map<Priority, Integer> parseMix(final String value) {
+        final Map<Priority, Integer> mix = new LinkedHashMap<>();
+        for (final String part : value.split(",")) {
+            final String[] pair = part.trim().split(":");
+            mix.put(Priority.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        return mix;
+    }
+
+    private static List<Integer> parseSizes(final String value) {
+        final List<Integer> sizes = new ArrayList<>();
+        for (final String part : value.split(",")) {
+            sizes.add(Integer.parseInt(part.trim()));
+        }
+        return sizes;
+    }
+}
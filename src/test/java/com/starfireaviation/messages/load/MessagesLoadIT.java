@@ -0,0 +1,58 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.load;
+
+import com.starfireaviation.messages.MessagesApplication;
+import java.io.File;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Boots the application on a random port (unless loadtest.url points at a running instance) and drives it with the
+ * configured workload.
+ *
+ * Run with: ./mvnw -Pload-test verify
+ */
+@Slf4j
+public class MessagesLoadIT {
+
+    @Test
+    public void load() throws Exception {
+        final LoadTestConfig config = new LoadTestConfig();
+        ConfigurableApplicationContext context = null;
+        String baseUrl = config.getUrl();
+        if (baseUrl.isBlank()) {
+            context = SpringApplication.run(MessagesApplication.class, "--server.port=0",
+                    "--logging.level.com.starfireaviation=WARN", "--spring.profiles.active=" + config.getProfiles());
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+        try {
+            final LoadReport report = new LoadGenerator(config, baseUrl).run();
+            report.write(new File(config.getReport()));
+            log.info("Load test report written to {}:\n{}", config.getReport(), report);
+            Assertions.assertEquals(0, report.getErrors(), "Requests failed during the load test");
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.model;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MessageQueueTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static final long LEASE = NOW.toEpochMilli() + 30_000;
+
+    @Test
+    public void targetedMessagesAreOnlyDeliveredToTheirTargets() {
+        final MessageQueue queue = new MessageQueue();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.SMS), Set.of("alpha"), null, NOW.toEpochMilli());
+
+        Assertions.assertNull(queue.claim(NotificationType.SMS, "bravo", null, NOW));
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", null, NOW).getId());
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertEquals(0, queue.getStats(NOW.toEpochMilli()).getInboxes());
+    }
+
+    @Test
+    public void targetedMessagesAreDeliveredOnceToEachTarget() {
+        final MessageQueue queue = new MessageQueue();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.SMS), Set.of("alpha", "bravo"), null,
+                NOW.toEpochMilli());
+        Assertions.assertEquals(2, queue.getStats(NOW.toEpochMilli()).getInboxes());
+
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", null, NOW).getId());
+        Assertions.assertNull(queue.claim(NotificationType.SMS, "alpha", null, NOW));
+        Assertions.assertEquals(1, queue.getStats(NOW.toEpochMilli()).getTargeted());
+
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "bravo", null, NOW).getId());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void inboxAndSharedQueueAreMergedInPriorityThenArrivalOrder() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.SMS), now);
+        queue.add(message(2L, Priority.LOW, NotificationType.SMS), Set.of("alpha"), null, now);
+        queue.add(message(3L, Priority.HIGH, NotificationType.ALL), Set.of("alpha"), null, now);
+        queue.add(message(4L, Priority.NORMAL, NotificationType.EMAIL), Set.of("alpha"), null, now);
+
+        final QueueStats stats = queue.getStats(now);
+        Assertions.assertEquals(4, stats.getAvailable());
+        Assertions.assertEquals(1, stats.getPriorities().get(Priority.HIGH));
+        Assertions.assertEquals(2, stats.getPriorities().get(Priority.NORMAL));
+
+        Assertions.assertEquals(3L, queue.claim(NotificationType.SMS, "alpha", null, NOW).getId());
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", null, NOW).getId());
+        Assertions.assertEquals(2L, queue.claim(NotificationType.SMS, "alpha", null, NOW).getId());
+        Assertions.assertNull(queue.claim(NotificationType.SMS, "alpha", null, NOW));
+        Assertions.assertEquals(4L, queue.claim(NotificationType.EMAIL, "alpha", null, NOW).getId());
+    }
+
+    @Test
+    public void expiredLeaseReturnsTheMessageToItsPositionInTheSharedQueue() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.SMS), now);
+        queue.add(message(2L, Priority.NORMAL, NotificationType.SMS), now);
+
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", LEASE, NOW).getId());
+        Assertions.assertEquals(2L, queue.next(NotificationType.SMS, "bravo", NOW).getId());
+        Assertions.assertEquals(List.of(2L), queue.peek(10, NotificationType.SMS, NOW).stream()
+                .map(Message::getId).toList());
+        Assertions.assertEquals(1, queue.getStats(now).getLeased());
+
+        Assertions.assertEquals(0, queue.releaseExpiredLeases(LEASE - 1));
+        Assertions.assertEquals(1, queue.releaseExpiredLeases(LEASE));
+        Assertions.assertEquals(0, queue.getStats(now).getLeased());
+        Assertions.assertEquals(List.of(1L, 2L), queue.peek(10, NotificationType.SMS, NOW).stream()
+                .map(Message::getId).toList());
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "bravo", null, NOW).getId());
+        Assertions.assertEquals(2L, queue.claim(NotificationType.SMS, "bravo", null, NOW).getId());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void acknowledgingAnExpiredLeaseDoesNotRemoveTheRedeliveredMessage() {
+        final MessageQueue queue = new MessageQueue();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.SMS), NOW.toEpochMilli());
+
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", LEASE, NOW).getId());
+        Assertions.assertEquals(1, queue.releaseExpiredLeases(LEASE));
+        Assertions.assertFalse(queue.acknowledge(1L));
+        Assertions.assertEquals(1, queue.size());
+
+        final long redelivered = LEASE + 30_000;
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "bravo", redelivered, NOW).getId());
+        Assertions.assertEquals(0, queue.releaseExpiredLeases(LEASE + 1));
+        Assertions.assertTrue(queue.acknowledge(1L));
+        Assertions.assertFalse(queue.acknowledge(1L));
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void expiredLeaseReturnsTheMessageToTheLastTargetsInbox() {
+        final MessageQueue queue = new MessageQueue();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.SMS), Set.of("alpha", "bravo"), null,
+                NOW.toEpochMilli());
+
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", LEASE, NOW).getId());
+        Assertions.assertEquals(0, queue.getStats(NOW.toEpochMilli()).getLeased());
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "bravo", LEASE, NOW).getId());
+        Assertions.assertEquals(1, queue.getStats(NOW.toEpochMilli()).getLeased());
+
+        Assertions.assertEquals(1, queue.releaseExpiredLeases(LEASE));
+        Assertions.assertNull(queue.claim(NotificationType.SMS, "alpha", null, NOW));
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "bravo", LEASE, NOW).getId());
+        Assertions.assertTrue(queue.acknowledge(1L));
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void expiredTargetedMessagesLeaveEveryInbox() {
+        final MessageQueue queue = new MessageQueue();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.SMS), Set.of("alpha", "bravo"), null,
+                NOW.toEpochMilli());
+
+        Assertions.assertEquals(1, queue.removeExpired(NOW.plus(2, ChronoUnit.HOURS)).size());
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertEquals(0, queue.getStats(NOW.toEpochMilli()).getInboxes());
+    }
+
+    @Test
+    public void groupedMessagesAreDeliveredInOrderOneAtATime() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(message(1L, Priority.LOW, NotificationType.SMS), null, "N123", now);
+        queue.add(message(2L, Priority.HIGH, NotificationType.SMS), null, "N123", now);
+        queue.add(message(3L, Priority.NORMAL, NotificationType.SMS), null, "N456", now);
+
+        Assertions.assertEquals(3L, queue.claim(NotificationType.SMS, "alpha", LEASE, NOW).getId());
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "bravo", LEASE, NOW).getId());
+        Assertions.assertNull(queue.claim(NotificationType.SMS, "charlie", LEASE, NOW));
+        Assertions.assertEquals(2, queue.getStats(now).getBlockedGroups());
+
+        Assertions.assertTrue(queue.acknowledge(1L));
+        Assertions.assertEquals(2L, queue.claim(NotificationType.SMS, "charlie", LEASE, NOW).getId());
+    }
+
+    @Test
+    public void expiredLeaseRedeliversTheGroupHeadFirst() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.SMS), null, "N123", now);
+        queue.add(message(2L, Priority.NORMAL, NotificationType.SMS), null, "N123", now);
+
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", LEASE, NOW).getId());
+        Assertions.assertEquals(1, queue.releaseExpiredLeases(LEASE));
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "bravo", LEASE, NOW).getId());
+        Assertions.assertNotNull(queue.cancel(1L));
+        Assertions.assertEquals(2L, queue.claim(NotificationType.SMS, "bravo", null, NOW).getId());
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertEquals(0, queue.getStats(now).getGroups());
+        Assertions.assertEquals(0, queue.getStats(now).getBlockedGroups());
+    }
+
+    @Test
+    public void groupedMessagesForEveryClientAreDeliveredOnce() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.ALL), null, "N123", now);
+        queue.add(message(2L, Priority.NORMAL, NotificationType.ALL), null, "N123", now);
+
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", null, NOW).getId());
+        Assertions.assertEquals(2L, queue.claim(NotificationType.EMAIL, "bravo", null, NOW).getId());
+        Assertions.assertNull(queue.claim(NotificationType.SMS, "charlie", null, NOW));
+    }
+
+    @Test
+    public void consumerGroupsReceiveEachMessageForEveryClientOnce() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(message(1L, Priority.NORMAL, NotificationType.ALL), now);
+        queue.add(message(2L, Priority.NORMAL, NotificationType.ALL), now);
+        final Set<Priority> all = EnumSet.allOf(Priority.class);
+
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "billing-1", "billing", null, NOW,
+                DeliveryOrder.ARRIVAL, all).getId());
+        Assertions.assertEquals(2L, queue.claim(NotificationType.SMS, "billing-2", "billing", null, NOW,
+                DeliveryOrder.ARRIVAL, all).getId());
+        Assertions.assertNull(queue.claim(NotificationType.SMS, "billing-3", "billing", null, NOW,
+                DeliveryOrder.ARRIVAL, all));
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "audit-1", "audit", null, NOW,
+                DeliveryOrder.ARRIVAL, all).getId());
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "billing", null, NOW).getId());
+        Assertions.assertTrue(queue.isSeen(2L, "billing-3", "billing"));
+        Assertions.assertFalse(queue.isSeen(2L, "billing"));
+    }
+
+    @Test
+    public void consumerGroupSeenStateIsExportedAndCountsAsDelivered() {
+        final MessageQueue source = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        for (final Long id : List.of(1L, 2L)) {
+            final Message broadcast = expiring(id, Priority.NORMAL, 10);
+            broadcast.setNotificationType(NotificationType.ALL);
+            source.add(broadcast, now);
+        }
+        source.markSeen(1L, "billing-1", "billing");
+        source.markSeen(2L, "billing-1", "billing");
+        source.markSeen(2L, "alpha");
+        final List<ExportedMessage> exported = source.export(-1, 10);
+        Assertions.assertEquals(Set.of("billing"), exported.get(0).getSeenByConsumerGroups());
+        Assertions.assertNull(exported.get(0).getSeenBy());
+        Assertions.assertEquals(Set.of("alpha"), exported.get(1).getSeenBy());
+
+        final MessageQueue target = new MessageQueue();
+        exported.forEach(exportedMessage -> target.restore(exportedMessage, NOW));
+        Assertions.assertTrue(target.isSeen(1L, "billing-2", "billing"));
+        Assertions.assertFalse(target.isSeen(1L, "billing-2"));
+        final Map<Priority, Integer> undelivered = new EnumMap<>(Priority.class);
+        Assertions.assertEquals(2, target.removeExpired(NOW.plus(30, ChronoUnit.MINUTES), undelivered).size());
+        Assertions.assertTrue(undelivered.isEmpty());
+    }
+
+    @Test
+    public void exportPagesThroughEveryMessageInQueueOrder() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(message(1L, Priority.LOW, NotificationType.SMS), now);
+        queue.add(message(2L, Priority.HIGH, NotificationType.SMS), Set.of("alpha"), null, now);
+        queue.add(message(3L, Priority.NORMAL, NotificationType.SMS), null, "N123", now);
+        queue.add(message(4L, Priority.NORMAL, NotificationType.SMS), null, "N123", now);
+        queue.add(message(5L, Priority.HIGH, NotificationType.ALL), now);
+        queue.markSeen(5L, "bravo");
+        Assertions.assertEquals(2L, queue.claim(NotificationType.SMS, "alpha", LEASE, NOW).getId());
+        Assertions.assertEquals(5L, queue.claim(NotificationType.SMS, "alpha", null, NOW).getId());
+
+        final List<ExportedMessage> first = queue.export(-1, 2);
+        final List<ExportedMessage> second = queue.export(first.get(1).getSequence(), 2);
+        final List<ExportedMessage> third = queue.export(second.get(1).getSequence(), 2);
+        Assertions.assertEquals(List.of(1L, 2L), ids(first));
+        Assertions.assertEquals(List.of(3L, 4L), ids(second));
+        Assertions.assertEquals(List.of(5L), ids(third));
+        Assertions.assertEquals(Set.of("alpha"), first.get(1).getTargets());
+        Assertions.assertEquals("N123", second.get(0).getGroup());
+        Assertions.assertEquals(Set.of("alpha", "bravo"), third.get(0).getSeenBy());
+        Assertions.assertEquals("payload-5", third.get(0).getMessage().getPayload());
+    }
+
+    @Test
+    public void restoreKeepsDeliveryStateAndSkipsStoredOrExpiredMessages() {
+        final MessageQueue source = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        source.add(message(1L, Priority.NORMAL, NotificationType.ALL), now);
+        source.markSeen(1L, "alpha");
+        source.add(message(2L, Priority.NORMAL, NotificationType.SMS), null, "N123", now);
+        source.add(message(3L, Priority.NORMAL, NotificationType.SMS), null, "N123", now);
+        final List<ExportedMessage> exported = source.export(-1, 10);
+
+        final MessageQueue target = new MessageQueue();
+        for (final ExportedMessage exportedMessage : exported) {
+            Assertions.assertTrue(target.restore(exportedMessage, NOW));
+            Assertions.assertFalse(target.restore(exportedMessage, NOW));
+        }
+        Assertions.assertFalse(new MessageQueue().restore(exported.get(0), NOW.plus(2, ChronoUnit.HOURS)));
+
+        Assertions.assertEquals(2L, target.claim(NotificationType.SMS, "alpha", LEASE, NOW).getId());
+        Assertions.assertNull(target.claim(NotificationType.SMS, "alpha", LEASE, NOW));
+        Assertions.assertEquals(1L, target.claim(NotificationType.SMS, "bravo", null, NOW).getId());
+        Assertions.assertEquals(now, target.export(-1, 10).get(0).getEnqueuedAt());
+    }
+
+    @Test
+    public void deadlineOrderDeliversTheEarliestExpirationWithinEachPriority() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(expiring(1L, Priority.NORMAL, 30), now);
+        queue.add(expiring(2L, Priority.NORMAL, 10), now);
+        queue.add(expiring(3L, Priority.HIGH, 60), now);
+        queue.add(expiring(4L, Priority.NORMAL, 20), now);
+
+        Assertions.assertEquals(List.of(3L, 2L, 4L, 1L),
+                queue.peek(10, NotificationType.SMS, NOW, DeliveryOrder.DEADLINE).stream()
+                        .map(Message::getId).toList());
+        Assertions.assertEquals(3L, queue.claim(NotificationType.SMS, "alpha", null, NOW, DeliveryOrder.DEADLINE)
+                .getId());
+        Assertions.assertEquals(2L, queue.claim(NotificationType.SMS, "alpha", null, NOW, DeliveryOrder.DEADLINE)
+                .getId());
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "alpha", null, NOW).getId());
+        Assertions.assertEquals(4L, queue.claim(NotificationType.SMS, "alpha", null, NOW, DeliveryOrder.DEADLINE)
+                .getId());
+    }
+
+    @Test
+    public void deadlineOrderSkipsExpiredMessagesAndFollowsLeases() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(expiring(1L, Priority.NORMAL, -1), now);
+        queue.add(expiring(2L, Priority.NORMAL, 20), now);
+        queue.add(expiring(3L, Priority.NORMAL, 10), now);
+
+        Assertions.assertEquals(3L, queue.claim(NotificationType.SMS, "alpha", LEASE, NOW, DeliveryOrder.DEADLINE)
+                .getId());
+        Assertions.assertEquals(2L, queue.next(NotificationType.SMS, "alpha", NOW, DeliveryOrder.DEADLINE).getId());
+        queue.releaseExpiredLeases(LEASE + 1);
+        Assertions.assertEquals(3L, queue.next(NotificationType.SMS, "alpha", NOW, DeliveryOrder.DEADLINE).getId());
+    }
+
+    @Test
+    public void removeExpiredCountsMessagesNeverDelivered() {
+        final MessageQueue queue = new MessageQueue();
+        final long now = NOW.toEpochMilli();
+        queue.add(expiring(1L, Priority.HIGH, 10), now);
+        queue.add(expiring(2L, Priority.LOW, 10), now);
+        final Message broadcast = expiring(3L, Priority.LOW, 10);
+        broadcast.setNotificationType(NotificationType.ALL);
+        queue.add(broadcast, now);
+        final Message unseen = expiring(4L, Priority.LOW, 10);
+        unseen.setNotificationType(NotificationType.ALL);
+        queue.add(unseen, now);
+        queue.add(expiring(5L, Priority.LOW, 60), now);
+
+        Assertions.assertEquals(3L, queue.claim(NotificationType.EMAIL, "alpha", null, NOW).getId());
+        final Map<Priority, Integer> undelivered = new EnumMap<>(Priority.class);
+        Assertions.assertEquals(4, queue.removeExpired(NOW.plus(30, ChronoUnit.MINUTES), undelivered).size());
+        Assertions.assertEquals(Map.of(Priority.HIGH, 1, Priority.LOW, 2), undelivered);
+        Assertions.assertEquals(1, queue.size());
+    }
+
+    private static List<Long> ids(final List<ExportedMessage> exported) {
+        return exported.stream().map(exportedMessage -> exportedMessage.getMessage().getId()).toList();
+    }
+
+    private static Message message(final Long id, final Priority priority, final NotificationType type) {
+        final Message message = new Message();
+        message.setId(id);
+        message.setPriority(priority);
+        message.setNotificationType(type);
+        message.setExpirationTime(NOW.plus(1, ChronoUnit.HOURS));
+        message.setPayload("payload-" + id);
+        return message;
+    }
+
+    private static Message expiring(final Long id, final Priority priority, final long minutes) {
+        final Message message = message(id, priority, NotificationType.SMS);
+        message.setExpirationTime(NOW.plus(minutes, ChronoUnit.MINUTES));
+        return message;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service;
+
+import com.starfireaviation.messages.config.ApplicationProperties;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks which push destinations CallbackAddresses accepts.
+ */
+public class CallbackAddressesTest {
+
+    private final ApplicationProperties.Push push = new ApplicationProperties.Push();
+
+    @Test
+    public void internalAddressesAreRefused() {
+        for (final String url : List.of("http://localhost:8080/callback", "http://api.localhost/callback",
+                "http://127.0.0.1/callback", "http://2130706433/callback", "http://0.0.0.0/callback",
+                "http://169.254.169.254/latest/meta-data", "http://10.1.2.3/callback", "http://172.16.0.1/callback",
+                "http://192.168.1.1/callback", "http://100.64.0.1/callback", "http://[::1]/callback",
+                "http://[fe80::1]/callback", "http://[fd00::1]/callback", "http://[::ffff:127.0.0.1]/callback")) {
+            Assertions.assertFalse(CallbackAddresses.isRegistrable(URI.create(url), push), url);
+        }
+    }
+
+    @Test
+    public void publicAddressesAndNamesAreAccepted() {
+        for (final String url : List.of("https://93.184.216.34/callback", "https://100.128.0.1/callback",
+                "https://[2001:db8::1]/callback", "https://callback.example.com/messages")) {
+            Assertions.assertTrue(CallbackAddresses.isRegistrable(URI.create(url), push), url);
+        }
+    }
+
+    @Test
+    public void namesAreCheckedOnceResolved() {
+        final URI url = URI.create("http://localhost.:8080/callback");
+        Assertions.assertTrue(CallbackAddresses.isRegistrable(url, push));
+        Assertions.assertThrows(IOException.class, () -> CallbackAddresses.check(url, push));
+    }
+
+    @Test
+    public void allowedHostsAreTheOnlyOnesAccepted() throws IOException {
+        push.setAllowedHosts(List.of("localhost", "*.internal"));
+        CallbackAddresses.check(URI.create("http://localhost:8080/callback"), push);
+        Assertions.assertTrue(CallbackAddresses.isRegistrable(URI.create("http://sms-1.Internal/messages"), push));
+        Assertions.assertFalse(CallbackAddresses.isRegistrable(URI.create("http://internal/messages"), push));
+        Assertions.assertFalse(CallbackAddresses.isRegistrable(URI.create("https://callback.example.com/"), push));
+        Assertions.assertThrows(IOException.class,
+                () -> CallbackAddresses.check(URI.create("https://callback.example.com/"), push));
+    }
+
+    @Test
+    public void privateAddressesMayBeAllowed() throws IOException {
+        push.setAllowPrivateAddresses(true);
+        Assertions.assertTrue(CallbackAddresses.isRegistrable(URI.create("http://10.1.2.3/callback"), push));
+        CallbackAddresses.check(URI.create("http://127.0.0.1/callback"), push);
+    }
+
+    @Test
+    public void sharedAndWildcardRangesAreInternal() throws IOException {
+        Assertions.assertTrue(CallbackAddresses.isInternal(InetAddress.getByName("100.127.255.255")));
+        Assertions.assertTrue(CallbackAddresses.isInternal(InetAddress.getByName("0.1.2.3")));
+        Assertions.assertFalse(CallbackAddresses.isInternal(InetAddress.getByName("8.8.8.8")));
+    }
+}
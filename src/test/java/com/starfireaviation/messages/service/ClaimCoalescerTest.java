@@ -0,0 +1,167 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.config.CommonConstants;
+import com.starfireaviation.messages.config.ServiceConfig;
+import com.starfireaviation.messages.model.DeliveryOrder;
+import com.starfireaviation.messages.model.MessageQueue;
+import com.starfireaviation.messages.service.processor.BatchClaimProcessor;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that ClaimCoalescer batches contended claims without losing or duplicating deliveries.
+ */
+public class ClaimCoalescerTest {
+
+    private static final String ORGANIZATION = "COALESCE_ORG";
+
+    private static final int CALLERS = 32;
+
+    private HazelcastInstance member;
+
+    private MessageService service;
+
+    private ClaimCoalescer coalescer;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    public void startMember() {
+        final Config config = ServiceConfig.configure(new Config());
+        config.setClusterName("coalesce-" + UUID.randomUUID());
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.getNetworkConfig().setPort(5921).setPortAutoIncrement(true);
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        member = Hazelcast.newHazelcastInstance(config);
+        service = new MessageService(member);
+        final IMap<String, MessageQueue> map = member.getMap(CommonConstants.MESSAGES_MAP);
+        coalescer = new ClaimCoalescer(map, CommonConstants.MAX_CLAIM_BATCH_SIZE, executor);
+    }
+
+    @AfterEach
+    public void stopMember() {
+        member.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void uncontendedClaimsAreSubmittedIndividually() {
+        add(Priority.LOW);
+        add(Priority.HIGH);
+        final Message first = claim().join();
+        final Message second = claim().join();
+        Assertions.assertEquals(Priority.HIGH, first.getPriority());
+        Assertions.assertEquals(Priority.LOW, second.getPriority());
+        Assertions.assertNull(claim().join());
+        Assertions.assertEquals(3, coalescer.getBatchCount());
+    }
+
+    @Test
+    public void contendedClaimsAreBatchedAndEachMessageIsDeliveredOnce() throws Exception {
+        final Set<Long> added = new HashSet<>();
+        for (int i = 0; i < CALLERS; i++) {
+            added.add(add(Priority.values()[i % Priority.values().length]));
+        }
+        final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Message>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(() -> {
+                start.await();
+                return claim().join();
+            }));
+        }
+        start.countDown();
+        final List<Message> claimed = new ArrayList<>();
+        for (final Future<Message> result : results) {
+            claimed.add(result.get());
+        }
+        callers.shutdown();
+
+        Assertions.assertEquals(added, claimed.stream().map(Message::getId).collect(Collectors.toSet()));
+        Assertions.assertTrue(coalescer.getBatchCount() < CALLERS,
+                "Expected fewer than " + CALLERS + " batches but got " + coalescer.getBatchCount());
+    }
+
+    @Test
+    public void claimsFailRatherThanHangWhenBatchesCannotBeSubmitted() {
+        member.shutdown();
+        for (int i = 0; i < 3; i++) {
+            final CompletableFuture<Message> claimed = claim();
+            Assertions.assertThrows(ExecutionException.class, () -> claimed.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void closingTheServiceCompletesClaimsInFlight() {
+        final Set<Long> added = new HashSet<>();
+        for (int i = 0; i < CALLERS; i++) {
+            added.add(add(Priority.NORMAL));
+        }
+        final List<CompletableFuture<Message>> claims = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            claims.add(service.getMessageAsync(ORGANIZATION, NotificationType.SMS, "client-1", null, null)
+                    .toCompletableFuture());
+        }
+        service.close();
+
+        Assertions.assertTrue(claims.stream().allMatch(CompletableFuture::isDone));
+        Assertions.assertEquals(added, claims.stream().map(claim -> claim.join().getId()).collect(Collectors.toSet()));
+        Assertions.assertNull(service.getMessage(ORGANIZATION, NotificationType.SMS, "client-1", null));
+    }
+
+    private Long add(final Priority priority) {
+        final Message message = new Message();
+        message.setPriority(priority);
+        message.setNotificationType(NotificationType.SMS);
+        service.addMessage(message, ORGANIZATION, null);
+        return message.getId();
+    }
+
+    private CompletableFuture<Message> claim() {
+        return coalescer.claim(ORGANIZATION, new BatchClaimProcessor.Claim(NotificationType.SMS, "client-1", null,
+                null, DeliveryOrder.ARRIVAL, EnumSet.allOf(Priority.class)))
+                .toCompletableFuture();
+    }
+}
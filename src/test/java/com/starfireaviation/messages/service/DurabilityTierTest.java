@@ -0,0 +1,251 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.instance.EndpointQualifier;
+import com.hazelcast.instance.impl.HazelcastInstanceProxy;
+import com.hazelcast.internal.server.ServerConnection;
+import com.hazelcast.internal.server.tcp.TcpServerConnection;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.config.ServiceConfig;
+import com.starfireaviation.messages.model.Durability;
+import com.starfireaviation.messages.model.ExportedMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that messages stored in different durability tiers of a multi-member cluster are still delivered in priority
+ * order, and measures what each tier costs a producer.
+ */
+@Slf4j
+public class DurabilityTierTest {
+
+    private static final int MEMBERS = 3;
+
+    private static final int MEASURED = Integer.getInteger("tiers.messages", 500);
+
+    private static final int WARMUP = 100;
+
+    private final List<HazelcastInstance> members = new ArrayList<>();
+
+    private final ApplicationProperties.Tiers tiers = new ApplicationProperties.Tiers();
+
+    private MessageService service;
+
+    @BeforeEach
+    public void startMembers() {
+        final String clusterName = "tiers-" + UUID.randomUUID();
+        for (int i = 0; i < MEMBERS; i++) {
+            final Config config = ServiceConfig.configure(new Config());
+            config.setClusterName(clusterName);
+            config.setProperty("hazelcast.phone.home.enabled", "false");
+            config.getNetworkConfig().setPort(5951).setPortAutoIncrement(true);
+            config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+            config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+            config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+            members.add(Hazelcast.newHazelcastInstance(config));
+        }
+        Assertions.assertEquals(MEMBERS, members.get(0).getCluster().getMembers().size());
+        tiers.getPriorities().put(Priority.HIGH, Durability.SYNC);
+        tiers.getPriorities().put(Priority.NORMAL, Durability.ASYNC);
+        tiers.getPriorities().put(Priority.LOW, Durability.NONE);
+        tiers.getOrganizations().put("TIERS_PINNED", Durability.NONE);
+        service = new MessageService(members.get(0), new ApplicationProperties.Claim(),
+                new ApplicationProperties.Spill(), new ApplicationProperties.Audit(), tiers,
+                ObservationRegistry.NOOP, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void stopMembers() {
+        members.forEach(HazelcastInstance::shutdown);
+    }
+
+    @Test
+    public void deliversInPriorityOrderAcrossTiers() {
+        final String organization = "TIERS_ORDER";
+        final Long low = add(organization, Priority.LOW);
+        final Long normal = add(organization, Priority.NORMAL);
+        final Long high = add(organization, Priority.HIGH);
+        final Long secondLow = add(organization, Priority.LOW);
+
+        Assertions.assertEquals(4, service.getStats(organization, null).getAvailable());
+        Assertions.assertEquals(List.of(high, normal, low),
+                ids(service.peek(organization, NotificationType.SMS, 3, null)));
+        Assertions.assertEquals(normal, service.findMessage(organization, normal, null).getId());
+        Assertions.assertEquals(high, service.getMessage(organization, NotificationType.SMS, "client-1", null).getId());
+        Assertions.assertEquals(List.of(normal, low),
+                ids(service.getMessages(organization, NotificationType.SMS, "client-1", 2, null, null)));
+        Assertions.assertEquals(secondLow,
+                service.getMessage(organization, NotificationType.SMS, "client-1", null).getId());
+        Assertions.assertNull(service.getMessage(organization, NotificationType.SMS, "client-1", null));
+    }
+
+    @Test
+    public void exportPagesAcrossTiers() {
+        final String organization = "TIERS_EXPORT";
+        final List<Long> added = List.of(add(organization, Priority.LOW), add(organization, Priority.NORMAL),
+                add(organization, Priority.HIGH), add(organization, Priority.NORMAL));
+
+        final List<Long> exported = new ArrayList<>();
+        long after = -1;
+        List<ExportedMessage> page;
+        do {
+            page = service.exportMessages(organization, after, 1, null);
+            page.forEach(message -> exported.add(message.getMessage().getId()));
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getSequence();
+            }
+        } while (page.size() == 1);
+
+        Assertions.assertEquals(List.of(added.get(2), added.get(1), added.get(3), added.get(0)), exported);
+    }
+
+    @Test
+    public void organizationTierOverridesPriorityTiers() {
+        final String organization = "TIERS_PINNED";
+        final Long high = add(organization, Priority.HIGH);
+        add(organization, Priority.LOW);
+
+        Assertions.assertTrue(members.get(0).getMap(Durability.NONE.getMapName()).containsKey(organization));
+        Assertions.assertFalse(members.get(0).getMap(Durability.SYNC.getMapName()).containsKey(organization));
+        Assertions.assertEquals(2, service.getStats(organization, null).getAvailable());
+        Assertions.assertEquals(high, service.getMessage(organization, NotificationType.SMS, "client-1", null).getId());
+    }
+
+    @Test
+    public void keepsMixedPriorityGroupsInOrder() {
+        final String organization = "TIERS_GROUP";
+        final Long low = add(organization, Priority.LOW, "order-1");
+        final Long high = add(organization, Priority.HIGH, "order-1");
+        final Long normal = add(organization, Priority.NORMAL, "order-1");
+
+        Assertions.assertFalse(members.get(0).getMap(Durability.NONE.getMapName()).containsKey(organization));
+        Assertions.assertEquals(low, service.getMessage(organization, NotificationType.SMS, "client-1", null,
+                Duration.ofMinutes(1)).getId());
+        Assertions.assertNull(service.getMessage(organization, NotificationType.SMS, "client-2", null,
+                Duration.ofMinutes(1)));
+        Assertions.assertEquals(List.of(low), service.acknowledge(organization, List.of(low), null));
+        Assertions.assertEquals(high, service.getMessage(organization, NotificationType.SMS, "client-2", null).getId());
+        Assertions.assertEquals(normal,
+                service.getMessage(organization, NotificationType.SMS, "client-1", null).getId());
+    }
+
+    @Test
+    public void readsMessagesLeftInOtherTiersByEarlierSettings() {
+        final String upgraded = "TIERS_UPGRADED";
+        final Message stored = new Message();
+        stored.setPriority(Priority.NORMAL);
+        stored.setNotificationType(NotificationType.SMS);
+        Assertions.assertTrue(new MessageService(members.get(0)).addMessage(stored, upgraded, null));
+        final String unpinned = "TIERS_PINNED";
+        final Long pinnedHigh = add(unpinned, Priority.HIGH);
+        final ApplicationProperties.Tiers changed = new ApplicationProperties.Tiers();
+        changed.getPriorities().putAll(tiers.getPriorities());
+        changed.setGroups(Durability.ASYNC);
+        service = new MessageService(members.get(0), new ApplicationProperties.Claim(),
+                new ApplicationProperties.Spill(), new ApplicationProperties.Audit(), changed,
+                ObservationRegistry.NOOP, new SimpleMeterRegistry());
+        final Long high = add(upgraded, Priority.HIGH);
+        final Long low = add(upgraded, Priority.LOW);
+        final Long normal = add(unpinned, Priority.NORMAL);
+
+        Assertions.assertTrue(members.get(0).getMap(Durability.SYNC.getMapName()).containsKey(upgraded));
+        Assertions.assertTrue(members.get(0).getMap(Durability.NONE.getMapName()).containsKey(unpinned));
+        Assertions.assertEquals(3, service.getStats(upgraded, null).getAvailable());
+        Assertions.assertEquals(List.of(high, stored.getId(), low),
+                ids(service.getMessages(upgraded, NotificationType.SMS, "client-1", 3, null, null)));
+        Assertions.assertEquals(List.of(pinnedHigh, normal),
+                ids(service.getMessages(unpinned, NotificationType.SMS, "client-1", 3, null, null)));
+    }
+
+    /**
+     * Measures producer latency and bytes sent between members for each tier. Messages of one organization are kept on
+     * the same partition in every tier, so the tiers differ only in the backups they make.
+     */
+    @Test
+    public void measuresLatencyAndNetworkBytesPerTier() {
+        final String organization = "TIERS_MEASURED";
+        for (int i = 0; i < WARMUP; i++) {
+            add(organization, Priority.values()[i % Priority.values().length]);
+        }
+        final Map<Durability, Long> bytes = new EnumMap<>(Durability.class);
+        for (final Priority priority : List.of(Priority.HIGH, Priority.NORMAL, Priority.LOW)) {
+            final Durability durability = tiers.getPriorities().get(priority);
+            final long sentBefore = bytesSent();
+            final long start = System.nanoTime();
+            for (int i = 0; i < MEASURED; i++) {
+                add(organization, priority);
+            }
+            final long elapsed = System.nanoTime() - start;
+            final long sent = bytesSent() - sentBefore;
+            bytes.put(durability, sent);
+            log.info("{} ({}): {} us/add, {} bytes/add between members", durability, priority,
+                    elapsed / MEASURED / 1_000, sent / MEASURED);
+        }
+
+        Assertions.assertTrue(bytes.get(Durability.NONE) < bytes.get(Durability.ASYNC), bytes.toString());
+        Assertions.assertTrue(bytes.get(Durability.NONE) < bytes.get(Durability.SYNC), bytes.toString());
+    }
+
+    private Long add(final String organization, final Priority priority) {
+        return add(organization, priority, null);
+    }
+
+    private Long add(final String organization, final Priority priority, final String group) {
+        final Message message = new Message();
+        message.setPriority(priority);
+        message.setNotificationType(NotificationType.SMS);
+        Assertions.assertTrue(service.addMessage(message, null, group, organization, null));
+        return message.getId();
+    }
+
+    private static List<Long> ids(final List<Message> messages) {
+        return messages.stream().map(Message::getId).toList();
+    }
+
+    /**
+     * Bytes written by every member to the others so far.
+     */
+    private long bytesSent() {
+        long sent = 0;
+        for (final HazelcastInstance member : members) {
+            final HazelcastInstanceProxy proxy = (HazelcastInstanceProxy) member;
+            for (final ServerConnection connection : proxy.getOriginal().node.getServer()
+                    .getConnectionManager(EndpointQualifier.MEMBER).getConnections()) {
+                sent += ((TcpServerConnection) connection).getChannel().bytesWritten();
+            }
+        }
+        return sent;
+    }
+}
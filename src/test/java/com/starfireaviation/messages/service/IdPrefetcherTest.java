@@ -0,0 +1,110 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.starfireaviation.messages.service;
+
+import com.hazelcast.flakeidgen.FlakeIdGenerator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that IdPrefetcher hands out distinct IDs without waiting on the generator.
+ */
+public class IdPrefetcherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void callersNeverWaitOnABlockedGenerator() throws Exception {
+        final CountDownLatch fetched = new CountDownLatch(1);
+        final IdPrefetcher prefetcher = new IdPrefetcher(new Generator(fetched), executor, 4);
+
+        final CompletableFuture<Long> id = prefetcher.next().toCompletableFuture();
+        Assertions.assertFalse(id.isDone());
+        fetched.countDown();
+        Assertions.assertNotNull(id.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void idsAreDistinctAcrossRefills() throws Exception {
+        final Generator generator = new Generator(new CountDownLatch(0));
+        final IdPrefetcher prefetcher = new IdPrefetcher(generator, executor, 4);
+
+        final Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertTrue(ids.add(prefetcher.next().toCompletableFuture().get(5, TimeUnit.SECONDS)));
+        }
+        Assertions.assertTrue(generator.next.get() >= 50);
+    }
+
+    /**
+     * Hands out sequential IDs once a latch opens.
+     */
+    private static final class Generator implements FlakeIdGenerator {
+
+        private final CountDownLatch open;
+
+        private final AtomicLong next = new AtomicLong();
+
+        private Generator(final CountDownLatch latch) {
+            open = latch;
+        }
+
+        @Override
+        public long newId() {
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return next.incrementAndGet();
+        }
+
+        @Override
+        public String getPartitionKey() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return "ids";
+        }
+
+        @Override
+        public String getServiceName() {
+            return "ids";
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service;
+
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.config.CommonConstants;
+import com.starfireaviation.messages.config.ServiceConfig;
+import com.starfireaviation.messages.model.QueueStats;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs MessageService in client mode against an in-JVM Hazelcast member standing in for the data members.
+ */
+public class MessageServiceClientTest {
+
+    private static final String ORGANIZATION = "CLIENT_ORG";
+
+    private static final String CLIENT_ID = "client-1";
+
+    private HazelcastInstance member;
+
+    private HazelcastInstance client;
+
+    private MessageService service;
+
+    @BeforeEach
+    public void startMemberAndClient() {
+        final String clusterName = "client-" + UUID.randomUUID();
+        final Config config = ServiceConfig.configure(new Config());
+        config.setClusterName(clusterName);
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.getNetworkConfig().setPort(5911).setPortAutoIncrement(true);
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        member = Hazelcast.newHazelcastInstance(config);
+
+        final ApplicationProperties.Client settings = new ApplicationProperties.Client();
+        settings.setClusterName(clusterName);
+        settings.setAddresses(List.of("127.0.0.1:" + member.getCluster().getLocalMember().getAddress().getPort()));
+        client = HazelcastClient.newHazelcastClient(ServiceConfig.clientConfig(settings));
+        service = new MessageService(client);
+    }
+
+    @AfterEach
+    public void stopMemberAndClient() {
+        client.shutdown();
+        member.shutdown();
+    }
+
+    @Test
+    public void messagesAreStoredOnTheMemberAndClaimedThroughTheClient() {
+        final Message message = new Message();
+        message.setPriority(Priority.HIGH);
+        message.setNotificationType(NotificationType.SMS);
+        Assertions.assertTrue(service.addMessage(message, ORGANIZATION, null));
+        Assertions.assertTrue(member.getMap(CommonConstants.MESSAGES_MAP).containsKey(ORGANIZATION));
+
+        final QueueStats stats = service.getStats(ORGANIZATION, null);
+        Assertions.assertEquals(1, stats.getAvailable());
+        Assertions.assertEquals(1, service.peek(ORGANIZATION, NotificationType.SMS, 1, null).size());
+
+        final Message leased = service.getMessage(ORGANIZATION, NotificationType.SMS, CLIENT_ID, null,
+                Duration.ofMinutes(1));
+        Assertions.assertEquals(message.getId(), leased.getId());
+        Assertions.assertNull(service.getMessage(ORGANIZATION, NotificationType.SMS, CLIENT_ID, null));
+        Assertions.assertEquals(List.of(message.getId()), service.acknowledge(ORGANIZATION, List.of(leased.getId()),
+                null));
+
+        service.cleanup();
+        Assertions.assertFalse(member.getMap(CommonConstants.MESSAGES_MAP).containsKey(ORGANIZATION));
+    }
+}
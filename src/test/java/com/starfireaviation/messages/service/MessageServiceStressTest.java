@@ -0,0 +1,336 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.config.ServiceConfig;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Hammers MessageService instances attached to separate Hazelcast members with concurrent producers, consumers and
+ * cleanup, then checks delivery invariants.
+ *
+ * Leases are short and some consumers never acknowledge, so redelivery races acknowledgement and cleanup throughout
+ * the run. A directed message may be delivered more than once only if it was leased, and is removed or acknowledged
+ * exactly once.
+ *
+ * Scale with -Dstress.members, -Dstress.producers, -Dstress.consumers and -Dstress.messages.
+ */
+@Slf4j
+public class MessageServiceStressTest {
+
+    private static final int MEMBERS = Integer.getInteger("stress.members", 2);
+
+    private static final int PRODUCERS = Integer.getInteger("stress.producers", 4);
+
+    private static final int CONSUMERS = Integer.getInteger("stress.consumers", 8);
+
+    private static final int MESSAGES_PER_PRODUCER = Integer.getInteger("stress.messages", 500);
+
+    private static final List<String> ORGANIZATIONS = List.of("STRESS_ORG_A", "STRESS_ORG_B");
+
+    private static final List<String> CLIENTS = List.of("client-1", "client-2", "client-3", "client-4");
+
+    private static final List<NotificationType> DIRECTED_TYPES = Arrays.stream(NotificationType.values())
+            .filter(type -> type != NotificationType.ALL)
+            .toList();
+
+    private static final Duration SHORT_LIVED = Duration.ofMillis(200);
+
+    private static final Duration LEASE = Duration.ofMillis(150);
+
+    private final List<HazelcastInstance> members = new ArrayList<>();
+
+    private final List<MessageService> services = new ArrayList<>();
+
+    /**
+     * Produced messages that do not expire during the test.
+     * Note: Key = Message ID; Value = organization
+     */
+    private final Map<Long, String> longLived = new ConcurrentHashMap<>();
+
+    /**
+     * Produced messages which may expire before delivery.
+     */
+    private final Map<Long, Message> shortLived = new ConcurrentHashMap<>();
+
+    /**
+     * Directed deliveries.
+     * Note: Key = Message ID; Value = delivery count
+     */
+    private final Map<Long, AtomicInteger> directed = new ConcurrentHashMap<>();
+
+    /**
+     * Directed messages delivered under a lease at least once.
+     */
+    private final Set<Long> leased = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Deliveries without a lease plus acknowledgements that succeeded, each of which removes a directed message.
+     * Note: Key = Message ID; Value = removal count
+     */
+    private final Map<Long, AtomicInteger> removed = new ConcurrentHashMap<>();
+
+    /**
+     * Logical time each directed message was known to be removed.
+     * Note: Key = Message ID; Value = clock reading
+     */
+    private final Map<Long, Long> removedAt = new ConcurrentHashMap<>();
+
+    /**
+     * Orders claims against removals across threads.
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * Invariant violations observed while consuming.
+     */
+    private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Broadcast deliveries.
+     * Note: Key = ClientID:Message ID; Value = delivery count
+     */
+    private final Map<String, AtomicInteger> broadcast = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void startMembers() {
+        final String clusterName = "stress-" + UUID.randomUUID();
+        for (int i = 0; i < MEMBERS; i++) {
+            final Config config = ServiceConfig.configure(new Config());
+            config.setClusterName(clusterName);
+            config.setProperty("hazelcast.phone.home.enabled", "false");
+            config.getNetworkConfig().setPort(5901).setPortAutoIncrement(true);
+            config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+            config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+            config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+            final HazelcastInstance member = Hazelcast.newHazelcastInstance(config);
+            members.add(member);
+            services.add(new MessageService(member));
+        }
+        Assertions.assertEquals(MEMBERS, members.get(0).getCluster().getMembers().size());
+    }
+
+    @AfterEach
+    public void stopMembers() {
+        members.forEach(HazelcastInstance::shutdown);
+    }
+
+    @Test
+    public void concurrentProducersConsumersAndCleanupPreserveDeliveryInvariants() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS + CONSUMERS + 1);
+        final AtomicBoolean producing = new AtomicBoolean(true);
+        final List<Future<?>> producers = new ArrayList<>();
+        final List<Future<?>> others = new ArrayList<>();
+        for (int i = 0; i < PRODUCERS; i++) {
+            producers.add(executor.submit(this::produce));
+        }
+        for (int i = 0; i < CONSUMERS; i++) {
+            final Consumer consumer = Consumer.values()[i % Consumer.values().length];
+            others.add(executor.submit(() -> {
+                while (producing.get()) {
+                    consume(randomService(), random(ORGANIZATIONS), random(CLIENTS), randomType(), consumer);
+                }
+                return null;
+            }));
+        }
+        others.add(executor.submit(() -> {
+            while (producing.get()) {
+                randomService().cleanup();
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            return null;
+        }));
+        for (final Future<?> producer : producers) {
+            producer.get(2, TimeUnit.MINUTES);
+        }
+        producing.set(false);
+        for (final Future<?> other : others) {
+            other.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        TimeUnit.MILLISECONDS.sleep(LEASE.multipliedBy(2).toMillis());
+        drain();
+        log.info("Produced {} long-lived and {} short-lived messages; {} directed ({} leased, {} redelivered) and {} "
+                + "broadcast deliveries", longLived.size(), shortLived.size(), directed.size(), leased.size(),
+                directed.values().stream().filter(count -> count.get() > 1).count(), broadcast.size());
+
+        Assertions.assertEquals(List.of(), violations);
+        directed.forEach((id, count) -> {
+            if (!leased.contains(id)) {
+                Assertions.assertEquals(1, count.get(), "Unleased message " + id + " delivered more than once");
+            }
+        });
+        removed.forEach((id, count) ->
+                Assertions.assertEquals(1, count.get(), "Directed message " + id + " removed more than once"));
+        broadcast.forEach((key, count) ->
+                Assertions.assertEquals(1, count.get(), "Broadcast " + key + " delivered more than once"));
+        longLived.keySet().forEach(id -> {
+            if (directed.containsKey(id)) {
+                Assertions.assertTrue(removed.containsKey(id), "Message " + id + " was never removed");
+                return;
+            }
+            CLIENTS.forEach(client -> Assertions.assertTrue(broadcast.containsKey(client + ":" + id),
+                    "Message " + id + " was lost for " + client));
+        });
+    }
+
+    private Void produce() {
+        for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+            final Message message = new Message();
+            message.setPriority(random(List.of(Priority.values())));
+            message.setNotificationType(randomType());
+            final boolean expiring = ThreadLocalRandom.current().nextInt(10) == 0;
+            if (expiring) {
+                message.setExpirationTime(Instant.now().plus(SHORT_LIVED));
+            }
+            final String organization = random(ORGANIZATIONS);
+            Assertions.assertTrue(randomService().addMessage(message, organization, "stress"));
+            if (expiring) {
+                shortLived.put(message.getId(), message);
+            } else {
+                longLived.put(message.getId(), organization);
+            }
+        }
+        return null;
+    }
+
+    private Message consume(final MessageService service,
+                            final String organization,
+                            final String clientId,
+                            final NotificationType type,
+                            final Consumer consumer) {
+        Duration lease = null;
+        if (consumer != Consumer.REMOVING) {
+            lease = LEASE;
+        }
+        final long claimed = clock.incrementAndGet();
+        final Message message = service.getMessage(organization, type, clientId, "stress", lease);
+        if (message == null) {
+            return null;
+        }
+        if (message.getNotificationType() == NotificationType.ALL) {
+            broadcast.computeIfAbsent(clientId + ":" + message.getId(), key -> new AtomicInteger()).incrementAndGet();
+            return message;
+        }
+        final Long id = message.getId();
+        directed.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet();
+        final Long gone = removedAt.get(id);
+        if (gone != null && gone < claimed) {
+            violations.add("Message " + id + " delivered after it was removed");
+        }
+        if (lease == null) {
+            remove(id);
+            return message;
+        }
+        leased.add(id);
+        if (consumer == Consumer.FORGETFUL && ThreadLocalRandom.current().nextBoolean()) {
+            return message;
+        }
+        if (service.acknowledge(organization, List.of(id), "stress").contains(id)) {
+            remove(id);
+        }
+        return message;
+    }
+
+    private void remove(final Long id) {
+        removed.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet();
+        removedAt.put(id, clock.incrementAndGet());
+    }
+
+    private void drain() {
+        for (final String organization : ORGANIZATIONS) {
+            for (final NotificationType type : DIRECTED_TYPES) {
+                Message message;
+                do {
+                    message = consume(randomService(), organization, CLIENTS.get(0), type, Consumer.REMOVING);
+                } while (message != null);
+            }
+            for (final String client : CLIENTS) {
+                while (consume(randomService(), organization, client, NotificationType.ALL, Consumer.REMOVING)
+                        != null) {
+                    continue;
+                }
+            }
+        }
+    }
+
+    private MessageService randomService() {
+        return random(services);
+    }
+
+    private static NotificationType randomType() {
+        if (ThreadLocalRandom.current().nextInt(5) == 0) {
+            return NotificationType.ALL;
+        }
+        return random(DIRECTED_TYPES);
+    }
+
+    private static <T> T random(final List<T> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+
+    /**
+     * How a consumer claims directed messages.
+     */
+    private enum Consumer {
+
+        /**
+         * Claims without a lease, removing the message.
+         */
+        REMOVING,
+
+        /**
+         * Leases and then acknowledges, which fails if the lease has already expired.
+         */
+        ACKNOWLEDGING,
+
+        /**
+         * Leases and acknowledges only half of the time, leaving the rest to be redelivered.
+         */
+        FORGETFUL
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.config.CommonConstants;
+import com.starfireaviation.messages.config.ServiceConfig;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that each operation is observed as one tree of stages tagged with the caller's correlation ID.
+ */
+public class MessageServiceTracingTest {
+
+    private static final String ORGANIZATION = "TRACING_ORG";
+
+    private final List<Observation.Context> stopped = new CopyOnWriteArrayList<>();
+
+    private HazelcastInstance member;
+
+    private MessageService service;
+
+    @BeforeEach
+    public void startMember() {
+        final Config config = ServiceConfig.configure(new Config());
+        config.setClusterName("tracing-" + UUID.randomUUID());
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.getNetworkConfig().setPort(5941).setPortAutoIncrement(true);
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        member = Hazelcast.newHazelcastInstance(config);
+        final ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public boolean supportsContext(final Observation.Context context) {
+                return true;
+            }
+
+            @Override
+            public void onStop(final Observation.Context context) {
+                stopped.add(context);
+            }
+        });
+        final ApplicationProperties.Claim claim = new ApplicationProperties.Claim();
+        claim.setCoalesce(false);
+        service = new MessageService(member, claim, new ApplicationProperties.Spill(), registry);
+        // The service scans the tiers as it starts; only the operations under test are checked.
+        stopped.clear();
+    }
+
+    @AfterEach
+    public void stopMember() {
+        member.shutdown();
+    }
+
+    @Test
+    public void addIsObservedWithItsStagesAsChildren() {
+        service.addMessage(new Message(), ORGANIZATION, "add-1");
+
+        final Observation.Context add = find("messages.add");
+        Assertions.assertEquals("add-1", correlationId(add));
+        Assertions.assertEquals(ORGANIZATION,
+                add.getHighCardinalityKeyValue(CommonConstants.TRACE_ORGANIZATION).getValue());
+        final Observation.Context id = find("messages.id");
+        Assertions.assertSame(add, id.getParentObservation().getContextView());
+        final Observation.Context hazelcast = find(CommonConstants.HAZELCAST_OBSERVATION);
+        Assertions.assertSame(add, hazelcast.getParentObservation().getContextView());
+        Assertions.assertEquals("hazelcast submitToKey", hazelcast.getContextualName());
+        Assertions.assertEquals("AddProcessor", hazelcast.getLowCardinalityKeyValue("hazelcast.processor").getValue());
+        Assertions.assertEquals("add-1", correlationId(hazelcast));
+        Assertions.assertEquals(3, stopped.size());
+    }
+
+    @Test
+    public void claimIsObservedUntilItsResultCompletes() {
+        service.addMessage(new Message(), ORGANIZATION, "add-2");
+        stopped.clear();
+
+        Assertions.assertNotNull(service.getMessage(ORGANIZATION, NotificationType.ALL, "client", "get-2"));
+        final Observation.Context claim = find("messages.claim");
+        Assertions.assertEquals("get-2", correlationId(claim));
+        final Observation.Context hazelcast = find(CommonConstants.HAZELCAST_OBSERVATION);
+        Assertions.assertSame(claim, hazelcast.getParentObservation().getContextView());
+        Assertions.assertEquals("ClaimProcessor", hazelcast.getLowCardinalityKeyValue("hazelcast.processor").getValue());
+    }
+
+    @Test
+    public void cleanupIsObservedWithoutACorrelationId() {
+        final Message expired = new Message();
+        expired.setExpirationTime(Instant.now().minusSeconds(1));
+        service.addMessage(expired, ORGANIZATION, "add-3");
+        stopped.clear();
+
+        service.cleanup();
+        final Observation.Context cleanup = find("messages.cleanup");
+        Assertions.assertNull(cleanup.getHighCardinalityKeyValue(CommonConstants.TRACE_CORRELATION_ID));
+        final Observation.Context hazelcast = find(CommonConstants.HAZELCAST_OBSERVATION);
+        Assertions.assertSame(cleanup, hazelcast.getParentObservation().getContextView());
+        Assertions.assertEquals("hazelcast executeOnEntries", hazelcast.getContextualName());
+        Assertions.assertEquals("CleanupProcessor",
+                hazelcast.getLowCardinalityKeyValue("hazelcast.processor").getValue());
+    }
+
+    private Observation.Context find(final String name) {
+        return stopped.stream().filter(context -> name.equals(context.getName())).findFirst()
+                .orElseThrow(() -> new AssertionError(name + " was not observed: " + stopped));
+    }
+
+    private static String correlationId(final Observation.Context context) {
+        final KeyValue keyValue = context.getHighCardinalityKeyValue(CommonConstants.TRACE_CORRELATION_ID);
+        return keyValue.getValue();
+    }
+}
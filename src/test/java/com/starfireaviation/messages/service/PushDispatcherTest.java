@@ -0,0 +1,267 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import com.starfireaviation.messages.config.ServiceConfig;
+import com.starfireaviation.messages.model.QueueStats;
+import com.starfireaviation.messages.model.Subscription;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks PushDispatcher against a stub HTTP endpoint.
+ */
+public class PushDispatcherTest {
+
+    private static final String ORGANIZATION = "PUSH_ORG";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final ApplicationProperties.Push push = new ApplicationProperties.Push();
+
+    private final List<JsonNode> received = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<String> correlationIds = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger concurrent = new AtomicInteger();
+
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    private volatile int failuresRemaining;
+
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    private HazelcastInstance member;
+
+    private HttpServer server;
+
+    private MessageService service;
+
+    private PushDispatcher dispatcher;
+
+    @BeforeEach
+    public void start() throws IOException {
+        final Config config = ServiceConfig.configure(new Config());
+        config.setClusterName("push-" + UUID.randomUUID());
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.getNetworkConfig().setPort(5931).setPortAutoIncrement(true);
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        member = Hazelcast.newHazelcastInstance(config);
+        service = new MessageService(member);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/callback", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        push.setEnabled(true);
+        push.setInitialBackoff(Duration.ofMillis(10));
+        push.setAllowedHosts(List.of("127.0.0.1"));
+        dispatcher = new PushDispatcher(member, service, push, objectMapper, registry);
+    }
+
+    @AfterEach
+    public void stop() {
+        gate.countDown();
+        server.stop(0);
+        member.shutdown();
+    }
+
+    @Test
+    public void batchesAreDeliveredInOrderAndAcknowledged() {
+        for (int i = 0; i < 5; i++) {
+            add(Priority.NORMAL);
+        }
+        subscribe("client", 2, 60L);
+
+        awaitCondition(() -> registry.counter("messages.push.delivered").count() == 5);
+        Assertions.assertEquals(List.of(2, 2, 1), received.stream().map(JsonNode::size).toList());
+        final List<Long> ids = received.stream()
+                .flatMap(batch -> StreamSupport.stream(batch.spliterator(), false))
+                .map(message -> message.get("id").asLong())
+                .toList();
+        Assertions.assertEquals(ids.stream().sorted().toList(), ids);
+        awaitCondition(() -> stats().getLeased() == 0);
+        Assertions.assertEquals(0, stats().getAvailable());
+        Assertions.assertEquals(3, registry.find("messages.push.latency")
+                .tag("organization", ORGANIZATION).tag("client", "client").timer().count());
+    }
+
+    @Test
+    public void failedBatchesAreRetriedWithBackoffBeforeNewOnes() {
+        failuresRemaining = 2;
+        add(Priority.NORMAL);
+        subscribe("client", 10, 60L);
+        awaitCondition(() -> registry.counter("messages.push.delivered").count() == 1);
+        add(Priority.NORMAL);
+        awaitCondition(() -> registry.counter("messages.push.delivered").count() == 2);
+
+        Assertions.assertEquals(4, correlationIds.size());
+        Assertions.assertEquals(1, correlationIds.stream().limit(3).distinct().count());
+        Assertions.assertEquals(2, registry.counter("messages.push.failed").count());
+        awaitCondition(() -> stats().getLeased() == 0);
+    }
+
+    @Test
+    public void batchesAreDroppedAfterTheLastAttempt() {
+        failuresRemaining = Integer.MAX_VALUE;
+        push.setMaxAttempts(2);
+        add(Priority.NORMAL);
+        subscribe("client", 1, null);
+        awaitCondition(() -> registry.counter("messages.push.dropped").count() == 1);
+        Assertions.assertEquals(2, correlationIds.size());
+        Assertions.assertEquals(0, stats().getAvailable());
+    }
+
+    @Test
+    public void requestsInFlightAreCapped() {
+        gate = new CountDownLatch(1);
+        push.setMaxInFlight(2);
+        registry = new SimpleMeterRegistry();
+        dispatcher = new PushDispatcher(member, service, push, objectMapper, registry);
+        for (int i = 0; i < 6; i++) {
+            add(Priority.NORMAL);
+        }
+        subscribe("a", 1, 60L);
+        subscribe("b", 1, 60L);
+        subscribe("c", 1, 60L);
+        for (int i = 0; i < 10; i++) {
+            dispatcher.dispatch();
+        }
+        awaitCondition(() -> concurrent.get() == 2);
+        Assertions.assertEquals(2, registry.get("messages.push.in.flight").gauge().value());
+
+        gate.countDown();
+        awaitCondition(() -> registry.counter("messages.push.delivered").count() == 6);
+        Assertions.assertEquals(2, maxConcurrent.get());
+    }
+
+    @Test
+    public void internalDestinationsAreNotSentTo() {
+        push.setAllowedHosts(List.of());
+        push.setMaxAttempts(2);
+        add(Priority.NORMAL);
+        subscribe("client", 1, null);
+        awaitCondition(() -> registry.counter("messages.push.dropped").count() == 1);
+        Assertions.assertEquals(2, registry.counter("messages.push.failed").count());
+        Assertions.assertTrue(correlationIds.isEmpty());
+    }
+
+    @Test
+    public void failedAcknowledgementsAreCounted() throws InterruptedException {
+        gate = new CountDownLatch(1);
+        add(Priority.NORMAL);
+        subscribe("client", 1, 1L);
+        awaitCondition(() -> concurrent.get() == 1);
+        Thread.sleep(1500);
+        gate.countDown();
+        awaitCondition(() -> registry.counter("messages.push.ack.failed").count() == 1);
+        awaitCondition(() -> registry.counter("messages.push.delivered").count() == 2);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final int current = concurrent.incrementAndGet();
+        maxConcurrent.accumulateAndGet(current, Math::max);
+        try {
+            gate.await();
+            correlationIds.add(exchange.getRequestHeaders().getFirst("correlation-id"));
+            final JsonNode batch = objectMapper.readTree(exchange.getRequestBody());
+            int status = 200;
+            if (failuresRemaining > 0) {
+                failuresRemaining--;
+                status = 503;
+            } else {
+                received.add(batch);
+            }
+            exchange.sendResponseHeaders(status, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrent.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private void subscribe(final String clientId, final int batchSize, final Long lease) {
+        final Subscription subscription = new Subscription();
+        subscription.setClientId(clientId);
+        subscription.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/callback");
+        subscription.setNotificationType(NotificationType.SMS);
+        subscription.setBatchSize(batchSize);
+        subscription.setLease(lease);
+        dispatcher.subscribe(ORGANIZATION, subscription, "test");
+    }
+
+    private void add(final Priority priority) {
+        final Message message = new Message();
+        message.setPriority(priority);
+        message.setNotificationType(NotificationType.SMS);
+        message.setExpirationTime(Instant.now().plusSeconds(60));
+        message.setPayload("payload");
+        service.addMessage(message, ORGANIZATION, "test");
+    }
+
+    private QueueStats stats() {
+        return service.getStats(ORGANIZATION, "test");
+    }
+
+    private void awaitCondition(final BooleanSupplier condition) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "Timed out " + concurrent + " " + maxConcurrent + " " + correlationIds + " " + registry.get("messages.push.in.flight").gauge().value() + " " + stats());
+            dispatcher.dispatch();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.spill;
+
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.model.MessageQueue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpillStoreTest {
+
+    private static final int SEGMENT = 100;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void recordsAreReadBackAndFreedExactlyOnce() throws Exception {
+        final SpillStore store = new SpillStore(directory, SEGMENT, 10 * SEGMENT, 0);
+        final SpillStore.Record record = store.write(bytes(60));
+        Assertions.assertArrayEquals(bytes(60), record.read());
+        Assertions.assertEquals(1, store.getRecords());
+        Assertions.assertEquals(60, store.getRecordBytes());
+        Assertions.assertEquals(60, store.getDiskBytes());
+        Assertions.assertEquals(1, store.getPagedIn());
+
+        record.free();
+        record.free();
+        Assertions.assertEquals(0, store.getRecords());
+        Assertions.assertEquals(0, store.getRecordBytes());
+        Assertions.assertEquals(1, store.getSegments());
+    }
+
+    @Test
+    public void sealedSegmentsAreDeletedOnceEveryRecordIsFreed() throws Exception {
+        final SpillStore store = new SpillStore(directory, SEGMENT, 10 * SEGMENT, 0);
+        final SpillStore.Record first = store.write(bytes(40));
+        final SpillStore.Record second = store.write(bytes(40));
+        final SpillStore.Record third = store.write(bytes(40));
+        Assertions.assertEquals(2, store.getSegments());
+        Assertions.assertEquals(2, segmentFiles());
+
+        first.free();
+        Assertions.assertEquals(2, segmentFiles());
+        second.free();
+        Assertions.assertEquals(1, store.getSegments());
+        Assertions.assertEquals(1, segmentFiles());
+        Assertions.assertEquals(40, store.getDiskBytes());
+
+        third.free();
+        Assertions.assertEquals(1, segmentFiles());
+        Assertions.assertNotNull(store.write(bytes(SEGMENT)));
+        Assertions.assertEquals(1, segmentFiles());
+    }
+
+    @Test
+    public void payloadsBeyondCapacityAreRefused() throws Exception {
+        final SpillStore store = new SpillStore(directory, SEGMENT, 2 * SEGMENT, 0);
+        Assertions.assertNotNull(store.write(bytes(SEGMENT)));
+        Assertions.assertNotNull(store.write(bytes(SEGMENT)));
+        Assertions.assertNull(store.write(bytes(1)));
+    }
+
+    @Test
+    public void segmentsFromAnEarlierProcessAreDeleted() throws Exception {
+        new SpillStore(directory, SEGMENT, 10 * SEGMENT, 0).write(bytes(10));
+        Assertions.assertEquals(1, segmentFiles());
+        new SpillStore(directory, SEGMENT, 10 * SEGMENT, 0);
+        Assertions.assertEquals(0, segmentFiles());
+    }
+
+    @Test
+    public void watermarkIsComparedWithHeapUse() throws Exception {
+        Assertions.assertTrue(new SpillStore(directory, SEGMENT, SEGMENT, 0).isAboveWatermark());
+        Assertions.assertFalse(new SpillStore(directory, SEGMENT, SEGMENT, 101).isAboveWatermark());
+    }
+
+    @Test
+    public void coldLowPriorityMessagesAreSpilledAndPagedBackInAtTheHead() throws Exception {
+        final SpillStore store = new SpillStore(directory, 1 << 20, 1 << 20, 0);
+        final long now = System.currentTimeMillis();
+        final Instant expiration = Instant.ofEpochMilli(now).plusSeconds(60);
+        final MessageQueue queue = new MessageQueue();
+        for (long id = 1; id <= 5; id++) {
+            if (id == 4) {
+                queue.add(message(id, Priority.LOW, Instant.ofEpochMilli(now).plusSeconds(1)), now);
+            } else {
+                queue.add(message(id, Priority.LOW, expiration), now);
+            }
+        }
+        queue.add(message(6L, Priority.HIGH, expiration), now);
+
+        Assertions.assertEquals(3, queue.spill(Priority.LOW, 2, 10, store));
+        Assertions.assertEquals(3, store.getRecords());
+        Assertions.assertEquals(0, queue.spill(Priority.LOW, 2, 10, store));
+        Assertions.assertEquals(6, queue.getStats(now).getAvailable());
+        Assertions.assertEquals("payload-5", queue.get(5L).getPayload());
+
+        final MessageQueue copy = roundTrip(queue);
+        Assertions.assertEquals("payload-3", copy.get(3L).getPayload());
+        Assertions.assertEquals(3, store.getRecords());
+
+        final long reads = store.getPagedIn();
+        Assertions.assertEquals(1, queue.removeExpired(Instant.ofEpochMilli(now).plusSeconds(2)).size());
+        Assertions.assertEquals(2, store.getRecords());
+        Assertions.assertEquals(reads, store.getPagedIn());
+
+        final Instant claimTime = Instant.ofEpochMilli(now);
+        Assertions.assertEquals(6L, queue.claim(NotificationType.SMS, "client", null, claimTime).getId());
+        Assertions.assertEquals(1L, queue.claim(NotificationType.SMS, "client", null, claimTime).getId());
+        Assertions.assertEquals(2L, queue.claim(NotificationType.SMS, "client", null, claimTime).getId());
+        Assertions.assertEquals(2, store.getRecords());
+        final Message paged = queue.claim(NotificationType.SMS, "client", null, claimTime);
+        Assertions.assertEquals("payload-3", paged.getPayload());
+        Assertions.assertEquals(0, store.getRecords());
+        Assertions.assertEquals("payload-5", queue.claim(NotificationType.SMS, "client", null, claimTime)
+                .getPayload());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    private static MessageQueue roundTrip(final MessageQueue queue) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(queue);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (MessageQueue) in.readObject();
+        }
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static Message message(final Long id, final Priority priority, final Instant expiration) {
+        final Message message = new Message();
+        message.setId(id);
+        message.setPriority(priority);
+        message.setNotificationType(NotificationType.SMS);
+        message.setExpirationTime(expiration);
+        message.setPayload("payload-" + id);
+        return message;
+    }
+
+    private static byte[] bytes(final int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Copyright (C) 2022 Starfire Aviation, LLC
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.starfireaviation.messages.validation;
+
+import com.starfireaviation.common.exception.InvalidPayloadException;
+import com.starfireaviation.common.model.Message;
+import com.starfireaviation.common.model.NotificationType;
+import com.starfireaviation.common.model.Priority;
+import com.starfireaviation.messages.config.ApplicationProperties;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+public class MessageReaderTest {
+
+    private static final String MESSAGE = "{\"id\":7,\"priority\":\"HIGH\",\"notificationType\":\"SMS\","
+            + "\"expirationTime\":\"2030-01-01T00:00:00Z\",\"payload\":\"hello\",\"unknown\":{\"a\":[1,{}]}}";
+
+    private static final int CHUNK = 256;
+
+    private final MessageReader reader = new MessageReader(limits());
+
+    @Test
+    public void readsAMessageAndSkipsUnknownFields() throws Exception {
+        assertMessage(read(MESSAGE));
+    }
+
+    @Test
+    public void readsAMessageFedOneByteAtATime() throws Exception {
+        final MessageReader.Feed feed = reader.feed();
+        final byte[] bytes = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        Message message = null;
+        for (int i = 0; i < bytes.length; i++) {
+            Assertions.assertNull(message);
+            message = feed.write(Arrays.copyOfRange(bytes, i, i + 1));
+        }
+        assertMessage(message);
+    }
+
+    @Test
+    public void emptyBodyReadsAsNoMessage() throws Exception {
+        Assertions.assertNull(read(""));
+        Assertions.assertNull(reader.feed().end());
+    }
+
+    @Test
+    public void epochSecondsAreAcceptedForExpirationTime() throws Exception {
+        Assertions.assertEquals(Instant.ofEpochSecond(1, 500_000_000),
+                read("{\"expirationTime\":1.5}").getExpirationTime());
+        Assertions.assertEquals(Instant.ofEpochSecond(2), read("{\"expirationTime\":2}").getExpirationTime());
+    }
+
+    @Test
+    public void unknownEnumValuesAreRejectedWithTheirLocation() {
+        final InvalidPayloadException e = Assertions.assertThrows(InvalidPayloadException.class,
+                () -> read("{\n  \"priority\": \"URGENT\"}"));
+        Assertions.assertEquals("Field 'priority' must be one of [HIGH, NORMAL, LOW] at line 2, column 15",
+                e.getMessage());
+        Assertions.assertThrows(InvalidPayloadException.class, () -> read("{\"notificationType\":\"PAGER\"}"));
+        Assertions.assertThrows(InvalidPayloadException.class, () -> read("{\"priority\":1}"));
+    }
+
+    @Test
+    public void wrongTypesAreRejected() {
+        Assertions.assertThrows(InvalidPayloadException.class, () -> read("[]"));
+        Assertions.assertThrows(InvalidPayloadException.class, () -> read("{\"id\":\"7\"}"));
+        Assertions.assertThrows(InvalidPayloadException.class, () -> read("{\"payload\":{}}"));
+        Assertions.assertThrows(InvalidPayloadException.class, () -> read("{\"expirationTime\":\"tomorrow\"}"));
+        Assertions.assertThrows(InvalidPayloadException.class, () -> read("{\"payload\":\"unterminated}"));
+    }
+
+    @Test
+    public void longFieldsAreRejected() {
+        final InvalidPayloadException e = Assertions.assertThrows(InvalidPayloadException.class,
+                () -> read("{\"payload\":\"" + "x".repeat(101) + "\"}"));
+        Assertions.assertEquals("String value length (101) exceeds the maximum allowed (100) at line 1, column 115",
+                e.getMessage());
+        Assertions.assertThrows(InvalidPayloadException.class,
+                () -> read("{\"priority\":\"" + "H".repeat(21) + "\"}"));
+        Assertions.assertThrows(InvalidPayloadException.class, () -> read("{\"" + "f".repeat(21) + "\":1}"));
+    }
+
+    @Test
+    public void oversizedBodiesAreRejectedBeforeTheyAreRead() throws Exception {
+        Assertions.assertThrows(PayloadTooLargeException.class,
+                () -> reader.read(new ByteArrayInputStream(new byte[0]), 1025));
+
+        final CountingInputStream body = new CountingInputStream("{"
+                + ("\"unknown\":\"" + "x".repeat(90) + "\",").repeat(1000) + "\"id\":1}");
+        Assertions.assertThrows(PayloadTooLargeException.class, () -> reader.read(body, -1));
+        Assertions.assertTrue(body.read < 1024 * 2, "read " + body.read);
+
+        final MessageReader.Feed feed = reader.feed();
+        feed.write(new byte[]{'{'});
+        Assertions.assertThrows(PayloadTooLargeException.class, () -> feed.write(new byte[1024]));
+    }
+
+    @Test
+    public void truncatedBodiesAreRejected() throws Exception {
+        final MessageReader.Feed feed = reader.feed();
+        Assertions.assertNull(feed.write("{\"payload\":\"hello\"".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertThrows(InvalidPayloadException.class, feed::end);
+    }
+
+    private Message read(final String json) throws InvalidPayloadException, IOException {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return reader.read(new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static void assertMessage(final Message message) {
+        Assertions.assertEquals(7L, message.getId());
+        Assertions.assertEquals(Priority.HIGH, message.getPriority());
+        Assertions.assertEquals(NotificationType.SMS, message.getNotificationType());
+        Assertions.assertEquals(Instant.parse("2030-01-01T00:00:00Z"), message.getExpirationTime());
+        Assertions.assertEquals("hello", message.getPayload());
+    }
+
+    private static ApplicationProperties.Validation limits() {
+        final ApplicationProperties.Validation validation = new ApplicationProperties.Validation();
+        validation.setMaxBodySize(DataSize.ofKilobytes(1));
+        validation.setMaxPayloadLength(100);
+        validation.setMaxFieldLength(20);
+        return validation;
+    }
+
+    private static final class CountingInputStream extends InputStream {
+
+        private final byte[] bytes;
+
+        private int read;
+
+        private CountingInputStream(final String body) {
+            bytes = body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int read() {
+            if (read == bytes.length) {
+                return -1;
+            }
+            return bytes[read++];
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            return super.read(b, off, Math.min(len, CHUNK));
+        }
+    }
+}
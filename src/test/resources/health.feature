@@ -0,0 +1,13 @@
+@Health
+Feature: Health
+  As an orchestrator
+  I want to probe the liveness and readiness of an instance
+  So that traffic is only routed to instances that can serve it
+
+  Scenario: Liveness
+    When I check liveness
+    Then I should receive a healthy response
+
+  Scenario: Readiness
+    When I check readiness
+    Then I should receive a healthy response
@@ -30,6 +30,99 @@ Feature: Message Retrieval
     | null     | SMS              | notificationType=SMS   |
     | NORMAL   | ALL              |                        |
 
+  Scenario: Get a message with a lease and acknowledge it
+    Given A message is available
+    And with the priority set to HIGH
+    And with the notificationType set to SMS
+    And I provide an organization
+    And I provide a correlation id
+    And I provide a client id
+    And the message is next in the queue
+    When I get a message with notificationType=SMS&ack=true
+    And I acknowledge the message
+    Then I should receive an acknowledgement
+
+  Scenario Outline: Get a message targeted at a client
+    Given A message is available
+    And with the notificationType set to SMS
+    And I provide the organization <organization>
+    And I provide a correlation id
+    And I provide a client id
+    And the message is targeted at <target>
+    And the message is next in the queue
+    When I get a message with notificationType=SMS
+    Then I should receive <result>
+
+    Examples:
+    | organization  | target         | result            |
+    | inbox-mine    | me             | a message         |
+    | inbox-another | another client | an empty response |
+
+  Scenario: Get grouped messages one at a time
+    Given A message is available
+    And with the notificationType set to SMS
+    And I provide the organization group-order
+    And I provide a correlation id
+    And I provide a client id
+    And the message is in the group N123
+    And the message is next in the queue
+    And the message is next in the queue
+    And I get a message with notificationType=SMS&ack=true
+    When I get a message with notificationType=SMS&ack=true
+    Then I should receive an empty response
+
+  Scenario Outline: Get a message for every client in a consumer group
+    Given A message is available
+    And with the notificationType set to ALL
+    And I provide the organization <organization>
+    And I provide a correlation id
+    And I provide a client id
+    And I am in the consumer group billing
+    And the message is next in the queue
+    And I get a message
+    When another client in the consumer group <group> gets a message
+    Then I should receive <result>
+
+    Examples:
+    | organization         | group   | result            |
+    | consumer-group-same  | billing | an empty response |
+    | consumer-group-other | audit   | a message         |
+
+  Scenario: Get a message with an invalid lease
+    Given No messages are available
+    And I provide an organization
+    And I provide a correlation id
+    And I provide a client id
+    When I get a message with ack=true&lease=0
+    Then I should receive an InvalidPayloadException
+
+  Scenario: Get queue statistics
+    Given A message is available
+    And with the priority set to LOW
+    And with the notificationType set to EMAIL
+    And I provide an organization
+    And I provide a correlation id
+    And the message is next in the queue
+    When I get the queue statistics
+    Then I should receive queue statistics
+
+  Scenario: Peek at the next messages
+    Given A message is available
+    And with the priority set to LOW
+    And with the notificationType set to EMAIL
+    And I provide an organization
+    And I provide a correlation id
+    And the message is next in the queue
+    When I peek at messages with notificationType=EMAIL&count=10
+    Then I should receive a list of messages
+
+  Scenario: Peek at too many messages
+    Given No messages are available
+    And I provide an organization
+    And I provide a correlation id
+    When I peek at messages with count=1000
+    Then I should receive an InvalidPayloadException
+
   Scenario: Get messages without providing any headers
     Given No messages are available
     When I get a message
@@ -16,6 +16,39 @@ Feature: Message Storage
     When I add the message
     Then I should receive a message added response
 
+  Scenario: Look up a stored message by ID
+    Given I have a message
+    And I provide an organization
+    And I provide a correlation id
+    And I add the message
+    When I look up the message by ID
+    Then I should receive a message
+
+  Scenario: Cancel a stored message by ID
+    Given I have a message
+    And I provide an organization
+    And I provide a correlation id
+    And I add the message
+    And I cancel the message by ID
+    When I look up the message by ID
+    Then I should receive an empty response
+
+  Scenario: Export stored messages and import them into another organization
+    Given I have a message
+    And I provide the organization export-source
+    And I provide a correlation id
+    And I add the message
+    And I export the messages and import them into the organization export-target
+    When I look up the message by ID
+    Then I should receive a message
+
+  Scenario: Cancel a message which does not exist
+    Given I have a message
+    And I provide an organization
+    And I provide a correlation id
+    When I cancel the message by ID
+    Then I should receive an empty response
+
   Scenario: Add a message without providing an organization
     Given I have a message
     And I provide a correlation id
@@ -34,3 +67,33 @@ Feature: Message Storage
     And I provide a client id
     When I get a message
     Then I should receive an InvalidPayloadException
+
+  Scenario: Add a message with an unknown priority
+    Given I have a message with the body {"priority":"URGENT","payload":"hello"}
+    And I provide an organization
+    And I provide a correlation id
+    When I add the message
+    Then I should receive an InvalidPayloadException
+
+  Scenario: Add a message with an oversized payload
+    Given I have a message with a payload of 600000 characters
+    And I provide an organization
+    And I provide a correlation id
+    When I add the message
+    Then I should receive an InvalidPayloadException
+
+  Scenario: Add a message exceeding the maximum body size
+    Given I have a message padded to 1100000 bytes
+    And I provide an organization
+    And I provide a correlation id
+    When I add the message
+    Then I should receive a PayloadTooLargeException
+
+  Scenario: Add a grouped message targeted at a client
+    Given I have a message
+    And the message is targeted at another client
+    And the message is in the group N123
+    And I provide an organization
+    And I provide a correlation id
+    When I add the message
+    Then I should receive an InvalidPayloadException
@@ -0,0 +1,35 @@
+@Subscriptions
+Feature: Push Subscriptions
+  As a client
+  I want to register a callback endpoint
+  So that messages are pushed to me instead of polled
+
+  Scenario: Register, list and remove a subscription
+    Given A subscription to https://callback.example.com/messages
+    And I provide the organization SUBSCRIPTION_ORG
+    And I provide a correlation id
+    And I provide a client id
+    When I subscribe
+    Then I should receive a subscription
+    When I list subscriptions
+    Then I should receive a list of subscriptions
+    When I unsubscribe
+    Then I should receive a successful response
+    When I unsubscribe
+    Then I should receive an empty response
+
+  Scenario: Register a subscription with an invalid URL
+    Given A subscription to ftp://localhost/callback
+    And I provide the organization SUBSCRIPTION_ORG
+    And I provide a correlation id
+    And I provide a client id
+    When I subscribe
+    Then I should receive an InvalidPayloadException
+
+  Scenario: Register a subscription to an internal address
+    Given A subscription to http://169.254.169.254/latest/meta-data
+    And I provide the organization SUBSCRIPTION_ORG
+    And I provide a correlation id
+    And I provide a client id
+    When I subscribe
+    Then I should receive an InvalidPayloadException
@@ -0,0 +1,21 @@
+@Tracing
+Feature: Tracing
+  As an operator
+  I want every stage of a request traced under its correlation id
+  So that I can see where the time of a request goes
+
+  Scenario: Trace adding a message
+    Given I have a message
+    And I provide an organization
+    And I provide a correlation id
+    When I add the message
+    Then the request should be traced through messages.validate, messages.add, messages.id, hazelcast submit-to-key
+
+  Scenario: Trace getting a message
+    Given A message is available
+    And I provide an organization
+    And I provide a correlation id
+    And I provide a client id
+    And the message is next in the queue
+    When I get a message
+    Then the request should be traced through messages.claim, hazelcast coalesced-submit-to-key